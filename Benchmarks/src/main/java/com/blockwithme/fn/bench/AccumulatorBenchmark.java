@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.blockwithme.fn.accumulator.IntAccumulator;
+import com.blockwithme.fn2.IntFuncIntInt;
+
+/**
+ * Compares the throughput of an int sum shared by 1 to 64 threads: with
+ * the generated IntAccumulator, with an AtomicInteger, and with a
+ * LongAdder, the closest JDK class. Each nested class runs the same
+ * benchmarks with a different number of threads.
+ *
+ * @author monster
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class AccumulatorBenchmark {
+
+    /** One thread. */
+    @Threads(1)
+    public static class Threads1 extends AccumulatorBenchmark {
+        // NOP
+    }
+
+    /** 4 threads. */
+    @Threads(4)
+    public static class Threads4 extends AccumulatorBenchmark {
+        // NOP
+    }
+
+    /** 16 threads. */
+    @Threads(16)
+    public static class Threads16 extends AccumulatorBenchmark {
+        // NOP
+    }
+
+    /** 64 threads. */
+    @Threads(64)
+    public static class Threads64 extends AccumulatorBenchmark {
+        // NOP
+    }
+
+    /** The sum. */
+    private static final IntFuncIntInt SUM = new IntFuncIntInt() {
+        @Override
+        public int apply(final int p0, final int p1) {
+            return p0 + p1;
+        }
+    };
+
+    /** The striped accumulator. */
+    private final IntAccumulator accumulator = new IntAccumulator(SUM, 0);
+
+    /** The AtomicInteger. */
+    private final AtomicInteger atomic = new AtomicInteger();
+
+    /** The LongAdder. */
+    private final LongAdder adder = new LongAdder();
+
+    /** Adds to the IntAccumulator. */
+    @Benchmark
+    public void intAccumulator() {
+        accumulator.accumulate(1);
+    }
+
+    /** Adds to the AtomicInteger. */
+    @Benchmark
+    public void atomicInteger() {
+        atomic.addAndGet(1);
+    }
+
+    /** Adds to the LongAdder. */
+    @Benchmark
+    public void longAdder() {
+        adder.increment();
+    }
+}
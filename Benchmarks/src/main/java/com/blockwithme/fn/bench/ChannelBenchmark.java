@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.bench;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.blockwithme.fn.channel.ProcIntDoubleChannel;
+import com.blockwithme.fn2.ProcIntDouble;
+
+/**
+ * Compares publishing a "price changed (int instrumentId, double price)"
+ * event to a number of listeners, through a generated ProcIntDoubleChannel,
+ * and through a List of Consumers, with one event object per publish.
+ *
+ * @author monster
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelBenchmark {
+
+    /** The event object of the boxed version. */
+    private static final class PriceChanged {
+        /** The instrument. */
+        final int instrumentId;
+
+        /** The price. */
+        final double price;
+
+        /** Constructor */
+        PriceChanged(final int theInstrumentId, final double thePrice) {
+            instrumentId = theInstrumentId;
+            price = thePrice;
+        }
+    }
+
+    /** The number of listeners. */
+    @Param({ "1", "16", "64" })
+    public int listeners;
+
+    /** The channel. */
+    private ProcIntDoubleChannel channel;
+
+    /** The Consumers. */
+    private List<Consumer<PriceChanged>> consumers;
+
+    /** The next instrument. */
+    private int instrumentId;
+
+    /**
+     * Subscribes the listeners. They are of three different classes, so that
+     * the calls to the listeners are megamorphic, like in a real event bus.
+     */
+    @Setup
+    public void setup(final Blackhole blackhole) {
+        channel = new ProcIntDoubleChannel();
+        consumers = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < listeners; i++) {
+            channel.subscribe(listener(blackhole, i % 3));
+            consumers.add(consumer(blackhole, i % 3));
+        }
+    }
+
+    /** Returns a listener of the given kind. */
+    private static ProcIntDouble listener(final Blackhole blackhole,
+            final int kind) {
+        switch (kind) {
+        case 0:
+            return new ProcIntDouble() {
+                @Override
+                public void apply(final int p0, final double p1) {
+                    blackhole.consume(p0);
+                }
+            };
+        case 1:
+            return new ProcIntDouble() {
+                @Override
+                public void apply(final int p0, final double p1) {
+                    blackhole.consume(p1);
+                }
+            };
+        default:
+            return new ProcIntDouble() {
+                @Override
+                public void apply(final int p0, final double p1) {
+                    blackhole.consume(p0 + p1);
+                }
+            };
+        }
+    }
+
+    /** Returns a Consumer of the given kind. */
+    private static Consumer<PriceChanged> consumer(final Blackhole blackhole,
+            final int kind) {
+        switch (kind) {
+        case 0:
+            return new Consumer<PriceChanged>() {
+                @Override
+                public void accept(final PriceChanged event) {
+                    blackhole.consume(event.instrumentId);
+                }
+            };
+        case 1:
+            return new Consumer<PriceChanged>() {
+                @Override
+                public void accept(final PriceChanged event) {
+                    blackhole.consume(event.price);
+                }
+            };
+        default:
+            return new Consumer<PriceChanged>() {
+                @Override
+                public void accept(final PriceChanged event) {
+                    blackhole.consume(event.instrumentId + event.price);
+                }
+            };
+        }
+    }
+
+    /** Publishes through the channel. */
+    @Benchmark
+    public void channel() {
+        final int id = instrumentId++;
+        channel.apply(id, id * 0.5);
+    }
+
+    /** Publishes through the List of Consumers. */
+    @Benchmark
+    public void consumers() {
+        final int id = instrumentId++;
+        final PriceChanged event = new PriceChanged(id, id * 0.5);
+        for (final Consumer<PriceChanged> consumer : consumers) {
+            consumer.accept(event);
+        }
+    }
+}
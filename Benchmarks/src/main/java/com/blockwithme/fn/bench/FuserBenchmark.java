@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.blockwithme.fn.combinators.IntCombinators;
+import com.blockwithme.fn.fuser.Fuser;
+import com.blockwithme.fn1.BooleanFuncInt;
+import com.blockwithme.fn1.BooleanFuncLong;
+import com.blockwithme.fn1.IntFuncInt;
+import com.blockwithme.fn1.LongFuncInt;
+
+/**
+ * Compares pipelines of the shape IntFuncInt, LongFuncInt, BooleanFuncLong,
+ * composed naively (with the generated combinators, or with a lambda), and
+ * fused by the Fuser.
+ *
+ * Four pipelines with different stage implementations are applied in turn,
+ * like in a real application, where the same shapes are used in many
+ * places. This makes the call sites of the naive compositions megamorphic.
+ *
+ * @author monster
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FuserBenchmark {
+
+    /** Number of inputs. */
+    private static final int SIZE = 1024;
+
+    /** The first stages. */
+    private static final IntFuncInt[] FIRST = { p0 -> p0 + 1, p0 -> p0 * 3,
+            p0 -> p0 ^ 0x55, p0 -> p0 - 7 };
+
+    /** The second stages. */
+    private static final LongFuncInt[] SECOND = { p0 -> (long) p0 * p0,
+            p0 -> p0 + 1L, p0 -> (long) p0 << 3, p0 -> -(long) p0 };
+
+    /** The third stages. */
+    private static final BooleanFuncLong[] THIRD = { p0 -> (p0 & 1) == 0,
+            p0 -> p0 > 100, p0 -> p0 % 3 == 0, p0 -> p0 < 0 };
+
+    /** The inputs. */
+    private int[] inputs;
+
+    /** Composed with IntCombinators.andThen(). */
+    private BooleanFuncInt[] combinators;
+
+    /** Composed with a lambda. */
+    private BooleanFuncInt[] lambdas;
+
+    /** Fused. */
+    private BooleanFuncInt[] fused;
+
+    /** Creates the pipelines. */
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        inputs = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            inputs[i] = random.nextInt(1000) - 500;
+        }
+        combinators = new BooleanFuncInt[FIRST.length];
+        lambdas = new BooleanFuncInt[FIRST.length];
+        fused = new BooleanFuncInt[FIRST.length];
+        for (int i = 0; i < FIRST.length; i++) {
+            final IntFuncInt first = FIRST[i];
+            final LongFuncInt second = SECOND[i];
+            final BooleanFuncLong third = THIRD[i];
+            combinators[i] = IntCombinators.andThen(
+                    IntCombinators.andThen(first, second), third);
+            lambdas[i] = p0 -> third.apply(second.apply(first.apply(p0)));
+            fused[i] = Fuser.fuse(BooleanFuncInt.class, first, second, third);
+        }
+        final int expected = run(lambdas);
+        if ((run(combinators) != expected) || (run(fused) != expected)) {
+            throw new IllegalStateException("Pipelines disagree");
+        }
+    }
+
+    /** Applies all the pipelines to all the inputs. */
+    private int run(final BooleanFuncInt[] pipelines) {
+        int result = 0;
+        for (final BooleanFuncInt pipeline : pipelines) {
+            for (final int input : inputs) {
+                if (pipeline.apply(input)) {
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Naive composition, with the generated combinators. */
+    @Benchmark
+    public int combinators() {
+        return run(combinators);
+    }
+
+    /** Naive composition, with a lambda. */
+    @Benchmark
+    public int lambda() {
+        return run(lambdas);
+    }
+
+    /** Fused composition. */
+    @Benchmark
+    public int fused() {
+        return run(fused);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.blockwithme.fn.instrument.LongInstrumenters;
+import com.blockwithme.fn.util.Instrument;
+import com.blockwithme.fn1.LongFuncInt;
+
+/**
+ * Measures the overhead of the generated instrumenting decorators, for a
+ * cheap functor, when every call is timed, and when one call in 64 is.
+ *
+ * @author monster
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentBenchmark {
+
+    /** The functor. */
+    private static final LongFuncInt SQUARE = p0 -> (long) p0 * p0;
+
+    /** The input. */
+    private int input;
+
+    /** Every call timed. */
+    private LongFuncInt always;
+
+    /** One call in 64 timed. */
+    private LongFuncInt sampled;
+
+    /** Setup */
+    @Setup
+    public void setup() {
+        always = LongInstrumenters.instrument(SQUARE, new Instrument(
+                "always", 1));
+        sampled = LongInstrumenters.instrument(SQUARE, new Instrument(
+                "sampled", 64));
+    }
+
+    /** Without instrumentation. */
+    @Benchmark
+    public long plain() {
+        return SQUARE.apply(input++);
+    }
+
+    /** Every call timed. */
+    @Benchmark
+    public long always() {
+        return always.apply(input++);
+    }
+
+    /** One call in 64 timed. */
+    @Benchmark
+    public long sampled() {
+        return sampled.apply(input++);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.blockwithme.fn.collections.IntDoubleHashMap;
+import com.blockwithme.fn.join.Aggregates;
+import com.blockwithme.fn.join.IntGroupBy;
+import com.blockwithme.fn.join.IntHashTable;
+import com.blockwithme.tuples.T2IL;
+import com.blockwithme.tuples.T3ILD;
+
+/**
+ * Compares joining T3ILD rows with T2IL rows on their int field, and
+ * summing the double field of the T3ILD rows per int field, with
+ * IntHashTable and IntGroupBy, and with a HashMap of lists and
+ * Collectors.groupingBy().
+ *
+ * @author monster
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JoinBenchmark {
+
+    /** The number of distinct keys. */
+    private static final int KEYS = 50000;
+
+    /** The build rows. */
+    private List<T2IL> build;
+
+    /** The probe rows. */
+    private List<T3ILD> probe;
+
+    /** The sum of the joined rows. */
+    private long sum;
+
+    /** Creates the rows. */
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        build = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            build.add(new T2IL(random.nextInt(KEYS), i));
+        }
+        probe = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            probe.add(new T3ILD(random.nextInt(KEYS), i, random.nextDouble()));
+        }
+    }
+
+    /** Inner join, with IntHashTable. */
+    @Benchmark
+    public long hashJoin() {
+        sum = 0;
+        final IntHashTable<T2IL> table = new IntHashTable<>(build,
+                p0 -> p0._0);
+        table.innerJoin(probe, p0 -> p0._0, (p0, p1) -> sum += p0._1 ^ p1._1);
+        return sum;
+    }
+
+    /** Inner join, with a HashMap of lists. */
+    @Benchmark
+    public long boxedJoin() {
+        sum = 0;
+        final Map<Integer, List<T2IL>> table = new HashMap<>();
+        for (final T2IL row : build) {
+            table.computeIfAbsent(row._0, k -> new ArrayList<>()).add(row);
+        }
+        for (final T3ILD row : probe) {
+            for (final T2IL other : table.getOrDefault(row._0,
+                    Collections.<T2IL> emptyList())) {
+                sum += row._1 ^ other._1;
+            }
+        }
+        return sum;
+    }
+
+    /** Sum per key, with IntGroupBy. */
+    @Benchmark
+    public IntDoubleHashMap groupBy() {
+        return IntGroupBy.aggregateDouble(probe, p0 -> p0._0, p0 -> p0._2,
+                Aggregates.DOUBLE_SUM);
+    }
+
+    /** Sum per key, with Collectors.groupingBy(). */
+    @Benchmark
+    public Map<Integer, Double> boxedGroupBy() {
+        return probe.stream().collect(
+                Collectors.groupingBy(row -> row._0,
+                        Collectors.summingDouble(row -> row._2)));
+    }
+}
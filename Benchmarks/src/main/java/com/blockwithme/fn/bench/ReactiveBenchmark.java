@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import com.blockwithme.fn.reactive.IntPublisher;
+import com.blockwithme.fn.reactive.LongPublisher;
+import com.blockwithme.fn.reactive.LongSubscriber;
+import com.blockwithme.fn.util.Subscription;
+import com.blockwithme.fn1.BooleanFuncInt;
+import com.blockwithme.fn1.IntFuncInt;
+import com.blockwithme.fn1.LongFuncInt;
+import com.blockwithme.fn1.ProcLong;
+import com.blockwithme.fn2.LongFuncLongLong;
+
+/**
+ * Compares the elements per second of the same stream (range, map, filter,
+ * map to long, and scan) built from the generated primitive publishers, and
+ * from boxed Reactor Fluxes. Both are consumed with an unbounded demand, and
+ * with a demand of 256 elements at a time.
+ *
+ * @author monster
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReactiveBenchmark {
+
+    /** Number of elements. */
+    private static final int SIZE = 1 << 20;
+
+    /** The demand of the bounded subscribers. */
+    private static final int BATCH = 256;
+
+    /** Requests BATCH elements at a time. */
+    private static final class BatchSubscriber implements LongSubscriber {
+        /** The Blackhole. */
+        private final Blackhole blackhole;
+
+        /** The subscription. */
+        private Subscription subscription;
+
+        /** Elements left in the current batch. */
+        private int left;
+
+        /** Constructor */
+        BatchSubscriber(final Blackhole theBlackhole) {
+            blackhole = theBlackhole;
+        }
+
+        @Override
+        public void onSubscribe(final Subscription theSubscription) {
+            subscription = theSubscription;
+            left = BATCH;
+            subscription.request(BATCH);
+        }
+
+        @Override
+        public void apply(final long value) {
+            blackhole.consume(value);
+            if (--left == 0) {
+                left = BATCH;
+                subscription.request(BATCH);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable failure) {
+            throw new IllegalStateException(failure);
+        }
+
+        @Override
+        public void onComplete() {
+            // NOP
+        }
+    }
+
+    /** Requests BATCH elements at a time, from a Flux. */
+    private static final class BoxedBatchSubscriber extends
+            BaseSubscriber<Long> {
+        /** The Blackhole. */
+        private final Blackhole blackhole;
+
+        /** Elements left in the current batch. */
+        private int left;
+
+        /** Constructor */
+        BoxedBatchSubscriber(final Blackhole theBlackhole) {
+            blackhole = theBlackhole;
+        }
+
+        @Override
+        protected void hookOnSubscribe(
+                final org.reactivestreams.Subscription subscription) {
+            left = BATCH;
+            request(BATCH);
+        }
+
+        @Override
+        protected void hookOnNext(final Long value) {
+            blackhole.consume(value.longValue());
+            if (--left == 0) {
+                left = BATCH;
+                request(BATCH);
+            }
+        }
+    }
+
+    /** The primitive stream. */
+    private static LongPublisher primitive() {
+        return IntPublisher.range(0, SIZE)
+                .map((IntFuncInt) p0 -> p0 * 3)
+                .filter((BooleanFuncInt) p0 -> (p0 & 1) == 0)
+                .mapToLong((LongFuncInt) p0 -> p0)
+                .scan((LongFuncLongLong) (p0, p1) -> p0 + p1, 0L);
+    }
+
+    /** The boxed stream. */
+    private static Flux<Long> boxed() {
+        return Flux.range(0, SIZE).map(p0 -> p0 * 3)
+                .filter(p0 -> (p0 & 1) == 0).map(p0 -> (long) p0)
+                .scan((p0, p1) -> p0 + p1);
+    }
+
+    /** Primitive, unbounded demand. */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void primitiveUnbounded(final Blackhole blackhole) {
+        primitive().subscribe((ProcLong) blackhole::consume);
+    }
+
+    /** Primitive, BATCH elements at a time. */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void primitiveBatches(final Blackhole blackhole) {
+        primitive().subscribe(new BatchSubscriber(blackhole));
+    }
+
+    /** Reactor, unbounded demand. */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void reactorUnbounded(final Blackhole blackhole) {
+        boxed().subscribe(p0 -> blackhole.consume(p0.longValue()));
+    }
+
+    /** Reactor, BATCH elements at a time. */
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void reactorBatches(final Blackhole blackhole) {
+        boxed().subscribe(new BoxedBatchSubscriber(blackhole));
+    }
+}
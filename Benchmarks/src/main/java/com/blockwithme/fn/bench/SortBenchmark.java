@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.bench;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.blockwithme.fn.sort.IntSorts;
+import com.blockwithme.fn1.LongFuncInt;
+import com.blockwithme.fn2.BooleanFuncIntInt;
+
+/**
+ * Compares sorting int values in descending order, and sorting row indexes
+ * by the values of another column, with IntSorts, and with boxed Integer
+ * arrays and a Comparator.
+ *
+ * @author monster
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark {
+
+    /** Descending order. */
+    private static final BooleanFuncIntInt DESCENDING = new BooleanFuncIntInt() {
+        @Override
+        public boolean apply(final int p0, final int p1) {
+            return p0 > p1;
+        }
+    };
+
+    /** Descending order, as radix key. */
+    private static final LongFuncInt DESCENDING_KEY = new LongFuncInt() {
+        @Override
+        public long apply(final int p0) {
+            return -(long) p0;
+        }
+    };
+
+    /** Descending order, boxed. */
+    private static final Comparator<Integer> BOXED_DESCENDING = new Comparator<Integer>() {
+        @Override
+        public int compare(final Integer o1, final Integer o2) {
+            return Integer.compare(o2, o1);
+        }
+    };
+
+    /** The number of values. */
+    @Param({ "1000", "100000" })
+    public int size;
+
+    /** The values. */
+    private int[] values;
+
+    /** The boxed values. */
+    private Integer[] boxed;
+
+    /** The row indexes, boxed. */
+    private Integer[] boxedIndexes;
+
+    /** Creates the values. */
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        values = new int[size];
+        boxed = new Integer[size];
+        boxedIndexes = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt();
+            boxed[i] = values[i];
+            boxedIndexes[i] = i;
+        }
+    }
+
+    /** Dual-pivot quicksort, with a functor. */
+    @Benchmark
+    public int[] sort() {
+        final int[] result = values.clone();
+        IntSorts.sort(result, DESCENDING);
+        return result;
+    }
+
+    /** Stable merge sort, with a functor. */
+    @Benchmark
+    public int[] stableSort() {
+        final int[] result = values.clone();
+        IntSorts.stableSort(result, DESCENDING);
+        return result;
+    }
+
+    /** LSD radix sort, with a key functor. */
+    @Benchmark
+    public int[] radixSort() {
+        final int[] result = values.clone();
+        IntSorts.radixSort(result, DESCENDING_KEY);
+        return result;
+    }
+
+    /** Arrays.sort() of boxed values, with a Comparator. */
+    @Benchmark
+    public Integer[] boxedSort() {
+        final Integer[] result = boxed.clone();
+        Arrays.sort(result, BOXED_DESCENDING);
+        return result;
+    }
+
+    /** Row indexes ordered by the values, with a functor. */
+    @Benchmark
+    public int[] order() {
+        return IntSorts.order(values, DESCENDING);
+    }
+
+    /** Row indexes ordered by the values, boxed, with a Comparator. */
+    @Benchmark
+    public Integer[] boxedOrder() {
+        final Integer[] result = boxedIndexes.clone();
+        final int[] keys = values;
+        Arrays.sort(result, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer o1, final Integer o2) {
+                return Integer.compare(keys[o2], keys[o1]);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.bench;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.blockwithme.fn.timer.ProcTimers;
+import com.blockwithme.fn.util.WheelTimer;
+import com.blockwithme.fn2.ProcIntLong;
+
+/**
+ * Compares scheduling, and then cancelling, a timeout carrying a shard
+ * and a sequence number, with a WheelTimer, and with a
+ * ScheduledThreadPoolExecutor. This is the common case of timeouts, which
+ * are cancelled when the response arrives.
+ *
+ * @author monster
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerBenchmark {
+
+    /** The timeout callback. */
+    private static final ProcIntLong TIMEOUT = new ProcIntLong() {
+        @Override
+        public void apply(final int p0, final long p1) {
+            throw new IllegalStateException("timeout " + p0 + "/" + p1);
+        }
+    };
+
+    /** The wheel timer. */
+    private WheelTimer timer;
+
+    /** The executor. */
+    private ScheduledThreadPoolExecutor executor;
+
+    /** The next sequence number. */
+    private long sequence;
+
+    /** Creates the timers. */
+    @Setup
+    public void setup() {
+        timer = new WheelTimer(1, TimeUnit.MILLISECONDS, 1024, 1 << 16, 2);
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /** Stops the timers. */
+    @TearDown
+    public void tearDown() {
+        timer.shutdown();
+        executor.shutdownNow();
+    }
+
+    /** Schedules and cancels with the WheelTimer. */
+    @Benchmark
+    public boolean wheelTimer() {
+        final long seq = sequence++;
+        return timer.cancel(ProcTimers.schedule(timer, 30, TimeUnit.SECONDS,
+                TIMEOUT, 7, seq));
+    }
+
+    /** Schedules and cancels with the ScheduledThreadPoolExecutor. */
+    @Benchmark
+    public boolean scheduledExecutor() {
+        final long seq = sequence++;
+        final ScheduledFuture<?> future = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                TIMEOUT.apply(7, seq);
+            }
+        }, 30, TimeUnit.SECONDS);
+        return future.cancel(false);
+    }
+}
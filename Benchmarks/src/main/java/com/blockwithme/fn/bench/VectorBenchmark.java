@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.blockwithme.fn.vector.DoubleExpr;
+import com.blockwithme.fn.vector.IntExpr;
+import com.blockwithme.fn2.DoubleFuncDoubleDouble;
+import com.blockwithme.fn2.IntFuncIntInt;
+
+/**
+ * Compares the batch methods of the compiled Vector API expressions, with the
+ * default, scalar, batch methods of lambdas computing the same thing.
+ *
+ * @author monster
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorBenchmark {
+
+    /** Number of elements. */
+    @Param({ "1024", "65536" })
+    private int size;
+
+    /** The first double inputs. */
+    private double[] dx;
+
+    /** The second double inputs. */
+    private double[] dy;
+
+    /** The double outputs. */
+    private double[] dout;
+
+    /** The first int inputs. */
+    private int[] ix;
+
+    /** The second int inputs. */
+    private int[] iy;
+
+    /** The int outputs. */
+    private int[] iout;
+
+    /** sqrt(x * x + y * y), as an expression. */
+    private DoubleFuncDoubleDouble doubleExpr;
+
+    /** sqrt(x * x + y * y), as a lambda. */
+    private DoubleFuncDoubleDouble doubleLambda;
+
+    /** max(x * 3 + y, 0), as an expression. */
+    private IntFuncIntInt intExpr;
+
+    /** max(x * 3 + y, 0), as a lambda. */
+    private IntFuncIntInt intLambda;
+
+    /** Creates the inputs and the functors. */
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        dx = new double[size];
+        dy = new double[size];
+        dout = new double[size];
+        ix = new int[size];
+        iy = new int[size];
+        iout = new int[size];
+        for (int i = 0; i < size; i++) {
+            dx[i] = random.nextDouble();
+            dy[i] = random.nextDouble();
+            ix[i] = random.nextInt(1000) - 500;
+            iy[i] = random.nextInt(1000) - 500;
+        }
+        doubleExpr = DoubleExpr.x().mul(DoubleExpr.x())
+                .add(DoubleExpr.y().mul(DoubleExpr.y())).sqrt().compile();
+        doubleLambda = (p0, p1) -> Math.sqrt(p0 * p0 + p1 * p1);
+        intExpr = IntExpr.x().mul(3).add(IntExpr.y())
+                .max(IntExpr.constant(0)).compile();
+        intLambda = (p0, p1) -> Math.max(p0 * 3 + p1, 0);
+    }
+
+    /** Vector API double expression. */
+    @Benchmark
+    public double[] doubleVector() {
+        doubleExpr.applyBatch(dx, 0, dy, 0, dout, 0, size);
+        return dout;
+    }
+
+    /** Scalar double lambda. */
+    @Benchmark
+    public double[] doubleScalar() {
+        doubleLambda.applyBatch(dx, 0, dy, 0, dout, 0, size);
+        return dout;
+    }
+
+    /** Vector API int expression. */
+    @Benchmark
+    public int[] intVector() {
+        intExpr.applyBatch(ix, 0, iy, 0, iout, 0, size);
+        return iout;
+    }
+
+    /** Scalar int lambda. */
+    @Benchmark
+    public int[] intScalar() {
+        intLambda.applyBatch(ix, 0, iy, 0, iout, 0, size);
+        return iout;
+    }
+}
@@ -0,0 +1,99 @@
+package com.blockwithme.fn.test;
+
+import java.lang.management.ManagementFactory;
+
+import com.blockwithme.fn.binders.IntBinders;
+import com.blockwithme.fn.binders.ObjectBinders;
+import com.blockwithme.fn1.IntFuncInt;
+import com.blockwithme.fn1.ObjectFuncInt;
+import com.blockwithme.fn2.IntFuncIntInt;
+import com.blockwithme.fn2.ObjectFuncObjectInt;
+
+/**
+ * Checks that the functors returned by bind0() and bindLast() are
+ * monomorphic, and that the JIT can scalar-replace them, when they do not
+ * escape. Run with a C2 enabled JVM; the allocation check is skipped if
+ * the JVM cannot measure the allocations of a thread.
+ */
+public class BindTest {
+
+    private static final int ITERATIONS = 10000000;
+
+    private static final IntFuncIntInt SUB = new IntFuncIntInt() {
+        @Override
+        public int apply(final int p0, final int p1) {
+            return p0 - p1;
+        }
+    };
+
+    private static void check(final boolean condition, final String what) {
+        if (!condition) {
+            throw new IllegalStateException(what);
+        }
+        System.out.println("OK: " + what);
+    }
+
+    private static long bindAndApply(final int iterations) {
+        long result = 0;
+        for (int i = 0; i < iterations; i++) {
+            result += IntBinders.bind0(SUB, i).apply(1);
+            result += IntBinders.bindLast(SUB, i).apply(1);
+        }
+        return result;
+    }
+
+    public static void main(final String[] args) {
+        final IntFuncInt first = IntBinders.bind0(SUB, 10);
+        final IntFuncInt last = IntBinders.bindLast(SUB, 10);
+        check(first.apply(3) == 7, "bind0 binds the first parameter");
+        check(last.apply(3) == -7, "bindLast binds the last parameter");
+        check(IntBinders.bind0(SUB, 1).getClass() == first.getClass()
+                && IntBinders.bind0(new IntFuncIntInt() {
+                    @Override
+                    public int apply(final int p0, final int p1) {
+                        return p0 * p1;
+                    }
+                }, 2).getClass() == first.getClass(),
+                "bind0 always returns the same final class");
+        check(first.getClass() != last.getClass(),
+                "bind0 and bindLast use distinct classes");
+
+        final ObjectFuncObjectInt<String, String> repeat = new ObjectFuncObjectInt<String, String>() {
+            @Override
+            public String apply(final String p0, final int p1) {
+                final StringBuilder buf = new StringBuilder();
+                for (int i = 0; i < p1; i++) {
+                    buf.append(p0);
+                }
+                return buf.toString();
+            }
+        };
+        final ObjectFuncInt<String> ab = ObjectBinders.bind0(repeat, "ab");
+        check("ababab".equals(ab.apply(3)), "generic parameters are bound");
+
+        // Warm up, so that bindAndApply() gets compiled by C2.
+        long sum = 0;
+        for (int i = 0; i < 20; i++) {
+            sum += bindAndApply(ITERATIONS / 10);
+        }
+        final java.lang.management.ThreadMXBean bean = ManagementFactory
+                .getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean)
+                        .isThreadAllocatedMemorySupported()) {
+            final com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+            final long id = Thread.currentThread().getId();
+            final long before = sun.getThreadAllocatedBytes(id);
+            sum += bindAndApply(ITERATIONS);
+            final long allocated = sun.getThreadAllocatedBytes(id) - before;
+            System.out.println(allocated + " bytes allocated for "
+                    + (2L * ITERATIONS) + " bindings");
+            // Without scalar replacement, every binding needs 16 to 24 bytes.
+            check(allocated < ITERATIONS / 10,
+                    "bindings are scalar-replaced");
+        } else {
+            System.out.println("SKIPPED: allocation check");
+        }
+        System.out.println(sum);
+    }
+}
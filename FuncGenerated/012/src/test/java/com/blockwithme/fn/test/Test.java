@@ -1,8 +1,47 @@
 package com.blockwithme.fn.test;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.blockwithme.fn.accumulator.IntToLongAccumulator;
+import com.blockwithme.fn.channel.ProcIntLongChannel;
+import com.blockwithme.fn.collections.IntArrayList;
+import com.blockwithme.fn.collections.IntLongHashMap;
+import com.blockwithme.fn.combinators.IntCombinators;
+import com.blockwithme.fn.executor.ProcExecutors;
+import com.blockwithme.fn.future.IntFuture;
+import com.blockwithme.fn.instrument.LongInstrumenters;
+import com.blockwithme.fn.invoke.LongInvokers;
+import com.blockwithme.fn.lazy.LazyInt;
+import com.blockwithme.fn.memo.IntMemoizers;
+import com.blockwithme.fn.pipeline.IntPipeline;
+import com.blockwithme.fn.pipeline.LongPipeline;
+import com.blockwithme.fn.reactive.IntPublisher;
+import com.blockwithme.fn.sinks.IntIntFuncInt;
+import com.blockwithme.fn.sinks.IntIntHolder;
+import com.blockwithme.fn.sinks.IntIntSink;
+import com.blockwithme.fn.sort.IntSorts;
+import com.blockwithme.fn.timer.ProcTimers;
+import com.blockwithme.fn0.IntFunc;
+import com.blockwithme.fn1.BooleanFuncInt;
+import com.blockwithme.fn1.BooleanFuncLong;
 import com.blockwithme.fn1.ByteFuncByte;
+import com.blockwithme.fn1.IntFuncInt;
+import com.blockwithme.fn1.LongFuncInt;
+import com.blockwithme.fn1.ProcBoolean;
+import com.blockwithme.fn1.ProcLong;
+import com.blockwithme.fn2.BooleanFuncIntInt;
 import com.blockwithme.fn2.ByteFuncByteFloat;
+import com.blockwithme.fn2.LongFuncLongInt;
+import com.blockwithme.fn2.LongFuncLongLong;
+import com.blockwithme.fn2.ProcIntLong;
 import com.blockwithme.fn.util.Functor;
+import com.blockwithme.fn.util.FunctorInvoker;
+import com.blockwithme.fn.util.Instruments;
+import com.blockwithme.fn.util.Memoizer;
+import com.blockwithme.fn.util.RingExecutor;
+import com.blockwithme.fn.util.WaitStrategy;
+import com.blockwithme.fn.util.WheelTimer;
 import com.blockwithme.fn.util.Util;
 
 public class Test {
@@ -13,7 +52,7 @@ public class Test {
         }
     }
 
-    public static void main(final String[] args) {
+    public static void main(final String[] args) throws InterruptedException {
 
         final Functor f = new ByteFuncByte() {
             @Override
@@ -37,5 +76,203 @@ public class Test {
                 .getName());
         System.out.println("-------------------");
 
+        final IntFuncInt twice = new IntFuncInt() {
+            @Override
+            public int apply(final int p0) {
+                return 2 * p0;
+            }
+        };
+        final LongFuncInt square = new LongFuncInt() {
+            @Override
+            public long apply(final int p0) {
+                return (long) p0 * p0;
+            }
+        };
+        final BooleanFuncLong big = new BooleanFuncLong() {
+            @Override
+            public boolean apply(final long p0) {
+                return p0 > 100;
+            }
+        };
+        final BooleanFuncInt pipeline = IntCombinators.negate(IntCombinators
+                .andThen(IntCombinators.andThen(twice, square), big));
+        System.out.println(pipeline.apply(5) + " " + pipeline.apply(6));
+        System.out.println("-------------------");
+
+        final int[] in = { 1, 2, 3 };
+        final int[] out = new int[in.length];
+        twice.applyBatch(in, 0, out, 0, in.length);
+        System.out.println(Arrays.toString(out));
+        System.out.println("-------------------");
+
+        final BooleanFuncInt even = new BooleanFuncInt() {
+            @Override
+            public boolean apply(final int p0) {
+                return (p0 & 1) == 0;
+            }
+        };
+        final LongPipeline squares = IntPipeline.of(1, 2, 3, 4, 5, 6)
+                .filter(even).mapToLong(square);
+        System.out.println(squares.sum() + " " + squares.parallel().max());
+        System.out.println("-------------------");
+
+        final LongFuncInt memo = IntMemoizers.memoize(square, 100);
+        for (int i = 0; i < 10; i++) {
+            memo.apply(i % 3);
+        }
+        System.out.println(memo);
+        final LongFuncInt large = IntMemoizers.memoizeConcurrent(square, 1 << 20);
+        for (int i = 0; i < (1 << 20); i++) {
+            large.apply(i);
+        }
+        final int probe = ((Memoizer) large).getMaxProbeLength();
+        if (probe > 256) {
+            throw new IllegalStateException("Probe length too long: " + probe);
+        }
+        System.out.println(large + " maxProbeLength=" + probe);
+        System.out.println("-------------------");
+
+        final FunctorInvoker invoker = FunctorInvoker.get(square);
+        System.out.println(invoker.getDescriptor() + " "
+                + LongInvokers.invokeJI(square, 7) + " "
+                + invoker.invokeObject(square, 7));
+        System.out.println("-------------------");
+
+        final LazyInt lazy = new LazyInt(new IntFunc() {
+            @Override
+            public int apply() {
+                return twice.apply(21);
+            }
+        });
+        System.out.println(lazy + " " + lazy.get() + " " + lazy);
+        System.out.println("-------------------");
+
+        final IntIntFuncInt divMod = new IntIntFuncInt() {
+            @Override
+            public void apply(final int p0, final IntIntSink out) {
+                out.accept(p0 / 10, p0 % 10);
+            }
+        };
+        final IntIntHolder qr = new IntIntHolder();
+        divMod.apply(42, qr);
+        System.out.println(qr);
+        System.out.println("-------------------");
+
+        final LongFuncInt timed = LongInstrumenters.instrument(square,
+                "square");
+        for (int i = 0; i < 1000; i++) {
+            timed.apply(i);
+        }
+        System.out.println(Instruments.snapshot());
+        System.out.println("-------------------");
+
+        final RingExecutor executor = new RingExecutor(1024, 2, 1, false,
+                WaitStrategy.Park);
+        final ProcIntLong show = new ProcIntLong() {
+            @Override
+            public void apply(final int p0, final long p1) {
+                System.out.println(p0 + " * " + p1 + " = " + p0 * p1);
+            }
+        };
+        for (int i = 1; i <= 3; i++) {
+            ProcExecutors.execute(executor, show, i, 7L);
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+        System.out.println("-------------------");
+
+        final IntFuture future = new IntFuture();
+        final BooleanFuncInt bigSquare = IntCombinators.andThen(square, big);
+        future.thenApplyToBoolean(bigSquare).onSuccess(new ProcBoolean() {
+            @Override
+            public void apply(final boolean p0) {
+                System.out.println("big square: " + p0);
+            }
+        });
+        future.complete(11);
+        System.out.println(future + " " + future.thenApplyToLong(square).join());
+        System.out.println("-------------------");
+
+        IntPublisher.range(0, 10).filter(even).map(twice).mapToLong(square)
+                .subscribe(new ProcLong() {
+                    @Override
+                    public void apply(final long p0) {
+                        System.out.println("reactive: " + p0);
+                    }
+                });
+        System.out.println("-------------------");
+
+        final ProcIntLongChannel channel = new ProcIntLongChannel();
+        channel.subscribe(new ProcIntLong() {
+            @Override
+            public void apply(final int p0, final long p1) {
+                System.out.println("channel: " + p0 + " " + p1);
+            }
+        });
+        channel.apply(7, square.apply(7));
+        System.out.println("-------------------");
+
+        final WheelTimer timer = new WheelTimer(1, TimeUnit.MILLISECONDS, 64,
+                16, 2);
+        final long cancelled = ProcTimers.schedule(timer, 5,
+                TimeUnit.MILLISECONDS, channel, 1, 1L);
+        ProcTimers.schedule(timer, 10, TimeUnit.MILLISECONDS, channel, 2, 2L);
+        System.out.println("cancelled: " + timer.cancel(cancelled));
+        while (timer.size() > 0) {
+            Thread.sleep(1);
+        }
+        timer.shutdown();
+        timer.awaitTermination(1, TimeUnit.SECONDS);
+        System.out.println("-------------------");
+
+        final IntToLongAccumulator sumOfSquares = new IntToLongAccumulator(
+                new LongFuncLongInt() {
+                    @Override
+                    public long apply(final long p0, final int p1) {
+                        return p0 + square.apply(p1);
+                    }
+                }, new LongFuncLongLong() {
+                    @Override
+                    public long apply(final long p0, final long p1) {
+                        return p0 + p1;
+                    }
+                }, 0L);
+        for (int i = 1; i <= 10; i++) {
+            sumOfSquares.accumulate(i);
+        }
+        System.out.println("sum of squares: " + sumOfSquares);
+        System.out.println("-------------------");
+
+        final IntArrayList list = new IntArrayList();
+        list.addAll(1, 2, 3, 4, 5, 6);
+        list.removeIf(even);
+        list.replaceAll(twice);
+        final IntLongHashMap squaresOf = new IntLongHashMap();
+        for (int i = 0; i < list.size(); i++) {
+            squaresOf.computeIfAbsent(list.get(i), square);
+        }
+        System.out.println(list + " " + squaresOf);
+        System.out.println("-------------------");
+
+        final int[] ages = { 31, 25, 47, 25, 19 };
+        final String[] names = { "ann", "bob", "cid", "dan", "eve" };
+        final int[] byAgeThenName = { 0, 1, 2, 3, 4 };
+        IntSorts.sort(byAgeThenName, new BooleanFuncIntInt() {
+            @Override
+            public boolean apply(final int p0, final int p1) {
+                return (ages[p0] < ages[p1]) || ((ages[p0] == ages[p1])
+                        && (names[p0].compareTo(names[p1]) < 0));
+            }
+        });
+        final int[] byAge = IntSorts.order(ages, new BooleanFuncIntInt() {
+            @Override
+            public boolean apply(final int p0, final int p1) {
+                return p0 < p1;
+            }
+        });
+        System.out.println(Arrays.toString(byAgeThenName) + " "
+                + Arrays.toString(byAge));
+        System.out.println("-------------------");
+
     }
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+import com.blockwithme.fn.gen.GenerationReport.Phase;
+
+/**
+ * <code>FuncContext</code> gives the extensions access to the generation
+ * parameters, the naming of the functor interfaces, and the output.
+ *
+ * @author monster
+ */
+public final class FuncContext {
+
+    /** The return types, in generation order. */
+    private static final ParamType[] RETURN_TYPES = { ParamType.Void,
+            ParamType.Boolean, ParamType.Byte, ParamType.Char, ParamType.Short,
+            ParamType.Int, ParamType.Long, ParamType.Float, ParamType.Double,
+            ParamType.Object };
+
+    /** The parameter types, in generation order. */
+    private static final ParamType[] PARAM_TYPES = { ParamType.Boolean,
+            ParamType.Byte, ParamType.Char, ParamType.Short, ParamType.Int,
+            ParamType.Long, ParamType.Float, ParamType.Double,
+            ParamType.Object };
+
+    /** The output directory of the base package. */
+    private final File outputDirectory;
+
+    /** The file header. */
+    private final String fileHeader;
+
+    /** The base package name. */
+    private final String packageName;
+
+    /** The type labels. */
+    private final String[] labels;
+
+    /** The function name infix. */
+    private final String funcNameInfix;
+
+    /** The procedure name prefix. */
+    private final String procNamePrefix;
+
+    /** The method name. */
+    private final String methodName;
+
+    /** The throws clause. */
+    private final String throwsStr;
+
+    /** The minimum number of parameters. */
+    private final int minimumNumberOfArgs;
+
+    /** The maximum number of parameters. */
+    private final int maximumNumberOfArgs;
+
+    /** The filter, if any. */
+    private final FuncFilter filter;
+
+    /** The report. */
+    private final GenerationReport report;
+
+    /** The statistics of the current extension. */
+    private GenerationReport.Arity stats;
+
+    /** The time of the last write. */
+    private long time;
+
+    /** Constructor */
+    FuncContext(final File theOutputDirectory, final String theFileHeader,
+            final String thePackageName, final String[] theLabels,
+            final String theFuncNameInfix, final String theProcNamePrefix,
+            final String theMethodName, final String theThrowsStr,
+            final int theMinimumNumberOfArgs, final int theMaximumNumberOfArgs,
+            final FuncFilter theFilter, final GenerationReport theReport) {
+        outputDirectory = theOutputDirectory;
+        fileHeader = theFileHeader;
+        packageName = thePackageName;
+        labels = theLabels;
+        funcNameInfix = theFuncNameInfix;
+        procNamePrefix = theProcNamePrefix;
+        methodName = theMethodName;
+        throwsStr = theThrowsStr;
+        minimumNumberOfArgs = theMinimumNumberOfArgs;
+        maximumNumberOfArgs = theMaximumNumberOfArgs;
+        filter = theFilter;
+        report = theReport;
+    }
+
+    /** Returns the file header. */
+    public String getFileHeader() {
+        return fileHeader;
+    }
+
+    /** Returns the base package name. */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /** Returns the method name. */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /** Returns the throws clause, like " throws java.io.IOException", or "". */
+    public String getThrows() {
+        return throwsStr;
+    }
+
+    /** Returns the minimum number of parameters. */
+    public int getMinimumNumberOfArgs() {
+        return minimumNumberOfArgs;
+    }
+
+    /** Returns the maximum number of parameters. */
+    public int getMaximumNumberOfArgs() {
+        return maximumNumberOfArgs;
+    }
+
+    /** Returns the label of a type, as used in the functor names. */
+    public String getLabel(final ParamType type) {
+        return labels[GenFunc.returnIndex(type)];
+    }
+
+    /** Returns the name of the generator class, for the doc comments. */
+    public String getGenerator() {
+        return GenFunc.GENERATOR;
+    }
+
+    /**
+     * Returns true, if the functor interface with the given signature is
+     * part of the configured functor set (within the number of parameters,
+     * and accepted by the filter).
+     */
+    public boolean accept(final ParamType returnType,
+            final ParamType... paramTypes) {
+        return (paramTypes.length >= minimumNumberOfArgs)
+                && (paramTypes.length <= maximumNumberOfArgs)
+                && ((filter == null) || filter.accept(paramTypes, returnType));
+    }
+
+    /**
+     * Returns the description of the functor interface with the given
+     * signature, whether it is accepted or not.
+     */
+    public FuncInfo getFunctor(final ParamType returnType,
+            final ParamType... paramTypes) {
+        if (returnType == null) {
+            throw new IllegalArgumentException("returnType is null");
+        }
+        final int r = GenFunc.returnIndex(returnType);
+        final int[] params = new int[paramTypes.length];
+        for (int i = 0; i < params.length; i++) {
+            if ((paramTypes[i] == null) || (paramTypes[i] == ParamType.Void)) {
+                throw new IllegalArgumentException("Bad parameter type: "
+                        + paramTypes[i]);
+            }
+            params[i] = paramTypes[i].ordinal();
+        }
+        final String name = GenFunc.genNameAndSignature(labels,
+                funcNameInfix, procNamePrefix, r, params)[0];
+        return new FuncInfo(returnType, paramTypes, name, packageName
+                + paramTypes.length, GenFunc.genGenericsParams(r, params),
+                methodName, throwsStr);
+    }
+
+    /**
+     * Returns all the accepted functor interfaces with the given number of
+     * parameters, in generation order.
+     */
+    public List<FuncInfo> getFunctors(final int numberOfArgs) {
+        final List<FuncInfo> result = new ArrayList<>();
+        final ParamType[] paramTypes = new ParamType[numberOfArgs];
+        final int[] params = new int[numberOfArgs];
+        for (final ParamType returnType : RETURN_TYPES) {
+            boolean again = true;
+            while (again) {
+                for (int i = 0; i < numberOfArgs; i++) {
+                    paramTypes[i] = PARAM_TYPES[params[i]];
+                }
+                if (accept(returnType, paramTypes)) {
+                    result.add(getFunctor(returnType, paramTypes));
+                }
+                again = false;
+                for (int i = numberOfArgs - 1; i >= 0; i--) {
+                    if (++params[i] < PARAM_TYPES.length) {
+                        again = true;
+                        break;
+                    }
+                    params[i] = 0;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes one source file, if it changed. The file header and the
+     * package declaration are prepended to <code>body</code>. The package
+     * must be the base package, or start with it.
+     */
+    public void write(final String thePackageName, final String className,
+            final String body) {
+        if (!thePackageName.startsWith(packageName)) {
+            throw new IllegalArgumentException("Package " + thePackageName
+                    + " not within " + packageName);
+        }
+        final File dir = new File(outputDirectory.getAbsolutePath()
+                + thePackageName.substring(packageName.length()).replace('.',
+                        File.separatorChar));
+        dir.mkdirs();
+        final String content = fileHeader + "\npackage " + thePackageName
+                + ";\n\n" + body;
+        time = stats.lap(Phase.Rendering, time);
+        GenFunc.outputInterface(new File(dir, className + ".java"), content,
+                stats);
+        time = stats.lap(Phase.Writing, time);
+    }
+
+    /** Starts the given extension. */
+    void start(final FuncExtension extension) {
+        stats = report.startExtension(extension.getClass().getName());
+        time = System.nanoTime();
+    }
+
+    /** Ends the current extension. */
+    void end() {
+        report.endArity(stats);
+        stats = null;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+/**
+ * <code>FuncExtension</code> allows to generate more source code, based on
+ * the generated functor interfaces.
+ *
+ * Like the filter, an extension is specified by class name, and must have a
+ * public no-argument constructor. Several extensions can be used together.
+ *
+ * @author monster
+ */
+public interface FuncExtension {
+
+    /**
+     * Returns additional members of the given functor interface, or "".
+     * They are inserted before the closing brace, indented by 4 spaces.
+     * This is only called when the functor interfaces are generated.
+     */
+    default String members(final FuncInfo functor) {
+        return "";
+    }
+
+    /**
+     * Generates additional source files, once all the functor interfaces
+     * were generated. All files must be written using the context.
+     */
+    void generate(final FuncContext context);
+}
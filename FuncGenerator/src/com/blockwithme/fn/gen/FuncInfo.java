@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Locale;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>FuncInfo</code> describes one generated functor interface, as seen
+ * from the source code of an extension.
+ *
+ * Generic parameters are named like in the functor interfaces: R for an
+ * Object return type, and A, B, C ... for the Object parameters.
+ *
+ * @author monster
+ */
+public final class FuncInfo {
+
+    /** The return type. */
+    private final ParamType returnType;
+
+    /** The parameter types. */
+    private final ParamType[] paramTypes;
+
+    /** The simple name. */
+    private final String name;
+
+    /** The package name. */
+    private final String packageName;
+
+    /** The generic parameters, or "". */
+    private final String generics;
+
+    /** The method name. */
+    private final String methodName;
+
+    /** The throws clause, or "". */
+    private final String throwsStr;
+
+    /** Constructor */
+    FuncInfo(final ParamType theReturnType, final ParamType[] theParamTypes,
+            final String theName, final String thePackageName,
+            final String theGenerics, final String theMethodName,
+            final String theThrowsStr) {
+        returnType = theReturnType;
+        paramTypes = theParamTypes.clone();
+        name = theName;
+        packageName = thePackageName;
+        generics = theGenerics;
+        methodName = theMethodName;
+        throwsStr = theThrowsStr;
+    }
+
+    /** Returns the return type. */
+    public ParamType getReturnType() {
+        return returnType;
+    }
+
+    /** Returns the number of parameters. */
+    public int getArity() {
+        return paramTypes.length;
+    }
+
+    /** Returns the type of the parameter at the given index. */
+    public ParamType getParamType(final int index) {
+        return paramTypes[index];
+    }
+
+    /** Returns the parameter types. */
+    public ParamType[] getParamTypes() {
+        return paramTypes.clone();
+    }
+
+    /** Returns true, for the "void" Functors. */
+    public boolean isProc() {
+        return returnType == ParamType.Void;
+    }
+
+    /** Returns the simple name, without generic parameters. */
+    public String getName() {
+        return name;
+    }
+
+    /** Returns the package name. */
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /** Returns the fully qualified name. */
+    public String getQualifiedName() {
+        return packageName + "." + name;
+    }
+
+    /** Returns the generic parameters, like "&lt;R,A&gt;", or "". */
+    public String getGenerics() {
+        return generics;
+    }
+
+    /** Returns true, if the interface has generic parameters. */
+    public boolean isGeneric() {
+        return !generics.isEmpty();
+    }
+
+    /** Returns the simple name, with generic parameters. */
+    public String getType() {
+        return name + generics;
+    }
+
+    /** Returns the method name. */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /** Returns the throws clause, like " throws java.io.IOException", or "". */
+    public String getThrows() {
+        return throwsStr;
+    }
+
+    /** Returns the source code name of the return type. */
+    public String getReturnTypeName() {
+        return typeName(returnType, 'R');
+    }
+
+    /** Returns the source code name of the type of the given parameter. */
+    public String getParamTypeName(final int index) {
+        char genParam = 'A';
+        for (int i = 0; i < index; i++) {
+            if (paramTypes[i] == ParamType.Object) {
+                genParam++;
+            }
+        }
+        return typeName(paramTypes[index], genParam);
+    }
+
+    /** Returns the parameter list, like "int p0, A p1". */
+    public String getParameterList() {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(getParamTypeName(i)).append(" p").append(i);
+        }
+        return buf.toString();
+    }
+
+    /** Returns the argument list, like "p0, p1". */
+    public String getArgumentList() {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append('p').append(i);
+        }
+        return buf.toString();
+    }
+
+    /** Returns the source code name of a type. */
+    public static String typeName(final ParamType type, final char generic) {
+        if (type == ParamType.Object) {
+            return String.valueOf(generic);
+        }
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return getQualifiedName() + generics;
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Locale;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenAccumulators</code> generates striped accumulators, in the
+ * "accumulator" sub-package, based on com.blockwithme.fn.util.StripedAccumulator.
+ *
+ * For every primitive type whose binary functor is accepted, there is an
+ * accumulator combining the values with that functor: for example,
+ * IntAccumulator, with accumulate(int) and get(), takes an IntFuncIntInt.
+ * For the mixed binary functors, where the input type differs from the
+ * accumulated type, there is an accumulator taking both the combine
+ * functor, and the binary functor merging the stripes: for example,
+ * IntToLongAccumulator takes a LongFuncLongInt, and a LongFuncLongLong.
+ *
+ * @author monster
+ */
+public class GenAccumulators implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "accumulator";
+
+    /** The primitive types. */
+    private static final ParamType[] TYPES = { ParamType.Boolean,
+            ParamType.Byte, ParamType.Char, ParamType.Short, ParamType.Int,
+            ParamType.Long, ParamType.Float, ParamType.Double };
+
+    /** The accumulator class. */
+    private static final String ACCUMULATOR = ""
+            + "import com.blockwithme.fn.util.StripedAccumulator;\n"
+            + "%1$s"
+            + "\n"
+            + "/**\n"
+            + " * Accumulates %2$s values, %3$s.\n"
+            + " * The stripes are merged when reading; the functors must be associative\n"
+            + " * and commutative.\n"
+            + " * Generated automatically by %4$s\n"
+            + " */\n"
+            + "public final class %5$s extends StripedAccumulator {\n"
+            + "%6$s"
+            + "\n"
+            + "    /**\n"
+            + "     * Constructor\n"
+            + "     *\n"
+            + "%7$s"
+            + "     * @param identity the initial value, neutral for merging.\n"
+            + "     */\n"
+            + "    public %5$s(%8$s, final %2$s identity) {\n"
+            + "        super(%9$s);\n"
+            + "%10$s"
+            + "    }\n"
+            + "\n"
+            + "    /** Accumulates a value. */\n"
+            + "    public void accumulate(final %11$s value) {\n"
+            + "        update(%12$s);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the current value. Concurrent updates may or may not be included. */\n"
+            + "    public %2$s get() {\n"
+            + "        return %13$s;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the current value, and resets it to the identity. */\n"
+            + "    public %2$s getThenReset() {\n"
+            + "        return %14$s;\n"
+            + "    }\n"
+            + "\n"
+            + "    @Override\n"
+            + "    protected long combine(final long value, final long input) {\n"
+            + "        return %15$s;\n"
+            + "    }\n"
+            + "\n"
+            + "    @Override\n"
+            + "    protected long merge(final long left, final long right) {\n"
+            + "        return %16$s;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#toString()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "        return String.valueOf(get());\n"
+            + "    }\n"
+            + "}\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        if (!context.getThrows().isEmpty()) {
+            throw new IllegalStateException(getClass().getName()
+                    + " requires functors without throws clause");
+        }
+        for (final ParamType type : TYPES) {
+            if (context.accept(type, type, type)) {
+                for (final ParamType input : TYPES) {
+                    if (context.accept(type, type, input)) {
+                        generate(context, type, input);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Generates the accumulator of <code>type</code> values, from <code>input</code> values. */
+    private static void generate(final FuncContext context,
+            final ParamType type, final ParamType input) {
+        final boolean mixed = (type != input);
+        final FuncInfo combine = context.getFunctor(type, type, input);
+        final FuncInfo merge = context.getFunctor(type, type, type);
+        final String typeName = FuncInfo.typeName(type, 'R');
+        final String inputName = FuncInfo.typeName(input, 'R');
+        final String name = mixed ? context.getLabel(input) + "To"
+                + context.getLabel(type) + "Accumulator" : context
+                .getLabel(type) + "Accumulator";
+        final String method = context.getMethodName();
+        String imports = "import " + combine.getQualifiedName() + ";\n";
+        final StringBuilder fields = new StringBuilder();
+        fields.append("    /** Combines the accumulated value with an input value. */\n");
+        fields.append("    private final ").append(combine.getName())
+                .append(" function;\n");
+        String params = "final " + combine.getName() + " theFunction";
+        String paramDocs = "     * @param theFunction combines the accumulated value with an input value.\n";
+        final StringBuilder init = new StringBuilder();
+        init.append("        if (theFunction == null) {\n");
+        init.append("            throw new IllegalArgumentException(\"function is null\");\n");
+        init.append("        }\n");
+        init.append("        function = theFunction;\n");
+        final String mergeCall;
+        if (mixed) {
+            imports += "import " + merge.getQualifiedName() + ";\n";
+            fields.append("\n    /** Merges two accumulated values. */\n");
+            fields.append("    private final ").append(merge.getName())
+                    .append(" mergeFunction;\n");
+            params += ", final " + merge.getName() + " theMergeFunction";
+            paramDocs += "     * @param theMergeFunction merges two accumulated values.\n";
+            init.append("        if (theMergeFunction == null) {\n");
+            init.append("            throw new IllegalArgumentException(\"mergeFunction is null\");\n");
+            init.append("        }\n");
+            init.append("        mergeFunction = theMergeFunction;\n");
+            mergeCall = "mergeFunction";
+        } else {
+            mergeCall = "function";
+        }
+        final String description = mixed ? "from " + inputName
+                + " values.\n * They are combined with a " + combine.getName()
+                + ", and merged with a " + merge.getName()
+                : "combined with a " + combine.getName();
+        context.write(context.getPackageName() + "." + SUB_PACKAGE, name,
+                String.format(ACCUMULATOR, imports, typeName, description,
+                        context.getGenerator(), name, fields, paramDocs,
+                        params, encode(type, "identity"), init, inputName,
+                        encode(input, "value"),
+                        decode(type, "reduce()"),
+                        decode(type, "reduceThenReset()"),
+                        encode(type, "function." + method + "("
+                                + decode(type, "value") + ", "
+                                + decode(input, "input") + ")"),
+                        encode(type, mergeCall + "." + method + "("
+                                + decode(type, "left") + ", "
+                                + decode(type, "right") + ")")));
+    }
+
+    /** Returns the raw long bits of a value. */
+    private static String encode(final ParamType type, final String value) {
+        switch (type) {
+        case Boolean:
+            return "(" + value + " ? 1L : 0L)";
+        case Float:
+            return "Float.floatToRawIntBits(" + value + ")";
+        case Double:
+            return "Double.doubleToRawLongBits(" + value + ")";
+        default:
+            return value;
+        }
+    }
+
+    /** Returns a value from its raw long bits. */
+    private static String decode(final ParamType type, final String bits) {
+        switch (type) {
+        case Boolean:
+            return "(" + bits + " != 0)";
+        case Float:
+            return "Float.intBitsToFloat((int) " + bits + ")";
+        case Double:
+            return "Double.longBitsToDouble(" + bits + ")";
+        case Long:
+            return bits;
+        default:
+            return "(" + type.name().toLowerCase(Locale.ROOT) + ") " + bits;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenBatchMethods</code> adds an array-at-a-time variant of the
+ * functor method to the primitive functions with one or two parameters, for
+ * example applyBatch(int[] in, int inOff, int[] out, int outOff, int len)
+ * to an IntFuncInt.
+ *
+ * The batch method is a default method, which simply loops over the
+ * functor method. Implementations can override it, with code that the JIT
+ * can unroll or vectorize. Since default methods are used, the generated
+ * code requires Java 8. Procedures, and functions using Objects, get no
+ * batch method.
+ *
+ * @author monster
+ */
+public class GenBatchMethods implements FuncExtension {
+
+    /** The suffix of the batch method name. */
+    public static final String SUFFIX = "Batch";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#members(com.blockwithme.fn.gen.FuncInfo)
+     */
+    @Override
+    public String members(final FuncInfo functor) {
+        final int arity = functor.getArity();
+        if ((arity < 1) || (arity > 2) || functor.isProc()
+                || (functor.getReturnType() == ParamType.Object)) {
+            return "";
+        }
+        for (final ParamType type : functor.getParamTypes()) {
+            if (type == ParamType.Object) {
+                return "";
+            }
+        }
+        final String method = functor.getMethodName();
+        final StringBuilder buf = new StringBuilder(1024);
+        buf.append("    \n");
+        buf.append("    /**\n");
+        buf.append("     * Function <code>").append(method)
+                .append("</code>, applied to <code>len</code> consecutive\n");
+        buf.append("     * elements of the input array");
+        buf.append((arity == 1) ? "" : "s");
+        buf.append(", storing the results in <code>out</code>.\n");
+        buf.append("     * Can be overridden with a faster implementation.\n");
+        buf.append("     */\n");
+        buf.append("    default void ").append(method).append(SUFFIX)
+                .append("(");
+        final String[] inputs = (arity == 1) ? new String[] { "in" }
+                : new String[] { "in0", "in1" };
+        for (int i = 0; i < arity; i++) {
+            buf.append("final ").append(functor.getParamTypeName(i))
+                    .append("[] ").append(inputs[i]).append(", final int ")
+                    .append(inputs[i]).append("Off,\n            ");
+        }
+        buf.append("final ").append(functor.getReturnTypeName())
+                .append("[] out, final int outOff, final int len)")
+                .append(functor.getThrows()).append(" {\n");
+        buf.append("        for (int i = 0; i < len; i++) {\n");
+        buf.append("            out[outOff + i] = ").append(method).append("(");
+        for (int i = 0; i < arity; i++) {
+            if (i > 0) {
+                buf.append(", ");
+            }
+            buf.append(inputs[i]).append("[").append(inputs[i])
+                    .append("Off + i]");
+        }
+        buf.append(");\n");
+        buf.append("        }\n");
+        buf.append("    }\n");
+        return buf.toString();
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        // The batch methods are part of the functor interfaces.
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenBinders</code> generates partial application helpers, in the
+ * "binders" sub-package: bind0(f, p0) binds the first parameter of a
+ * functor, and bindLast(f, pN) its last parameter, returning the functor
+ * interface with one parameter less.
+ *
+ * There is one class per return type, named after its label (for example
+ * IntBinders). Every binding is a final class of its own, with the functor
+ * and the bound value in final fields; primitive values stay primitive.
+ * Since each call site of bind0() or bindLast() can only create one class,
+ * the returned functors are monomorphic, and the JIT can scalar-replace
+ * them, when they do not escape. The generated code only requires Java 7.
+ *
+ * @author monster
+ */
+public class GenBinders implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "binders";
+
+    /** The suffix of the generated classes. */
+    public static final String SUFFIX = "Binders";
+
+    /** The return types. */
+    private static final ParamType[] RETURN_TYPES = { ParamType.Void,
+            ParamType.Boolean, ParamType.Byte, ParamType.Char, ParamType.Short,
+            ParamType.Int, ParamType.Long, ParamType.Float, ParamType.Double,
+            ParamType.Object };
+
+    /** A binding class. */
+    private static final String BINDING = "\n"
+            + "    /** A %1$s, with its %2$s parameter bound. */\n"
+            + "    private static final class %3$s%4$s implements %5$s {\n"
+            + "        /** The functor. */\n"
+            + "        private final %6$s f;\n"
+            + "\n"
+            + "        /** The bound parameter. */\n"
+            + "        private final %7$s %8$s;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        %3$s(final %6$s theF, final %7$s theValue) {\n"
+            + "            f = theF;\n"
+            + "            %8$s = theValue;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public %9$s %10$s(%11$s)%12$s {\n"
+            + "            %13$sf.%10$s(%14$s);\n"
+            + "        }\n"
+            + "    }\n";
+
+    /** The factory method of a binding. */
+    private static final String FACTORY = "\n"
+            + "    /**\n"
+            + "     * Returns <code>f</code>, with its %2$s parameter bound to\n"
+            + "     * <code>%8$s</code>.\n"
+            + "     */\n"
+            + "    public static %15$s%5$s %16$s(final %6$s f,\n"
+            + "            final %7$s %8$s) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        return new %3$s%4$s(f, %8$s);\n"
+            + "    }\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        for (final ParamType returnType : RETURN_TYPES) {
+            final Set<String> imports = new TreeSet<>();
+            final StringBuilder members = new StringBuilder(65536);
+            final int min = Math.max(1, context.getMinimumNumberOfArgs());
+            for (int arity = min; arity <= context.getMaximumNumberOfArgs(); arity++) {
+                for (final FuncInfo f : context.getFunctors(arity)) {
+                    if (f.getReturnType() == returnType) {
+                        bind(context, members, imports, f, 0, "bind0",
+                                "first");
+                        bind(context, members, imports, f, arity - 1,
+                                "bindLast", "last");
+                    }
+                }
+            }
+            if (imports.isEmpty()) {
+                continue;
+            }
+            final String name = context.getLabel(returnType) + SUFFIX;
+            final StringBuilder buf = new StringBuilder(
+                    members.length() + 4096);
+            for (final String type : imports) {
+                buf.append("import ").append(type).append(";\n");
+            }
+            buf.append("\n/**\n * Partial application of the functors returning <code>")
+                    .append(FuncInfo.typeName(returnType, 'R').replace("R",
+                            "Object")).append("</code>.\n");
+            buf.append(" * The returned functors keep the bound value in a final field.\n");
+            buf.append(" * Generated automatically by ")
+                    .append(context.getGenerator()).append("\n */\n");
+            buf.append("public final class ").append(name).append(" {\n");
+            buf.append("    /** No instances. */\n");
+            buf.append("    private ").append(name).append("() {\n");
+            buf.append("        // NOP\n");
+            buf.append("    }\n");
+            buf.append("\n    /** Throws an IllegalArgumentException, if value is null. */\n");
+            buf.append("    private static void checkNotNull(final Object value, final String name) {\n");
+            buf.append("        if (value == null) {\n");
+            buf.append("            throw new IllegalArgumentException(name + \" is null\");\n");
+            buf.append("        }\n");
+            buf.append("    }\n");
+            buf.append(members);
+            buf.append("}\n");
+            context.write(packageName, name, buf.toString());
+        }
+    }
+
+    /** Generates one binding, if the resulting functor is accepted. */
+    private static void bind(final FuncContext context,
+            final StringBuilder buf, final Set<String> imports,
+            final FuncInfo f, final int bound, final String method,
+            final String which) {
+        final int arity = f.getArity();
+        final ParamType[] remaining = new ParamType[arity - 1];
+        String generics = "";
+        if (f.getReturnType() == ParamType.Object) {
+            generics = f.getReturnTypeName();
+        }
+        String params = "";
+        String args = "";
+        for (int i = 0, j = 0; i < arity; i++) {
+            args += ((i == 0) ? "" : ", ") + "p" + i;
+            if (i != bound) {
+                remaining[j++] = f.getParamType(i);
+                params += (params.isEmpty() ? "" : ", ") + "final "
+                        + f.getParamTypeName(i) + " p" + i;
+                if (f.getParamType(i) == ParamType.Object) {
+                    generics += (generics.isEmpty() ? "" : ",")
+                            + f.getParamTypeName(i);
+                }
+            }
+        }
+        if (!context.accept(f.getReturnType(), remaining)) {
+            return;
+        }
+        final FuncInfo g = context.getFunctor(f.getReturnType(), remaining);
+        imports.add(f.getQualifiedName());
+        imports.add(g.getQualifiedName());
+        final String narrow = g.getName()
+                + (generics.isEmpty() ? "" : "<" + generics + ">");
+        // With a single parameter, bindLast() reuses the class of bind0()
+        final String className = f.getName()
+                + ((bound == 0) ? "Bind0" : "BindLast");
+        final Object[] values = { f.getName(), which, className,
+                f.getGenerics(), narrow, f.getType(),
+                f.getParamTypeName(bound), "p" + bound,
+                f.getReturnTypeName(), f.getMethodName(), params,
+                f.getThrows(), f.isProc() ? "" : "return ", args,
+                f.isGeneric() ? f.getGenerics() + " " : "", method };
+        if ((arity > 1) || "bind0".equals(method)) {
+            buf.append(String.format(BINDING, values));
+        }
+        buf.append(String.format(FACTORY, values));
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+/**
+ * <code>GenChannels</code> generates one event channel per procedure (the
+ * functors returning void), in the "channel" sub-package. For example,
+ * ProcIntDoubleChannel implements ProcIntDouble: apply(int, double)
+ * publishes the event to all the subscribed ProcIntDouble listeners, with
+ * the primitive parameters, and without allocating.
+ *
+ * The listeners are stored in a copy-on-write array, by
+ * com.blockwithme.fn.util.AbstractChannel. async(executor) returns a
+ * procedure which hands the events off to a consumer thread of a
+ * com.blockwithme.fn.util.RingExecutor, whose slots are encoded like in
+ * GenExecutors.
+ *
+ * @author monster
+ */
+public class GenChannels implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "channel";
+
+    /** The channel class. */
+    private static final String CHANNEL = ""
+            + "import %1$s;\n"
+            + "import com.blockwithme.fn.util.AbstractChannel;\n"
+            + "import com.blockwithme.fn.util.RingExecutor;\n"
+            + "import com.blockwithme.fn.util.RingExecutor.Dispatcher;\n"
+            + "\n"
+            + "/**\n"
+            + " * Publishes the events of type %2$s to all the subscribed listeners.\n"
+            + " * Generated automatically by %3$s\n"
+            + " */\n"
+            + "public final class %4$s%5$s extends AbstractChannel<%6$s>\n"
+            + "        implements %6$s {\n"
+            + "\n"
+            + "    /** Publishes the events handed off to a RingExecutor. */\n"
+            + "    private static final class AsyncDispatcher extends Dispatcher {\n"
+            + "        /** The instance. */\n"
+            + "        static final AsyncDispatcher INSTANCE = new AsyncDispatcher();\n"
+            + "\n"
+            + "        @Override\n"
+            + "%7$s"
+            + "        protected void dispatch(final RingExecutor executor,\n"
+            + "                final long sequence, final Object functor)%8$s {\n"
+            + "            ((%9$s) functor).%10$s(%11$s);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Hands the events off to a RingExecutor. */\n"
+            + "    private static final class Async%5$s implements %6$s {\n"
+            + "        /** The channel. */\n"
+            + "        private final %4$s%5$s channel;\n"
+            + "\n"
+            + "        /** The executor. */\n"
+            + "        private final RingExecutor executor;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        Async(final %4$s%5$s theChannel,\n"
+            + "                final RingExecutor theExecutor) {\n"
+            + "            channel = theChannel;\n"
+            + "            executor = theExecutor;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void %10$s(%12$s) {\n"
+            + "            final long sequence = executor.next(%13$d);\n"
+            + "%14$s"
+            + "            executor.publish(sequence, AsyncDispatcher.INSTANCE, channel);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Constructor */\n"
+            + "%15$s"
+            + "    public %4$s() {\n"
+            + "        super(new %2$s[0]);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Publishes an event to all the listeners, in the order in which they\n"
+            + "     * subscribed. If some listeners throw a RuntimeException, the others\n"
+            + "     * still receive the event, and the first exception is then rethrown.\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public void %10$s(%12$s)%8$s {\n"
+            + "        RuntimeException failure = null;\n"
+            + "        for (final %6$s listener : listeners()) {\n"
+            + "            try {\n"
+            + "                listener.%10$s(%16$s);\n"
+            + "            } catch (final RuntimeException e) {\n"
+            + "                failure = failed(failure, e);\n"
+            + "            }\n"
+            + "        }\n"
+            + "        if (failure != null) {\n"
+            + "            throw failure;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns a procedure which publishes the events to this channel, on a\n"
+            + "     * consumer thread of <code>executor</code>. It waits while the ring\n"
+            + "     * buffer of the executor is full. The events keep their order, if the\n"
+            + "     * executor has a single consumer thread. The executor must accept\n"
+            + "     * several producers, since the procedure can be called from any thread.\n"
+            + "     */\n"
+            + "    public %6$s async(final RingExecutor executor) {\n"
+            + "        if (executor == null) {\n"
+            + "            throw new IllegalArgumentException(\"executor is null\");\n"
+            + "        }\n"
+            + "        if (!executor.isMultiProducer()) {\n"
+            + "            throw new IllegalArgumentException(\n"
+            + "                    \"executor does not accept several producers\");\n"
+            + "        }\n"
+            + "%18$s"
+            + "        return new Async%17$s(this, executor);\n"
+            + "    }\n"
+            + "}\n";
+
+    /** Checks the slot size of the executor. */
+    private static final String CHECK_SLOT_SIZE = ""
+            + "        if (executor.getSlotSize() < %1$d) {\n"
+            + "            throw new IllegalArgumentException(\n"
+            + "                    \"executor slotSize is lower than %1$d: \"\n"
+            + "                            + executor.getSlotSize());\n"
+            + "        }\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        for (int arity = context.getMinimumNumberOfArgs(); arity <= context
+                .getMaximumNumberOfArgs(); arity++) {
+            for (final FuncInfo f : context.getFunctors(arity)) {
+                if (f.isProc()) {
+                    generate(context, f);
+                }
+            }
+        }
+    }
+
+    /** Generates the channel of one procedure. */
+    private static void generate(final FuncContext context, final FuncInfo f) {
+        final String name = f.getName() + "Channel";
+        final StringBuilder params = new StringBuilder();
+        for (int i = 0; i < f.getArity(); i++) {
+            if (i > 0) {
+                params.append(", ");
+            }
+            params.append("final ").append(f.getParamTypeName(i))
+                    .append(" p").append(i);
+        }
+        final StringBuilder args = new StringBuilder();
+        final StringBuilder store = new StringBuilder();
+        GenExecutors.slots(f, "            ", "executor", "sequence", args,
+                store);
+        String raw = name;
+        if (f.isGeneric()) {
+            raw += f.getGenerics().replaceAll("[A-Z]", "Object");
+        }
+        final String unchecked = f.isGeneric() ? "    @SuppressWarnings(\"unchecked\")\n"
+                : "";
+        context.write(context.getPackageName() + "." + SUB_PACKAGE, name,
+                String.format(CHANNEL, f.getQualifiedName(), f.getName(),
+                        context.getGenerator(), name, f.getGenerics(),
+                        f.getType(), unchecked.isEmpty() ? "" : "    "
+                                + unchecked, f.getThrows(), raw,
+                        f.getMethodName(), args, params, f.getArity(), store,
+                        unchecked, f.getArgumentList(),
+                        f.isGeneric() ? "<>" : "",
+                        (f.getArity() == 0) ? "" : String.format(
+                                CHECK_SLOT_SIZE, f.getArity())));
+    }
+}
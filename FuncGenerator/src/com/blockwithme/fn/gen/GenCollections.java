@@ -0,0 +1,1284 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenCollections</code> generates primitive collections, in the
+ * "collections" sub-package, whose bulk operations take the functors
+ * directly, so that neither the elements nor the lambdas are boxed.
+ *
+ * For the int, long and double elements, there is an array list (for
+ * example IntArrayList) and a hash set (LongHashSet). For the int and long
+ * keys, and the int, long and double values, there is a hash map
+ * (IntLongHashMap). The sets and maps use open addressing with linear
+ * probing.
+ *
+ * Like the other extensions, a collection is only generated if all the
+ * functors it takes are accepted by the filter: for example, IntArrayList
+ * needs ProcInt for forEach(), BooleanFuncInt for removeIf(), IntFuncInt
+ * for replaceAll(), and IntFuncIntInt for reduce().
+ *
+ * @author monster
+ */
+public class GenCollections implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "collections";
+
+    /** The element types of the lists and sets. */
+    private static final ParamType[] ELEMENT_TYPES = { ParamType.Int,
+            ParamType.Long, ParamType.Double };
+
+    /** The key types of the maps. */
+    private static final ParamType[] KEY_TYPES = { ParamType.Int,
+            ParamType.Long };
+
+    /** The value types of the maps. */
+    private static final ParamType[] VALUE_TYPES = { ParamType.Int,
+            ParamType.Long, ParamType.Double };
+
+    /** The array list. */
+    private static final String LIST = ""
+            + "import java.util.Arrays;\n"
+            + "\n"
+            + "%11$s"
+            + "\n"
+            + "/**\n"
+            + " * A growable list of %2$s values, without boxing. It must not be modified\n"
+            + " * while forEach(), removeIf(), replaceAll() or reduce() is running.\n"
+            + " * Generated automatically by %3$s\n"
+            + " */\n"
+            + "public final class %1$s {\n"
+            + "    /** No elements. */\n"
+            + "    private static final %2$s[] EMPTY = {};\n"
+            + "\n"
+            + "    /** The elements. */\n"
+            + "    private %2$s[] elements;\n"
+            + "\n"
+            + "    /** The number of elements. */\n"
+            + "    private int size;\n"
+            + "\n"
+            + "    /** Constructor */\n"
+            + "    public %1$s() {\n"
+            + "        elements = EMPTY;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Constructor, with an initial capacity. */\n"
+            + "    public %1$s(final int initialCapacity) {\n"
+            + "        if (initialCapacity < 0) {\n"
+            + "            throw new IllegalArgumentException(\"initialCapacity is negative: \"\n"
+            + "                    + initialCapacity);\n"
+            + "        }\n"
+            + "        elements = (initialCapacity == 0) ? EMPTY : new %2$s[initialCapacity];\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Throws an IllegalArgumentException, if value is null. */\n"
+            + "    private static void checkNotNull(final Object value, final String name) {\n"
+            + "        if (value == null) {\n"
+            + "            throw new IllegalArgumentException(name + \" is null\");\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the bits of a value, for comparisons and hashing. */\n"
+            + "    private static long bits(final %2$s value) {\n"
+            + "        return %12$s;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Throws an IndexOutOfBoundsException, if index is not in [0, size). */\n"
+            + "    private void checkIndex(final int index) {\n"
+            + "        if ((index < 0) || (index >= size)) {\n"
+            + "            throw new IndexOutOfBoundsException(\"index \" + index + \", size \"\n"
+            + "                    + size);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the number of elements. */\n"
+            + "    public int size() {\n"
+            + "        return size;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns true, if there are no elements. */\n"
+            + "    public boolean isEmpty() {\n"
+            + "        return size == 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the element at the given index. */\n"
+            + "    public %2$s get(final int index) {\n"
+            + "        checkIndex(index);\n"
+            + "        return elements[index];\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Replaces the element at the given index, and returns the previous one. */\n"
+            + "    public %2$s set(final int index, final %2$s value) {\n"
+            + "        checkIndex(index);\n"
+            + "        final %2$s result = elements[index];\n"
+            + "        elements[index] = value;\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Ensures that the list can hold minCapacity elements, without growing. */\n"
+            + "    public void ensureCapacity(final int minCapacity) {\n"
+            + "        if (minCapacity > elements.length) {\n"
+            + "            final int grown = elements.length + (elements.length >> 1) + 1;\n"
+            + "            elements = Arrays.copyOf(elements, Math.max(grown, minCapacity));\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Appends an element. */\n"
+            + "    public void add(final %2$s value) {\n"
+            + "        if (size == elements.length) {\n"
+            + "            ensureCapacity(size + 1);\n"
+            + "        }\n"
+            + "        elements[size++] = value;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Inserts an element at the given index. */\n"
+            + "    public void add(final int index, final %2$s value) {\n"
+            + "        if ((index < 0) || (index > size)) {\n"
+            + "            throw new IndexOutOfBoundsException(\"index \" + index + \", size \"\n"
+            + "                    + size);\n"
+            + "        }\n"
+            + "        if (size == elements.length) {\n"
+            + "            ensureCapacity(size + 1);\n"
+            + "        }\n"
+            + "        System.arraycopy(elements, index, elements, index + 1, size - index);\n"
+            + "        elements[index] = value;\n"
+            + "        size++;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Appends all the given elements. */\n"
+            + "    public void addAll(final %2$s... values) {\n"
+            + "        checkNotNull(values, \"values\");\n"
+            + "        ensureCapacity(size + values.length);\n"
+            + "        System.arraycopy(values, 0, elements, size, values.length);\n"
+            + "        size += values.length;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Removes the element at the given index, and returns it. */\n"
+            + "    public %2$s removeAt(final int index) {\n"
+            + "        checkIndex(index);\n"
+            + "        final %2$s result = elements[index];\n"
+            + "        System.arraycopy(elements, index + 1, elements, index, size - index\n"
+            + "                - 1);\n"
+            + "        size--;\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the index of the first element equal to value, or -1. */\n"
+            + "    public int indexOf(final %2$s value) {\n"
+            + "        final long expected = bits(value);\n"
+            + "        for (int i = 0; i < size; i++) {\n"
+            + "            if (bits(elements[i]) == expected) {\n"
+            + "                return i;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return -1;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns true, if an element is equal to value. */\n"
+            + "    public boolean contains(final %2$s value) {\n"
+            + "        return indexOf(value) >= 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Removes all the elements. */\n"
+            + "    public void clear() {\n"
+            + "        size = 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Reduces the capacity to the size. */\n"
+            + "    public void trimToSize() {\n"
+            + "        if (size < elements.length) {\n"
+            + "            elements = (size == 0) ? EMPTY : Arrays.copyOf(elements, size);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the elements, in a new array. */\n"
+            + "    public %2$s[] toArray() {\n"
+            + "        return Arrays.copyOf(elements, size);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Calls f with each element, in order. */\n"
+            + "    public void forEach(final %4$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        final %2$s[] array = elements;\n"
+            + "        final int length = size;\n"
+            + "        for (int i = 0; i < length; i++) {\n"
+            + "            f.%8$s(array[i]);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Removes the elements for which f returns true, and returns the number\n"
+            + "     * of elements removed. If f throws, the undecided elements are kept.\n"
+            + "     */\n"
+            + "    public int removeIf(final %5$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        final %2$s[] array = elements;\n"
+            + "        final int length = size;\n"
+            + "        int kept = 0;\n"
+            + "        int i = 0;\n"
+            + "        try {\n"
+            + "            for (; i < length; i++) {\n"
+            + "                final %2$s value = array[i];\n"
+            + "                if (!f.%8$s(value)) {\n"
+            + "                    array[kept++] = value;\n"
+            + "                }\n"
+            + "            }\n"
+            + "        } finally {\n"
+            + "            if (i < length) {\n"
+            + "                System.arraycopy(array, i, array, kept, length - i);\n"
+            + "                kept += length - i;\n"
+            + "            }\n"
+            + "            size = kept;\n"
+            + "        }\n"
+            + "        return length - kept;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Replaces each element with the result of f. */\n"
+            + "    public void replaceAll(final %6$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        final %2$s[] array = elements;\n"
+            + "        final int length = size;\n"
+            + "        for (int i = 0; i < length; i++) {\n"
+            + "            array[i] = f.%8$s(array[i]);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Combines identity and all the elements, in order, with f. */\n"
+            + "    public %2$s reduce(final %2$s identity, final %7$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        final %2$s[] array = elements;\n"
+            + "        final int length = size;\n"
+            + "        %2$s result = identity;\n"
+            + "        for (int i = 0; i < length; i++) {\n"
+            + "            result = f.%8$s(result, array[i]);\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#equals(java.lang.Object)\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public boolean equals(final Object obj) {\n"
+            + "        if (obj == this) {\n"
+            + "            return true;\n"
+            + "        }\n"
+            + "        if (!(obj instanceof %1$s)) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        final %1$s other = (%1$s) obj;\n"
+            + "        if (other.size != size) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        for (int i = 0; i < size; i++) {\n"
+            + "            if (bits(elements[i]) != bits(other.elements[i])) {\n"
+            + "                return false;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return true;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#hashCode()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public int hashCode() {\n"
+            + "        int result = 1;\n"
+            + "        for (int i = 0; i < size; i++) {\n"
+            + "            final long bits = bits(elements[i]);\n"
+            + "            result = 31 * result + (int) (bits ^ (bits >>> 32));\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#toString()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "        final StringBuilder buf = new StringBuilder(size * 8 + 2);\n"
+            + "        buf.append('[');\n"
+            + "        for (int i = 0; i < size; i++) {\n"
+            + "            if (i > 0) {\n"
+            + "                buf.append(\", \");\n"
+            + "            }\n"
+            + "            buf.append(elements[i]);\n"
+            + "        }\n"
+            + "        return buf.append(']').toString();\n"
+            + "    }\n"
+            + "}\n";
+
+    /** The hash set. */
+    private static final String SET = ""
+            + "import java.util.Arrays;\n"
+            + "\n"
+            + "%11$s"
+            + "\n"
+            + "/**\n"
+            + " * A hash set of %2$s values, without boxing, using open addressing with\n"
+            + " * linear probing, and a load factor of 1/2. Values are compared by their\n"
+            + " * bits. It must not be modified while forEach(), removeIf() or reduce() is\n"
+            + " * running.\n"
+            + " * Generated automatically by %3$s\n"
+            + " */\n"
+            + "public final class %1$s {\n"
+            + "    /** The minimum table size. */\n"
+            + "    private static final int MIN_CAPACITY = 8;\n"
+            + "\n"
+            + "    /** The table; %9$s marks a free slot. */\n"
+            + "    private %2$s[] keys;\n"
+            + "\n"
+            + "    /** True, if %9$s is in the set; it is not stored in the table. */\n"
+            + "    private boolean hasZero;\n"
+            + "\n"
+            + "    /** The number of values. */\n"
+            + "    private int size;\n"
+            + "\n"
+            + "    /** The table size, minus one. */\n"
+            + "    private int mask;\n"
+            + "\n"
+            + "    /** Constructor */\n"
+            + "    public %1$s() {\n"
+            + "        this(0);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Constructor, with an expected number of values. */\n"
+            + "    public %1$s(final int expectedSize) {\n"
+            + "        if (expectedSize < 0) {\n"
+            + "            throw new IllegalArgumentException(\"expectedSize is negative: \"\n"
+            + "                    + expectedSize);\n"
+            + "        }\n"
+            + "        allocate(tableSize(expectedSize));\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Throws an IllegalArgumentException, if value is null. */\n"
+            + "    private static void checkNotNull(final Object value, final String name) {\n"
+            + "        if (value == null) {\n"
+            + "            throw new IllegalArgumentException(name + \" is null\");\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the bits of a value, for comparisons and hashing. */\n"
+            + "    private static long bits(final %2$s value) {\n"
+            + "        return %12$s;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the hash of a value. */\n"
+            + "    private static int hash(final %2$s value) {\n"
+            + "        final long h = bits(value) * 0x9E3779B97F4A7C15L;\n"
+            + "        return (int) (h ^ (h >>> 32));\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the table size for the given number of values. */\n"
+            + "    private static int tableSize(final int expectedSize) {\n"
+            + "        int result = MIN_CAPACITY;\n"
+            + "        while ((result >> 1) < expectedSize) {\n"
+            + "            result <<= 1;\n"
+            + "            if (result <= 0) {\n"
+            + "                throw new IllegalStateException(\"too many values: \"\n"
+            + "                        + expectedSize);\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Allocates an empty table. */\n"
+            + "    private void allocate(final int capacity) {\n"
+            + "        keys = new %2$s[capacity];\n"
+            + "        mask = capacity - 1;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the number of values. */\n"
+            + "    public int size() {\n"
+            + "        return size;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns true, if there are no values. */\n"
+            + "    public boolean isEmpty() {\n"
+            + "        return size == 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns true, if value is in the set. */\n"
+            + "    public boolean contains(final %2$s value) {\n"
+            + "        final long expected = bits(value);\n"
+            + "        if (expected == 0) {\n"
+            + "            return hasZero;\n"
+            + "        }\n"
+            + "        int i = hash(value) & mask;\n"
+            + "        long current;\n"
+            + "        while ((current = bits(keys[i])) != 0) {\n"
+            + "            if (current == expected) {\n"
+            + "                return true;\n"
+            + "            }\n"
+            + "            i = (i + 1) & mask;\n"
+            + "        }\n"
+            + "        return false;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Adds a value; returns false, if it was already in the set. */\n"
+            + "    public boolean add(final %2$s value) {\n"
+            + "        final long expected = bits(value);\n"
+            + "        if (expected == 0) {\n"
+            + "            if (hasZero) {\n"
+            + "                return false;\n"
+            + "            }\n"
+            + "            hasZero = true;\n"
+            + "            size++;\n"
+            + "            return true;\n"
+            + "        }\n"
+            + "        int i = hash(value) & mask;\n"
+            + "        long current;\n"
+            + "        while ((current = bits(keys[i])) != 0) {\n"
+            + "            if (current == expected) {\n"
+            + "                return false;\n"
+            + "            }\n"
+            + "            i = (i + 1) & mask;\n"
+            + "        }\n"
+            + "        keys[i] = value;\n"
+            + "        size++;\n"
+            + "        if (size > (mask >> 1)) {\n"
+            + "            rehash((mask + 1) << 1);\n"
+            + "        }\n"
+            + "        return true;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Removes a value; returns false, if it was not in the set. */\n"
+            + "    public boolean remove(final %2$s value) {\n"
+            + "        final long expected = bits(value);\n"
+            + "        if (expected == 0) {\n"
+            + "            if (!hasZero) {\n"
+            + "                return false;\n"
+            + "            }\n"
+            + "            hasZero = false;\n"
+            + "            size--;\n"
+            + "            return true;\n"
+            + "        }\n"
+            + "        int i = hash(value) & mask;\n"
+            + "        long current;\n"
+            + "        while ((current = bits(keys[i])) != 0) {\n"
+            + "            if (current == expected) {\n"
+            + "                shift(i);\n"
+            + "                size--;\n"
+            + "                return true;\n"
+            + "            }\n"
+            + "            i = (i + 1) & mask;\n"
+            + "        }\n"
+            + "        return false;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Frees the slot <code>free</code>, by moving back the following values\n"
+            + "     * of the same cluster, that would otherwise become unreachable.\n"
+            + "     */\n"
+            + "    private void shift(final int free) {\n"
+            + "        int last = free;\n"
+            + "        int i = (free + 1) & mask;\n"
+            + "        while (true) {\n"
+            + "            final %2$s current = keys[i];\n"
+            + "            if (bits(current) == 0) {\n"
+            + "                keys[last] = %9$s;\n"
+            + "                return;\n"
+            + "            }\n"
+            + "            final int slot = hash(current) & mask;\n"
+            + "            if ((last <= i) ? ((last >= slot) || (slot > i))\n"
+            + "                    : ((last >= slot) && (slot > i))) {\n"
+            + "                keys[last] = current;\n"
+            + "                last = i;\n"
+            + "            }\n"
+            + "            i = (i + 1) & mask;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Moves all the values to a new table. */\n"
+            + "    private void rehash(final int capacity) {\n"
+            + "        final %2$s[] old = keys;\n"
+            + "        allocate(capacity);\n"
+            + "        for (final %2$s value : old) {\n"
+            + "            if (bits(value) != 0) {\n"
+            + "                int i = hash(value) & mask;\n"
+            + "                while (bits(keys[i]) != 0) {\n"
+            + "                    i = (i + 1) & mask;\n"
+            + "                }\n"
+            + "                keys[i] = value;\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Removes all the values. */\n"
+            + "    public void clear() {\n"
+            + "        Arrays.fill(keys, %9$s);\n"
+            + "        hasZero = false;\n"
+            + "        size = 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the values, in a new array, in no particular order. */\n"
+            + "    public %2$s[] toArray() {\n"
+            + "        final %2$s[] result = new %2$s[size];\n"
+            + "        int n = 0;\n"
+            + "        if (hasZero) {\n"
+            + "            result[n++] = %9$s;\n"
+            + "        }\n"
+            + "        for (final %2$s value : keys) {\n"
+            + "            if (bits(value) != 0) {\n"
+            + "                result[n++] = value;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Calls f with each value, in no particular order. */\n"
+            + "    public void forEach(final %4$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        if (hasZero) {\n"
+            + "            f.%8$s(%9$s);\n"
+            + "        }\n"
+            + "        for (final %2$s value : keys) {\n"
+            + "            if (bits(value) != 0) {\n"
+            + "                f.%8$s(value);\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Removes the values for which f returns true, and returns the number of\n"
+            + "     * values removed.\n"
+            + "     */\n"
+            + "    public int removeIf(final %5$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        final int before = size;\n"
+            + "        if (hasZero && f.%8$s(%9$s)) {\n"
+            + "            hasZero = false;\n"
+            + "            size--;\n"
+            + "        }\n"
+            + "        // Starting after a free slot, shift() never moves a value that was\n"
+            + "        // not visited yet, to a slot that was already visited.\n"
+            + "        int start = 0;\n"
+            + "        while (bits(keys[start]) != 0) {\n"
+            + "            start++;\n"
+            + "        }\n"
+            + "        int i = (start + 1) & mask;\n"
+            + "        while (i != start) {\n"
+            + "            final %2$s value = keys[i];\n"
+            + "            if ((bits(value) != 0) && f.%8$s(value)) {\n"
+            + "                shift(i);\n"
+            + "                size--;\n"
+            + "            } else {\n"
+            + "                i = (i + 1) & mask;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return before - size;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Combines identity and all the values, in no particular order, with f. */\n"
+            + "    public %2$s reduce(final %2$s identity, final %7$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        %2$s result = identity;\n"
+            + "        if (hasZero) {\n"
+            + "            result = f.%8$s(result, %9$s);\n"
+            + "        }\n"
+            + "        for (final %2$s value : keys) {\n"
+            + "            if (bits(value) != 0) {\n"
+            + "                result = f.%8$s(result, value);\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#equals(java.lang.Object)\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public boolean equals(final Object obj) {\n"
+            + "        if (obj == this) {\n"
+            + "            return true;\n"
+            + "        }\n"
+            + "        if (!(obj instanceof %1$s)) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        final %1$s other = (%1$s) obj;\n"
+            + "        if ((other.size != size) || (other.hasZero != hasZero)) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        for (final %2$s value : keys) {\n"
+            + "            if ((bits(value) != 0) && !other.contains(value)) {\n"
+            + "                return false;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return true;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#hashCode()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public int hashCode() {\n"
+            + "        int result = 0;\n"
+            + "        for (final %2$s value : keys) {\n"
+            + "            final long bits = bits(value);\n"
+            + "            result += (int) (bits ^ (bits >>> 32));\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#toString()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "        final StringBuilder buf = new StringBuilder(size * 8 + 2);\n"
+            + "        buf.append('[');\n"
+            + "        if (hasZero) {\n"
+            + "            buf.append(%9$s);\n"
+            + "        }\n"
+            + "        for (final %2$s value : keys) {\n"
+            + "            if (bits(value) != 0) {\n"
+            + "                if (buf.length() > 1) {\n"
+            + "                    buf.append(\", \");\n"
+            + "                }\n"
+            + "                buf.append(value);\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return buf.append(']').toString();\n"
+            + "    }\n"
+            + "}\n";
+
+    /** The hash map. */
+    private static final String MAP = ""
+            + "import java.util.Arrays;\n"
+            + "\n"
+            + "%14$s"
+            + "\n"
+            + "/**\n"
+            + " * A hash map from %2$s keys to %3$s values, without boxing, using open\n"
+            + " * addressing with linear probing, and a load factor of 1/2. Keys are\n"
+            + " * compared by their bits. For a missing key, get() returns %12$s. It must\n"
+            + " * not be modified while a functor passed to it is running.\n"
+            + " * Generated automatically by %4$s\n"
+            + " */\n"
+            + "public final class %1$s {\n"
+            + "    /** The minimum table size. */\n"
+            + "    private static final int MIN_CAPACITY = 8;\n"
+            + "\n"
+            + "    /** The keys; %11$s marks a free slot. */\n"
+            + "    private %2$s[] keys;\n"
+            + "\n"
+            + "    /** The values. */\n"
+            + "    private %3$s[] values;\n"
+            + "\n"
+            + "    /** True, if %11$s is a key; it is not stored in the table. */\n"
+            + "    private boolean hasZeroKey;\n"
+            + "\n"
+            + "    /** The value of the key %11$s. */\n"
+            + "    private %3$s zeroValue;\n"
+            + "\n"
+            + "    /** The number of keys. */\n"
+            + "    private int size;\n"
+            + "\n"
+            + "    /** The table size, minus one. */\n"
+            + "    private int mask;\n"
+            + "\n"
+            + "    /** Constructor */\n"
+            + "    public %1$s() {\n"
+            + "        this(0);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Constructor, with an expected number of keys. */\n"
+            + "    public %1$s(final int expectedSize) {\n"
+            + "        if (expectedSize < 0) {\n"
+            + "            throw new IllegalArgumentException(\"expectedSize is negative: \"\n"
+            + "                    + expectedSize);\n"
+            + "        }\n"
+            + "        allocate(tableSize(expectedSize));\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Throws an IllegalArgumentException, if value is null. */\n"
+            + "    private static void checkNotNull(final Object value, final String name) {\n"
+            + "        if (value == null) {\n"
+            + "            throw new IllegalArgumentException(name + \" is null\");\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the bits of a key, for comparisons and hashing. */\n"
+            + "    private static long bits(final %2$s key) {\n"
+            + "        return %13$s;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the bits of a value, for comparisons and hashing. */\n"
+            + "    private static long valueBits(final %3$s value) {\n"
+            + "        return %15$s;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the hash of a key. */\n"
+            + "    private static int hash(final %2$s key) {\n"
+            + "        final long h = bits(key) * 0x9E3779B97F4A7C15L;\n"
+            + "        return (int) (h ^ (h >>> 32));\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the table size for the given number of keys. */\n"
+            + "    private static int tableSize(final int expectedSize) {\n"
+            + "        int result = MIN_CAPACITY;\n"
+            + "        while ((result >> 1) < expectedSize) {\n"
+            + "            result <<= 1;\n"
+            + "            if (result <= 0) {\n"
+            + "                throw new IllegalStateException(\"too many keys: \"\n"
+            + "                        + expectedSize);\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Allocates an empty table. */\n"
+            + "    private void allocate(final int capacity) {\n"
+            + "        keys = new %2$s[capacity];\n"
+            + "        values = new %3$s[capacity];\n"
+            + "        mask = capacity - 1;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns the slot of a key other than %11$s, if present, or else\n"
+            + "     * -(the free slot where it would be inserted) - 1.\n"
+            + "     */\n"
+            + "    private int find(final %2$s key) {\n"
+            + "        final long expected = bits(key);\n"
+            + "        int i = hash(key) & mask;\n"
+            + "        long current;\n"
+            + "        while ((current = bits(keys[i])) != 0) {\n"
+            + "            if (current == expected) {\n"
+            + "                return i;\n"
+            + "            }\n"
+            + "            i = (i + 1) & mask;\n"
+            + "        }\n"
+            + "        return -i - 1;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Inserts a key other than %11$s, in the free slot <code>i</code>. */\n"
+            + "    private void insert(final int i, final %2$s key, final %3$s value) {\n"
+            + "        keys[i] = key;\n"
+            + "        values[i] = value;\n"
+            + "        size++;\n"
+            + "        if (size > (mask >> 1)) {\n"
+            + "            rehash((mask + 1) << 1);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Stores the value of the key %11$s. */\n"
+            + "    private void putZero(final %3$s value) {\n"
+            + "        if (!hasZeroKey) {\n"
+            + "            hasZeroKey = true;\n"
+            + "            size++;\n"
+            + "        }\n"
+            + "        zeroValue = value;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the number of keys. */\n"
+            + "    public int size() {\n"
+            + "        return size;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns true, if there are no keys. */\n"
+            + "    public boolean isEmpty() {\n"
+            + "        return size == 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns true, if the key is present. */\n"
+            + "    public boolean containsKey(final %2$s key) {\n"
+            + "        if (bits(key) == 0) {\n"
+            + "            return hasZeroKey;\n"
+            + "        }\n"
+            + "        return find(key) >= 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the value of the key, or %12$s if it is missing. */\n"
+            + "    public %3$s get(final %2$s key) {\n"
+            + "        return getOrDefault(key, %12$s);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the value of the key, or defaultValue if it is missing. */\n"
+            + "    public %3$s getOrDefault(final %2$s key, final %3$s defaultValue) {\n"
+            + "        if (bits(key) == 0) {\n"
+            + "            return hasZeroKey ? zeroValue : defaultValue;\n"
+            + "        }\n"
+            + "        final int i = find(key);\n"
+            + "        return (i >= 0) ? values[i] : defaultValue;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Sets the value of the key, and returns the previous one, or %12$s. */\n"
+            + "    public %3$s put(final %2$s key, final %3$s value) {\n"
+            + "        if (bits(key) == 0) {\n"
+            + "            final %3$s result = hasZeroKey ? zeroValue : %12$s;\n"
+            + "            putZero(value);\n"
+            + "            return result;\n"
+            + "        }\n"
+            + "        final int i = find(key);\n"
+            + "        if (i >= 0) {\n"
+            + "            final %3$s result = values[i];\n"
+            + "            values[i] = value;\n"
+            + "            return result;\n"
+            + "        }\n"
+            + "        insert(-i - 1, key, value);\n"
+            + "        return %12$s;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Removes the key; returns false, if it was missing. */\n"
+            + "    public boolean remove(final %2$s key) {\n"
+            + "        if (bits(key) == 0) {\n"
+            + "            if (!hasZeroKey) {\n"
+            + "                return false;\n"
+            + "            }\n"
+            + "            hasZeroKey = false;\n"
+            + "            zeroValue = %12$s;\n"
+            + "            size--;\n"
+            + "            return true;\n"
+            + "        }\n"
+            + "        final int i = find(key);\n"
+            + "        if (i < 0) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        shift(i);\n"
+            + "        size--;\n"
+            + "        return true;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Sets the value of the key to the result of f, called with the key and\n"
+            + "     * its current value, or %12$s if it is missing, and returns it.\n"
+            + "     */\n"
+            + "    public %3$s compute(final %2$s key, final %7$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        if (bits(key) == 0) {\n"
+            + "            final %3$s result = f.%10$s(key, hasZeroKey ? zeroValue : %12$s);\n"
+            + "            putZero(result);\n"
+            + "            return result;\n"
+            + "        }\n"
+            + "        final int i = find(key);\n"
+            + "        final %3$s result = f.%10$s(key, (i >= 0) ? values[i] : %12$s);\n"
+            + "        if (i >= 0) {\n"
+            + "            values[i] = result;\n"
+            + "        } else {\n"
+            + "            insert(-i - 1, key, result);\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns the value of the key; if it is missing, sets it first to the\n"
+            + "     * result of f, called with the key.\n"
+            + "     */\n"
+            + "    public %3$s computeIfAbsent(final %2$s key, final %8$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        if (bits(key) == 0) {\n"
+            + "            if (!hasZeroKey) {\n"
+            + "                putZero(f.%10$s(key));\n"
+            + "            }\n"
+            + "            return zeroValue;\n"
+            + "        }\n"
+            + "        final int i = find(key);\n"
+            + "        if (i >= 0) {\n"
+            + "            return values[i];\n"
+            + "        }\n"
+            + "        final %3$s result = f.%10$s(key);\n"
+            + "        insert(-i - 1, key, result);\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Sets the value of the key to value if it is missing, or else to the\n"
+            + "     * result of f, called with its current value and value, and returns it.\n"
+            + "     */\n"
+            + "    public %3$s merge(final %2$s key, final %3$s value, final %9$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        if (bits(key) == 0) {\n"
+            + "            final %3$s result = hasZeroKey ? f.%10$s(zeroValue, value) : value;\n"
+            + "            putZero(result);\n"
+            + "            return result;\n"
+            + "        }\n"
+            + "        final int i = find(key);\n"
+            + "        if (i >= 0) {\n"
+            + "            final %3$s result = f.%10$s(values[i], value);\n"
+            + "            values[i] = result;\n"
+            + "            return result;\n"
+            + "        }\n"
+            + "        insert(-i - 1, key, value);\n"
+            + "        return value;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Frees the slot <code>free</code>, by moving back the following entries\n"
+            + "     * of the same cluster, that would otherwise become unreachable.\n"
+            + "     */\n"
+            + "    private void shift(final int free) {\n"
+            + "        int last = free;\n"
+            + "        int i = (free + 1) & mask;\n"
+            + "        while (true) {\n"
+            + "            final %2$s current = keys[i];\n"
+            + "            if (bits(current) == 0) {\n"
+            + "                keys[last] = %11$s;\n"
+            + "                values[last] = %12$s;\n"
+            + "                return;\n"
+            + "            }\n"
+            + "            final int slot = hash(current) & mask;\n"
+            + "            if ((last <= i) ? ((last >= slot) || (slot > i))\n"
+            + "                    : ((last >= slot) && (slot > i))) {\n"
+            + "                keys[last] = current;\n"
+            + "                values[last] = values[i];\n"
+            + "                last = i;\n"
+            + "            }\n"
+            + "            i = (i + 1) & mask;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Moves all the entries to a new table. */\n"
+            + "    private void rehash(final int capacity) {\n"
+            + "        final %2$s[] oldKeys = keys;\n"
+            + "        final %3$s[] oldValues = values;\n"
+            + "        allocate(capacity);\n"
+            + "        for (int j = 0; j < oldKeys.length; j++) {\n"
+            + "            final %2$s key = oldKeys[j];\n"
+            + "            if (bits(key) != 0) {\n"
+            + "                int i = hash(key) & mask;\n"
+            + "                while (bits(keys[i]) != 0) {\n"
+            + "                    i = (i + 1) & mask;\n"
+            + "                }\n"
+            + "                keys[i] = key;\n"
+            + "                values[i] = oldValues[j];\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Removes all the entries. */\n"
+            + "    public void clear() {\n"
+            + "        Arrays.fill(keys, %11$s);\n"
+            + "        Arrays.fill(values, %12$s);\n"
+            + "        hasZeroKey = false;\n"
+            + "        zeroValue = %12$s;\n"
+            + "        size = 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the keys, in a new array, in no particular order. */\n"
+            + "    public %2$s[] keys() {\n"
+            + "        final %2$s[] result = new %2$s[size];\n"
+            + "        int n = 0;\n"
+            + "        if (hasZeroKey) {\n"
+            + "            result[n++] = %11$s;\n"
+            + "        }\n"
+            + "        for (final %2$s key : keys) {\n"
+            + "            if (bits(key) != 0) {\n"
+            + "                result[n++] = key;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the values, in a new array, in the same order as keys(). */\n"
+            + "    public %3$s[] values() {\n"
+            + "        final %3$s[] result = new %3$s[size];\n"
+            + "        int n = 0;\n"
+            + "        if (hasZeroKey) {\n"
+            + "            result[n++] = zeroValue;\n"
+            + "        }\n"
+            + "        for (int i = 0; i < keys.length; i++) {\n"
+            + "            if (bits(keys[i]) != 0) {\n"
+            + "                result[n++] = values[i];\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Calls f with each key and its value, in no particular order. */\n"
+            + "    public void forEach(final %5$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        if (hasZeroKey) {\n"
+            + "            f.%10$s(%11$s, zeroValue);\n"
+            + "        }\n"
+            + "        for (int i = 0; i < keys.length; i++) {\n"
+            + "            final %2$s key = keys[i];\n"
+            + "            if (bits(key) != 0) {\n"
+            + "                f.%10$s(key, values[i]);\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Removes the entries for which f, called with the key and its value,\n"
+            + "     * returns true, and returns the number of entries removed.\n"
+            + "     */\n"
+            + "    public int removeIf(final %6$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        final int before = size;\n"
+            + "        if (hasZeroKey && f.%10$s(%11$s, zeroValue)) {\n"
+            + "            hasZeroKey = false;\n"
+            + "            zeroValue = %12$s;\n"
+            + "            size--;\n"
+            + "        }\n"
+            + "        // Starting after a free slot, shift() never moves an entry that was\n"
+            + "        // not visited yet, to a slot that was already visited.\n"
+            + "        int start = 0;\n"
+            + "        while (bits(keys[start]) != 0) {\n"
+            + "            start++;\n"
+            + "        }\n"
+            + "        int i = (start + 1) & mask;\n"
+            + "        while (i != start) {\n"
+            + "            final %2$s key = keys[i];\n"
+            + "            if ((bits(key) != 0) && f.%10$s(key, values[i])) {\n"
+            + "                shift(i);\n"
+            + "                size--;\n"
+            + "            } else {\n"
+            + "                i = (i + 1) & mask;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return before - size;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Replaces each value with the result of f, called with the key and the value. */\n"
+            + "    public void replaceAll(final %7$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        if (hasZeroKey) {\n"
+            + "            zeroValue = f.%10$s(%11$s, zeroValue);\n"
+            + "        }\n"
+            + "        for (int i = 0; i < keys.length; i++) {\n"
+            + "            final %2$s key = keys[i];\n"
+            + "            if (bits(key) != 0) {\n"
+            + "                values[i] = f.%10$s(key, values[i]);\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Combines identity and all the values, in no particular order, with f. */\n"
+            + "    public %3$s reduceValues(final %3$s identity, final %9$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        %3$s result = identity;\n"
+            + "        if (hasZeroKey) {\n"
+            + "            result = f.%10$s(result, zeroValue);\n"
+            + "        }\n"
+            + "        for (int i = 0; i < keys.length; i++) {\n"
+            + "            if (bits(keys[i]) != 0) {\n"
+            + "                result = f.%10$s(result, values[i]);\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#equals(java.lang.Object)\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public boolean equals(final Object obj) {\n"
+            + "        if (obj == this) {\n"
+            + "            return true;\n"
+            + "        }\n"
+            + "        if (!(obj instanceof %1$s)) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        final %1$s other = (%1$s) obj;\n"
+            + "        if ((other.size != size) || (other.hasZeroKey != hasZeroKey)) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        if (hasZeroKey && (valueBits(zeroValue) != valueBits(other.zeroValue))) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        for (int i = 0; i < keys.length; i++) {\n"
+            + "            final %2$s key = keys[i];\n"
+            + "            if (bits(key) != 0) {\n"
+            + "                final int j = other.find(key);\n"
+            + "                if ((j < 0) || (valueBits(values[i]) != valueBits(other.values[j]))) {\n"
+            + "                    return false;\n"
+            + "                }\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return true;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#hashCode()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public int hashCode() {\n"
+            + "        int result = 0;\n"
+            + "        if (hasZeroKey) {\n"
+            + "            final long value = valueBits(zeroValue);\n"
+            + "            result += (int) (value ^ (value >>> 32));\n"
+            + "        }\n"
+            + "        for (int i = 0; i < keys.length; i++) {\n"
+            + "            final long key = bits(keys[i]);\n"
+            + "            if (key != 0) {\n"
+            + "                final long value = valueBits(values[i]);\n"
+            + "                result += (int) (key ^ (key >>> 32))\n"
+            + "                        ^ (int) (value ^ (value >>> 32));\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#toString()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "        final StringBuilder buf = new StringBuilder(size * 16 + 2);\n"
+            + "        buf.append('{');\n"
+            + "        if (hasZeroKey) {\n"
+            + "            buf.append(%11$s).append('=').append(zeroValue);\n"
+            + "        }\n"
+            + "        for (int i = 0; i < keys.length; i++) {\n"
+            + "            final %2$s key = keys[i];\n"
+            + "            if (bits(key) != 0) {\n"
+            + "                if (buf.length() > 1) {\n"
+            + "                    buf.append(\", \");\n"
+            + "                }\n"
+            + "                buf.append(key).append('=').append(values[i]);\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return buf.append('}').toString();\n"
+            + "    }\n"
+            + "}\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        if (!context.getThrows().isEmpty()) {
+            throw new IllegalStateException(getClass().getName()
+                    + " requires functors without throws clause");
+        }
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        for (final ParamType type : ELEMENT_TYPES) {
+            final String label = context.getLabel(type);
+            final FuncInfo proc = functor(context, ParamType.Void, type);
+            final FuncInfo predicate = functor(context, ParamType.Boolean,
+                    type);
+            final FuncInfo unary = functor(context, type, type);
+            final FuncInfo binary = functor(context, type, type, type);
+            if ((proc == null) || (predicate == null) || (binary == null)) {
+                continue;
+            }
+            if (unary != null) {
+                context.write(packageName, label + "ArrayList", format(LIST,
+                        context, label + "ArrayList", type, proc, predicate,
+                        unary, binary));
+            }
+            context.write(packageName, label + "HashSet", format(SET,
+                    context, label + "HashSet", type, proc, predicate, unary,
+                    binary));
+        }
+        for (final ParamType key : KEY_TYPES) {
+            for (final ParamType value : VALUE_TYPES) {
+                if (!acceptsMap(context, key, value)) {
+                    continue;
+                }
+                final FuncInfo proc = context.getFunctor(ParamType.Void, key,
+                        value);
+                final FuncInfo predicate = context.getFunctor(
+                        ParamType.Boolean, key, value);
+                final FuncInfo compute = context.getFunctor(value, key,
+                        value);
+                final FuncInfo computeIfAbsent = context.getFunctor(value,
+                        key);
+                final FuncInfo merge = context.getFunctor(value, value,
+                        value);
+                final String name = context.getLabel(key)
+                        + context.getLabel(value) + "HashMap";
+                context.write(packageName, name, String.format(MAP, name,
+                        typeName(key), typeName(value),
+                        context.getGenerator(), proc.getName(),
+                        predicate.getName(), compute.getName(),
+                        computeIfAbsent.getName(), merge.getName(),
+                        context.getMethodName(), zero(key), zero(value),
+                        bits(key, "key"), imports(proc, predicate, compute,
+                                computeIfAbsent, merge), bits(value,
+                                "value")));
+            }
+        }
+    }
+
+    /**
+     * Returns true, if the hash map from key to value is generated, because
+     * all the functors it takes are accepted. Also used by GenJoins.
+     */
+    static boolean acceptsMap(final FuncContext context, final ParamType key,
+            final ParamType value) {
+        return context.accept(ParamType.Void, key, value)
+                && context.accept(ParamType.Boolean, key, value)
+                && context.accept(value, key, value)
+                && context.accept(value, key)
+                && context.accept(value, value, value);
+    }
+
+    /** Returns the functor with the given signature, or null if it is not accepted. */
+    private static FuncInfo functor(final FuncContext context,
+            final ParamType returnType, final ParamType... paramTypes) {
+        return context.accept(returnType, paramTypes) ? context.getFunctor(
+                returnType, paramTypes) : null;
+    }
+
+    /** Formats a list or set template. */
+    private static String format(final String template,
+            final FuncContext context, final String name,
+            final ParamType type, final FuncInfo proc,
+            final FuncInfo predicate, final FuncInfo unary,
+            final FuncInfo binary) {
+        final String imports = (template == SET) ? imports(proc, predicate,
+                binary) : imports(proc, predicate, unary, binary);
+        return String.format(template, name, typeName(type),
+                context.getGenerator(), proc.getName(), predicate.getName(),
+                (unary == null) ? "" : unary.getName(), binary.getName(),
+                context.getMethodName(), zero(type), "", imports,
+                bits(type, "value"));
+    }
+
+    /** Returns the import statements of the given functors. */
+    private static String imports(final FuncInfo... functors) {
+        final Set<String> names = new TreeSet<>();
+        for (final FuncInfo f : functors) {
+            names.add(f.getQualifiedName());
+        }
+        final StringBuilder buf = new StringBuilder();
+        for (final String name : names) {
+            buf.append("import ").append(name).append(";\n");
+        }
+        return buf.toString();
+    }
+
+    /** Returns the source code name of a primitive type. */
+    private static String typeName(final ParamType type) {
+        return FuncInfo.typeName(type, 'R');
+    }
+
+    /** Returns the zero literal of a primitive type. */
+    private static String zero(final ParamType type) {
+        switch (type) {
+        case Long:
+            return "0L";
+        case Double:
+            return "0.0";
+        default:
+            return "0";
+        }
+    }
+
+    /** Returns the expression of the bits of a variable. */
+    private static String bits(final ParamType type, final String variable) {
+        return (type == ParamType.Double) ? "Double.doubleToLongBits("
+                + variable + ")" : variable;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenCombinators</code> generates composition combinators for the
+ * functors with at most one parameter, in the "combinators" sub-package.
+ *
+ * There is one class per parameter type, named after its label (for example
+ * IntCombinators), and one class, Combinators, for the functors without
+ * parameters. Each contains identity() and constant() factories, andThen()
+ * and compose() for every pair of types, andThen() for procedures, and
+ * and()/or()/negate() for predicates. The combined functors are created
+ * once, and never allocate nor box when applied. The generated code only
+ * requires Java 7.
+ *
+ * @author monster
+ */
+public class GenCombinators implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "combinators";
+
+    /** The suffix of the generated classes. */
+    public static final String SUFFIX = "Combinators";
+
+    /** The types of the values passed from one functor to the next. */
+    private static final ParamType[] VALUE_TYPES = { ParamType.Boolean,
+            ParamType.Byte, ParamType.Char, ParamType.Short, ParamType.Int,
+            ParamType.Long, ParamType.Float, ParamType.Double,
+            ParamType.Object };
+
+    /** The result types of the combined functors. */
+    private static final ParamType[] RESULT_TYPES = { ParamType.Void,
+            ParamType.Boolean, ParamType.Byte, ParamType.Char, ParamType.Short,
+            ParamType.Int, ParamType.Long, ParamType.Float, ParamType.Double,
+            ParamType.Object };
+
+    /** The generic parameter of the input. */
+    private static final String INPUT = "A";
+
+    /** The generic parameter of the intermediate value. */
+    private static final String VALUE = "B";
+
+    /** The generic parameter of the result. */
+    private static final String RESULT = "R";
+
+    /** The context. */
+    private FuncContext context;
+
+    /** The imports of the current class. */
+    private final Set<String> imports = new TreeSet<>();
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext theContext) {
+        context = theContext;
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        generateClass(packageName, null);
+        for (final ParamType input : VALUE_TYPES) {
+            generateClass(packageName, input);
+        }
+    }
+
+    /** Returns the parameter types, for an input type, or null for none. */
+    private static ParamType[] params(final ParamType input) {
+        return (input == null) ? new ParamType[0] : new ParamType[] { input };
+    }
+
+    /** Returns the functor, if it is accepted, otherwise null. */
+    private FuncInfo functor(final ParamType returnType,
+            final ParamType input) {
+        final ParamType[] params = params(input);
+        if (!context.accept(returnType, params)) {
+            return null;
+        }
+        final FuncInfo result = context.getFunctor(returnType, params);
+        imports.add(result.getQualifiedName());
+        return result;
+    }
+
+    /** Returns the source code name of a type, or the generic parameter. */
+    private static String typeName(final ParamType type, final String generic) {
+        return (type == ParamType.Object) ? generic : FuncInfo.typeName(type,
+                ' ');
+    }
+
+    /** Returns the type of a functor, with the given generic parameters. */
+    private static String type(final FuncInfo functor, final String result,
+            final String param) {
+        String args = "";
+        if (functor.getReturnType() == ParamType.Object) {
+            args += result;
+        }
+        if ((functor.getArity() == 1)
+                && (functor.getParamType(0) == ParamType.Object)) {
+            args += (args.isEmpty() ? "" : ",") + param;
+        }
+        return functor.getName() + (args.isEmpty() ? "" : "<" + args + ">");
+    }
+
+    /** Returns the generic parameters of a method, followed by a space. */
+    private static String generics(final String... params) {
+        String result = "";
+        for (final String param : params) {
+            if (param != null) {
+                result += (result.isEmpty() ? "" : ",") + param;
+            }
+        }
+        return result.isEmpty() ? "" : "<" + result + "> ";
+    }
+
+    /** Returns the generic parameter, if the type is Object, or null. */
+    private static String generic(final ParamType type, final String param) {
+        return (type == ParamType.Object) ? param : null;
+    }
+
+    /** Returns the parameter declaration of apply(), for the given input. */
+    private static String applyParams(final ParamType input,
+            final String param) {
+        return (input == null) ? "" : "final " + typeName(input, param)
+                + " p0";
+    }
+
+    /** Returns the argument list of apply(), for the given input. */
+    private static String applyArgs(final ParamType input) {
+        return (input == null) ? "" : "p0";
+    }
+
+    /** Returns the statement that returns the given value, if any. */
+    private static String ret(final ParamType returnType, final String value) {
+        return ((returnType == ParamType.Void) ? "" : "return ") + value + ";";
+    }
+
+    /** Appends an anonymous functor implementation, returned by a method. */
+    private void appendReturnNew(final StringBuilder buf, final String type,
+            final FuncInfo functor, final String params,
+            final String throwsStr, final String statement) {
+        final String m = context.getMethodName();
+        buf.append("        return new ").append(type).append("() {\n");
+        buf.append("            @Override\n");
+        buf.append("            public ")
+                .append(typeName(functor.getReturnType(), RESULT)).append(' ')
+                .append(m).append('(').append(params).append(')')
+                .append(throwsStr).append(" {\n");
+        buf.append("                ").append(statement).append('\n');
+        buf.append("            }\n");
+        buf.append("        };\n");
+    }
+
+    /** Generates the identity function. */
+    private void identity(final StringBuilder buf, final ParamType input) {
+        final FuncInfo identity = functor(input, input);
+        if (identity == null) {
+            return;
+        }
+        final boolean object = (input == ParamType.Object);
+        final String fieldType = type(identity, "Object", "Object");
+        buf.append("\n    /** The identity function. */\n");
+        buf.append("    private static final ").append(fieldType)
+                .append(" IDENTITY = new ").append(fieldType).append("() {\n");
+        buf.append("        @Override\n");
+        buf.append("        public ").append(typeName(input, "Object"))
+                .append(' ').append(context.getMethodName()).append('(')
+                .append(applyParams(input, "Object")).append(") {\n");
+        buf.append("            return p0;\n");
+        buf.append("        }\n");
+        buf.append("    };\n");
+        buf.append("\n    /** Returns the identity function. */\n");
+        if (object) {
+            buf.append("    @SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+        }
+        buf.append("    public static ").append(generics(generic(input, INPUT)))
+                .append(type(identity, INPUT, INPUT))
+                .append(" identity() {\n");
+        buf.append("        return ")
+                .append(object ? "(" + identity.getName() + ") " : "")
+                .append("IDENTITY;\n");
+        buf.append("    }\n");
+    }
+
+    /** Generates the constant functions. */
+    private void constant(final StringBuilder buf, final ParamType input) {
+        for (final ParamType value : VALUE_TYPES) {
+            final FuncInfo constant = functor(value, input);
+            if (constant == null) {
+                continue;
+            }
+            final String type = type(constant, RESULT, INPUT);
+            buf.append("\n    /** Returns a function that always returns <code>value</code>. */\n");
+            buf.append("    public static ")
+                    .append(generics(generic(value, RESULT),
+                            generic(input, INPUT))).append(type)
+                    .append(" constant(final ")
+                    .append(typeName(value, RESULT)).append(" value) {\n");
+            appendReturnNew(buf, type, constant, applyParams(input, INPUT),
+                    "", "return value;");
+            buf.append("    }\n");
+        }
+    }
+
+    /** Generates andThen() and compose(), for all type pairs. */
+    private void andThen(final StringBuilder buf, final StringBuilder compose,
+            final ParamType input) {
+        final String m = context.getMethodName();
+        final String args = applyArgs(input);
+        for (final ParamType value : VALUE_TYPES) {
+            final FuncInfo f = functor(value, input);
+            if (f == null) {
+                continue;
+            }
+            for (final ParamType result : RESULT_TYPES) {
+                final FuncInfo g = functor(result, value);
+                final FuncInfo h = functor(result, input);
+                if ((g == null) || (h == null)) {
+                    continue;
+                }
+                final String generics = generics(generic(result, RESULT),
+                        generic(input, INPUT), generic(value, VALUE));
+                final String fType = type(f, VALUE, INPUT);
+                final String gType = type(g, RESULT, VALUE);
+                final String hType = type(h, RESULT, INPUT);
+                buf.append("\n    /** Returns a function that applies <code>f</code>, then <code>g</code>. */\n");
+                buf.append("    public static ").append(generics)
+                        .append(hType).append(" andThen(final ").append(fType)
+                        .append(" f, final ").append(gType).append(" g) {\n");
+                buf.append("        checkNotNull(f, \"f\");\n");
+                buf.append("        checkNotNull(g, \"g\");\n");
+                appendReturnNew(buf, hType, h, applyParams(input, INPUT),
+                        context.getThrows(), ret(result, "g." + m + "(f." + m
+                                + "(" + args + "))"));
+                buf.append("    }\n");
+                compose.append("\n    /** Returns a function that applies <code>f</code>, then <code>g</code>. */\n");
+                compose.append("    public static ").append(generics)
+                        .append(hType).append(" compose(final ").append(gType)
+                        .append(" g, final ").append(fType).append(" f) {\n");
+                compose.append("        return andThen(f, g);\n");
+                compose.append("    }\n");
+            }
+        }
+        final FuncInfo proc = functor(ParamType.Void, input);
+        if (proc != null) {
+            final String type = type(proc, RESULT, INPUT);
+            final String call = m + "(" + args + ");";
+            buf.append("\n    /** Returns a procedure that calls <code>a</code>, then <code>b</code>. */\n");
+            buf.append("    public static ")
+                    .append(generics(generic(input, INPUT))).append(type)
+                    .append(" andThen(final ").append(type)
+                    .append(" a, final ").append(type).append(" b) {\n");
+            buf.append("        checkNotNull(a, \"a\");\n");
+            buf.append("        checkNotNull(b, \"b\");\n");
+            appendReturnNew(buf, type, proc, applyParams(input, INPUT),
+                    context.getThrows(), "a." + call + "\n                b."
+                            + call);
+            buf.append("    }\n");
+        }
+    }
+
+    /** Generates and(), or() and negate(). */
+    private void predicates(final StringBuilder buf, final ParamType input) {
+        final FuncInfo predicate = functor(ParamType.Boolean, input);
+        if (predicate == null) {
+            return;
+        }
+        final String m = context.getMethodName();
+        final String args = applyArgs(input);
+        final String generics = generics(generic(input, INPUT));
+        final String type = type(predicate, RESULT, INPUT);
+        final String params = applyParams(input, INPUT);
+        final String[][] ops = { { "and", "AND", " && " },
+                { "or", "OR", " || " } };
+        for (final String[] op : ops) {
+            buf.append("\n    /** Returns the short-circuiting logical ")
+                    .append(op[1])
+                    .append(" of <code>p</code> and <code>q</code>. */\n");
+            buf.append("    public static ").append(generics).append(type)
+                    .append(' ').append(op[0]).append("(final ").append(type)
+                    .append(" p, final ").append(type).append(" q) {\n");
+            buf.append("        checkNotNull(p, \"p\");\n");
+            buf.append("        checkNotNull(q, \"q\");\n");
+            appendReturnNew(buf, type, predicate, params, context.getThrows(),
+                    "return p." + m + "(" + args + ")" + op[2] + "q." + m
+                            + "(" + args + ");");
+            buf.append("    }\n");
+        }
+        buf.append("\n    /** Returns the logical negation of <code>p</code>. */\n");
+        buf.append("    public static ").append(generics).append(type)
+                .append(" negate(final ").append(type).append(" p) {\n");
+        buf.append("        checkNotNull(p, \"p\");\n");
+        appendReturnNew(buf, type, predicate, params, context.getThrows(),
+                "return !p." + m + "(" + args + ");");
+        buf.append("    }\n");
+    }
+
+    /** Generates the combinators for one input type, or null for none. */
+    private void generateClass(final String packageName, final ParamType input) {
+        imports.clear();
+        final String name = ((input == null) ? "" : context.getLabel(input))
+                + SUFFIX;
+        final StringBuilder members = new StringBuilder(65536);
+        final StringBuilder compose = new StringBuilder(16384);
+        if (input != null) {
+            identity(members, input);
+        }
+        constant(members, input);
+        andThen(members, compose, input);
+        members.append(compose);
+        predicates(members, input);
+        if (imports.isEmpty()) {
+            return;
+        }
+        final StringBuilder buf = new StringBuilder(members.length() + 4096);
+        for (final String type : imports) {
+            buf.append("import ").append(type).append(";\n");
+        }
+        buf.append("\n/**\n * Combinators for the functors taking ")
+                .append((input == null) ? "no parameter" : "a <code>"
+                        + typeName(input, "Object") + "</code>")
+                .append(".\n * The combined functors never allocate nor box when applied.\n");
+        buf.append(" * Generated automatically by ")
+                .append(context.getGenerator()).append("\n */\n");
+        buf.append("public final class ").append(name).append(" {\n");
+        buf.append("    /** No instances. */\n");
+        buf.append("    private ").append(name).append("() {\n");
+        buf.append("        // NOP\n");
+        buf.append("    }\n");
+        buf.append("\n    /** Throws an IllegalArgumentException, if value is null. */\n");
+        buf.append("    private static void checkNotNull(final Object value, final String name) {\n");
+        buf.append("        if (value == null) {\n");
+        buf.append("            throw new IllegalArgumentException(name + \" is null\");\n");
+        buf.append("        }\n");
+        buf.append("    }\n");
+        buf.append(members);
+        buf.append("}\n");
+        context.write(packageName, name, buf.toString());
+    }
+}
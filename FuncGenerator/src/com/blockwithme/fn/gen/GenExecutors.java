@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenExecutors</code> generates the ProcExecutors class, in the
+ * "executor" sub-package, which runs the procedures (the functors returning
+ * void) on the consumer threads of a com.blockwithme.fn.util.RingExecutor:
+ * execute(executor, procIntLong, 1, 2L) stores the parameters inline in a
+ * slot of the ring buffer, so that nothing is allocated per task.
+ *
+ * Primitive parameters are stored as longs: booleans as 0 or 1, floats and
+ * doubles by their raw bits. Each procedure type has its own Dispatcher,
+ * which reads the parameters back, and calls the procedure.
+ *
+ * @author monster
+ */
+public class GenExecutors implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "executor";
+
+    /** The name of the generated class. */
+    public static final String CLASS_NAME = "ProcExecutors";
+
+    /** A dispatcher, and the execute() method. */
+    private static final String EXECUTE = "\n"
+            + "    /** Runs %1$s tasks. */\n"
+            + "    private static final class %1$sDispatcher extends Dispatcher {\n"
+            + "        /** The instance. */\n"
+            + "        static final %1$sDispatcher INSTANCE = new %1$sDispatcher();\n"
+            + "\n"
+            + "        @Override\n"
+            + "%2$s"
+            + "        protected void dispatch(final RingExecutor executor,\n"
+            + "                final long sequence, final Object functor)%3$s {\n"
+            + "            ((%4$s) functor).%5$s(%6$s);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Runs <code>f</code> with the given parameters, on a consumer thread\n"
+            + "     * of <code>executor</code>.\n"
+            + "     */\n"
+            + "    public static %7$svoid execute(final RingExecutor executor,\n"
+            + "            final %8$s f%9$s) {\n"
+            + "        checkNotNull(executor, \"executor\");\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        final long sequence = executor.next(%10$d);\n"
+            + "%11$s"
+            + "        executor.publish(sequence, %1$sDispatcher.INSTANCE, f);\n"
+            + "    }\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        final Set<String> imports = new TreeSet<>();
+        final StringBuilder members = new StringBuilder(65536);
+        for (int arity = context.getMinimumNumberOfArgs(); arity <= context
+                .getMaximumNumberOfArgs(); arity++) {
+            for (final FuncInfo f : context.getFunctors(arity)) {
+                if (f.isProc()) {
+                    imports.add(f.getQualifiedName());
+                    execute(members, f);
+                }
+            }
+        }
+        if (imports.isEmpty()) {
+            return;
+        }
+        imports.add("com.blockwithme.fn.util.RingExecutor");
+        imports.add("com.blockwithme.fn.util.RingExecutor.Dispatcher");
+        final StringBuilder buf = new StringBuilder(members.length() + 4096);
+        for (final String type : imports) {
+            buf.append("import ").append(type).append(";\n");
+        }
+        buf.append("\n/**\n * Runs the procedures on a RingExecutor, without allocating.\n");
+        buf.append(" * Generated automatically by ")
+                .append(context.getGenerator()).append("\n */\n");
+        buf.append("public final class ").append(CLASS_NAME).append(" {\n");
+        buf.append("    /** No instances. */\n");
+        buf.append("    private ").append(CLASS_NAME).append("() {\n");
+        buf.append("        // NOP\n");
+        buf.append("    }\n");
+        buf.append("\n    /** Throws an IllegalArgumentException, if value is null. */\n");
+        buf.append("    private static void checkNotNull(final Object value, final String name) {\n");
+        buf.append("        if (value == null) {\n");
+        buf.append("            throw new IllegalArgumentException(name + \" is null\");\n");
+        buf.append("        }\n");
+        buf.append("    }\n");
+        buf.append(members);
+        buf.append("}\n");
+        context.write(context.getPackageName() + "." + SUB_PACKAGE,
+                CLASS_NAME, buf.toString());
+    }
+
+    /** Generates the dispatcher, and the execute() method, of one procedure. */
+    private static void execute(final StringBuilder buf, final FuncInfo f) {
+        final StringBuilder params = new StringBuilder();
+        for (int i = 0; i < f.getArity(); i++) {
+            params.append(", final ").append(f.getParamTypeName(i))
+                    .append(" p").append(i);
+        }
+        final StringBuilder args = new StringBuilder();
+        final StringBuilder store = new StringBuilder();
+        slots(f, "        ", "executor", "sequence", args, store);
+        String raw = f.getName();
+        if (f.isGeneric()) {
+            raw += f.getGenerics().replaceAll("[A-Z]", "Object");
+        }
+        buf.append(String.format(EXECUTE, f.getName(),
+                f.isGeneric() ? "        @SuppressWarnings(\"unchecked\")\n"
+                        : "", f.getThrows(), raw, f.getMethodName(), args,
+                f.isGeneric() ? f.getGenerics() + " " : "", f.getType(),
+                params, f.getArity(), store));
+    }
+
+    /**
+     * Generates the code storing the parameters p0, p1 ... of <code>f</code>
+     * in the slot <code>key</code> of <code>owner</code> (a RingExecutor, or
+     * a WheelTimer), and the arguments reading them back, in the dispatcher.
+     */
+    static void slots(final FuncInfo f, final String indent,
+            final String owner, final String key, final StringBuilder args,
+            final StringBuilder store) {
+        int longs = 0;
+        int objects = 0;
+        for (int i = 0; i < f.getArity(); i++) {
+            final ParamType type = f.getParamType(i);
+            final String p = "p" + i;
+            if (i > 0) {
+                args.append(", ");
+            }
+            if (type == ParamType.Object) {
+                store.append(indent).append(owner).append(".setRef(")
+                        .append(key).append(", ")
+                        .append(objects).append(", ").append(p)
+                        .append(");\n");
+                args.append(owner).append(".getRef(").append(key)
+                        .append(", ").append(objects)
+                        .append(')');
+                objects++;
+            } else {
+                final String get = owner + ".getLong(" + key + ", " + longs
+                        + ")";
+                final String value;
+                final String read;
+                switch (type) {
+                case Boolean:
+                    value = "(" + p + " ? 1L : 0L)";
+                    read = "(" + get + " != 0)";
+                    break;
+                case Float:
+                    value = "Float.floatToRawIntBits(" + p + ")";
+                    read = "Float.intBitsToFloat((int) " + get + ")";
+                    break;
+                case Double:
+                    value = "Double.doubleToRawLongBits(" + p + ")";
+                    read = "Double.longBitsToDouble(" + get + ")";
+                    break;
+                case Long:
+                    value = p;
+                    read = get;
+                    break;
+                default:
+                    value = p;
+                    read = "(" + f.getParamTypeName(i) + ") " + get;
+                    break;
+                }
+                store.append(indent).append(owner).append(".setLong(")
+                        .append(key).append(", ")
+                        .append(longs).append(", ").append(value)
+                        .append(");\n");
+                args.append(read);
+                longs++;
+            }
+        }
+    }
+}
@@ -18,20 +18,23 @@ package com.blockwithme.fn.gen;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Scanner;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import com.blockwithme.fn.gen.FuncFilter.ParamType;
+import com.blockwithme.fn.gen.GenerationReport.Phase;
 import com.blockwithme.fn.util.Functor;
 import com.blockwithme.fn.util.Util;
 
 /**
  * <code>GenFunc</code> generates the source-code of the functions.
  *
- * Usage: GenFunc OutputDirectory LicenseFile PackageName ProcNamePrefix FuncNameInfix MethodName Throws MinimumNumberOfArgs MaximumNumberOfArgs ShortName Filter
+ * Usage: GenFunc OutputDirectory LicenseFile PackageName ProcNamePrefix FuncNameInfix MethodName Throws MinimumNumberOfArgs MaximumNumberOfArgs ShortName Filter ReportFile Extensions Interfaces
  *
  * OutputDirectory is the directory where the source files are generated. For example, C:\temp\funcs
  * LicenseFile is the path to the license file, to use as header. Can be "" or simply empty. For example, APACHE_LICENSE_HEADER.txt.
@@ -44,6 +47,9 @@ import com.blockwithme.fn.util.Util;
  * MaximumNumberOfArgs is the maximum number of parameters the functions will have, for example 3.
  * ShortName specifies if the names should be like "ProcZL" (true) or "ProcBooleanLong" (false)
  * Filter is the name of a class that implements com.blockwithme.gen.func.FuncFilter (optional).
+ * ReportFile is the path of a JSON file, where the GenerationReport is written (optional).
+ * Extensions is a comma-separated list of classes that implement com.blockwithme.fn.gen.FuncExtension (optional).
+ * Interfaces specifies if the functor interfaces themselves are generated (optional; default true). Use false to only run the extensions.
  *
  * Hint: It supports up to 5 as the maximum number of parameters,
  * but that would be near 1 million interfaces; not recommended ... ;)
@@ -77,9 +83,6 @@ public class GenFunc {
             FuncFilter.ParamType.Float, FuncFilter.ParamType.Double,
             FuncFilter.ParamType.Object };
 
-    /** The possible return types, including Object, capitalized for the interface name. */
-    private static String[] RETURN_TYPES2;
-
     /** The possible return types as a class */
     private static final String[] SIGN_RETURN_TYPES = { "Void.TYPE",
             "Boolean.TYPE", "Byte.TYPE", "Character.TYPE", "Short.TYPE",
@@ -88,7 +91,7 @@ public class GenFunc {
 
     /** Usage */
     private static final String USAGE = "Usage:\n"
-            + "    GenFunc OutputDirectory LicenseFile PackageName ProcNamePrefix FuncNameInfix MethodName Throws MinimumNumberOfArgs MaximumNumberOfArgs Filter\n"
+            + "    GenFunc OutputDirectory LicenseFile PackageName ProcNamePrefix FuncNameInfix MethodName Throws MinimumNumberOfArgs MaximumNumberOfArgs Filter ReportFile Extensions Interfaces\n"
             + "\n"
             + "OutputDirectory is the directory where the source files are generated. For example, 'C:\temp\funcs'\n"
             + "LicenseFile is the path to the license file, to use as header. Can be '' or simply empty. For example, 'APACHE_LICENSE_HEADER.txt'.\n"
@@ -99,6 +102,9 @@ public class GenFunc {
             + "MaximumNumberOfArgs is the maximum number of parameters the functions will have, for example 3.\n"
             + "Filter is the name of a class that implements com.blockwithme.gen.func.FuncFilter (optional).\n"
             + "Throws can contain the optional name of a thrown 'Throwable'. Leave blank for no 'throws'. Example: 'java.io.IOException'\n"
+            + "ReportFile is the optional path of a JSON file, where the generation report is written.\n"
+            + "Extensions is an optional comma-separated list of classes that implement com.blockwithme.fn.gen.FuncExtension.\n"
+            + "Interfaces is 'false' to only run the extensions, without generating the functor interfaces (optional).\n"
             + "\n"
             + "Hint: It supports up to 5 as the maximum number of parameters,\n"
             + "      but that would be near 1 million interfaces; not recommended ... ;)\n";
@@ -118,12 +124,17 @@ public class GenFunc {
      * #0 %s = InterfaceName
      * #1 %s = return type
      * #2 %s = Parameter list
+     * #6 %s = Members added by the extensions
      */
     private static int doGenerate(final File outputrDirectory,
-            final String funcNameInfix, final String procNamePrefix,
-            final String format, final int numberOfArgs, final FuncFilter filter) {
+            final String[] labels, final String funcNameInfix,
+            final String procNamePrefix, final String format,
+            final int numberOfArgs, final FuncFilter filter,
+            final FuncContext context, final FuncExtension[] extensions,
+            final GenerationReport.Arity stats) {
         final String np = String.valueOf(numberOfArgs);
         int result = 0;
+        long time = System.nanoTime();
         for (int r = 0; r <= OBJECT_RETURN; r++) {
             final String returnType = _RETURN_TYPES[r];
             final ParamType returnType2 = r == 0 ? ParamType.Void
@@ -132,19 +143,36 @@ public class GenFunc {
             int current = 0;
             boolean again = true;
             while (again) {
-                if (filter == null
-                        || filter
-                                .accept(genParameterList2(params), returnType2)) {
+                stats.considered();
+                final ParamType[] paramTypes = genParameterList2(params);
+                time = stats.lap(Phase.Enumeration, time);
+                final boolean accepted = filter == null
+                        || filter.accept(paramTypes, returnType2);
+                time = stats.lap(Phase.Filtering, time);
+                if (!accepted) {
+                    stats.filtered();
+                } else {
                     final String[] generatedStrings = genNameAndSignature(
-                            funcNameInfix, procNamePrefix, r, params);
+                            labels, funcNameInfix, procNamePrefix, r, params);
                     final String name = generatedStrings[0];
                     final String signature = generatedStrings[1];
                     final String genParams = genGenericsParams(r, params);
                     final String paramList = genParameterList(params);
+                    String members = "";
+                    if (extensions.length > 0) {
+                        final FuncInfo info = context.getFunctor(returnType2,
+                                paramTypes);
+                        for (final FuncExtension extension : extensions) {
+                            members += extension.members(info);
+                        }
+                    }
                     final String content = String.format(format, name
-                            + genParams, signature, returnType, paramList, np);
+                            + genParams, signature, returnType, paramList, np,
+                            members);
+                    time = stats.lap(Phase.Rendering, time);
                     final File file = new File(outputrDirectory, name + ".java");
-                    outputInterface(file, content);
+                    outputInterface(file, content, stats);
+                    time = stats.lap(Phase.Writing, time);
                     result++;
                     if (result % INTERFACES_PER_DOT == 0) {
                         System.out.print(".");
@@ -167,18 +195,21 @@ public class GenFunc {
                         again = false;
                     }
                 }
+                time = stats.lap(Phase.Enumeration, time);
             }
         }
         return result;
     }
 
     /** Generates the functions. */
-    private static void doGenerate(final File outputDirectory,
+    private static GenerationReport doGenerate(final File outputDirectory,
             final String fileHeader, final String packageName,
-            final String funcNameInfix, final String procNamePrefix,
+            final String[] labels, final String funcNameInfix,
+            final String procNamePrefix,
             final String methodName, final String throwsStr,
             final int minimumNumberOfArgs, final int maximumNumberOfArgs,
-            final FuncFilter filter) {
+            final FuncFilter filter, final FuncExtension[] extensions,
+            final boolean interfaces) {
         System.out.println("Generating fucntions:");
         System.out.println("    Header:                       "
                 + (fileHeader.isEmpty() ? "No" : "Yes"));
@@ -194,6 +225,14 @@ public class GenFunc {
         System.out.println("    Maximum Number Of Parameters: "
                 + maximumNumberOfArgs);
         System.out.println("    Function filter:              " + filter);
+        String extensionNames = "";
+        for (final FuncExtension extension : extensions) {
+            extensionNames += (extensionNames.isEmpty() ? "" : ", ")
+                    + extension.getClass().getName();
+        }
+        System.out.println("    Extensions:                   "
+                + extensionNames);
+        System.out.println("    Interfaces:                   " + interfaces);
         String content = fileHeader;
         content += "\npackage " + packageName + "%5$s;\n\n";
         content += "\nimport " + FUNCTOR_INTERFACE.getName() + ";\n\n";
@@ -206,27 +245,51 @@ public class GenFunc {
         content += "    \n";
         content += "    /** Function <code>" + methodName + "</code> */\n";
         content += "    %3$s " + methodName + "(%4$s)" + throwsStr + ";\n";
-        content += "}\n";
+        content += "%6$s}\n";
+        final GenerationReport report = new GenerationReport(GENERATOR);
+        final FuncContext context = new FuncContext(outputDirectory,
+                fileHeader, packageName, labels, funcNameInfix,
+                procNamePrefix, methodName, throwsStr, minimumNumberOfArgs,
+                maximumNumberOfArgs, filter, report);
         int total = 0;
         System.out.println("Note: One '.' equals " + INTERFACES_PER_DOT
                 + " generated interfaces.");
-        for (int p = minimumNumberOfArgs; p <= maximumNumberOfArgs; p++) {
+        for (int p = minimumNumberOfArgs; interfaces
+                && (p <= maximumNumberOfArgs); p++) {
             System.out.print("Generation functions with " + p
                     + " parameters ...");
             final File dir = new File(outputDirectory.getAbsolutePath() + p);
             dir.mkdirs();
-            final int count = doGenerate(dir, funcNameInfix, procNamePrefix,
-                    content, p, filter);
+            final GenerationReport.Arity stats = report.startArity(p);
+            final int count = doGenerate(dir, labels, funcNameInfix,
+                    procNamePrefix, content, p, filter, context, extensions,
+                    stats);
+            report.endArity(stats);
             System.out.println(" " + count
                     + " functions generated (after filtering).");
             total += count;
         }
+        for (final FuncExtension extension : extensions) {
+            System.out.println("Running extension "
+                    + extension.getClass().getName() + " ...");
+            context.start(extension);
+            extension.generate(context);
+            context.end();
+        }
+        report.end();
         System.out.println(total
                 + " total functions generated (after filtering).");
+        System.out.println(report);
+        return report;
+    }
+
+    /** Returns the return type index of a type. */
+    static int returnIndex(final ParamType returnType) {
+        return (returnType == ParamType.Void) ? 0 : returnType.ordinal() + 1;
     }
 
     /** Generated the generic parameters for the interface definition. */
-    private static String genGenericsParams(final int returnType,
+    static String genGenericsParams(final int returnType,
             final int... params) {
         int genericParams = 0;
         for (int i = 0; i < params.length; i++) {
@@ -255,9 +318,9 @@ public class GenFunc {
     }
 
     /** Generated the generic parameters for the interface definition. */
-    private static String[] genNameAndSignature(final String funcNameInfix,
-            final String procNamePrefix, final int returnType,
-            final int... params) {
+    static String[] genNameAndSignature(final String[] labels,
+            final String funcNameInfix, final String procNamePrefix,
+            final int returnType, final int... params) {
         final int count = params.length;
         if (count > 5) {
             throw new IllegalArgumentException("Too many parameters: " + count);
@@ -272,10 +335,10 @@ public class GenFunc {
         if (returnType == 0) {
             name = procNamePrefix;
         } else {
-            name = RETURN_TYPES2[returnType] + funcNameInfix;
+            name = labels[returnType] + funcNameInfix;
         }
         for (int i = 0; i < count; i++) {
-            name += RETURN_TYPES2[params[i] + 1];
+            name += labels[params[i] + 1];
         }
         return new String[] { name, signatureString };
     }
@@ -309,30 +372,53 @@ public class GenFunc {
     }
 
     /** Outputs the generated interface. */
-    private static void outputInterface(final File file, final String content) {
-        if (file.exists()) {
-            try (Scanner scanner = new Scanner(file);) {
-                if (content.equals(scanner.useDelimiter("\\Z").next())) {
+    static void outputInterface(final File file, final String content,
+            final GenerationReport.Arity stats) {
+        final byte[] bytes = content.getBytes();
+        if (file.length() == bytes.length) {
+            try {
+                if (Arrays.equals(bytes, Files.readAllBytes(file.toPath()))) {
+                    stats.unchanged();
                     return;
                 }
-            } catch (final FileNotFoundException e) {
-                // Should not happen, since we checked ...
+            } catch (final IOException e) {
+                // Then we just write it again ...
             }
         }
-        try (FileWriter fw = new FileWriter(file);) {
-            fw.write(content);
+        try (FileOutputStream fos = new FileOutputStream(file);) {
+            fos.write(bytes);
         } catch (final IOException e) {
             throw new IllegalStateException("Failed to write to " + file, e);
         }
+        stats.written(bytes.length);
     }
 
     /** Generates the functions. */
-    public static void generate(final File outputrDirectory,
+    public static GenerationReport generate(final File outputrDirectory,
             final String fileHeader, final String packageName,
             final String funcNameInfix, final String procNamePrefix,
             final String methodName, final String throwsStr,
             final int minimumNumberOfArgs, final int maximumNumberOfArgs,
-            final String filterType) {
+            final boolean shortName, final String filterType) {
+        return generate(outputrDirectory, fileHeader, packageName,
+                funcNameInfix, procNamePrefix, methodName, throwsStr,
+                minimumNumberOfArgs, maximumNumberOfArgs, shortName,
+                filterType, null, true);
+    }
+
+    /**
+     * Generates the functions, and runs the given extensions.
+     * <code>extensionTypes</code> is a comma-separated list of class names,
+     * and can be null or empty. If <code>interfaces</code> is false, only
+     * the extensions are run.
+     */
+    public static GenerationReport generate(final File outputrDirectory,
+            final String fileHeader, final String packageName,
+            final String funcNameInfix, final String procNamePrefix,
+            final String methodName, final String throwsStr,
+            final int minimumNumberOfArgs, final int maximumNumberOfArgs,
+            final boolean shortName, final String filterType,
+            final String extensionTypes, final boolean interfaces) {
         if (outputrDirectory == null) {
             throw new IllegalArgumentException("outputrDirectory is null");
         }
@@ -418,9 +504,29 @@ public class GenFunc {
                         + filterType + ")", e);
             }
         }
-        doGenerate(outputrDirectory, fileHeader == null ? "" : fileHeader,
-                packageName, funcNameInfix, procNamePrefix, methodName,
-                throwsStr, minimumNumberOfArgs, maximumNumberOfArgs, filter);
+        final List<FuncExtension> extensions = new ArrayList<>();
+        if (extensionTypes != null) {
+            for (final String extensionType : extensionTypes.split(",")) {
+                final String type = extensionType.trim();
+                if (!type.isEmpty()) {
+                    try {
+                        extensions.add((FuncExtension) Class.forName(type)
+                                .newInstance());
+                    } catch (InstantiationException | IllegalAccessException
+                            | ClassNotFoundException | ClassCastException e) {
+                        throw new IllegalArgumentException(
+                                "bad extension type (" + type + ")", e);
+                    }
+                }
+            }
+        }
+        return doGenerate(outputrDirectory, fileHeader == null ? "" : fileHeader,
+                packageName, shortName ? Util.SHORT_LABELS : Util.LONG_LABELS,
+                funcNameInfix, procNamePrefix, methodName,
+                throwsStr == null ? "" : throwsStr, minimumNumberOfArgs,
+                maximumNumberOfArgs, filter,
+                extensions.toArray(new FuncExtension[extensions.size()]),
+                interfaces);
     }
 
     private static void validateFuncName(final String name,
@@ -457,12 +563,26 @@ public class GenFunc {
     }
 
     /** Generates the functions. */
-    public static void generate(final String outputrDirectory,
+    public static GenerationReport generate(final String outputrDirectory,
             final String licenseFile, final String packageName,
             final String funcNameInfix, final String procNamePrefix,
             final String methodName, final String throwsStr,
             final String minimumNumberOfArgs, final String maximumNumberOfArgs,
             final String shortName, final String filterType) {
+        return generate(outputrDirectory, licenseFile, packageName,
+                funcNameInfix, procNamePrefix, methodName, throwsStr,
+                minimumNumberOfArgs, maximumNumberOfArgs, shortName,
+                filterType, "", "true");
+    }
+
+    /** Generates the functions, and runs the given extensions. */
+    public static GenerationReport generate(final String outputrDirectory,
+            final String licenseFile, final String packageName,
+            final String funcNameInfix, final String procNamePrefix,
+            final String methodName, final String throwsStr,
+            final String minimumNumberOfArgs, final String maximumNumberOfArgs,
+            final String shortName, final String filterType,
+            final String extensionTypes, final String interfaces) {
         checkNotEmpty(outputrDirectory, "outputrDirectory");
         checkNotEmpty(minimumNumberOfArgs, "minimumNumberOfArgs");
         checkNotEmpty(maximumNumberOfArgs, "maximumNumberOfArgs");
@@ -481,8 +601,6 @@ public class GenFunc {
             throw new IllegalArgumentException(
                     "maximumNumberOfArgs is not a number", e);
         }
-        RETURN_TYPES2 = Boolean.parseBoolean(shortName) ? Util.SHORT_LABELS
-                : Util.LONG_LABELS;
         String outDirFullPath = outputrDirectory;
         if (!outDirFullPath.endsWith(File.separator)) {
             outDirFullPath += File.separator;
@@ -516,15 +634,18 @@ public class GenFunc {
         if (throwsStr != null && !throwsStr.isEmpty()) {
             throwsStr2 = " throws " + throwsStr;
         }
-        generate(dir, fileHeader, packageName, funcNameInfix, procNamePrefix,
-                methodName, throwsStr2, min, max, filterType);
+        return generate(dir, fileHeader, packageName, funcNameInfix, procNamePrefix,
+                methodName, throwsStr2, min, max, Boolean.parseBoolean(shortName),
+                filterType, extensionTypes, (interfaces == null)
+                        || interfaces.trim().isEmpty()
+                        || Boolean.parseBoolean(interfaces.trim()));
     }
 
     /**
      * @param args
      */
     public static void main(final String[] args) {
-        if (args.length < 9 || args.length > 11) {
+        if (args.length < 9 || args.length > 14) {
             System.out.println(USAGE);
         } else {
 
@@ -543,9 +664,19 @@ public class GenFunc {
             if (throwsStr == null) {
                 throwsStr = "";
             }
-            generate(outputrDirectory, licenseFile, packageName, funcNameInfix,
-                    procNamePrefix, methodName, throwsStr, minimumNumberOfArgs,
-                    maximumNumberOfArgs, shortName, filterType);
+            final String reportFile = args.length < 12 ? "" : args[11].trim();
+            final String extensionTypes = args.length < 13 ? "" : args[12]
+                    .trim();
+            final String interfaces = args.length < 14 ? "true" : args[13]
+                    .trim();
+            final GenerationReport report = generate(outputrDirectory,
+                    licenseFile, packageName, funcNameInfix, procNamePrefix,
+                    methodName, throwsStr, minimumNumberOfArgs,
+                    maximumNumberOfArgs, shortName, filterType,
+                    extensionTypes, interfaces);
+            if (!reportFile.isEmpty()) {
+                report.writeJson(new File(reportFile));
+            }
         }
     }
 }
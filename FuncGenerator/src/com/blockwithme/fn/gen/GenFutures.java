@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenFutures</code> generates primitive futures, in the "future"
+ * sub-package: IntFuture, LongFuture, DoubleFuture, ... one per primitive
+ * type. They extend com.blockwithme.fn.util.PrimitiveFuture, which
+ * implements the lock-free completion, and store the value in a primitive
+ * field, so that join() does not box.
+ *
+ * onSuccess() takes the procedure of the value type (for example ProcInt),
+ * and onFailure() a ProcObject&lt;Throwable&gt;. thenApply() takes the
+ * function from and to the value type, and thenApplyToLong() (and so on)
+ * the function to another type, returning the future of that type;
+ * thenApplyToObject() returns a CompletableFuture. Only the methods whose
+ * functor interface is accepted by the filter are generated.
+ *
+ * The generated code requires Java 8.
+ *
+ * @author monster
+ */
+public class GenFutures implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "future";
+
+    /** The suffix of the generated classes. */
+    public static final String SUFFIX = "Future";
+
+    /** The value types. */
+    private static final ParamType[] VALUE_TYPES = { ParamType.Boolean,
+            ParamType.Byte, ParamType.Char, ParamType.Short, ParamType.Int,
+            ParamType.Long, ParamType.Float, ParamType.Double };
+
+    /** The start of the class. */
+    private static final String HEADER = ""
+            + "/**\n"
+            + " * A future <code>%1$s</code>, completed without boxing.\n"
+            + " * The callbacks run in the thread that completes the future, or in the\n"
+            + " * thread that adds them, if the future is already complete.\n"
+            + " * Generated automatically by %2$s\n"
+            + " */\n"
+            + "public final class %3$s extends PrimitiveFuture {\n"
+            + "%4$s"
+            + "\n"
+            + "    /** The value, once completed normally. */\n"
+            + "    private %1$s value;\n"
+            + "\n"
+            + "    /** Creates an incomplete future. */\n"
+            + "    public %3$s() {\n"
+            + "        // NOP\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns a future completed with <code>value</code>. */\n"
+            + "    public static %3$s completed(final %1$s value) {\n"
+            + "        final %3$s result = new %3$s();\n"
+            + "        result.complete(value);\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns a future completed with <code>failure</code>. */\n"
+            + "    public static %3$s failed(final Throwable failure) {\n"
+            + "        final %3$s result = new %3$s();\n"
+            + "        result.completeExceptionally(failure);\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Completes the future. Returns false, if it was already complete. */\n"
+            + "    public boolean complete(final %1$s theValue) {\n"
+            + "        if (!startCompletion()) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        value = theValue;\n"
+            + "        finishCompletion();\n"
+            + "        return true;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Waits for the value, and returns it. Throws a CompletionException,\n"
+            + "     * if the future completed exceptionally.\n"
+            + "     */\n"
+            + "    public %1$s join() {\n"
+            + "        awaitDone();\n"
+            + "        reportJoin();\n"
+            + "        return value;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Waits for the value, and returns it. */\n"
+            + "    public %1$s get() throws InterruptedException, ExecutionException {\n"
+            + "        try {\n"
+            + "            awaitDone(false, 0, null);\n"
+            + "        } catch (final TimeoutException e) {\n"
+            + "            throw new IllegalStateException(e);\n"
+            + "        }\n"
+            + "        reportGet();\n"
+            + "        return value;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Waits at most <code>timeout</code> for the value, and returns it. */\n"
+            + "    public %1$s get(final long timeout, final TimeUnit unit)\n"
+            + "            throws InterruptedException, ExecutionException, TimeoutException {\n"
+            + "        awaitDone(true, timeout, unit);\n"
+            + "        reportGet();\n"
+            + "        return value;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns the value, if the future is complete, otherwise\n"
+            + "     * <code>valueIfAbsent</code>.\n"
+            + "     */\n"
+            + "    public %1$s getNow(final %1$s valueIfAbsent) {\n"
+            + "        if (!isDone()) {\n"
+            + "            return valueIfAbsent;\n"
+            + "        }\n"
+            + "        reportJoin();\n"
+            + "        return value;\n"
+            + "    }\n";
+
+    /** The end of the class. */
+    private static final String FOOTER = "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#toString()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "        final String state = stateString();\n"
+            + "        return \"%1$s(\" + ((state == null) ? String.valueOf(value) : state) + \")\";\n"
+            + "    }\n"
+            + "}\n";
+
+    /** The onSuccess() callback. */
+    private static final String ON_SUCCESS_CLASS = "\n"
+            + "    /** Calls a %1$s with the value. */\n"
+            + "    private static final class OnSuccess extends Completion {\n"
+            + "        /** The future. */\n"
+            + "        private final %2$s source;\n"
+            + "\n"
+            + "        /** The action. */\n"
+            + "        private final %1$s action;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        OnSuccess(final %2$s theSource, final %1$s theAction) {\n"
+            + "            source = theSource;\n"
+            + "            action = theAction;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        protected void run() {\n"
+            + "            if (!source.isCompletedExceptionally()) {\n"
+            + "                %4$s"
+            + "action.%3$s(source.value);\n"
+            + "%5$s"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n";
+
+    /** The onSuccess() method. */
+    private static final String ON_SUCCESS = "\n"
+            + "    /** Calls <code>action</code> with the value, if the future completes normally. */\n"
+            + "    public %2$s onSuccess(final %1$s action) {\n"
+            + "        checkNotNull(action, \"action\");\n"
+            + "        push(new OnSuccess(this, action));\n"
+            + "        return this;\n"
+            + "    }\n";
+
+    /** The onFailure() callback. */
+    private static final String ON_FAILURE_CLASS = "\n"
+            + "    /** Calls a %1$s&lt;Throwable&gt; with the failure. */\n"
+            + "    private static final class OnFailure extends Completion {\n"
+            + "        /** The future. */\n"
+            + "        private final %2$s source;\n"
+            + "\n"
+            + "        /** The action. */\n"
+            + "        private final %1$s<Throwable> action;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        OnFailure(final %2$s theSource, final %1$s<Throwable> theAction) {\n"
+            + "            source = theSource;\n"
+            + "            action = theAction;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        protected void run() {\n"
+            + "            if (source.isCompletedExceptionally()) {\n"
+            + "                %4$s"
+            + "action.%3$s(source.getFailure());\n"
+            + "%5$s"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n";
+
+    /** The onFailure() method. */
+    private static final String ON_FAILURE = "\n"
+            + "    /** Calls <code>action</code> with the failure, if the future completes exceptionally. */\n"
+            + "    public %2$s onFailure(final %1$s<Throwable> action) {\n"
+            + "        checkNotNull(action, \"action\");\n"
+            + "        push(new OnFailure(this, action));\n"
+            + "        return this;\n"
+            + "    }\n";
+
+    /** A transformation callback. */
+    private static final String APPLY_CLASS = "\n"
+            + "    /** Completes a %1$s with a %2$s of the value. */\n"
+            + "    private static final class %3$s%4$s extends Completion {\n"
+            + "        /** The future. */\n"
+            + "        private final %5$s source;\n"
+            + "\n"
+            + "        /** The function. */\n"
+            + "        private final %6$s f;\n"
+            + "\n"
+            + "        /** The transformed future. */\n"
+            + "        private final %7$s target;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        %3$s(final %5$s theSource, final %6$s theF, final %7$s theTarget) {\n"
+            + "            source = theSource;\n"
+            + "            f = theF;\n"
+            + "            target = theTarget;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        protected void run() {\n"
+            + "            if (source.isCompletedExceptionally()) {\n"
+            + "                target.completeExceptionally(source.getFailure());\n"
+            + "                return;\n"
+            + "            }\n"
+            + "            final %8$s result;\n"
+            + "            try {\n"
+            + "                result = f.%9$s(source.value);\n"
+            + "            } catch (final Throwable t) {\n"
+            + "                target.completeExceptionally(t);\n"
+            + "                return;\n"
+            + "            }\n"
+            + "            target.complete(result);\n"
+            + "        }\n"
+            + "    }\n";
+
+    /** A transformation method. */
+    private static final String APPLY = "\n"
+            + "    /**\n"
+            + "     * Returns a future completed with <code>f</code> applied to the value,\n"
+            + "     * or with the same failure.\n"
+            + "     */\n"
+            + "    public %1$s%2$s %3$s(final %4$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        final %2$s result = new %5$s();\n"
+            + "        push(new %6$s%7$s(this, f, result));\n"
+            + "        return result;\n"
+            + "    }\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        if ((context.getMinimumNumberOfArgs() > 1)
+                || (context.getMaximumNumberOfArgs() < 1)) {
+            return;
+        }
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        for (final ParamType valueType : VALUE_TYPES) {
+            generate(context, packageName, valueType);
+        }
+    }
+
+    /** Generates the future of one type. */
+    private static void generate(final FuncContext context,
+            final String packageName, final ParamType valueType) {
+        final String type = FuncInfo.typeName(valueType, 'R');
+        final String name = context.getLabel(valueType) + SUFFIX;
+        final ParamType[] params = { valueType };
+        final Set<String> imports = new TreeSet<>();
+        imports.add("com.blockwithme.fn.util.PrimitiveFuture");
+        imports.add("java.util.concurrent.ExecutionException");
+        imports.add("java.util.concurrent.TimeUnit");
+        imports.add("java.util.concurrent.TimeoutException");
+        final StringBuilder classes = new StringBuilder();
+        final StringBuilder methods = new StringBuilder();
+        if (context.accept(ParamType.Void, params)) {
+            final FuncInfo proc = context.getFunctor(ParamType.Void, params);
+            imports.add(proc.getQualifiedName());
+            classes.append(callback(ON_SUCCESS_CLASS, proc, name));
+            methods.append(String.format(ON_SUCCESS, proc.getName(), name));
+        }
+        final ParamType[] objectParam = { ParamType.Object };
+        if (context.accept(ParamType.Void, objectParam)) {
+            final FuncInfo proc = context.getFunctor(ParamType.Void,
+                    objectParam);
+            imports.add(proc.getQualifiedName());
+            classes.append(callback(ON_FAILURE_CLASS, proc, name));
+            methods.append(String.format(ON_FAILURE, proc.getName(), name));
+        }
+        for (final ParamType targetType : VALUE_TYPES) {
+            if (context.accept(targetType, params)) {
+                final FuncInfo f = context.getFunctor(targetType, params);
+                imports.add(f.getQualifiedName());
+                final String target = context.getLabel(targetType) + SUFFIX;
+                final String node = (targetType == valueType) ? "Apply"
+                        : "ApplyTo" + context.getLabel(targetType);
+                final String method = (targetType == valueType) ? "thenApply"
+                        : "thenApplyTo" + context.getLabel(targetType);
+                classes.append(String.format(APPLY_CLASS, target,
+                        f.getName(), node, "", name, f.getType(), target,
+                        FuncInfo.typeName(targetType, 'R'),
+                        f.getMethodName()));
+                methods.append(String.format(APPLY, "", target, method,
+                        f.getType(), target, node, ""));
+            }
+        }
+        if (context.accept(ParamType.Object, params)) {
+            final FuncInfo f = context.getFunctor(ParamType.Object, params);
+            imports.add(f.getQualifiedName());
+            imports.add("java.util.concurrent.CompletableFuture");
+            classes.append(String.format(APPLY_CLASS, "CompletableFuture",
+                    f.getName(), "ApplyToObject", "<R>", name, f.getType(),
+                    "CompletableFuture<R>", "R", f.getMethodName()));
+            methods.append(String.format(APPLY, "<R> ",
+                    "CompletableFuture<R>", "thenApplyToObject", f.getType(),
+                    "CompletableFuture<R>", "ApplyToObject", "<R>"));
+        }
+        final StringBuilder buf = new StringBuilder(32768);
+        for (final String i : imports) {
+            buf.append("import ").append(i).append(";\n");
+        }
+        buf.append("\n");
+        buf.append(String.format(HEADER, type, context.getGenerator(), name,
+                classes));
+        buf.append("\n    /** Throws an IllegalArgumentException, if value is null. */\n");
+        buf.append("    private static void checkNotNull(final Object value, final String name) {\n");
+        buf.append("        if (value == null) {\n");
+        buf.append("            throw new IllegalArgumentException(name + \" is null\");\n");
+        buf.append("        }\n");
+        buf.append("    }\n");
+        buf.append(methods);
+        buf.append(String.format(FOOTER, name));
+        context.write(packageName, name, buf.toString());
+    }
+
+    /** Returns a callback class calling a procedure. */
+    private static String callback(final String template, final FuncInfo proc,
+            final String name) {
+        final boolean checked = !proc.getThrows().isEmpty();
+        return String.format(template, proc.getName(), name,
+                proc.getMethodName(), checked ? "try {\n                    "
+                        : "", checked ? "                } catch (final Exception e) {\n"
+                        + "                    throw new IllegalStateException(e);\n"
+                        + "                }\n" : "");
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenInstrumenters</code> generates instrumenting decorators, in the
+ * "instrument" sub-package: instrument(f, instrument) returns a functor of
+ * the same type as f, that counts the calls to f, the calls that threw, and
+ * records the latency of a sample of the calls, in a
+ * com.blockwithme.fn.util.Instrument. instrument(f, name) uses the
+ * Instrument of that name, from com.blockwithme.fn.util.Instruments.
+ *
+ * There is one class per return type, named after its label (for example
+ * IntInstrumenters), and one decorator class per functor interface. The
+ * generated code only requires Java 7.
+ *
+ * @author monster
+ */
+public class GenInstrumenters implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "instrument";
+
+    /** The suffix of the generated classes. */
+    public static final String SUFFIX = "Instrumenters";
+
+    /** The return types. */
+    private static final ParamType[] RETURN_TYPES = { ParamType.Void,
+            ParamType.Boolean, ParamType.Byte, ParamType.Char, ParamType.Short,
+            ParamType.Int, ParamType.Long, ParamType.Float, ParamType.Double,
+            ParamType.Object };
+
+    /** A decorator class, and its factory methods. */
+    private static final String DECORATOR = "\n"
+            + "    /** Instruments a %1$s. */\n"
+            + "    private static final class %1$sInstrumented%2$s implements %3$s {\n"
+            + "        /** The functor. */\n"
+            + "        private final %3$s f;\n"
+            + "\n"
+            + "        /** The instrument. */\n"
+            + "        private final Instrument instrument;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        %1$sInstrumented(final %3$s theF, final Instrument theInstrument) {\n"
+            + "            f = theF;\n"
+            + "            instrument = theInstrument;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public %4$s %5$s(%6$s)%7$s {\n"
+            + "            final long start = instrument.start();\n"
+            + "%8$s"
+            + "            try {\n"
+            + "                %9$sf.%5$s(%10$s);\n"
+            + "            } catch (final Throwable t) {\n"
+            + "                instrument.failed(start);\n"
+            + "                throw t;\n"
+            + "            }\n"
+            + "            instrument.end(start);\n"
+            + "%11$s"
+            + "        }\n"
+            + "\n"
+            + "        /* (non-Javadoc)\n"
+            + "         * @see java.lang.Object#toString()\n"
+            + "         */\n"
+            + "        @Override\n"
+            + "        public String toString() {\n"
+            + "            return \"Instrumented(\" + f + \", \" + instrument.getName() + \")\";\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns <code>f</code>, recording its calls in <code>instrument</code>. */\n"
+            + "    public static %12$s%3$s instrument(final %3$s f,\n"
+            + "            final Instrument instrument) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        checkNotNull(instrument, \"instrument\");\n"
+            + "        return new %1$sInstrumented%2$s(f, instrument);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns <code>f</code>, recording its calls in the registered\n"
+            + "     * Instrument called <code>name</code>.\n"
+            + "     */\n"
+            + "    public static %12$s%3$s instrument(final %3$s f,\n"
+            + "            final String name) {\n"
+            + "        return instrument(f, Instruments.get(name));\n"
+            + "    }\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        for (final ParamType returnType : RETURN_TYPES) {
+            final Set<String> imports = new TreeSet<>();
+            final StringBuilder members = new StringBuilder(65536);
+            for (int arity = context.getMinimumNumberOfArgs(); arity <= context
+                    .getMaximumNumberOfArgs(); arity++) {
+                for (final FuncInfo f : context.getFunctors(arity)) {
+                    if (f.getReturnType() == returnType) {
+                        imports.add(f.getQualifiedName());
+                        decorate(members, f);
+                    }
+                }
+            }
+            if (imports.isEmpty()) {
+                continue;
+            }
+            imports.add("com.blockwithme.fn.util.Instrument");
+            imports.add("com.blockwithme.fn.util.Instruments");
+            final String name = context.getLabel(returnType) + SUFFIX;
+            final StringBuilder buf = new StringBuilder(
+                    members.length() + 4096);
+            for (final String type : imports) {
+                buf.append("import ").append(type).append(";\n");
+            }
+            buf.append("\n/**\n * Instrumenting decorators of the functors returning <code>")
+                    .append(FuncInfo.typeName(returnType, 'R').replace("R",
+                            "Object")).append("</code>.\n");
+            buf.append(" * Generated automatically by ")
+                    .append(context.getGenerator()).append("\n */\n");
+            buf.append("public final class ").append(name).append(" {\n");
+            buf.append("    /** No instances. */\n");
+            buf.append("    private ").append(name).append("() {\n");
+            buf.append("        // NOP\n");
+            buf.append("    }\n");
+            buf.append("\n    /** Throws an IllegalArgumentException, if value is null. */\n");
+            buf.append("    private static void checkNotNull(final Object value, final String name) {\n");
+            buf.append("        if (value == null) {\n");
+            buf.append("            throw new IllegalArgumentException(name + \" is null\");\n");
+            buf.append("        }\n");
+            buf.append("    }\n");
+            buf.append(members);
+            buf.append("}\n");
+            context.write(packageName, name, buf.toString());
+        }
+    }
+
+    /** Generates the decorator of one functor. */
+    private static void decorate(final StringBuilder buf, final FuncInfo f) {
+        String params = "";
+        for (int i = 0; i < f.getArity(); i++) {
+            params += ((i == 0) ? "" : ", ") + "final "
+                    + f.getParamTypeName(i) + " p" + i;
+        }
+        final String ret = f.getReturnTypeName();
+        buf.append(String.format(DECORATOR, f.getName(), f.getGenerics(),
+                f.getType(), ret, f.getMethodName(), params, f.getThrows(),
+                f.isProc() ? "" : "            final " + ret + " result;\n",
+                f.isProc() ? "" : "result = ", f.getArgumentList(),
+                f.isProc() ? "" : "            return result;\n",
+                f.isGeneric() ? f.getGenerics() + " " : ""));
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenInvokers</code> generates the typed entry points of
+ * com.blockwithme.fn.util.FunctorInvoker, in the "invoke" sub-package: one
+ * class per return type, named after its label (for example IntInvokers),
+ * with one static method per accepted functor interface.
+ *
+ * The methods are named after the JVM type descriptors of the return type,
+ * followed by those of the parameters, as returned by
+ * FunctorInvoker.getDescriptor(), for example invokeII() for
+ * <code>int apply(int)</code> and invokeLJ() for <code>Object apply(long)</code>.
+ * They check the type of the functor, and then call its method directly, so
+ * nothing is boxed, and the call is inlined like any other interface call.
+ * Exceptions thrown by the functor are never translated.
+ *
+ * @author monster
+ */
+public class GenInvokers implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "invoke";
+
+    /** The suffix of the generated classes. */
+    public static final String SUFFIX = "Invokers";
+
+    /** The return types. */
+    private static final ParamType[] RETURN_TYPES = { ParamType.Void,
+            ParamType.Boolean, ParamType.Byte, ParamType.Char, ParamType.Short,
+            ParamType.Int, ParamType.Long, ParamType.Float, ParamType.Double,
+            ParamType.Object };
+
+    /** The parameter types. */
+    private static final ParamType[] PARAM_TYPES = { ParamType.Boolean,
+            ParamType.Byte, ParamType.Char, ParamType.Short, ParamType.Int,
+            ParamType.Long, ParamType.Float, ParamType.Double,
+            ParamType.Object };
+
+    /** The Functor class. */
+    private static final String FUNCTOR = "com.blockwithme.fn.util.Functor";
+
+    /** An entry point. */
+    private static final String METHOD = "\n"
+            + "    /**\n"
+            + "     * Invokes a functor of signature <code>%1$s</code>,\n"
+            + "     * which must be a %2$s.\n"
+            + "     */\n"
+            + "%3$s"
+            + "    public static %4$s invoke%5$s(%6$s)%7$s {\n"
+            + "        if (!(functor instanceof %2$s)) {\n"
+            + "            throw mismatch(functor, \"%1$s\");\n"
+            + "        }\n"
+            + "        %8$s((%2$s%9$s) functor).%10$s(%11$s);\n"
+            + "    }\n";
+
+    /** The class. */
+    private static final String CLASS = ""
+            + "%1$s"
+            + "\n"
+            + "/**\n"
+            + " * Invokes the functors returning <code>%2$s</code>, whose signature is only\n"
+            + " * known at runtime, without boxing. The methods are named after the JVM\n"
+            + " * type descriptors of the signature, as returned by\n"
+            + " * FunctorInvoker.getDescriptor(); an IllegalArgumentException is thrown,\n"
+            + " * if the functor does not implement the expected interface.\n"
+            + " * Generated automatically by %3$s\n"
+            + " */\n"
+            + "public final class %4$s {\n"
+            + "\n"
+            + "    /** No instances. */\n"
+            + "    private %4$s() {\n"
+            + "        // NOP\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the exception of a functor of the wrong type. */\n"
+            + "    private static IllegalArgumentException mismatch(\n"
+            + "            final Functor functor, final String signature) {\n"
+            + "        if (functor == null) {\n"
+            + "            return new IllegalArgumentException(\"functor is null\");\n"
+            + "        }\n"
+            + "        return new IllegalArgumentException(functor.getClass().getName()\n"
+            + "                + \" does not have signature \" + signature);\n"
+            + "    }\n"
+            + "%5$s"
+            + "}\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        for (final ParamType returnType : RETURN_TYPES) {
+            final Set<String> imports = new TreeSet<>();
+            imports.add(FUNCTOR);
+            final StringBuilder members = new StringBuilder(16384);
+            for (int arity = context.getMinimumNumberOfArgs(); arity <= context
+                    .getMaximumNumberOfArgs(); arity++) {
+                final int[] indexes = new int[arity];
+                boolean again = true;
+                while (again) {
+                    final ParamType[] params = new ParamType[arity];
+                    for (int i = 0; i < arity; i++) {
+                        params[i] = PARAM_TYPES[indexes[i]];
+                    }
+                    if (context.accept(returnType, params)) {
+                        final FuncInfo f = context.getFunctor(returnType,
+                                params);
+                        imports.add(f.getQualifiedName());
+                        members.append(genMethod(f));
+                    }
+                    again = false;
+                    for (int i = arity - 1; i >= 0; i--) {
+                        if (++indexes[i] < PARAM_TYPES.length) {
+                            again = true;
+                            break;
+                        }
+                        indexes[i] = 0;
+                    }
+                }
+            }
+            if (imports.size() == 1) {
+                continue;
+            }
+            final StringBuilder importList = new StringBuilder(4096);
+            for (final String type : imports) {
+                importList.append("import ").append(type).append(";\n");
+            }
+            final String name = context.getLabel(returnType) + SUFFIX;
+            context.write(packageName, name, String.format(CLASS, importList,
+                    typeName(returnType), context.getGenerator(), name,
+                    members));
+        }
+    }
+
+    /** Returns the source code name of a type, with Object for generics. */
+    private static String typeName(final ParamType type) {
+        return (type == ParamType.Object) ? "Object" : FuncInfo.typeName(
+                type, ' ');
+    }
+
+    /** Returns the JVM type descriptor of a type. */
+    private static char descriptor(final ParamType type) {
+        switch (type) {
+        case Void:
+            return 'V';
+        case Boolean:
+            return 'Z';
+        case Byte:
+            return 'B';
+        case Char:
+            return 'C';
+        case Short:
+            return 'S';
+        case Int:
+            return 'I';
+        case Long:
+            return 'J';
+        case Float:
+            return 'F';
+        case Double:
+            return 'D';
+        case Object:
+            return 'L';
+        default:
+            throw new IllegalArgumentException(String.valueOf(type));
+        }
+    }
+
+    /** Generates the entry point of one functor interface. */
+    private static String genMethod(final FuncInfo f) {
+        final ParamType returnType = f.getReturnType();
+        final StringBuilder descriptor = new StringBuilder();
+        descriptor.append(descriptor(returnType));
+        final StringBuilder signature = new StringBuilder("(");
+        final StringBuilder declaration = new StringBuilder(
+                "final Functor functor");
+        for (int i = 0; i < f.getArity(); i++) {
+            final ParamType param = f.getParamType(i);
+            final String type = typeName(param);
+            descriptor.append(descriptor(param));
+            signature.append((i == 0) ? "" : ", ").append(type);
+            declaration.append(", final ").append(type).append(" p")
+                    .append(i);
+        }
+        signature.append(')').append(typeName(returnType));
+        String generics = "";
+        if (f.isGeneric()) {
+            final int count = f.getGenerics().split(",").length;
+            for (int i = 0; i < count; i++) {
+                generics += ((i == 0) ? "<" : ",") + "Object";
+            }
+            generics += ">";
+        }
+        return String.format(METHOD, signature, f.getName(),
+                f.isGeneric() ? "    @SuppressWarnings(\"unchecked\")\n" : "",
+                typeName(returnType), descriptor, declaration,
+                f.getThrows(), (returnType == ParamType.Void) ? ""
+                        : "return ", generics, f.getMethodName(),
+                f.getArgumentList());
+    }
+}
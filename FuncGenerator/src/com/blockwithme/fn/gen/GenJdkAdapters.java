@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenJdkAdapters</code> generates adapters between the functor
+ * interfaces and their java.util.function (and java.lang.Runnable)
+ * equivalent, in the "jdk" sub-package.
+ *
+ * For every equivalent pair, a bridge interface, named "Jdk" + functor name,
+ * extends both interfaces, implementing the JDK method as a default method.
+ * The JdkAdapters class contains static asJdk() and fromJdk() converters.
+ * They return their argument as is, if it is a bridge already, and otherwise
+ * wrap it in a single object, that just holds the reference; there is never
+ * any boxing.
+ *
+ * The generated code requires Java 8, and functor interfaces that do not
+ * declare checked exceptions.
+ *
+ * @author monster
+ */
+public class GenJdkAdapters implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "jdk";
+
+    /** The name of the converter class. */
+    public static final String ADAPTERS = "JdkAdapters";
+
+    /** The prefix of the bridge interfaces. */
+    public static final String BRIDGE_PREFIX = "Jdk";
+
+    /** One JDK functional interface. */
+    private static final class Mapping {
+        /** The qualified name. */
+        final String type;
+        /** The method name. */
+        final String method;
+        /** The return type. */
+        final ParamType returnType;
+        /** The parameter types. */
+        final ParamType[] paramTypes;
+
+        /** Constructor */
+        Mapping(final String theType, final String theMethod,
+                final ParamType theReturnType, final ParamType... theParamTypes) {
+            type = theType;
+            method = theMethod;
+            returnType = theReturnType;
+            paramTypes = theParamTypes;
+        }
+
+        /** Returns the simple name. */
+        String simpleName() {
+            return type.substring(type.lastIndexOf('.') + 1);
+        }
+    }
+
+    /** java.util.function */
+    private static final String JUF = "java.util.function.";
+
+    /** All the JDK functional interfaces with a functor equivalent. */
+    private static final Mapping[] MAPPINGS = {
+            new Mapping("java.lang.Runnable", "run", ParamType.Void),
+            new Mapping(JUF + "Supplier", "get", ParamType.Object),
+            new Mapping(JUF + "BooleanSupplier", "getAsBoolean",
+                    ParamType.Boolean),
+            new Mapping(JUF + "IntSupplier", "getAsInt", ParamType.Int),
+            new Mapping(JUF + "LongSupplier", "getAsLong", ParamType.Long),
+            new Mapping(JUF + "DoubleSupplier", "getAsDouble",
+                    ParamType.Double),
+            new Mapping(JUF + "Consumer", "accept", ParamType.Void,
+                    ParamType.Object),
+            new Mapping(JUF + "IntConsumer", "accept", ParamType.Void,
+                    ParamType.Int),
+            new Mapping(JUF + "LongConsumer", "accept", ParamType.Void,
+                    ParamType.Long),
+            new Mapping(JUF + "DoubleConsumer", "accept", ParamType.Void,
+                    ParamType.Double),
+            new Mapping(JUF + "Function", "apply", ParamType.Object,
+                    ParamType.Object),
+            new Mapping(JUF + "IntFunction", "apply", ParamType.Object,
+                    ParamType.Int),
+            new Mapping(JUF + "LongFunction", "apply", ParamType.Object,
+                    ParamType.Long),
+            new Mapping(JUF + "DoubleFunction", "apply", ParamType.Object,
+                    ParamType.Double),
+            new Mapping(JUF + "ToIntFunction", "applyAsInt", ParamType.Int,
+                    ParamType.Object),
+            new Mapping(JUF + "ToLongFunction", "applyAsLong", ParamType.Long,
+                    ParamType.Object),
+            new Mapping(JUF + "ToDoubleFunction", "applyAsDouble",
+                    ParamType.Double, ParamType.Object),
+            new Mapping(JUF + "IntUnaryOperator", "applyAsInt", ParamType.Int,
+                    ParamType.Int),
+            new Mapping(JUF + "LongUnaryOperator", "applyAsLong",
+                    ParamType.Long, ParamType.Long),
+            new Mapping(JUF + "DoubleUnaryOperator", "applyAsDouble",
+                    ParamType.Double, ParamType.Double),
+            new Mapping(JUF + "IntToLongFunction", "applyAsLong",
+                    ParamType.Long, ParamType.Int),
+            new Mapping(JUF + "IntToDoubleFunction", "applyAsDouble",
+                    ParamType.Double, ParamType.Int),
+            new Mapping(JUF + "LongToIntFunction", "applyAsInt",
+                    ParamType.Int, ParamType.Long),
+            new Mapping(JUF + "LongToDoubleFunction", "applyAsDouble",
+                    ParamType.Double, ParamType.Long),
+            new Mapping(JUF + "DoubleToIntFunction", "applyAsInt",
+                    ParamType.Int, ParamType.Double),
+            new Mapping(JUF + "DoubleToLongFunction", "applyAsLong",
+                    ParamType.Long, ParamType.Double),
+            new Mapping(JUF + "Predicate", "test", ParamType.Boolean,
+                    ParamType.Object),
+            new Mapping(JUF + "IntPredicate", "test", ParamType.Boolean,
+                    ParamType.Int),
+            new Mapping(JUF + "LongPredicate", "test", ParamType.Boolean,
+                    ParamType.Long),
+            new Mapping(JUF + "DoublePredicate", "test", ParamType.Boolean,
+                    ParamType.Double),
+            new Mapping(JUF + "BiConsumer", "accept", ParamType.Void,
+                    ParamType.Object, ParamType.Object),
+            new Mapping(JUF + "ObjIntConsumer", "accept", ParamType.Void,
+                    ParamType.Object, ParamType.Int),
+            new Mapping(JUF + "ObjLongConsumer", "accept", ParamType.Void,
+                    ParamType.Object, ParamType.Long),
+            new Mapping(JUF + "ObjDoubleConsumer", "accept", ParamType.Void,
+                    ParamType.Object, ParamType.Double),
+            new Mapping(JUF + "BiFunction", "apply", ParamType.Object,
+                    ParamType.Object, ParamType.Object),
+            new Mapping(JUF + "ToIntBiFunction", "applyAsInt", ParamType.Int,
+                    ParamType.Object, ParamType.Object),
+            new Mapping(JUF + "ToLongBiFunction", "applyAsLong",
+                    ParamType.Long, ParamType.Object, ParamType.Object),
+            new Mapping(JUF + "ToDoubleBiFunction", "applyAsDouble",
+                    ParamType.Double, ParamType.Object, ParamType.Object),
+            new Mapping(JUF + "IntBinaryOperator", "applyAsInt", ParamType.Int,
+                    ParamType.Int, ParamType.Int),
+            new Mapping(JUF + "LongBinaryOperator", "applyAsLong",
+                    ParamType.Long, ParamType.Long, ParamType.Long),
+            new Mapping(JUF + "DoubleBinaryOperator", "applyAsDouble",
+                    ParamType.Double, ParamType.Double, ParamType.Double),
+            new Mapping(JUF + "BiPredicate", "test", ParamType.Boolean,
+                    ParamType.Object, ParamType.Object) };
+
+    /**
+     * Returns the generic parameters of the JDK interface, for a functor:
+     * the Object parameters in order, then the Object return type.
+     */
+    private static String jdkGenerics(final FuncInfo functor) {
+        String result = "";
+        for (int i = 0; i < functor.getArity(); i++) {
+            if (functor.getParamType(i) == ParamType.Object) {
+                result += (result.isEmpty() ? "" : ",")
+                        + functor.getParamTypeName(i);
+            }
+        }
+        if (functor.getReturnType() == ParamType.Object) {
+            result += (result.isEmpty() ? "" : ",") + "R";
+        }
+        return result.isEmpty() ? "" : "<" + result + ">";
+    }
+
+    /** Generates one bridge interface. */
+    private static void generateBridge(final FuncContext context,
+            final String packageName, final Mapping mapping,
+            final FuncInfo functor, final String bridge) {
+        String body = "";
+        if (!mapping.type.startsWith("java.lang.")) {
+            body += "import " + mapping.type + ";\n";
+        }
+        body += "\nimport " + functor.getQualifiedName() + ";\n\n";
+        body += "/**\n * Bridge Interface <code>" + bridge
+                + "</code>, both a <code>" + functor.getName()
+                + "</code>\n * and a <code>" + mapping.type + "</code>.\n";
+        body += " * Generated automatically by " + context.getGenerator()
+                + "\n */\n";
+        body += "@FunctionalInterface\n";
+        body += "public interface " + bridge + functor.getGenerics()
+                + " extends " + functor.getType() + ", "
+                + mapping.simpleName() + jdkGenerics(functor) + " {\n";
+        if (!mapping.method.equals(functor.getMethodName())) {
+            body += "    /** Function <code>" + mapping.method
+                    + "</code>, calls <code>" + functor.getMethodName()
+                    + "</code> */\n";
+            body += "    @Override\n";
+            body += "    default " + functor.getReturnTypeName() + " "
+                    + mapping.method + "(" + finalParams(functor) + ") {\n";
+            body += "        " + (functor.isProc() ? "" : "return ")
+                    + functor.getMethodName() + "("
+                    + functor.getArgumentList() + ");\n";
+            body += "    }\n";
+        }
+        body += "}\n";
+        context.write(packageName, bridge, body);
+    }
+
+    /** Returns the parameter list, with final parameters. */
+    private static String finalParams(final FuncInfo functor) {
+        final String list = functor.getParameterList();
+        return list.isEmpty() ? "" : "final "
+                + list.replace(", ", ", final ");
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        final Set<String> jdkImports = new TreeSet<>();
+        final Set<String> imports = new TreeSet<>();
+        String methods = "";
+        for (final Mapping mapping : MAPPINGS) {
+            if (!context.accept(mapping.returnType, mapping.paramTypes)) {
+                continue;
+            }
+            final FuncInfo functor = context.getFunctor(mapping.returnType,
+                    mapping.paramTypes);
+            final String bridge = BRIDGE_PREFIX + functor.getName();
+            generateBridge(context, packageName, mapping, functor, bridge);
+            if (!mapping.type.startsWith("java.lang.")) {
+                jdkImports.add(mapping.type);
+            }
+            imports.add(functor.getQualifiedName());
+            final String generics = functor.isGeneric() ? functor
+                    .getGenerics() + " " : "";
+            final String jdkType = mapping.simpleName() + jdkGenerics(functor);
+            final String bridgeType = bridge + functor.getGenerics();
+            methods += "\n";
+            methods += "    /** Converts a <code>" + functor.getName()
+                    + "</code> to a <code>" + mapping.simpleName()
+                    + "</code>. */\n";
+            methods += "    public static " + generics + jdkType + " asJdk(final "
+                    + functor.getType() + " f) {\n";
+            methods += "        if (f instanceof " + bridge + ") {\n";
+            methods += "            return (" + bridgeType + ") f;\n";
+            methods += "        }\n";
+            methods += "        return f::" + functor.getMethodName() + ";\n";
+            methods += "    }\n";
+            methods += "\n";
+            methods += "    /** Converts a <code>" + mapping.simpleName()
+                    + "</code> to a <code>" + functor.getName()
+                    + "</code>. */\n";
+            methods += "    public static " + generics + bridgeType
+                    + " fromJdk(final " + jdkType + " f) {\n";
+            methods += "        if (f instanceof " + bridge + ") {\n";
+            methods += "            return (" + bridgeType + ") f;\n";
+            methods += "        }\n";
+            methods += "        return f::" + mapping.method + ";\n";
+            methods += "    }\n";
+        }
+        String body = "";
+        for (final String type : jdkImports) {
+            body += "import " + type + ";\n";
+        }
+        body += "\n";
+        for (final String type : imports) {
+            body += "import " + type + ";\n";
+        }
+        body += "\n/**\n * Converters between the functor interfaces, and "
+                + "java.util.function.\n *\n"
+                + " * The converters return their argument as is, if it is a bridge interface\n"
+                + " * already. Otherwise they return a single wrapper object, without boxing.\n";
+        body += " * Generated automatically by " + context.getGenerator()
+                + "\n */\n";
+        body += "public final class " + ADAPTERS + " {\n";
+        body += "    /** No instances. */\n";
+        body += "    private " + ADAPTERS + "() {\n";
+        body += "        // NOP\n";
+        body += "    }\n";
+        body += methods;
+        body += "}\n";
+        context.write(packageName, ADAPTERS, body);
+    }
+}
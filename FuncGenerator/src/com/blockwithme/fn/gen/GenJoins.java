@@ -0,0 +1,793 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenJoins</code> generates a hash join, and group-by, engine, in the
+ * "join" sub-package, over rows of any type, like the tuples, whose int or
+ * long keys, and values, are extracted with the functors, so that no key
+ * object is created per row.
+ *
+ * For each key type, a hash table (for example IntHashTable) partitions the
+ * rows by the high bits of the hash of their key, into small chained tables,
+ * which can be built in parallel in a ForkJoinPool, and supports inner and
+ * left joins that emit the joined rows through a ProcObjectObject. A
+ * group-by class (IntGroupBy) aggregates int, long or double values per key
+ * into the hash maps of GenCollections, with the functors of Aggregates,
+ * or any other binary functor, optionally with one task per partition.
+ *
+ * GenCollections must also be used, and a group-by aggregation is only
+ * generated if its map is generated, and all the functors it takes are
+ * accepted by the filter.
+ *
+ * @author monster
+ */
+public class GenJoins implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "join";
+
+    /** The key types. */
+    private static final ParamType[] KEY_TYPES = { ParamType.Int,
+            ParamType.Long };
+
+    /** The value types of the aggregations. */
+    private static final ParamType[] VALUE_TYPES = { ParamType.Int,
+            ParamType.Long, ParamType.Double };
+
+    /** The hash table. */
+    private static final String TABLE = ""
+            + "import java.util.Arrays;\n"
+            + "import java.util.Collection;\n"
+            + "import java.util.concurrent.ForkJoinPool;\n"
+            + "import java.util.concurrent.RecursiveAction;\n"
+            + "import java.util.concurrent.RecursiveTask;\n"
+            + "\n"
+            + "%6$s\n"
+            + "/**\n"
+            + " * An immutable hash table of rows, by a %2$s key extracted with a\n"
+            + " * %4$s, for hash joins. The keys are kept in a %2$s[], so no key object\n"
+            + " * is created per row, and all the rows of a key are kept, in their\n"
+            + " * original order. The rows are partitioned by the high bits of the hash of\n"
+            + " * their key, into chained tables of about PARTITION_SIZE rows, which stay\n"
+            + " * in the cache while they are built, and can be built in parallel in a\n"
+            + " * ForkJoinPool. Since it is immutable, it can be probed from many threads.\n"
+            + " * Generated automatically by %3$s\n"
+            + " */\n"
+            + "public final class %1$s<T> {\n"
+            + "    /** The number of rows per partition, that the partitioning aims for. */\n"
+            + "    private static final int PARTITION_SIZE = 1 << 12;\n"
+            + "\n"
+            + "    /** The maximum number of partition bits. */\n"
+            + "    private static final int MAX_PARTITION_BITS = 10;\n"
+            + "\n"
+            + "    /** The number of probe rows per task, in parallel joins. */\n"
+            + "    private static final int PARALLEL_THRESHOLD = 1 << 13;\n"
+            + "\n"
+            + "    /** Builds a range of partitions. */\n"
+            + "    private static final class BuildTask extends RecursiveAction {\n"
+            + "        /** Serialization */\n"
+            + "        private static final long serialVersionUID = 1L;\n"
+            + "\n"
+            + "        /** The table. */\n"
+            + "        private final %1$s<?> table;\n"
+            + "\n"
+            + "        /** The start of each partition, in the rows. */\n"
+            + "        private final int[] starts;\n"
+            + "\n"
+            + "        /** The first partition. */\n"
+            + "        private final int from;\n"
+            + "\n"
+            + "        /** The partition after the last one. */\n"
+            + "        private final int to;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        BuildTask(final %1$s<?> theTable, final int[] theStarts,\n"
+            + "                final int theFrom, final int theTo) {\n"
+            + "            table = theTable;\n"
+            + "            starts = theStarts;\n"
+            + "            from = theFrom;\n"
+            + "            to = theTo;\n"
+            + "        }\n"
+            + "\n"
+            + "        /* (non-Javadoc)\n"
+            + "         * @see java.util.concurrent.RecursiveAction#compute()\n"
+            + "         */\n"
+            + "        @Override\n"
+            + "        protected void compute() {\n"
+            + "            if (to - from == 1) {\n"
+            + "                table.build(from, starts[from], starts[from + 1]);\n"
+            + "            } else {\n"
+            + "                final int mid = (from + to) >>> 1;\n"
+            + "                invokeAll(new BuildTask(table, starts, from, mid),\n"
+            + "                        new BuildTask(table, starts, mid, to));\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Joins a range of probe rows. */\n"
+            + "    private static final class JoinTask<T, P> extends RecursiveTask<Long> {\n"
+            + "        /** Serialization */\n"
+            + "        private static final long serialVersionUID = 1L;\n"
+            + "\n"
+            + "        /** The table. */\n"
+            + "        private final %1$s<T> table;\n"
+            + "\n"
+            + "        /** The probe rows. */\n"
+            + "        private final Object[] probe;\n"
+            + "\n"
+            + "        /** The first probe row. */\n"
+            + "        private final int from;\n"
+            + "\n"
+            + "        /** The probe row after the last one. */\n"
+            + "        private final int to;\n"
+            + "\n"
+            + "        /** The key of the probe rows. */\n"
+            + "        private final %4$s<? super P> key;\n"
+            + "\n"
+            + "        /** Receives the joined rows. */\n"
+            + "        private final %7$s<? super P, ? super T> emit;\n"
+            + "\n"
+            + "        /** True, for a left join. */\n"
+            + "        private final boolean left;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        JoinTask(final %1$s<T> theTable, final Object[] theProbe,\n"
+            + "                final int theFrom, final int theTo,\n"
+            + "                final %4$s<? super P> theKey,\n"
+            + "                final %7$s<? super P, ? super T> theEmit,\n"
+            + "                final boolean theLeft) {\n"
+            + "            table = theTable;\n"
+            + "            probe = theProbe;\n"
+            + "            from = theFrom;\n"
+            + "            to = theTo;\n"
+            + "            key = theKey;\n"
+            + "            emit = theEmit;\n"
+            + "            left = theLeft;\n"
+            + "        }\n"
+            + "\n"
+            + "        /* (non-Javadoc)\n"
+            + "         * @see java.util.concurrent.RecursiveTask#compute()\n"
+            + "         */\n"
+            + "        @Override\n"
+            + "        protected Long compute() {\n"
+            + "            if (to - from <= PARALLEL_THRESHOLD) {\n"
+            + "                return table.join(probe, from, to, key, emit, left);\n"
+            + "            }\n"
+            + "            final int mid = (from + to) >>> 1;\n"
+            + "            final JoinTask<T, P> right = new JoinTask<T, P>(table, probe, mid,\n"
+            + "                    to, key, emit, left);\n"
+            + "            right.fork();\n"
+            + "            final long result = new JoinTask<T, P>(table, probe, from, mid,\n"
+            + "                    key, emit, left).compute();\n"
+            + "            return result + right.join();\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** The rows, grouped by partition. */\n"
+            + "    private final Object[] rows;\n"
+            + "\n"
+            + "    /** The keys of the rows. */\n"
+            + "    private final %2$s[] keys;\n"
+            + "\n"
+            + "    /** The next row of the same bucket, or -1. */\n"
+            + "    private final int[] next;\n"
+            + "\n"
+            + "    /** The first row of each bucket, or -1, per partition. */\n"
+            + "    private final int[][] buckets;\n"
+            + "\n"
+            + "    /** The number of partition bits. */\n"
+            + "    private final int partitionBits;\n"
+            + "\n"
+            + "    /** Builds the table sequentially. */\n"
+            + "    public %1$s(final Collection<? extends T> rows,\n"
+            + "            final %4$s<? super T> key) {\n"
+            + "        this(rows, key, null);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Builds the table, with the partitions built in parallel in the pool,\n"
+            + "     * or sequentially if pool is null. The key functor is only called from\n"
+            + "     * the current thread.\n"
+            + "     */\n"
+            + "    @SuppressWarnings(\"unchecked\")\n"
+            + "    public %1$s(final Collection<? extends T> rows,\n"
+            + "            final %4$s<? super T> key, final ForkJoinPool pool) {\n"
+            + "        checkNotNull(rows, \"rows\");\n"
+            + "        checkNotNull(key, \"key\");\n"
+            + "        final Object[] input = rows.toArray();\n"
+            + "        final int n = input.length;\n"
+            + "        partitionBits = partitionBits(n);\n"
+            + "        final int partitions = 1 << partitionBits;\n"
+            + "        final %2$s[] inputKeys = new %2$s[n];\n"
+            + "        final int[] starts = new int[partitions + 1];\n"
+            + "        for (int i = 0; i < n; i++) {\n"
+            + "            inputKeys[i] = key.%5$s((T) input[i]);\n"
+            + "            starts[partition(inputKeys[i]) + 1]++;\n"
+            + "        }\n"
+            + "        for (int p = 0; p < partitions; p++) {\n"
+            + "            starts[p + 1] += starts[p];\n"
+            + "        }\n"
+            + "        this.rows = new Object[n];\n"
+            + "        keys = new %2$s[n];\n"
+            + "        final int[] fill = Arrays.copyOf(starts, partitions);\n"
+            + "        for (int i = 0; i < n; i++) {\n"
+            + "            final int j = fill[partition(inputKeys[i])]++;\n"
+            + "            this.rows[j] = input[i];\n"
+            + "            keys[j] = inputKeys[i];\n"
+            + "        }\n"
+            + "        next = new int[n];\n"
+            + "        buckets = new int[partitions][];\n"
+            + "        if ((pool == null) || (partitions == 1)) {\n"
+            + "            for (int p = 0; p < partitions; p++) {\n"
+            + "                build(p, starts[p], starts[p + 1]);\n"
+            + "            }\n"
+            + "        } else {\n"
+            + "            pool.invoke(new BuildTask(this, starts, 0, partitions));\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Throws an IllegalArgumentException, if value is null. */\n"
+            + "    private static void checkNotNull(final Object value, final String name) {\n"
+            + "        if (value == null) {\n"
+            + "            throw new IllegalArgumentException(name + \" is null\");\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the number of partition bits, for n rows. */\n"
+            + "    private static int partitionBits(final int n) {\n"
+            + "        int result = 0;\n"
+            + "        while ((result < MAX_PARTITION_BITS)\n"
+            + "                && ((PARTITION_SIZE << result) < n)) {\n"
+            + "            result++;\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the partition of a key, from the high bits of a second hash. */\n"
+            + "    private int partition(final %2$s key) {\n"
+            + "        // Shifting by 64 would be a NOP, so we shift in two steps.\n"
+            + "        return (int) ((key * 0xC2B2AE3D27D4EB4FL) >>> 1 >>> (63 - partitionBits));\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the hash of a key. */\n"
+            + "    private static int hash(final %2$s key) {\n"
+            + "        final long h = key * 0x9E3779B97F4A7C15L;\n"
+            + "        return (int) (h ^ (h >>> 32));\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Builds the chained table of a partition, from the rows [from, to). */\n"
+            + "    private void build(final int partition, final int from, final int to) {\n"
+            + "        int size = 1;\n"
+            + "        while (size < to - from) {\n"
+            + "            size <<= 1;\n"
+            + "        }\n"
+            + "        final int[] heads = new int[size];\n"
+            + "        Arrays.fill(heads, -1);\n"
+            + "        final int mask = size - 1;\n"
+            + "        // Backward, so that the chains keep the order of the rows.\n"
+            + "        for (int j = to - 1; j >= from; j--) {\n"
+            + "            final int b = hash(keys[j]) & mask;\n"
+            + "            next[j] = heads[b];\n"
+            + "            heads[b] = j;\n"
+            + "        }\n"
+            + "        buckets[partition] = heads;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the first row of the key, or -1. */\n"
+            + "    private int first(final %2$s key) {\n"
+            + "        final int[] heads = buckets[partition(key)];\n"
+            + "        int j = heads[hash(key) & (heads.length - 1)];\n"
+            + "        while ((j != -1) && (keys[j] != key)) {\n"
+            + "            j = next[j];\n"
+            + "        }\n"
+            + "        return j;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the row after j, with the same key, or -1. */\n"
+            + "    private int following(final int j) {\n"
+            + "        final %2$s key = keys[j];\n"
+            + "        int result = next[j];\n"
+            + "        while ((result != -1) && (keys[result] != key)) {\n"
+            + "            result = next[result];\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the number of rows. */\n"
+            + "    public int size() {\n"
+            + "        return rows.length;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the number of rows with the given key. */\n"
+            + "    public int count(final %2$s key) {\n"
+            + "        int result = 0;\n"
+            + "        for (int j = first(key); j != -1; j = following(j)) {\n"
+            + "            result++;\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Calls proc with the rows of the given key, in their original order. */\n"
+            + "    @SuppressWarnings(\"unchecked\")\n"
+            + "    public void forEach(final %2$s key, final %8$s<? super T> proc) {\n"
+            + "        checkNotNull(proc, \"proc\");\n"
+            + "        for (int j = first(key); j != -1; j = following(j)) {\n"
+            + "            proc.%5$s((T) rows[j]);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Joins the probe rows [from, to), and returns the number of emitted pairs. */\n"
+            + "    @SuppressWarnings(\"unchecked\")\n"
+            + "    <P> long join(final Object[] probe, final int from, final int to,\n"
+            + "            final %4$s<? super P> key,\n"
+            + "            final %7$s<? super P, ? super T> emit, final boolean left) {\n"
+            + "        long result = 0;\n"
+            + "        for (int i = from; i < to; i++) {\n"
+            + "            final P row = (P) probe[i];\n"
+            + "            int j = first(key.%5$s(row));\n"
+            + "            if (j == -1) {\n"
+            + "                if (left) {\n"
+            + "                    emit.%5$s(row, null);\n"
+            + "                    result++;\n"
+            + "                }\n"
+            + "            } else {\n"
+            + "                do {\n"
+            + "                    emit.%5$s(row, (T) rows[j]);\n"
+            + "                    result++;\n"
+            + "                    j = following(j);\n"
+            + "                } while (j != -1);\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Joins the probe rows, in parallel in the pool, or sequentially if pool is null. */\n"
+            + "    private <P> long join(final Collection<? extends P> probe,\n"
+            + "            final %4$s<? super P> key,\n"
+            + "            final %7$s<? super P, ? super T> emit, final boolean left,\n"
+            + "            final ForkJoinPool pool) {\n"
+            + "        checkNotNull(probe, \"probe\");\n"
+            + "        checkNotNull(key, \"key\");\n"
+            + "        checkNotNull(emit, \"emit\");\n"
+            + "        final Object[] input = probe.toArray();\n"
+            + "        if ((pool == null) || (input.length <= PARALLEL_THRESHOLD)) {\n"
+            + "            return join(input, 0, input.length, key, emit, left);\n"
+            + "        }\n"
+            + "        return pool.invoke(new JoinTask<T, P>(this, input, 0, input.length,\n"
+            + "                key, emit, left));\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Inner join: calls emit with each probe row, and each row of the same\n"
+            + "     * key, in order. Returns the number of emitted pairs.\n"
+            + "     */\n"
+            + "    public <P> long innerJoin(final Collection<? extends P> probe,\n"
+            + "            final %4$s<? super P> key,\n"
+            + "            final %7$s<? super P, ? super T> emit) {\n"
+            + "        return join(probe, key, emit, false, null);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Inner join, in parallel in the pool: emit, and key, are called\n"
+            + "     * concurrently, in no particular order, and must be thread-safe.\n"
+            + "     */\n"
+            + "    public <P> long innerJoin(final Collection<? extends P> probe,\n"
+            + "            final %4$s<? super P> key,\n"
+            + "            final %7$s<? super P, ? super T> emit, final ForkJoinPool pool) {\n"
+            + "        checkNotNull(pool, \"pool\");\n"
+            + "        return join(probe, key, emit, false, pool);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Left join: like innerJoin(), but a probe row without any row of the\n"
+            + "     * same key is emitted once, with null. Returns the number of emitted pairs.\n"
+            + "     */\n"
+            + "    public <P> long leftJoin(final Collection<? extends P> probe,\n"
+            + "            final %4$s<? super P> key,\n"
+            + "            final %7$s<? super P, ? super T> emit) {\n"
+            + "        return join(probe, key, emit, true, null);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Left join, in parallel in the pool: emit, and key, are called\n"
+            + "     * concurrently, in no particular order, and must be thread-safe.\n"
+            + "     */\n"
+            + "    public <P> long leftJoin(final Collection<? extends P> probe,\n"
+            + "            final %4$s<? super P> key,\n"
+            + "            final %7$s<? super P, ? super T> emit, final ForkJoinPool pool) {\n"
+            + "        checkNotNull(pool, \"pool\");\n"
+            + "        return join(probe, key, emit, true, pool);\n"
+            + "    }\n"
+            + "}\n";
+
+    /** The group-by utility class. */
+    private static final String GROUP_BY = ""
+            + "import java.util.Collection;\n"
+            + "import java.util.concurrent.ForkJoinPool;\n"
+            + "import java.util.concurrent.RecursiveAction;\n"
+            + "\n"
+            + "%6$s\n"
+            + "/**\n"
+            + " * Group-by over rows, by a %2$s key extracted with a %4$s, with primitive\n"
+            + " * aggregations: the values extracted from the rows are combined per key,\n"
+            + " * for example with the sums, minimums and maximums of Aggregates, into\n"
+            + " * the primitive hash maps of the collections package. The key of each\n"
+            + " * row is extracted once, into a %2$s[], so no key object is created per\n"
+            + " * row. In parallel, the rows are partitioned by the high bits of the\n"
+            + " * hash of their key, and each partition is aggregated by a different\n"
+            + " * task; the rows of a key are still combined in their original order.\n"
+            + " * Generated automatically by %3$s\n"
+            + " */\n"
+            + "public final class %1$s {\n"
+            + "    /** The number of rows per partition, that the partitioning aims for. */\n"
+            + "    private static final int PARTITION_SIZE = 1 << 12;\n"
+            + "\n"
+            + "    /** The maximum number of partition bits. */\n"
+            + "    private static final int MAX_PARTITION_BITS = 10;\n"
+            + "\n"
+            + "    /** Below this number of rows, the aggregation is sequential. */\n"
+            + "    private static final int PARALLEL_THRESHOLD = 1 << 13;\n"
+            + "\n"
+            + "    /** The rows, grouped by the partition of their key. */\n"
+            + "    private static final class Partitions {\n"
+            + "        /** The start of each partition, in rows. */\n"
+            + "        final int[] starts;\n"
+            + "\n"
+            + "        /** The row indexes, grouped by partition. */\n"
+            + "        final int[] rows;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        Partitions(final %2$s[] keys) {\n"
+            + "            int bits = 0;\n"
+            + "            while ((bits < MAX_PARTITION_BITS)\n"
+            + "                    && ((PARTITION_SIZE << bits) < keys.length)) {\n"
+            + "                bits++;\n"
+            + "            }\n"
+            + "            final int count = 1 << bits;\n"
+            + "            starts = new int[count + 1];\n"
+            + "            for (final %2$s key : keys) {\n"
+            + "                starts[partition(key, bits) + 1]++;\n"
+            + "            }\n"
+            + "            for (int p = 0; p < count; p++) {\n"
+            + "                starts[p + 1] += starts[p];\n"
+            + "            }\n"
+            + "            rows = new int[keys.length];\n"
+            + "            final int[] fill = starts.clone();\n"
+            + "            for (int i = 0; i < keys.length; i++) {\n"
+            + "                rows[fill[partition(keys[i], bits)]++] = i;\n"
+            + "            }\n"
+            + "        }\n"
+            + "\n"
+            + "        /** Returns the number of partitions. */\n"
+            + "        int count() {\n"
+            + "            return starts.length - 1;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Runs a functor for each partition of a range, in parallel. */\n"
+            + "    private static final class PartitionTask extends RecursiveAction {\n"
+            + "        /** Serialization */\n"
+            + "        private static final long serialVersionUID = 1L;\n"
+            + "\n"
+            + "        /** Called with each partition. */\n"
+            + "        private final %7$s body;\n"
+            + "\n"
+            + "        /** The first partition. */\n"
+            + "        private final int from;\n"
+            + "\n"
+            + "        /** The partition after the last one. */\n"
+            + "        private final int to;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        PartitionTask(final %7$s theBody, final int theFrom, final int theTo) {\n"
+            + "            body = theBody;\n"
+            + "            from = theFrom;\n"
+            + "            to = theTo;\n"
+            + "        }\n"
+            + "\n"
+            + "        /* (non-Javadoc)\n"
+            + "         * @see java.util.concurrent.RecursiveAction#compute()\n"
+            + "         */\n"
+            + "        @Override\n"
+            + "        protected void compute() {\n"
+            + "            if (to - from == 1) {\n"
+            + "                body.%5$s(from);\n"
+            + "            } else {\n"
+            + "                final int mid = (from + to) >>> 1;\n"
+            + "                invokeAll(new PartitionTask(body, from, mid),\n"
+            + "                        new PartitionTask(body, mid, to));\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** No instances. */\n"
+            + "    private %1$s() {\n"
+            + "        // NOP\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Throws an IllegalArgumentException, if value is null. */\n"
+            + "    private static void checkNotNull(final Object value, final String name) {\n"
+            + "        if (value == null) {\n"
+            + "            throw new IllegalArgumentException(name + \" is null\");\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the partition of a key, from the high bits of a hash. */\n"
+            + "    private static int partition(final %2$s key, final int bits) {\n"
+            + "        // Shifting by 64 would be a NOP, so we shift in two steps.\n"
+            + "        return (int) ((key * 0xC2B2AE3D27D4EB4FL) >>> 1 >>> (63 - bits));\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Extracts the keys of the rows. */\n"
+            + "    @SuppressWarnings(\"unchecked\")\n"
+            + "    private static <T> %2$s[] keys(final Object[] rows,\n"
+            + "            final %4$s<? super T> key) {\n"
+            + "        final %2$s[] result = new %2$s[rows.length];\n"
+            + "        for (int i = 0; i < rows.length; i++) {\n"
+            + "            result[i] = key.%5$s((T) rows[i]);\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "%8$s}\n";
+
+    /** The aggregations of one value type. */
+    private static final String AGGREGATE_SECTION = ""
+            + "\n"
+            + "    /**\n"
+            + "     * Aggregates the %3$s values of the rows, by key: the first value of a\n"
+            + "     * key is kept, and the next ones are combined with it by combine, in\n"
+            + "     * the order of the rows, like with %1$s.merge().\n"
+            + "     */\n"
+            + "    public static <T> %1$s aggregate%4$s(final Collection<? extends T> rows,\n"
+            + "            final %8$s<? super T> key, final %5$s<? super T> value,\n"
+            + "            final %6$s combine) {\n"
+            + "        return aggregate%4$s(rows, key, value, combine, null);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Like aggregate%4$s(), with the partitions aggregated in parallel in\n"
+            + "     * the pool, or sequentially if pool is null. value, and combine, are\n"
+            + "     * then called concurrently, and must be thread-safe.\n"
+            + "     */\n"
+            + "    @SuppressWarnings(\"unchecked\")\n"
+            + "    public static <T> %1$s aggregate%4$s(final Collection<? extends T> rows,\n"
+            + "            final %8$s<? super T> key, final %5$s<? super T> value,\n"
+            + "            final %6$s combine, final ForkJoinPool pool) {\n"
+            + "        checkNotNull(rows, \"rows\");\n"
+            + "        checkNotNull(key, \"key\");\n"
+            + "        checkNotNull(value, \"value\");\n"
+            + "        checkNotNull(combine, \"combine\");\n"
+            + "        final Object[] input = rows.toArray();\n"
+            + "        final %2$s[] keys = keys(input, key);\n"
+            + "        if ((pool == null) || (input.length <= PARALLEL_THRESHOLD)) {\n"
+            + "            final %1$s result = new %1$s();\n"
+            + "            for (int i = 0; i < input.length; i++) {\n"
+            + "                result.merge(keys[i], value.%7$s((T) input[i]), combine);\n"
+            + "            }\n"
+            + "            return result;\n"
+            + "        }\n"
+            + "        final Partitions partitions = new Partitions(keys);\n"
+            + "        final %1$s[] maps = new %1$s[partitions.count()];\n"
+            + "        pool.invoke(new PartitionTask(new %10$s() {\n"
+            + "            @Override\n"
+            + "            public void %7$s(final int p0) {\n"
+            + "                final %1$s map = new %1$s();\n"
+            + "                for (int j = partitions.starts[p0]; j < partitions.starts[p0 + 1]; j++) {\n"
+            + "                    final int i = partitions.rows[j];\n"
+            + "                    map.merge(keys[i], value.%7$s((T) input[i]), combine);\n"
+            + "                }\n"
+            + "                maps[p0] = map;\n"
+            + "            }\n"
+            + "        }, 0, maps.length));\n"
+            + "        // The partitions have distinct keys.\n"
+            + "        int size = 0;\n"
+            + "        for (final %1$s map : maps) {\n"
+            + "            size += map.size();\n"
+            + "        }\n"
+            + "        final %1$s result = new %1$s(size);\n"
+            + "        final %9$s put = new %9$s() {\n"
+            + "            @Override\n"
+            + "            public void %7$s(final %2$s p0, final %3$s p1) {\n"
+            + "                result.put(p0, p1);\n"
+            + "            }\n"
+            + "        };\n"
+            + "        for (final %1$s map : maps) {\n"
+            + "            map.forEach(put);\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n";
+
+    /** The counting, with the int aggregations. */
+    private static final String COUNT = ""
+            + "\n"
+            + "    /** Returns one, for any row. */\n"
+            + "    private static final %2$s<Object> ONE = new %2$s<Object>() {\n"
+            + "        @Override\n"
+            + "        public int %3$s(final Object p0) {\n"
+            + "            return 1;\n"
+            + "        }\n"
+            + "    };\n"
+            + "\n"
+            + "    /** Counts the rows, by key. */\n"
+            + "    public static <T> %1$s count(final Collection<? extends T> rows,\n"
+            + "            final %4$s<? super T> key) {\n"
+            + "        return aggregateInt(rows, key, ONE, Aggregates.INT_SUM, null);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Counts the rows, by key, in parallel in the pool, or sequentially if pool is null. */\n"
+            + "    public static <T> %1$s count(final Collection<? extends T> rows,\n"
+            + "            final %4$s<? super T> key, final ForkJoinPool pool) {\n"
+            + "        return aggregateInt(rows, key, ONE, Aggregates.INT_SUM, pool);\n"
+            + "    }\n";
+
+    /** The aggregation functors class. */
+    private static final String AGGREGATES = ""
+            + "%4$s\n"
+            + "/**\n"
+            + " * The usual primitive aggregations, as functors, for the group-by\n"
+            + " * classes: sums, minimums and maximums.\n"
+            + " * Generated automatically by %2$s\n"
+            + " */\n"
+            + "public final class %1$s {\n"
+            + "%3$s\n"
+            + "    /** No instances. */\n"
+            + "    private %1$s() {\n"
+            + "        // NOP\n"
+            + "    }\n"
+            + "}\n";
+
+    /** One aggregation functor. */
+    private static final String AGGREGATE = ""
+            + "    /** The %5$s of two %2$s values. */\n"
+            + "    public static final %3$s %1$s = new %3$s() {\n"
+            + "        @Override\n"
+            + "        public %2$s %4$s(final %2$s p0, final %2$s p1) {\n"
+            + "            return %6$s;\n"
+            + "        }\n"
+            + "    };\n"
+            + "\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        if (!context.getThrows().isEmpty()) {
+            throw new IllegalStateException(getClass().getName()
+                    + " requires functors without throws clause");
+        }
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        final String collections = context.getPackageName() + "."
+                + GenCollections.SUB_PACKAGE + ".";
+        final String method = context.getMethodName();
+        final FuncInfo proc = functor(context, ParamType.Void,
+                ParamType.Object);
+        final FuncInfo emit = functor(context, ParamType.Void,
+                ParamType.Object, ParamType.Object);
+        final FuncInfo partitionProc = functor(context, ParamType.Void,
+                ParamType.Int);
+        final StringBuilder aggregates = new StringBuilder();
+        final Set<String> aggregatesImports = new TreeSet<>();
+        for (final ParamType value : VALUE_TYPES) {
+            final FuncInfo combine = functor(context, value, value, value);
+            if (combine != null) {
+                final String typeName = FuncInfo.typeName(value, 'R');
+                final String prefix = typeName.toUpperCase(Locale.ROOT);
+                aggregates.append(String.format(AGGREGATE, prefix + "_SUM",
+                        typeName, combine.getName(), method, "sum",
+                        "p0 + p1"));
+                aggregates.append(String.format(AGGREGATE, prefix + "_MIN",
+                        typeName, combine.getName(), method, "minimum",
+                        "Math.min(p0, p1)"));
+                aggregates.append(String.format(AGGREGATE, prefix + "_MAX",
+                        typeName, combine.getName(), method, "maximum",
+                        "Math.max(p0, p1)"));
+                aggregatesImports.add(combine.getQualifiedName());
+            }
+        }
+        if (aggregates.length() > 0) {
+            context.write(packageName, "Aggregates", String.format(
+                    AGGREGATES, "Aggregates", context.getGenerator(),
+                    aggregates, imports(aggregatesImports)));
+        }
+        for (final ParamType key : KEY_TYPES) {
+            final FuncInfo keyFunctor = functor(context, key,
+                    ParamType.Object);
+            if (keyFunctor == null) {
+                continue;
+            }
+            final String label = context.getLabel(key);
+            final String keyType = FuncInfo.typeName(key, 'R');
+            if ((proc != null) && (emit != null)) {
+                final Set<String> imports = new TreeSet<>();
+                imports.add(keyFunctor.getQualifiedName());
+                imports.add(proc.getQualifiedName());
+                imports.add(emit.getQualifiedName());
+                context.write(packageName, label + "HashTable", String
+                        .format(TABLE, label + "HashTable", keyType,
+                                context.getGenerator(), keyFunctor.getName(),
+                                method, imports(imports), emit.getName(),
+                                proc.getName()));
+            }
+            if (partitionProc == null) {
+                continue;
+            }
+            final StringBuilder sections = new StringBuilder();
+            final Set<String> imports = new TreeSet<>();
+            for (final ParamType value : VALUE_TYPES) {
+                final FuncInfo valueFunctor = functor(context, value,
+                        ParamType.Object);
+                final FuncInfo combine = functor(context, value, value,
+                        value);
+                final FuncInfo put = functor(context, ParamType.Void, key,
+                        value);
+                if ((valueFunctor == null) || (combine == null)
+                        || (put == null)
+                        || !GenCollections.acceptsMap(context, key, value)) {
+                    continue;
+                }
+                final String map = label + context.getLabel(value)
+                        + "HashMap";
+                sections.append(String.format(AGGREGATE_SECTION, map,
+                        keyType, FuncInfo.typeName(value, 'R'),
+                        context.getLabel(value), valueFunctor.getName(),
+                        combine.getName(), method, keyFunctor.getName(),
+                        put.getName(), partitionProc.getName()));
+                if (value == ParamType.Int) {
+                    sections.append(String.format(COUNT, map,
+                            valueFunctor.getName(), method,
+                            keyFunctor.getName()));
+                }
+                imports.add(collections + map);
+                imports.add(valueFunctor.getQualifiedName());
+                imports.add(combine.getQualifiedName());
+                imports.add(put.getQualifiedName());
+            }
+            if (sections.length() > 0) {
+                imports.add(keyFunctor.getQualifiedName());
+                imports.add(partitionProc.getQualifiedName());
+                context.write(packageName, label + "GroupBy", String.format(
+                        GROUP_BY, label + "GroupBy", keyType,
+                        context.getGenerator(), keyFunctor.getName(), method,
+                        imports(imports), partitionProc.getName(), sections));
+            }
+        }
+    }
+
+    /** Returns the functor with the given signature, or null if it is not accepted. */
+    private static FuncInfo functor(final FuncContext context,
+            final ParamType returnType, final ParamType... paramTypes) {
+        return context.accept(returnType, paramTypes) ? context.getFunctor(
+                returnType, paramTypes) : null;
+    }
+
+    /** Returns the import statements of the given qualified names. */
+    private static String imports(final Set<String> names) {
+        final StringBuilder buf = new StringBuilder();
+        for (final String name : names) {
+            buf.append("import ").append(name).append(";\n");
+        }
+        return buf.toString();
+    }
+}
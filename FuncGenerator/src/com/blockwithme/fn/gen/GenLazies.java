@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenLazies</code> generates lazily computed values, in the "lazy"
+ * sub-package: one class per return type, named after its label (for
+ * example LazyInt), wrapping the matching functor without parameters.
+ *
+ * The value is computed once, on first use, while holding the lock of the
+ * lazy value. It is then stored in an immutable holder, referenced by a
+ * plain field, so that reading it costs no synchronization nor volatile
+ * read: the final field of the holder guarantees that the value is seen
+ * completely initialized. reset() discards the value, so that it is
+ * computed again.
+ *
+ * @author monster
+ */
+public class GenLazies implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "lazy";
+
+    /** The prefix of the generated classes. */
+    public static final String PREFIX = "Lazy";
+
+    /** The value types. */
+    private static final ParamType[] VALUE_TYPES = { ParamType.Boolean,
+            ParamType.Byte, ParamType.Char, ParamType.Short, ParamType.Int,
+            ParamType.Long, ParamType.Float, ParamType.Double,
+            ParamType.Object };
+
+    /** The class. */
+    private static final String CLASS = ""
+            + "import %1$s;\n"
+            + "\n"
+            + "/**\n"
+            + " * A lazily computed <code>%2$s</code>, computed on first use by calling\n"
+            + " * %3$s.%8$s().\n"
+            + " *\n"
+            + " * After the first computation, get() is a plain field read. reset()\n"
+            + " * discards the value; other threads may still see the previous value\n"
+            + " * until they next synchronize.\n"
+            + " * Generated automatically by %4$s\n"
+            + " */\n"
+            + "public final class %5$s%6$s implements %3$s%6$s {\n"
+            + "\n"
+            + "    /** Holds the value, in a final field, for safe publication. */\n"
+            + "    private static final class Holder%6$s {\n"
+            + "        /** The value. */\n"
+            + "        final %2$s value;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        Holder(final %2$s theValue) {\n"
+            + "            value = theValue;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** The functor computing the value. */\n"
+            + "    private final %3$s%6$s function;\n"
+            + "\n"
+            + "    /** The holder of the value, or null if not computed. Not volatile. */\n"
+            + "    private Holder%6$s holder;\n"
+            + "\n"
+            + "    /** Constructor */\n"
+            + "    public %5$s(final %3$s%6$s theFunction) {\n"
+            + "        if (theFunction == null) {\n"
+            + "            throw new IllegalArgumentException(\"function is null\");\n"
+            + "        }\n"
+            + "        function = theFunction;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the value, computing it on first use. */\n"
+            + "    public %2$s get()%7$s {\n"
+            + "        final Holder%6$s h = holder;\n"
+            + "        return (h != null) ? h.value : compute();\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Computes the value, unless another thread just did. */\n"
+            + "    private synchronized %2$s compute()%7$s {\n"
+            + "        Holder%6$s h = holder;\n"
+            + "        if (h == null) {\n"
+            + "            h = new Holder%6$s(function.%8$s());\n"
+            + "            holder = h;\n"
+            + "        }\n"
+            + "        return h.value;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns true, if the value is computed. */\n"
+            + "    public boolean isComputed() {\n"
+            + "        return holder != null;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Discards the value, so that the next get() computes it again. */\n"
+            + "    public synchronized void reset() {\n"
+            + "        holder = null;\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see %1$s#%8$s()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public %2$s %8$s()%7$s {\n"
+            + "        return get();\n"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#toString()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "        final Holder%6$s h = holder;\n"
+            + "        return \"%5$s(\" + ((h == null) ? \"?\" : String.valueOf(h.value))\n"
+            + "                + \")\";\n"
+            + "    }\n"
+            + "}\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        for (final ParamType type : VALUE_TYPES) {
+            if (!context.accept(type)) {
+                continue;
+            }
+            final FuncInfo f = context.getFunctor(type);
+            final String name = PREFIX + context.getLabel(type);
+            final String body = String.format(CLASS, f.getQualifiedName(),
+                    f.getReturnTypeName(), f.getName(), context.getGenerator(),
+                    name, f.getGenerics(), f.getThrows(), f.getMethodName());
+            context.write(packageName, name, body);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenMemoizers</code> generates memoizing decorators for the functions
+ * whose parameters and result are primitive, in the "memo" sub-package.
+ *
+ * There is one class per parameter list, named after the labels of the
+ * parameters (for example IntLongMemoizers), with memoize() and
+ * memoizeConcurrent() for every result type. The parameters are packed in
+ * one long, or in two longs if they need more than 64 bits; parameter lists
+ * needing more than 128 bits are skipped. The results are kept in bounded
+ * MemoTables, with CLOCK eviction. The decorators extend
+ * com.blockwithme.fn.util.Memoizer, which gives the hit and miss counters.
+ *
+ * @author monster
+ */
+public class GenMemoizers implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "memo";
+
+    /** The suffix of the generated classes. */
+    public static final String SUFFIX = "Memoizers";
+
+    /** The primitive types, except void. */
+    private static final ParamType[] PRIMITIVE_TYPES = { ParamType.Boolean,
+            ParamType.Byte, ParamType.Char, ParamType.Short, ParamType.Int,
+            ParamType.Long, ParamType.Float, ParamType.Double };
+
+    /** The Memoizer class. */
+    private static final String MEMOIZER = "com.blockwithme.fn.util.Memoizer";
+
+    /** The MemoTable class. */
+    private static final String MEMO_TABLE = "com.blockwithme.fn.util.MemoTable";
+
+    /** A decorator class. */
+    private static final String DECORATOR = "\n"
+            + "    /** Memoizes a %1$s. */\n"
+            + "    private static final class Memo%1$s extends Memoizer implements\n"
+            + "            %1$s {\n"
+            + "        /** The decorated function. */\n"
+            + "        private final %1$s f;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        Memo%1$s(final %1$s theF, final int maxSize,\n"
+            + "                final boolean concurrent) {\n"
+            + "            super(maxSize, concurrent, WIDE);\n"
+            + "            if (theF == null) {\n"
+            + "                throw new IllegalArgumentException(\"f is null\");\n"
+            + "            }\n"
+            + "            f = theF;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public %2$s %3$s(%4$s)%5$s {\n"
+            + "            final long k0 = %6$s;\n"
+            + "            final long k1 = %7$s;\n"
+            + "            final MemoTable table = table(k0, k1);\n"
+            + "            table.lock();\n"
+            + "            try {\n"
+            + "                final int slot = table.find(k0, k1);\n"
+            + "                if (slot >= 0) {\n"
+            + "                    return %8$s;\n"
+            + "                }\n"
+            + "            } finally {\n"
+            + "                table.unlock();\n"
+            + "            }\n"
+            + "            final %2$s result = f.%3$s(%9$s);\n"
+            + "            table.lock();\n"
+            + "            try {\n"
+            + "                table.put(k0, k1, %10$s);\n"
+            + "            } finally {\n"
+            + "                table.unlock();\n"
+            + "            }\n"
+            + "            return result;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns a decorator that remembers at most <code>maxSize</code>\n"
+            + "     * results of <code>f</code>. It is not thread-safe.\n"
+            + "     */\n"
+            + "    public static %1$s memoize(final %1$s f, final int maxSize) {\n"
+            + "        return new Memo%1$s(f, maxSize, false);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns a thread-safe decorator that remembers at most\n"
+            + "     * <code>maxSize</code> results of <code>f</code>.\n"
+            + "     */\n"
+            + "    public static %1$s memoizeConcurrent(final %1$s f,\n"
+            + "            final int maxSize) {\n"
+            + "        return new Memo%1$s(f, maxSize, true);\n"
+            + "    }\n";
+
+    /** The context. */
+    private FuncContext context;
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext theContext) {
+        context = theContext;
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        final int min = Math.max(1, context.getMinimumNumberOfArgs());
+        for (int arity = min; arity <= context.getMaximumNumberOfArgs(); arity++) {
+            final int[] indexes = new int[arity];
+            boolean again = true;
+            while (again) {
+                final ParamType[] params = new ParamType[arity];
+                for (int i = 0; i < arity; i++) {
+                    params[i] = PRIMITIVE_TYPES[indexes[i]];
+                }
+                generateClass(packageName, params);
+                again = false;
+                for (int i = arity - 1; i >= 0; i--) {
+                    if (++indexes[i] < PRIMITIVE_TYPES.length) {
+                        again = true;
+                        break;
+                    }
+                    indexes[i] = 0;
+                }
+            }
+        }
+    }
+
+    /** Returns the number of bits of a type. */
+    private static int bits(final ParamType type) {
+        switch (type) {
+        case Boolean:
+            return 1;
+        case Byte:
+            return 8;
+        case Char:
+        case Short:
+            return 16;
+        case Int:
+        case Float:
+            return 32;
+        case Long:
+        case Double:
+            return 64;
+        default:
+            throw new IllegalArgumentException(String.valueOf(type));
+        }
+    }
+
+    /** Returns the expression of a parameter, as the low bits of a long. */
+    private static String toBits(final ParamType type, final String param) {
+        switch (type) {
+        case Boolean:
+            return "(" + param + " ? 1L : 0L)";
+        case Byte:
+            return "(" + param + " & 0xFFL)";
+        case Char:
+            return "(long) " + param;
+        case Short:
+            return "(" + param + " & 0xFFFFL)";
+        case Int:
+            return "(" + param + " & 0xFFFFFFFFL)";
+        case Float:
+            return "(Float.floatToIntBits(" + param + ") & 0xFFFFFFFFL)";
+        case Long:
+            return param;
+        case Double:
+            return "Double.doubleToLongBits(" + param + ")";
+        default:
+            throw new IllegalArgumentException(String.valueOf(type));
+        }
+    }
+
+    /** Returns the expression that stores a result in a long. */
+    private static String encode(final ParamType type, final String value) {
+        switch (type) {
+        case Boolean:
+            return "(" + value + " ? 1L : 0L)";
+        case Float:
+            return "Float.floatToRawIntBits(" + value + ")";
+        case Double:
+            return "Double.doubleToRawLongBits(" + value + ")";
+        default:
+            return value;
+        }
+    }
+
+    /** Returns the expression that restores a result from a long. */
+    private static String decode(final ParamType type, final String value) {
+        switch (type) {
+        case Boolean:
+            return value + " != 0";
+        case Float:
+            return "Float.intBitsToFloat((int) " + value + ")";
+        case Long:
+            return value;
+        case Double:
+            return "Double.longBitsToDouble(" + value + ")";
+        default:
+            return "(" + FuncInfo.typeName(type, ' ') + ") " + value;
+        }
+    }
+
+    /**
+     * Returns the expressions of the two key longs. The parameters are
+     * placed from the widest to the narrowest, so that none straddles the
+     * two longs. Returns null, if they need more than 128 bits.
+     */
+    private static String[] keys(final ParamType[] params) {
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < params.length; i++) {
+            order.add(i);
+        }
+        order.sort((a, b) -> bits(params[b]) - bits(params[a]));
+        final String[] words = { "", "" };
+        final int[] used = new int[2];
+        for (final int i : order) {
+            final int bits = bits(params[i]);
+            final int word = (used[0] + bits <= 64) ? 0 : 1;
+            if (used[word] + bits > 64) {
+                return null;
+            }
+            final String value = toBits(params[i], "p" + i);
+            words[word] += (words[word].isEmpty() ? "" : "\n                    | ")
+                    + ((used[word] == 0) ? value : value + " << " + used[word]);
+            used[word] += bits;
+        }
+        return new String[] { words[0].isEmpty() ? "0L" : words[0],
+                words[1].isEmpty() ? "0L" : words[1], String.valueOf(used[1] > 0) };
+    }
+
+    /** Generates the decorators of one parameter list, if any. */
+    private void generateClass(final String packageName,
+            final ParamType[] params) {
+        final String[] keys = keys(params);
+        if (keys == null) {
+            return;
+        }
+        final Set<String> imports = new TreeSet<>();
+        final StringBuilder members = new StringBuilder(16384);
+        for (final ParamType returnType : PRIMITIVE_TYPES) {
+            if (!context.accept(returnType, params)) {
+                continue;
+            }
+            final FuncInfo f = context.getFunctor(returnType, params);
+            imports.add(f.getQualifiedName());
+            final String[] parameterList = f.getParameterList().split(", ");
+            String declaration = "";
+            for (final String parameter : parameterList) {
+                declaration += (declaration.isEmpty() ? "" : ", ") + "final "
+                        + parameter;
+            }
+            members.append(String.format(DECORATOR, f.getName(),
+                    f.getReturnTypeName(), f.getMethodName(), declaration,
+                    f.getThrows(), keys[0], keys[1],
+                    decode(returnType, "table.value(slot)"),
+                    f.getArgumentList(), encode(returnType, "result")));
+        }
+        if (imports.isEmpty()) {
+            return;
+        }
+        String name = "";
+        String types = "";
+        for (final ParamType param : params) {
+            name += context.getLabel(param);
+            types += (types.isEmpty() ? "" : ", ")
+                    + FuncInfo.typeName(param, ' ');
+        }
+        name += SUFFIX;
+        final StringBuilder buf = new StringBuilder(members.length() + 2048);
+        buf.append("import ").append(MEMO_TABLE).append(";\n");
+        buf.append("import ").append(MEMOIZER).append(";\n");
+        for (final String type : imports) {
+            buf.append("import ").append(type).append(";\n");
+        }
+        buf.append("\n/**\n * Memoizing decorators for the functions taking <code>(")
+                .append(types).append(")</code>.\n");
+        buf.append(" * The parameters are packed in ")
+                .append(Boolean.parseBoolean(keys[2]) ? "two longs" : "one long")
+                .append(". The decorators extend Memoizer,\n");
+        buf.append(" * which gives the hit and miss counters.\n");
+        buf.append(" * Generated automatically by ")
+                .append(context.getGenerator()).append("\n */\n");
+        buf.append("public final class ").append(name).append(" {\n");
+        buf.append("    /** Do the keys use two longs? */\n");
+        buf.append("    private static final boolean WIDE = ").append(keys[2])
+                .append(";\n");
+        buf.append("\n    /** No instances. */\n");
+        buf.append("    private ").append(name).append("() {\n");
+        buf.append("        // NOP\n");
+        buf.append("    }\n");
+        buf.append(members);
+        buf.append("}\n");
+        context.write(packageName, name, buf.toString());
+    }
+}
@@ -0,0 +1,617 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenPipelines</code> generates lazy, fused, primitive array pipelines
+ * in the "pipeline" sub-package, based on the functors with one parameter.
+ *
+ * There is one class per primitive type except boolean, named after its
+ * label (for example IntPipeline), and their base class, Pipeline. A
+ * pipeline starts from an array range, and describes filter() and map
+ * stages, including mappings between any two primitive types, like
+ * mapToFloat(FloatFuncInt). Nothing happens until a terminal operation
+ * (count, sum, min, max, toArray) is called. The stages are then linked as a
+ * chain of procedures, and the source is traversed once, without
+ * intermediate arrays nor boxing. The terminal operations run either
+ * sequentially, or in a ForkJoinPool, after calling parallel().
+ *
+ * The generated code requires Java 8, and functors without a throws clause.
+ *
+ * @author monster
+ */
+public class GenPipelines implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "pipeline";
+
+    /** The name of the base class, and the suffix of the generated classes. */
+    public static final String BASE = "Pipeline";
+
+    /** The element types of the pipelines. */
+    private static final ParamType[] ELEMENT_TYPES = { ParamType.Byte,
+            ParamType.Char, ParamType.Short, ParamType.Int, ParamType.Long,
+            ParamType.Float, ParamType.Double };
+
+    /** The base class, without imports. */
+    private static final String BASE_CLASS = "\n"
+            + "/**\n"
+            + " * Base class of the primitive array pipelines.\n"
+            + " *\n"
+            + " * A pipeline is immutable, and only describes the computation. The\n"
+            + " * terminal operations link the stages into a chain of procedures, from\n"
+            + " * the last one to the source, and then traverse the source once.\n"
+            + " * Generated automatically by %1$s\n"
+            + " */\n"
+            + "public abstract class Pipeline {\n"
+            + "\n"
+            + "    /**\n"
+            + "     * A sink that computes the result of a terminal operation. The\n"
+            + "     * parallel operations use one per task, and combine them in order.\n"
+            + "     */\n"
+            + "    interface Accumulator<A extends Accumulator<A>> {\n"
+            + "        /** Returns a new, empty, accumulator of the same kind. */\n"
+            + "        A create();\n"
+            + "\n"
+            + "        /** Adds the result of an accumulator that came after this one. */\n"
+            + "        void combine(A other);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Evaluates a terminal operation, over a range of the source. */\n"
+            + "    private static final class Task<A extends Accumulator<A>> extends\n"
+            + "            RecursiveTask<A> {\n"
+            + "\n"
+            + "        /** serialVersionUID */\n"
+            + "        private static final long serialVersionUID = 1L;\n"
+            + "\n"
+            + "        /** The pipeline. */\n"
+            + "        private final Pipeline pipeline;\n"
+            + "\n"
+            + "        /** The prototype of the accumulators. */\n"
+            + "        private final A prototype;\n"
+            + "\n"
+            + "        /** The first index, inclusive. */\n"
+            + "        private final int start;\n"
+            + "\n"
+            + "        /** The last index, exclusive. */\n"
+            + "        private final int end;\n"
+            + "\n"
+            + "        /** The maximum number of elements processed without splitting. */\n"
+            + "        private final int chunk;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        Task(final Pipeline thePipeline, final A thePrototype,\n"
+            + "                final int theStart, final int theEnd, final int theChunk) {\n"
+            + "            pipeline = thePipeline;\n"
+            + "            prototype = thePrototype;\n"
+            + "            start = theStart;\n"
+            + "            end = theEnd;\n"
+            + "            chunk = theChunk;\n"
+            + "        }\n"
+            + "\n"
+            + "        /* (non-Javadoc)\n"
+            + "         * @see java.util.concurrent.RecursiveTask#compute()\n"
+            + "         */\n"
+            + "        @Override\n"
+            + "        protected A compute() {\n"
+            + "            if (end - start <= chunk) {\n"
+            + "                final A result = prototype.create();\n"
+            + "                pipeline.head.drive(pipeline.link(result), start, end);\n"
+            + "                return result;\n"
+            + "            }\n"
+            + "            final int middle = (start + end) >>> 1;\n"
+            + "            final Task<A> left = new Task<A>(pipeline, prototype, start,\n"
+            + "                    middle, chunk);\n"
+            + "            left.fork();\n"
+            + "            final A right = new Task<A>(pipeline, prototype, middle, end,\n"
+            + "                    chunk).compute();\n"
+            + "            final A result = left.join();\n"
+            + "            result.combine(right);\n"
+            + "            return result;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** The minimum number of elements processed by one parallel task. */\n"
+            + "    private static final int MIN_CHUNK = 4096;\n"
+            + "\n"
+            + "    /** The number of parallel tasks per thread of the pool. */\n"
+            + "    private static final int TASKS_PER_THREAD = 4;\n"
+            + "\n"
+            + "    /** The first pipeline, which holds the source. */\n"
+            + "    private final Pipeline head;\n"
+            + "\n"
+            + "    /** The source array, in the first pipeline, otherwise null. */\n"
+            + "    private final Object source;\n"
+            + "\n"
+            + "    /** The first index of the source, inclusive. */\n"
+            + "    private final int from;\n"
+            + "\n"
+            + "    /** The last index of the source, exclusive. */\n"
+            + "    private final int to;\n"
+            + "\n"
+            + "    /** The pool of the terminal operations, or null if sequential. */\n"
+            + "    private final ForkJoinPool pool;\n"
+            + "\n"
+            + "    /** Constructor for a source. */\n"
+            + "    Pipeline(final Object theSource, final int length, final int theFrom,\n"
+            + "            final int theTo) {\n"
+            + "        if ((theFrom < 0) || (theTo > length) || (theFrom > theTo)) {\n"
+            + "            throw new IllegalArgumentException(\"Invalid range [\" + theFrom\n"
+            + "                    + \", \" + theTo + \") for length \" + length);\n"
+            + "        }\n"
+            + "        head = this;\n"
+            + "        source = theSource;\n"
+            + "        from = theFrom;\n"
+            + "        to = theTo;\n"
+            + "        pool = null;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Constructor for a stage. */\n"
+            + "    Pipeline(final Pipeline parent, final ForkJoinPool thePool) {\n"
+            + "        head = parent.head;\n"
+            + "        source = null;\n"
+            + "        from = parent.from;\n"
+            + "        to = parent.to;\n"
+            + "        pool = thePool;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Throws an IllegalArgumentException, if value is null. */\n"
+            + "    static void checkNotNull(final Object value, final String name) {\n"
+            + "        if (value == null) {\n"
+            + "            throw new IllegalArgumentException(name + \" is null\");\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the pool of the terminal operations, or null. */\n"
+            + "    final ForkJoinPool pool() {\n"
+            + "        return pool;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns true, if the terminal operations run in parallel. */\n"
+            + "    public final boolean isParallel() {\n"
+            + "        return pool != null;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the number of elements of the source. */\n"
+            + "    public final int sourceSize() {\n"
+            + "        return to - from;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns the procedure that receives the source elements, and passes\n"
+            + "     * the elements of this pipeline to the given procedure.\n"
+            + "     */\n"
+            + "    abstract Object link(Object sink);\n"
+            + "\n"
+            + "    /** Evaluates a terminal operation. */\n"
+            + "    final <A extends Accumulator<A>> A evaluate(final A accumulator) {\n"
+            + "        if (pool == null) {\n"
+            + "            head.drive(link(accumulator), from, to);\n"
+            + "            return accumulator;\n"
+            + "        }\n"
+            + "        final int chunk = Math.max(MIN_CHUNK, (to - from)\n"
+            + "                / (pool.getParallelism() * TASKS_PER_THREAD) + 1);\n"
+            + "        return pool.invoke(new Task<A>(this, accumulator, from, to, chunk));\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Passes the source elements in [start, end) to the given procedure. */\n"
+            + "    private void drive(final Object sink, final int start, final int end) {\n"
+            + "%2$s"
+            + "        } else {\n"
+            + "            throw new IllegalStateException(\"Unsupported source: \" + source);\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n";
+
+    /** One branch of Pipeline.drive(). */
+    private static final String DRIVE = ""
+            + "        %1$sif (source instanceof %2$s[]) {\n"
+            + "            final %2$s[] array = (%2$s[]) source;\n"
+            + "            final %3$s proc = (%3$s) sink;\n"
+            + "            for (int i = start; i < end; i++) {\n"
+            + "                proc.%4$s(array[i]);\n"
+            + "            }\n";
+
+    /** The start of a pipeline class, without imports. */
+    private static final String HEADER = "\n"
+            + "/**\n"
+            + " * A lazy pipeline over the elements of a <code>%1$s</code> array.\n"
+            + " * Generated automatically by %2$s\n"
+            + " */\n"
+            + "public abstract class %3$s extends Pipeline {\n"
+            + "\n"
+            + "    /** Counts the elements. */\n"
+            + "    private static final class Count implements %4$s, Accumulator<Count> {\n"
+            + "        /** The number of elements. */\n"
+            + "        long count;\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void %5$s(final %1$s p0) {\n"
+            + "            count++;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public Count create() {\n"
+            + "            return new Count();\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void combine(final Count other) {\n"
+            + "            count += other.count;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Sums the elements. */\n"
+            + "    private static final class Sum implements %4$s, Accumulator<Sum> {\n"
+            + "        /** The sum. */\n"
+            + "        %6$s sum;\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void %5$s(final %1$s p0) {\n"
+            + "            sum += p0;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public Sum create() {\n"
+            + "            return new Sum();\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void combine(final Sum other) {\n"
+            + "            sum += other.sum;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Finds the minimum, or the maximum. */\n"
+            + "    private static final class MinMax implements %4$s,\n"
+            + "            Accumulator<MinMax> {\n"
+            + "        /** True for the minimum, false for the maximum. */\n"
+            + "        private final boolean min;\n"
+            + "\n"
+            + "        /** True, until an element was received. */\n"
+            + "        private boolean empty = true;\n"
+            + "\n"
+            + "        /** The minimum, or the maximum. */\n"
+            + "        private %1$s value;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        MinMax(final boolean theMin) {\n"
+            + "            min = theMin;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void %5$s(final %1$s p0) {\n"
+            + "%7$s"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public MinMax create() {\n"
+            + "            return new MinMax(min);\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void combine(final MinMax other) {\n"
+            + "            if (!other.empty) {\n"
+            + "                %5$s(other.value);\n"
+            + "            }\n"
+            + "        }\n"
+            + "\n"
+            + "        /** Returns the result. */\n"
+            + "        %1$s get() {\n"
+            + "            if (empty) {\n"
+            + "                throw new NoSuchElementException(\"Empty pipeline\");\n"
+            + "            }\n"
+            + "            return value;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Collects the elements, in order. */\n"
+            + "    private static final class ToArray implements %4$s,\n"
+            + "            Accumulator<ToArray> {\n"
+            + "        /** The elements. */\n"
+            + "        private %1$s[] array = new %1$s[16];\n"
+            + "\n"
+            + "        /** The number of elements. */\n"
+            + "        private int size;\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void %5$s(final %1$s p0) {\n"
+            + "            if (size == array.length) {\n"
+            + "                array = Arrays.copyOf(array, 2 * size);\n"
+            + "            }\n"
+            + "            array[size++] = p0;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public ToArray create() {\n"
+            + "            return new ToArray();\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void combine(final ToArray other) {\n"
+            + "            if (size + other.size > array.length) {\n"
+            + "                array = Arrays.copyOf(array, size + other.size);\n"
+            + "            }\n"
+            + "            System.arraycopy(other.array, 0, array, size, other.size);\n"
+            + "            size += other.size;\n"
+            + "        }\n"
+            + "\n"
+            + "        /** Returns the elements. */\n"
+            + "        %1$s[] get() {\n"
+            + "            return (size == array.length) ? array : Arrays.copyOf(array, size);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Constructor for a source. */\n"
+            + "    %3$s(final %1$s[] source, final int from, final int to) {\n"
+            + "        super(source, source.length, from, to);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Constructor for a stage. */\n"
+            + "    %3$s(final Pipeline parent, final ForkJoinPool pool) {\n"
+            + "        super(parent, pool);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns a pipeline over all the elements of an array. */\n"
+            + "    public static %3$s of(final %1$s... array) {\n"
+            + "        checkNotNull(array, \"array\");\n"
+            + "        return of(array, 0, array.length);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns a pipeline over the elements of an array in [from, to). */\n"
+            + "    public static %3$s of(final %1$s[] array, final int from,\n"
+            + "            final int to) {\n"
+            + "        checkNotNull(array, \"array\");\n"
+            + "        return new %3$s(array, from, to) {\n"
+            + "            @Override\n"
+            + "            Object link(final Object sink) {\n"
+            + "                return sink;\n"
+            + "            }\n"
+            + "        };\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns this pipeline, with terminal operations that run in the\n"
+            + "     * common ForkJoinPool.\n"
+            + "     */\n"
+            + "    public %3$s parallel() {\n"
+            + "        return parallel(ForkJoinPool.commonPool());\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns this pipeline, with terminal operations that run in the given\n"
+            + "     * ForkJoinPool. The functors must then be thread-safe.\n"
+            + "     */\n"
+            + "    public %3$s parallel(final ForkJoinPool pool) {\n"
+            + "        checkNotNull(pool, \"pool\");\n"
+            + "        return with(pool);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns this pipeline, with sequential terminal operations. */\n"
+            + "    public %3$s sequential() {\n"
+            + "        return with(null);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns this pipeline, with the given pool. */\n"
+            + "    private %3$s with(final ForkJoinPool pool) {\n"
+            + "        final %3$s parent = this;\n"
+            + "        return new %3$s(this, pool) {\n"
+            + "            @Override\n"
+            + "            Object link(final Object sink) {\n"
+            + "                return parent.link(sink);\n"
+            + "            }\n"
+            + "        };\n"
+            + "    }\n";
+
+    /** A stage, that is, filter() or a mapping. */
+    private static final String STAGE = "\n"
+            + "    /** %1$s */\n"
+            + "    public %2$s %3$s(final %4$s f) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        final %5$s parent = this;\n"
+            + "        return new %2$s(this, pool()) {\n"
+            + "            @Override\n"
+            + "            Object link(final Object sink) {\n"
+            + "                final %6$s next = (%6$s) sink;\n"
+            + "                return parent.link(new %7$s() {\n"
+            + "                    @Override\n"
+            + "                    public void %8$s(final %9$s p0) {\n"
+            + "                        %10$s\n"
+            + "                    }\n"
+            + "                });\n"
+            + "            }\n"
+            + "        };\n"
+            + "    }\n";
+
+    /** The terminal operations. */
+    private static final String TERMINALS = "\n"
+            + "    /** Returns the number of elements. */\n"
+            + "    public long count() {\n"
+            + "        return evaluate(new Count()).count;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the sum of the elements, or 0 if empty. */\n"
+            + "    public %2$s sum() {\n"
+            + "        return evaluate(new Sum()).sum;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns the smallest element.\n"
+            + "     * @throws NoSuchElementException if there are no elements.\n"
+            + "     */\n"
+            + "    public %1$s min() {\n"
+            + "        return evaluate(new MinMax(true)).get();\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns the greatest element.\n"
+            + "     * @throws NoSuchElementException if there are no elements.\n"
+            + "     */\n"
+            + "    public %1$s max() {\n"
+            + "        return evaluate(new MinMax(false)).get();\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the elements, in order, in a new array. */\n"
+            + "    public %1$s[] toArray() {\n"
+            + "        return evaluate(new ToArray()).get();\n"
+            + "    }\n"
+            + "}\n";
+
+    /** MinMax.apply() for integral types. */
+    private static final String MIN_MAX_INTEGRAL = ""
+            + "            if (empty || (min ? (p0 < value) : (p0 > value))) {\n"
+            + "                value = p0;\n"
+            + "                empty = false;\n"
+            + "            }\n";
+
+    /** MinMax.apply() for floating point types, which propagates NaN. */
+    private static final String MIN_MAX_FLOATING = ""
+            + "            value = empty ? p0 : (min ? Math.min(value, p0) : Math.max(\n"
+            + "                    value, p0));\n"
+            + "            empty = false;\n";
+
+    /** The context. */
+    private FuncContext context;
+
+    /** The imports of the current class. */
+    private final Set<String> imports = new TreeSet<>();
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext theContext) {
+        context = theContext;
+        if (!context.getThrows().isEmpty()) {
+            throw new IllegalStateException(getClass().getName()
+                    + " requires functors without throws clause");
+        }
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        final List<ParamType> types = new ArrayList<>();
+        for (final ParamType type : ELEMENT_TYPES) {
+            if (context.accept(ParamType.Void, type)) {
+                types.add(type);
+            }
+        }
+        if (types.isEmpty()) {
+            return;
+        }
+        generateBase(packageName, types);
+        for (final ParamType type : types) {
+            generateClass(packageName, type, types);
+        }
+    }
+
+    /** Returns the functor, if it is accepted, otherwise null. */
+    private FuncInfo functor(final ParamType returnType, final ParamType param) {
+        if (!context.accept(returnType, param)) {
+            return null;
+        }
+        final FuncInfo result = context.getFunctor(returnType, param);
+        imports.add(result.getQualifiedName());
+        return result;
+    }
+
+    /** Returns the name of the pipeline class of a type. */
+    private String className(final ParamType type) {
+        return context.getLabel(type) + BASE;
+    }
+
+    /**
+     * Returns the import statements of the current class, java.* first, and
+     * clears the imports.
+     */
+    private String imports(final String... others) {
+        for (final String other : others) {
+            imports.add(other);
+        }
+        final StringBuilder java = new StringBuilder(1024);
+        final StringBuilder buf = new StringBuilder(1024);
+        for (final String type : imports) {
+            (type.startsWith("java.") ? java : buf).append("import ")
+                    .append(type).append(";\n");
+        }
+        imports.clear();
+        return java + ((java.length() == 0) ? "" : "\n") + buf;
+    }
+
+    /** Generates the base class. */
+    private void generateBase(final String packageName,
+            final List<ParamType> types) {
+        final StringBuilder drive = new StringBuilder(4096);
+        for (int i = 0; i < types.size(); i++) {
+            final ParamType type = types.get(i);
+            drive.append(String.format(DRIVE, (i == 0) ? "" : "} else ",
+                    FuncInfo.typeName(type, ' '), functor(ParamType.Void,
+                            type).getName(), context.getMethodName()));
+        }
+        final String body = String.format(BASE_CLASS, context.getGenerator(),
+                drive);
+        context.write(packageName, BASE,
+                imports("java.util.concurrent.ForkJoinPool",
+                        "java.util.concurrent.RecursiveTask") + body);
+    }
+
+    /** Generates the pipeline class of one element type. */
+    private void generateClass(final String packageName,
+            final ParamType type, final List<ParamType> types) {
+        final String name = className(type);
+        final String typeName = FuncInfo.typeName(type, ' ');
+        final String m = context.getMethodName();
+        final String proc = functor(ParamType.Void, type).getName();
+        final boolean floating = (type == ParamType.Float)
+                || (type == ParamType.Double);
+        final StringBuilder buf = new StringBuilder(32768);
+        buf.append(String.format(HEADER, typeName, context.getGenerator(),
+                name, proc, m, floating ? "double" : "long",
+                floating ? MIN_MAX_FLOATING : MIN_MAX_INTEGRAL));
+        final FuncInfo predicate = functor(ParamType.Boolean, type);
+        if (predicate != null) {
+            buf.append(String.format(STAGE,
+                    "Returns the elements for which <code>f</code> returns true.",
+                    name, "filter", predicate.getName(), name, proc, proc, m,
+                    typeName, "if (f." + m + "(p0)) {\n"
+                            + "                            next." + m
+                            + "(p0);\n" + "                        }"));
+        }
+        for (final ParamType target : types) {
+            final FuncInfo mapping = functor(target, type);
+            if (mapping == null) {
+                continue;
+            }
+            final String targetProc = functor(ParamType.Void, target)
+                    .getName();
+            buf.append(String.format(STAGE, "Returns the results of <code>f</code>, applied to the elements.",
+                    className(target), (target == type) ? "map" : "mapTo"
+                            + context.getLabel(target), mapping.getName(),
+                    name, targetProc, proc, m, typeName, "next." + m + "(f."
+                            + m + "(p0));"));
+        }
+        buf.append(String.format(TERMINALS, typeName, floating ? "double"
+                : "long"));
+        context.write(packageName, name,
+                imports("java.util.Arrays", "java.util.NoSuchElementException",
+                        "java.util.concurrent.ForkJoinPool") + buf);
+    }
+}
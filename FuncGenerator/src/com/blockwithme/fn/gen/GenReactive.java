@@ -0,0 +1,576 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenReactive</code> generates primitive reactive streams, in the
+ * "reactive" sub-package: IntPublisher and IntSubscriber, LongPublisher and
+ * LongSubscriber, DoublePublisher and DoubleSubscriber.
+ *
+ * They follow the Reactive Streams rules, with request(n) backpressure,
+ * using com.blockwithme.fn.util.Subscription, but never box the elements:
+ * a subscriber is a procedure of the element type (IntSubscriber extends
+ * ProcInt), whose method is onNext(). The sources are of() and, for int and
+ * long, range(). The operators are filter(), map(), mapToLong() (and so on)
+ * and scan(), over the functors of the element type.
+ *
+ * The operators are fused: they have no queue, and pass the requests
+ * upstream, and the elements downstream, within the same call. Elements go
+ * through tryNext(), which returns false, if an element was dropped by a
+ * filter, so that the source does not count it against the demand, and no
+ * request(1) is needed.
+ *
+ * The generated code requires Java 8, and functors without throws clause.
+ *
+ * @author monster
+ */
+public class GenReactive implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "reactive";
+
+    /** The element types. */
+    private static final ParamType[] ELEMENT_TYPES = { ParamType.Int,
+            ParamType.Long, ParamType.Double };
+
+    /** The subscriber interface, without imports. */
+    private static final String SUBSCRIBER = "\n"
+            + "/**\n"
+            + " * Receives the <code>%1$s</code> elements of a %2$s. The calls follow\n"
+            + " * the Reactive Streams rules: onSubscribe() first, then %3$s() for each\n"
+            + " * element, never more than requested, and finally onError() or\n"
+            + " * onComplete(), unless cancelled.\n"
+            + " * Generated automatically by %4$s\n"
+            + " */\n"
+            + "public interface %5$s extends %6$s {\n"
+            + "    /** Receives the subscription, before any other call. */\n"
+            + "    void onSubscribe(Subscription subscription);\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Receives an element, and returns true, if it was consumed, rather\n"
+            + "     * than dropped by a filter. The sources only count the consumed\n"
+            + "     * elements against the demand.\n"
+            + "     */\n"
+            + "    default boolean tryNext(final %1$s value) {\n"
+            + "        %3$s(value);\n"
+            + "        return true;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Receives the failure; no other call follows. */\n"
+            + "    void onError(Throwable failure);\n"
+            + "\n"
+            + "    /** Receives the end of the stream; no other call follows. */\n"
+            + "    void onComplete();\n"
+            + "}\n";
+
+    /** The start of a publisher class, without imports. */
+    private static final String HEADER = "\n"
+            + "/**\n"
+            + " * Publishes <code>%1$s</code> elements, following the Reactive Streams\n"
+            + " * rules, without boxing. The operators are fused: they have no queue,\n"
+            + " * and filtered elements are not counted against the demand.\n"
+            + " * Generated automatically by %2$s\n"
+            + " */\n"
+            + "public abstract class %3$s {\n"
+            + "\n"
+            + "    /** Subscribes; the subscriber first receives onSubscribe(). */\n"
+            + "    public abstract void subscribe(%4$s subscriber);\n"
+            + "\n"
+            + "    /** Throws an IllegalArgumentException, if value is null. */\n"
+            + "    static void checkNotNull(final Object value, final String name) {\n"
+            + "        if (value == null) {\n"
+            + "            throw new IllegalArgumentException(name + \" is null\");\n"
+            + "        }\n"
+            + "    }\n";
+
+    /** A source: its publisher, subscription and factory method. */
+    private static final String SOURCE = "\n"
+            + "    /** The publisher of %1$s(). */\n"
+            + "    private static final class %2$sPublisher extends %3$s {\n"
+            + "%4$s"
+            + "\n"
+            + "        @Override\n"
+            + "        public void subscribe(final %5$s subscriber) {\n"
+            + "            checkNotNull(subscriber, \"subscriber\");\n"
+            + "            final %2$sSubscription subscription = new %2$sSubscription(\n"
+            + "                    this, subscriber);\n"
+            + "            subscriber.onSubscribe(subscription);\n"
+            + "            if (%6$s == 0) {\n"
+            + "                subscription.completeEmpty();\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** The subscription of %1$s(). */\n"
+            + "    private static final class %2$sSubscription extends AbstractSubscription {\n"
+            + "        /** Serialization */\n"
+            + "        private static final long serialVersionUID = 1L;\n"
+            + "\n"
+            + "        /** The publisher. */\n"
+            + "        private final %2$sPublisher source;\n"
+            + "\n"
+            + "        /** The subscriber. */\n"
+            + "        private final %5$s subscriber;\n"
+            + "\n"
+            + "        /** The index of the next element. */\n"
+            + "        private long index;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        %2$sSubscription(final %2$sPublisher theSource,\n"
+            + "                final %5$s theSubscriber) {\n"
+            + "            source = theSource;\n"
+            + "            subscriber = theSubscriber;\n"
+            + "        }\n"
+            + "\n"
+            + "        /** Completes the empty source, from within drain(). */\n"
+            + "        void completeEmpty() {\n"
+            + "            requestCompletion();\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        protected void drain(final long demand) {\n"
+            + "            final %2$sPublisher s = source;\n"
+            + "            final %5$s next = subscriber;\n"
+            + "            final long end = %7$s;\n"
+            + "            long i = index;\n"
+            + "            if (demand == Long.MAX_VALUE) {\n"
+            + "                for (; i < end; i++) {\n"
+            + "                    if (stopped()) {\n"
+            + "                        return;\n"
+            + "                    }\n"
+            + "                    next.tryNext(%8$s);\n"
+            + "                }\n"
+            + "                if (!stopped()) {\n"
+            + "                    cancel();\n"
+            + "                    next.onComplete();\n"
+            + "                }\n"
+            + "                return;\n"
+            + "            }\n"
+            + "            long requested = demand;\n"
+            + "            long emitted = 0;\n"
+            + "            while (true) {\n"
+            + "                while ((emitted != requested) && (i < end)) {\n"
+            + "                    if (stopped()) {\n"
+            + "                        return;\n"
+            + "                    }\n"
+            + "                    if (next.tryNext(%8$s)) {\n"
+            + "                        emitted++;\n"
+            + "                    }\n"
+            + "                    i++;\n"
+            + "                }\n"
+            + "                if (i == end) {\n"
+            + "                    if (!stopped()) {\n"
+            + "                        cancel();\n"
+            + "                        next.onComplete();\n"
+            + "                    }\n"
+            + "                    return;\n"
+            + "                }\n"
+            + "                requested = get();\n"
+            + "                if (emitted == requested) {\n"
+            + "                    index = i;\n"
+            + "                    requested = produced(emitted);\n"
+            + "                    emitted = 0;\n"
+            + "                    if (requested == 0) {\n"
+            + "                        return;\n"
+            + "                    }\n"
+            + "                }\n"
+            + "            }\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        protected void error(final Throwable failure) {\n"
+            + "            subscriber.onError(failure);\n"
+            + "        }\n"
+            + "    }\n"
+            + "%9$s";
+
+    /** of(). */
+    private static final String OF = "\n"
+            + "    /** Returns a publisher of the given values. */\n"
+            + "    public static %1$s of(final %2$s... values) {\n"
+            + "        checkNotNull(values, \"values\");\n"
+            + "        return new OfPublisher(values.clone());\n"
+            + "    }\n";
+
+    /** The fields of the publisher of of(). */
+    private static final String OF_FIELDS = ""
+            + "        /** The values. */\n"
+            + "        private final %1$s[] values;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        OfPublisher(final %1$s[] theValues) {\n"
+            + "            values = theValues;\n"
+            + "        }\n";
+
+    /** range(). */
+    private static final String RANGE = "\n"
+            + "    /** Returns a publisher of <code>count</code> values, from <code>start</code>. */\n"
+            + "    public static %1$s range(final %2$s start, final %2$s count) {\n"
+            + "        if (count < 0) {\n"
+            + "            throw new IllegalArgumentException(\"count is negative: \" + count);\n"
+            + "        }\n"
+            + "        return new RangePublisher(start, count);\n"
+            + "    }\n";
+
+    /** The fields of the publisher of range(). */
+    private static final String RANGE_FIELDS = ""
+            + "        /** The first value. */\n"
+            + "        private final %1$s start;\n"
+            + "\n"
+            + "        /** The number of values. */\n"
+            + "        private final long count;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        RangePublisher(final %1$s theStart, final long theCount) {\n"
+            + "            start = theStart;\n"
+            + "            count = theCount;\n"
+            + "        }\n";
+
+    /** An operator: its publisher, subscriber and method. */
+    private static final String OPERATOR = "\n"
+            + "    /** The publisher of %1$s(). */\n"
+            + "    private static final class %2$sPublisher extends %3$s {\n"
+            + "        /** The source. */\n"
+            + "        private final %4$s source;\n"
+            + "\n"
+            + "        /** The function. */\n"
+            + "        private final %5$s f;\n"
+            + "%6$s"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        %2$sPublisher(final %4$s theSource, final %5$s theF%7$s) {\n"
+            + "            source = theSource;\n"
+            + "            f = theF;\n"
+            + "%8$s"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void subscribe(final %9$s subscriber) {\n"
+            + "            checkNotNull(subscriber, \"subscriber\");\n"
+            + "            source.subscribe(new %2$sSubscriber(subscriber, f%10$s));\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** The subscriber of %1$s(). */\n"
+            + "    private static final class %2$sSubscriber implements %11$s, Subscription {\n"
+            + "        /** The downstream subscriber. */\n"
+            + "        private final %9$s downstream;\n"
+            + "\n"
+            + "        /** The function. */\n"
+            + "        private final %5$s f;\n"
+            + "%12$s"
+            + "\n"
+            + "        /** The upstream subscription. */\n"
+            + "        private Subscription upstream;\n"
+            + "\n"
+            + "        /** True, after a failure, or the end of the stream. */\n"
+            + "        private boolean done;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        %2$sSubscriber(final %9$s theDownstream, final %5$s theF%7$s) {\n"
+            + "            downstream = theDownstream;\n"
+            + "            f = theF;\n"
+            + "%13$s"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void onSubscribe(final Subscription subscription) {\n"
+            + "            upstream = subscription;\n"
+            + "            downstream.onSubscribe(this);\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void %14$s(final %15$s value) {\n"
+            + "            if (!tryNext(value) && !done) {\n"
+            + "                upstream.request(1);\n"
+            + "            }\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public boolean tryNext(final %15$s value) {\n"
+            + "            if (done) {\n"
+            + "                return false;\n"
+            + "            }\n"
+            + "%16$s"
+            + "            try {\n"
+            + "                %17$s\n"
+            + "            } catch (final Throwable t) {\n"
+            + "                done = true;\n"
+            + "                upstream.cancel();\n"
+            + "                downstream.onError(t);\n"
+            + "                return false;\n"
+            + "            }\n"
+            + "            return %18$s;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void onError(final Throwable failure) {\n"
+            + "            if (!done) {\n"
+            + "                done = true;\n"
+            + "                downstream.onError(failure);\n"
+            + "            }\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void onComplete() {\n"
+            + "            if (!done) {\n"
+            + "                done = true;\n"
+            + "                downstream.onComplete();\n"
+            + "            }\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void request(final long n) {\n"
+            + "            upstream.request(n);\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void cancel() {\n"
+            + "            upstream.cancel();\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** %19$s */\n"
+            + "    public %3$s %1$s(final %5$s f%21$s) {\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        return new %2$sPublisher(this, f%20$s);\n"
+            + "    }\n";
+
+    /** The callback subscriber, and the subscribe() methods using it. */
+    private static final String CALLBACKS = "\n"
+            + "    /** Calls procedures, with an unbounded demand. */\n"
+            + "    private static final class CallbackSubscriber implements %1$s {\n"
+            + "        /** Receives the elements. */\n"
+            + "        private final %2$s onNext;\n"
+            + "\n"
+            + "        /** Receives the failure, or null. */\n"
+            + "        private final %3$s<Throwable> onError;\n"
+            + "\n"
+            + "        /** Receives the end of the stream, or null. */\n"
+            + "        private final %4$s onComplete;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        CallbackSubscriber(final %2$s theOnNext,\n"
+            + "                final %3$s<Throwable> theOnError, final %4$s theOnComplete) {\n"
+            + "            onNext = theOnNext;\n"
+            + "            onError = theOnError;\n"
+            + "            onComplete = theOnComplete;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void onSubscribe(final Subscription subscription) {\n"
+            + "            subscription.request(Long.MAX_VALUE);\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void %5$s(final %6$s value) {\n"
+            + "            onNext.%5$s(value);\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void onError(final Throwable failure) {\n"
+            + "            if (onError == null) {\n"
+            + "                final Thread thread = Thread.currentThread();\n"
+            + "                thread.getUncaughtExceptionHandler().uncaughtException(\n"
+            + "                        thread, failure);\n"
+            + "            } else {\n"
+            + "                onError.%5$s(failure);\n"
+            + "            }\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public void onComplete() {\n"
+            + "            if (onComplete != null) {\n"
+            + "                onComplete.%5$s();\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Subscribes with an unbounded demand, calling <code>onNext</code> for\n"
+            + "     * each element. A failure goes to the uncaught exception handler of\n"
+            + "     * the current thread.\n"
+            + "     */\n"
+            + "    public final void subscribe(final %2$s onNext) {\n"
+            + "        subscribe(onNext, null, null);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Subscribes with an unbounded demand, calling the given procedures.\n"
+            + "     * onError and onComplete can be null.\n"
+            + "     */\n"
+            + "    public final void subscribe(final %2$s onNext,\n"
+            + "            final %3$s<Throwable> onError, final %4$s onComplete) {\n"
+            + "        checkNotNull(onNext, \"onNext\");\n"
+            + "        subscribe(new CallbackSubscriber(onNext, onError, onComplete));\n"
+            + "    }\n";
+
+    /** The context. */
+    private FuncContext context;
+
+    /** The imports of the current class. */
+    private final Set<String> imports = new TreeSet<>();
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext theContext) {
+        context = theContext;
+        if (!context.getThrows().isEmpty()) {
+            throw new IllegalStateException(getClass().getName()
+                    + " requires functors without throws clause");
+        }
+        if (!context.accept(ParamType.Void)
+                || !context.accept(ParamType.Void, ParamType.Object)) {
+            return;
+        }
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        final List<ParamType> types = new ArrayList<>();
+        for (final ParamType type : ELEMENT_TYPES) {
+            if (context.accept(ParamType.Void, type)) {
+                types.add(type);
+            }
+        }
+        for (final ParamType type : types) {
+            generateSubscriber(packageName, type);
+            generatePublisher(packageName, type, types);
+        }
+    }
+
+    /** Returns the functor, if it is accepted, otherwise null. */
+    private FuncInfo functor(final ParamType returnType,
+            final ParamType... params) {
+        if (!context.accept(returnType, params)) {
+            return null;
+        }
+        final FuncInfo result = context.getFunctor(returnType, params);
+        imports.add(result.getQualifiedName());
+        return result;
+    }
+
+    /** Returns the import statements of the current class, and clears the imports. */
+    private String imports(final String... others) {
+        for (final String other : others) {
+            imports.add(other);
+        }
+        final StringBuilder buf = new StringBuilder(1024);
+        for (final String type : imports) {
+            buf.append("import ").append(type).append(";\n");
+        }
+        imports.clear();
+        return buf.toString();
+    }
+
+    /** Generates the subscriber interface of one element type. */
+    private void generateSubscriber(final String packageName,
+            final ParamType type) {
+        final String label = context.getLabel(type);
+        final String proc = functor(ParamType.Void, type).getName();
+        final String body = String.format(SUBSCRIBER, FuncInfo.typeName(type,
+                ' '), label + "Publisher", context.getMethodName(),
+                context.getGenerator(), label + "Subscriber", proc);
+        context.write(packageName, label + "Subscriber",
+                imports("com.blockwithme.fn.util.Subscription") + body);
+    }
+
+    /** Generates the publisher class of one element type. */
+    private void generatePublisher(final String packageName,
+            final ParamType type, final List<ParamType> types) {
+        final String label = context.getLabel(type);
+        final String name = label + "Publisher";
+        final String subscriber = label + "Subscriber";
+        final String typeName = FuncInfo.typeName(type, ' ');
+        final String m = context.getMethodName();
+        final StringBuilder buf = new StringBuilder(65536);
+        buf.append(String.format(HEADER, typeName, context.getGenerator(),
+                name, subscriber));
+        buf.append(String.format(SOURCE, "of", "Of", name,
+                String.format(OF_FIELDS, typeName), subscriber, "values.length",
+                "s.values.length", "s.values[(int) i]",
+                String.format(OF, name, typeName)));
+        if (type != ParamType.Double) {
+            buf.append(String.format(SOURCE, "range", "Range", name,
+                    String.format(RANGE_FIELDS, typeName), subscriber,
+                    "count", "s.count", "(" + typeName + ") (s.start + i)",
+                    String.format(RANGE, name, typeName)));
+        }
+        final FuncInfo predicate = functor(ParamType.Boolean, type);
+        if (predicate != null) {
+            buf.append(String.format(OPERATOR, "filter", "Filter", name,
+                    name, predicate.getName(), "", "", "", subscriber, "",
+                    subscriber, "", "", m, typeName,
+                    "            final boolean pass;\n", "pass = f." + m
+                            + "(value);", "pass && downstream.tryNext(value)",
+                    "Returns the elements for which <code>f</code> returns true.",
+                    "", ""));
+        }
+        for (final ParamType target : types) {
+            final FuncInfo mapping = functor(target, type);
+            if (mapping == null) {
+                continue;
+            }
+            final String method = (target == type) ? "map" : "mapTo"
+                    + context.getLabel(target);
+            final String stage = (target == type) ? "Map" : "MapTo"
+                    + context.getLabel(target);
+            buf.append(String.format(OPERATOR, method, stage,
+                    context.getLabel(target) + "Publisher", name,
+                    mapping.getName(), "", "", "",
+                    context.getLabel(target) + "Subscriber", "", subscriber,
+                    "", "", m, typeName, "            final "
+                            + FuncInfo.typeName(target, ' ') + " result;\n",
+                    "result = f." + m + "(value);",
+                    "downstream.tryNext(result)",
+                    "Returns the results of <code>f</code>, applied to the elements.",
+                    "", ""));
+        }
+        final FuncInfo accumulator = functor(type, type, type);
+        if (accumulator != null) {
+            buf.append(String.format(OPERATOR, "scan", "Scan", name, name,
+                    accumulator.getName(), "\n        /** The initial value. */\n"
+                            + "        private final " + typeName
+                            + " initial;\n", ", final " + typeName
+                            + " theInitial", "            initial = theInitial;\n",
+                    subscriber, ", initial", subscriber,
+                    "\n        /** The accumulated value. */\n"
+                            + "        private " + typeName + " acc;\n",
+                    "            acc = theInitial;\n", m, typeName, "",
+                    "acc = f." + m + "(acc, value);",
+                    "downstream.tryNext(acc)",
+                    "Returns the successive values of acc = f(acc, element), starting with acc = initial.",
+                    ", initial", ", final " + typeName + " initial"));
+        }
+        final String proc = functor(ParamType.Void, type).getName();
+        final String procObject = functor(ParamType.Void, ParamType.Object)
+                .getName();
+        final String procVoid = functor(ParamType.Void).getName();
+        buf.append(String.format(CALLBACKS, subscriber, proc, procObject,
+                procVoid, m, typeName));
+        buf.append("}\n");
+        context.write(packageName, name,
+                imports("com.blockwithme.fn.util.AbstractSubscription",
+                        "com.blockwithme.fn.util.Subscription") + buf);
+    }
+}
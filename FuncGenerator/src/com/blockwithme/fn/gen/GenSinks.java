@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenSinks</code> generates multi-value results, in the "sinks"
+ * sub-package, so that returning two or three primitives does not require
+ * allocating a tuple for every call.
+ *
+ * For every combination of two or three result types, there is a sink
+ * interface (for example IntLongSink, with accept(int v0, long v1)), and a
+ * mutable holder implementing it (IntLongHolder, with public fields v0 and
+ * v1), that the caller can reuse. The result types are boolean, int, long
+ * and double; the other primitive types convert to them without loss.
+ *
+ * For every accepted procedure whose last parameter is an Object, there is
+ * also, per sink, a multi-result functor named after the result and the
+ * other parameter types, which extends that procedure with the sink as the
+ * last parameter. For example, IntLongFuncInt extends
+ * ProcIntObject&lt;IntLongSink&gt;, with apply(int p0, IntLongSink out).
+ *
+ * @author monster
+ */
+public class GenSinks implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "sinks";
+
+    /** The result types. */
+    private static final ParamType[] RESULT_TYPES = { ParamType.Boolean,
+            ParamType.Int, ParamType.Long, ParamType.Double };
+
+    /** The sink interface. */
+    private static final String SINK = ""
+            + "/**\n"
+            + " * Receives the %1$d results of a multi-result functor.\n"
+            + " * Generated automatically by %2$s\n"
+            + " */\n"
+            + "public interface %3$s {\n"
+            + "    /** Receives the results. */\n"
+            + "    void accept(%4$s);\n"
+            + "}\n";
+
+    /** The holder class. */
+    private static final String HOLDER = ""
+            + "/**\n"
+            + " * A mutable holder for %1$d results; it can be reused across calls.\n"
+            + " * Generated automatically by %2$s\n"
+            + " */\n"
+            + "public final class %3$s implements %4$s {\n"
+            + "%5$s"
+            + "\n"
+            + "    /** Constructor */\n"
+            + "    public %3$s() {\n"
+            + "        // NOP\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Stores the results. */\n"
+            + "    @Override\n"
+            + "    public void accept(%6$s) {\n"
+            + "%7$s"
+            + "    }\n"
+            + "\n"
+            + "    /* (non-Javadoc)\n"
+            + "     * @see java.lang.Object#toString()\n"
+            + "     */\n"
+            + "    @Override\n"
+            + "    public String toString() {\n"
+            + "        return \"%3$s(\" + %8$s + \")\";\n"
+            + "    }\n"
+            + "}\n";
+
+    /** The multi-result functor interface. */
+    private static final String FUNCTOR = ""
+            + "import %1$s;\n"
+            + "\n"
+            + "/**\n"
+            + " * Multi-result functor <code>%2$s%3$s</code>, passing its results to\n"
+            + " * the given %4$s.\n"
+            + " * Generated automatically by %5$s\n"
+            + " */\n"
+            + "public interface %2$s%3$s extends %6$s {\n"
+            + "    /** Computes the results, and passes them to <code>out</code>. */\n"
+            + "    @Override\n"
+            + "    void %7$s(%8$s)%9$s;\n"
+            + "}\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        for (final ParamType a : RESULT_TYPES) {
+            for (final ParamType b : RESULT_TYPES) {
+                generate(context, new ParamType[] { a, b });
+                for (final ParamType c : RESULT_TYPES) {
+                    generate(context, new ParamType[] { a, b, c });
+                }
+            }
+        }
+    }
+
+    /** Generates the sink, the holder and the functors of some results. */
+    private static void generate(final FuncContext context,
+            final ParamType[] results) {
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        String labels = "";
+        String values = "";
+        final StringBuilder fields = new StringBuilder();
+        final StringBuilder assign = new StringBuilder();
+        String show = "";
+        for (int i = 0; i < results.length; i++) {
+            final String type = FuncInfo.typeName(results[i], 'R');
+            labels += context.getLabel(results[i]);
+            values += ((i == 0) ? "" : ", ") + "final " + type + " v" + i;
+            fields.append("    /** Result ").append(i).append(". */\n");
+            fields.append("    public ").append(type).append(" v").append(i)
+                    .append(";\n");
+            assign.append("        this.v").append(i).append(" = v")
+                    .append(i).append(";\n");
+            show += ((i == 0) ? "" : " + \", \" + ") + "v" + i;
+        }
+        final String sink = labels + "Sink";
+        final String holder = labels + "Holder";
+        context.write(packageName, sink, String.format(SINK, results.length,
+                context.getGenerator(), sink, values));
+        context.write(packageName, holder, String.format(HOLDER,
+                results.length, context.getGenerator(), holder, sink, fields,
+                values, assign, show));
+        for (int arity = context.getMinimumNumberOfArgs(); arity < context
+                .getMaximumNumberOfArgs(); arity++) {
+            for (final FuncInfo f : context.getFunctors(arity)) {
+                if (f.isProc()) {
+                    functor(context, packageName, labels, sink, f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates the multi-result functor with the parameters of the given
+     * procedure, if the procedure with an additional Object is accepted.
+     */
+    private static void functor(final FuncContext context,
+            final String packageName, final String labels, final String sink,
+            final FuncInfo f) {
+        final int arity = f.getArity();
+        final ParamType[] params = new ParamType[arity + 1];
+        String name = labels + "Func";
+        String parameters = "";
+        for (int i = 0; i < arity; i++) {
+            params[i] = f.getParamType(i);
+            name += context.getLabel(params[i]);
+            parameters += f.getParamTypeName(i) + " p" + i + ", ";
+        }
+        params[arity] = ParamType.Object;
+        if (!context.accept(ParamType.Void, params)) {
+            return;
+        }
+        final FuncInfo proc = context.getFunctor(ParamType.Void, params);
+        final String generics = f.getGenerics();
+        final String typeArgs = generics.isEmpty() ? "<" + sink + ">"
+                : generics.substring(0, generics.length() - 1) + "," + sink
+                        + ">";
+        context.write(packageName, name, String.format(FUNCTOR,
+                proc.getQualifiedName(), name, generics, sink,
+                context.getGenerator(), proc.getName() + typeArgs,
+                proc.getMethodName(), parameters + sink + " out",
+                proc.getThrows()));
+    }
+}
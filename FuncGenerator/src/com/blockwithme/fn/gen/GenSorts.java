@@ -0,0 +1,523 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.blockwithme.fn.gen.FuncFilter.ParamType;
+
+/**
+ * <code>GenSorts</code> generates sort utilities, in the "sort"
+ * sub-package, for the primitive arrays (for example IntSorts), whose
+ * orderings are given as functors, so that custom orderings never box the
+ * elements into an Integer[] or go through a Comparator.
+ *
+ * The orderings are "less than" functors (BooleanFuncIntInt for int[]),
+ * and comparators (IntFuncIntInt) are adapted to them with less(). Each
+ * utility class has a dual-pivot quicksort, a stable merge sort, a stable
+ * parallel merge sort in the common ForkJoinPool, and the stable sorting of
+ * an index array by the keys it points to, so that other columns can be
+ * read in that order. Sorting an int[] of indexes with a BooleanFuncIntInt
+ * that compares other columns gives a multi-column indirect sort. If
+ * LongFuncInt is accepted, IntSorts also has a LSD radix sort, on the
+ * signed long keys it extracts.
+ *
+ * A utility class is only generated if its "less than" functor is accepted
+ * by the filter; less() and the radix sort need their own functors.
+ *
+ * @author monster
+ */
+public class GenSorts implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "sort";
+
+    /** The element types of the sorted arrays. */
+    private static final ParamType[] ELEMENT_TYPES = { ParamType.Byte,
+            ParamType.Char, ParamType.Short, ParamType.Int, ParamType.Long,
+            ParamType.Float, ParamType.Double };
+
+    /** The sort utility class. */
+    private static final String SORTS = ""
+            + "import java.util.Arrays;\n"
+            + "import java.util.concurrent.ForkJoinPool;\n"
+            + "import java.util.concurrent.RecursiveAction;\n"
+            + "\n"
+            + "%6$s\n"
+            + "/**\n"
+            + " * Sorts %2$s arrays with a %4$s \"less than\" functor, without boxing:\n"
+            + " * a dual-pivot quicksort (sort), a stable merge sort (stableSort), a\n"
+            + " * stable parallel merge sort (parallelSort), and the stable sorting of\n"
+            + " * indexes by the keys they point to (order).%9$s\n"
+            + " * Generated automatically by %3$s\n"
+            + " */\n"
+            + "public final class %1$s {\n"
+            + "    /** Below this size, ranges are sorted by insertion. */\n"
+            + "    private static final int INSERTION_THRESHOLD = 32;\n"
+            + "\n"
+            + "    /** Below this size, parallelSort() sorts sequentially. */\n"
+            + "    private static final int PARALLEL_THRESHOLD = 1 << 13;\n"
+            + "\n"
+            + "    /** Sorts a range in parallel. */\n"
+            + "    private static final class SortTask extends RecursiveAction {\n"
+            + "        /** Serialization */\n"
+            + "        private static final long serialVersionUID = 1L;\n"
+            + "\n"
+            + "        /** The source. */\n"
+            + "        private final %2$s[] src;\n"
+            + "\n"
+            + "        /** The destination. */\n"
+            + "        private final %2$s[] dest;\n"
+            + "\n"
+            + "        /** The start of the range, in dest. */\n"
+            + "        private final int low;\n"
+            + "\n"
+            + "        /** The end of the range, in dest. */\n"
+            + "        private final int high;\n"
+            + "\n"
+            + "        /** The offset of the range in src, relative to dest. */\n"
+            + "        private final int off;\n"
+            + "\n"
+            + "        /** The \"less than\" functor. */\n"
+            + "        private final %4$s less;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        SortTask(final %2$s[] theSrc, final %2$s[] theDest, final int theLow,\n"
+            + "                final int theHigh, final int theOff, final %4$s theLess) {\n"
+            + "            src = theSrc;\n"
+            + "            dest = theDest;\n"
+            + "            low = theLow;\n"
+            + "            high = theHigh;\n"
+            + "            off = theOff;\n"
+            + "            less = theLess;\n"
+            + "        }\n"
+            + "\n"
+            + "        /* (non-Javadoc)\n"
+            + "         * @see java.util.concurrent.RecursiveAction#compute()\n"
+            + "         */\n"
+            + "        @Override\n"
+            + "        protected void compute() {\n"
+            + "            if (high - low <= PARALLEL_THRESHOLD) {\n"
+            + "                mergeSort(src, dest, low, high, off, less);\n"
+            + "                return;\n"
+            + "            }\n"
+            + "            final int srcLow = low + off;\n"
+            + "            final int srcHigh = high + off;\n"
+            + "            final int mid = (srcLow + srcHigh) >>> 1;\n"
+            + "            invokeAll(new SortTask(dest, src, srcLow, mid, -off, less),\n"
+            + "                    new SortTask(dest, src, mid, srcHigh, -off, less));\n"
+            + "            merge(src, dest, srcLow, mid, srcHigh, low, less);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** No instances. */\n"
+            + "    private %1$s() {\n"
+            + "        // NOP\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Throws an IllegalArgumentException, if value is null. */\n"
+            + "    private static void checkNotNull(final Object value, final String name) {\n"
+            + "        if (value == null) {\n"
+            + "            throw new IllegalArgumentException(name + \" is null\");\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Checks that [from, to) is a valid range of an array of the given length. */\n"
+            + "    private static void checkRange(final int length, final int from,\n"
+            + "            final int to) {\n"
+            + "        if (from > to) {\n"
+            + "            throw new IllegalArgumentException(\"from \" + from + \" > to \" + to);\n"
+            + "        }\n"
+            + "        if (from < 0) {\n"
+            + "            throw new ArrayIndexOutOfBoundsException(from);\n"
+            + "        }\n"
+            + "        if (to > length) {\n"
+            + "            throw new ArrayIndexOutOfBoundsException(to);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Swaps two elements. */\n"
+            + "    private static void swap(final %2$s[] a, final int i, final int j) {\n"
+            + "        final %2$s tmp = a[i];\n"
+            + "        a[i] = a[j];\n"
+            + "        a[j] = tmp;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Sorts an array, with a dual-pivot quicksort. Not stable. */\n"
+            + "    public static void sort(final %2$s[] a, final %4$s less) {\n"
+            + "        checkNotNull(a, \"a\");\n"
+            + "        sort(a, 0, a.length, less);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Sorts the range [from, to) of an array, with a dual-pivot quicksort. Not stable. */\n"
+            + "    public static void sort(final %2$s[] a, final int from, final int to,\n"
+            + "            final %4$s less) {\n"
+            + "        checkNotNull(a, \"a\");\n"
+            + "        checkNotNull(less, \"less\");\n"
+            + "        checkRange(a.length, from, to);\n"
+            + "        quickSort(a, from, to - 1, less);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Sorts the range [left, right], with a dual-pivot quicksort. */\n"
+            + "    private static void quickSort(final %2$s[] a, final int left,\n"
+            + "            final int right, final %4$s less) {\n"
+            + "        int lo = left;\n"
+            + "        while (right - lo >= INSERTION_THRESHOLD) {\n"
+            + "            final int third = (right - lo) / 3;\n"
+            + "            final int m1 = lo + third;\n"
+            + "            final int m2 = right - third;\n"
+            + "            if (less.%5$s(a[m2], a[m1])) {\n"
+            + "                swap(a, m1, m2);\n"
+            + "            }\n"
+            + "            swap(a, lo, m1);\n"
+            + "            swap(a, right, m2);\n"
+            + "            final %2$s pivot1 = a[lo];\n"
+            + "            final %2$s pivot2 = a[right];\n"
+            + "            int lt = lo + 1;\n"
+            + "            int gt = right - 1;\n"
+            + "            int k = lt;\n"
+            + "            while (k <= gt) {\n"
+            + "                if (less.%5$s(a[k], pivot1)) {\n"
+            + "                    swap(a, k, lt++);\n"
+            + "                } else if (less.%5$s(pivot2, a[k])) {\n"
+            + "                    while ((k < gt) && less.%5$s(pivot2, a[gt])) {\n"
+            + "                        gt--;\n"
+            + "                    }\n"
+            + "                    swap(a, k, gt--);\n"
+            + "                    if (less.%5$s(a[k], pivot1)) {\n"
+            + "                        swap(a, k, lt++);\n"
+            + "                    }\n"
+            + "                }\n"
+            + "                k++;\n"
+            + "            }\n"
+            + "            lt--;\n"
+            + "            gt++;\n"
+            + "            swap(a, lo, lt);\n"
+            + "            swap(a, right, gt);\n"
+            + "            quickSort(a, lo, lt - 1, less);\n"
+            + "            // If the pivots are equal, so are all the middle elements.\n"
+            + "            if (less.%5$s(pivot1, pivot2)) {\n"
+            + "                int from = lt + 1;\n"
+            + "                int to = gt - 1;\n"
+            + "                if (to - from > (right - lo) / 7 * 4) {\n"
+            + "                    // Moves the elements equal to the pivots out of a large\n"
+            + "                    // middle part, so that many duplicates cannot make\n"
+            + "                    // the sort quadratic.\n"
+            + "                    k = from;\n"
+            + "                    while (k <= to) {\n"
+            + "                        if (!less.%5$s(pivot1, a[k])) {\n"
+            + "                            swap(a, k, from++);\n"
+            + "                        } else if (!less.%5$s(a[k], pivot2)) {\n"
+            + "                            while ((k < to) && !less.%5$s(a[to], pivot2)) {\n"
+            + "                                to--;\n"
+            + "                            }\n"
+            + "                            swap(a, k, to--);\n"
+            + "                            if (!less.%5$s(pivot1, a[k])) {\n"
+            + "                                swap(a, k, from++);\n"
+            + "                            }\n"
+            + "                        }\n"
+            + "                        k++;\n"
+            + "                    }\n"
+            + "                }\n"
+            + "                quickSort(a, from, to, less);\n"
+            + "            }\n"
+            + "            lo = gt + 1;\n"
+            + "        }\n"
+            + "        insertionSort(a, lo, right, less);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Sorts the range [left, right], by insertion. Stable. */\n"
+            + "    private static void insertionSort(final %2$s[] a, final int left,\n"
+            + "            final int right, final %4$s less) {\n"
+            + "        for (int i = left + 1; i <= right; i++) {\n"
+            + "            final %2$s value = a[i];\n"
+            + "            int j = i - 1;\n"
+            + "            while ((j >= left) && less.%5$s(value, a[j])) {\n"
+            + "                a[j + 1] = a[j];\n"
+            + "                j--;\n"
+            + "            }\n"
+            + "            a[j + 1] = value;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Sorts an array, with a merge sort. Stable. */\n"
+            + "    public static void stableSort(final %2$s[] a, final %4$s less) {\n"
+            + "        checkNotNull(a, \"a\");\n"
+            + "        stableSort(a, 0, a.length, less);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Sorts the range [from, to) of an array, with a merge sort. Stable. */\n"
+            + "    public static void stableSort(final %2$s[] a, final int from,\n"
+            + "            final int to, final %4$s less) {\n"
+            + "        checkNotNull(a, \"a\");\n"
+            + "        checkNotNull(less, \"less\");\n"
+            + "        checkRange(a.length, from, to);\n"
+            + "        if (to - from > 1) {\n"
+            + "            mergeSort(Arrays.copyOfRange(a, from, to), a, from, to, -from,\n"
+            + "                    less);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Sorts dest[low, high), from src[low + off, high + off), which holds\n"
+            + "     * the same elements, and is used as buffer.\n"
+            + "     */\n"
+            + "    private static void mergeSort(final %2$s[] src, final %2$s[] dest,\n"
+            + "            final int low, final int high, final int off, final %4$s less) {\n"
+            + "        if (high - low < INSERTION_THRESHOLD) {\n"
+            + "            insertionSort(dest, low, high - 1, less);\n"
+            + "            return;\n"
+            + "        }\n"
+            + "        final int srcLow = low + off;\n"
+            + "        final int srcHigh = high + off;\n"
+            + "        final int mid = (srcLow + srcHigh) >>> 1;\n"
+            + "        mergeSort(dest, src, srcLow, mid, -off, less);\n"
+            + "        mergeSort(dest, src, mid, srcHigh, -off, less);\n"
+            + "        merge(src, dest, srcLow, mid, srcHigh, low, less);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Merges the sorted src[low, mid) and src[mid, high) into dest, from destLow. */\n"
+            + "    private static void merge(final %2$s[] src, final %2$s[] dest,\n"
+            + "            final int low, final int mid, final int high, final int destLow,\n"
+            + "            final %4$s less) {\n"
+            + "        if (!less.%5$s(src[mid], src[mid - 1])) {\n"
+            + "            System.arraycopy(src, low, dest, destLow, high - low);\n"
+            + "            return;\n"
+            + "        }\n"
+            + "        int p = low;\n"
+            + "        int q = mid;\n"
+            + "        final int destHigh = destLow + high - low;\n"
+            + "        for (int i = destLow; i < destHigh; i++) {\n"
+            + "            if ((q >= high) || ((p < mid) && !less.%5$s(src[q], src[p]))) {\n"
+            + "                dest[i] = src[p++];\n"
+            + "            } else {\n"
+            + "                dest[i] = src[q++];\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Sorts an array, with a merge sort, in parallel in the common\n"
+            + "     * ForkJoinPool. Stable.\n"
+            + "     */\n"
+            + "    public static void parallelSort(final %2$s[] a, final %4$s less) {\n"
+            + "        checkNotNull(a, \"a\");\n"
+            + "        checkNotNull(less, \"less\");\n"
+            + "        if (a.length <= PARALLEL_THRESHOLD) {\n"
+            + "            stableSort(a, 0, a.length, less);\n"
+            + "        } else {\n"
+            + "            ForkJoinPool.commonPool().invoke(\n"
+            + "                    new SortTask(a.clone(), a, 0, a.length, 0, less));\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns the indexes of the keys, in the order that sorts the keys\n"
+            + "     * stably. The keys are not modified, so other columns can then be read\n"
+            + "     * in that order.\n"
+            + "     */\n"
+            + "    public static int[] order(final %2$s[] keys, final %4$s less) {\n"
+            + "        checkNotNull(keys, \"keys\");\n"
+            + "        checkNotNull(less, \"less\");\n"
+            + "        final int[] result = new int[keys.length];\n"
+            + "        for (int i = 0; i < result.length; i++) {\n"
+            + "            result[i] = i;\n"
+            + "        }\n"
+            + "        if (result.length > 1) {\n"
+            + "            orderSort(result.clone(), result, 0, result.length, keys, less);\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Like mergeSort(), for indexes into keys, with an offset of 0. */\n"
+            + "    private static void orderSort(final int[] src, final int[] dest,\n"
+            + "            final int low, final int high, final %2$s[] keys,\n"
+            + "            final %4$s less) {\n"
+            + "        if (high - low < INSERTION_THRESHOLD) {\n"
+            + "            for (int i = low + 1; i < high; i++) {\n"
+            + "                final int index = dest[i];\n"
+            + "                final %2$s key = keys[index];\n"
+            + "                int j = i - 1;\n"
+            + "                while ((j >= low) && less.%5$s(key, keys[dest[j]])) {\n"
+            + "                    dest[j + 1] = dest[j];\n"
+            + "                    j--;\n"
+            + "                }\n"
+            + "                dest[j + 1] = index;\n"
+            + "            }\n"
+            + "            return;\n"
+            + "        }\n"
+            + "        final int mid = (low + high) >>> 1;\n"
+            + "        orderSort(dest, src, low, mid, keys, less);\n"
+            + "        orderSort(dest, src, mid, high, keys, less);\n"
+            + "        if (!less.%5$s(keys[src[mid]], keys[src[mid - 1]])) {\n"
+            + "            System.arraycopy(src, low, dest, low, high - low);\n"
+            + "            return;\n"
+            + "        }\n"
+            + "        int p = low;\n"
+            + "        int q = mid;\n"
+            + "        for (int i = low; i < high; i++) {\n"
+            + "            if ((q >= high) || ((p < mid) && !less.%5$s(keys[src[q]], keys[src[p]]))) {\n"
+            + "                dest[i] = src[p++];\n"
+            + "            } else {\n"
+            + "                dest[i] = src[q++];\n"
+            + "            }\n"
+            + "        }\n"
+            + "    }\n"
+            + "%7$s%8$s}\n";
+
+    /** The comparator adapter. */
+    private static final String COMPARATOR = ""
+            + "\n"
+            + "    /** A \"less than\" functor, based on a comparator. */\n"
+            + "    private static final class Less implements %2$s {\n"
+            + "        /** The comparator. */\n"
+            + "        private final %3$s comparator;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        Less(final %3$s theComparator) {\n"
+            + "            comparator = theComparator;\n"
+            + "        }\n"
+            + "\n"
+            + "        @Override\n"
+            + "        public boolean %4$s(final %1$s p0, final %1$s p1) {\n"
+            + "            return comparator.%4$s(p0, p1) < 0;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns a \"less than\" functor, based on a comparator, to sort with\n"
+            + "     * a comparator. There are no comparator overloads, since a lambda\n"
+            + "     * could not choose between them.\n"
+            + "     */\n"
+            + "    public static %2$s less(final %3$s comparator) {\n"
+            + "        checkNotNull(comparator, \"comparator\");\n"
+            + "        return new Less(comparator);\n"
+            + "    }\n";
+
+    /** The radix sort. */
+    private static final String RADIX = ""
+            + "\n"
+            + "    /**\n"
+            + "     * Sorts an array by the signed long keys extracted with <code>key</code>,\n"
+            + "     * with a LSD radix sort, 8 bits at a time. Stable. The key of each\n"
+            + "     * element is extracted once.\n"
+            + "     */\n"
+            + "    public static void radixSort(final %1$s[] a, final %2$s key) {\n"
+            + "        checkNotNull(a, \"a\");\n"
+            + "        checkNotNull(key, \"key\");\n"
+            + "        final int n = a.length;\n"
+            + "        if (n < 2) {\n"
+            + "            return;\n"
+            + "        }\n"
+            + "        long[] keys = new long[n];\n"
+            + "        for (int i = 0; i < n; i++) {\n"
+            + "            // Flipping the sign bit makes the signed order unsigned.\n"
+            + "            keys[i] = key.%3$s(a[i]) ^ Long.MIN_VALUE;\n"
+            + "        }\n"
+            + "        %1$s[] values = a.clone();\n"
+            + "        long[] keyBuffer = new long[n];\n"
+            + "        %1$s[] valueBuffer = new %1$s[n];\n"
+            + "        final int[] counts = new int[256];\n"
+            + "        for (int shift = 0; shift < 64; shift += 8) {\n"
+            + "            Arrays.fill(counts, 0);\n"
+            + "            for (int i = 0; i < n; i++) {\n"
+            + "                counts[(int) (keys[i] >>> shift) & 0xFF]++;\n"
+            + "            }\n"
+            + "            if (counts[(int) (keys[0] >>> shift) & 0xFF] == n) {\n"
+            + "                // All the elements have the same digit.\n"
+            + "                continue;\n"
+            + "            }\n"
+            + "            int offset = 0;\n"
+            + "            for (int d = 0; d < 256; d++) {\n"
+            + "                final int count = counts[d];\n"
+            + "                counts[d] = offset;\n"
+            + "                offset += count;\n"
+            + "            }\n"
+            + "            for (int i = 0; i < n; i++) {\n"
+            + "                final int target = counts[(int) (keys[i] >>> shift) & 0xFF]++;\n"
+            + "                keyBuffer[target] = keys[i];\n"
+            + "                valueBuffer[target] = values[i];\n"
+            + "            }\n"
+            + "            final long[] swapKeys = keys;\n"
+            + "            keys = keyBuffer;\n"
+            + "            keyBuffer = swapKeys;\n"
+            + "            final %1$s[] swapValues = values;\n"
+            + "            values = valueBuffer;\n"
+            + "            valueBuffer = swapValues;\n"
+            + "        }\n"
+            + "        System.arraycopy(values, 0, a, 0, n);\n"
+            + "    }\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        if (!context.getThrows().isEmpty()) {
+            throw new IllegalStateException(getClass().getName()
+                    + " requires functors without throws clause");
+        }
+        final String packageName = context.getPackageName() + "."
+                + SUB_PACKAGE;
+        final String method = context.getMethodName();
+        for (final ParamType type : ELEMENT_TYPES) {
+            final FuncInfo less = functor(context, ParamType.Boolean, type,
+                    type);
+            if (less == null) {
+                continue;
+            }
+            final FuncInfo comparator = functor(context, ParamType.Int, type,
+                    type);
+            final FuncInfo key = functor(context, ParamType.Long, type);
+            final String typeName = FuncInfo.typeName(type, 'R');
+            final String name = context.getLabel(type) + "Sorts";
+            context.write(packageName, name, String.format(SORTS, name,
+                    typeName, context.getGenerator(), less.getName(), method,
+                    imports(less, comparator, key), (comparator == null) ? ""
+                            : String.format(COMPARATOR, typeName,
+                                    less.getName(), comparator.getName(),
+                                    method), (key == null) ? ""
+                            : String.format(RADIX, typeName, key.getName(),
+                                    method), (key == null) ? "" : "\n * "
+                            + "It also has a LSD radix sort (radixSort), on "
+                            + "the long keys extracted with " + key.getName()
+                            + "."));
+        }
+    }
+
+    /** Returns the functor with the given signature, or null if it is not accepted. */
+    private static FuncInfo functor(final FuncContext context,
+            final ParamType returnType, final ParamType... paramTypes) {
+        return context.accept(returnType, paramTypes) ? context.getFunctor(
+                returnType, paramTypes) : null;
+    }
+
+    /** Returns the import statements of the given functors, ignoring nulls. */
+    private static String imports(final FuncInfo... functors) {
+        final Set<String> names = new TreeSet<>();
+        for (final FuncInfo f : functors) {
+            if (f != null) {
+                names.add(f.getQualifiedName());
+            }
+        }
+        final StringBuilder buf = new StringBuilder();
+        for (final String name : names) {
+            buf.append("import ").append(name).append(";\n");
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <code>GenTimers</code> generates the ProcTimers class, in the "timer"
+ * sub-package, which runs the procedures (the functors returning void)
+ * after a delay, on the thread of a com.blockwithme.fn.util.WheelTimer:
+ * schedule(timer, 10, TimeUnit.MILLISECONDS, procIntLong, 1, 2L) stores the
+ * parameters inline in a slot of the timer, so that nothing is allocated
+ * per timer, and returns the handle with which it can be cancelled.
+ *
+ * The parameters are stored like in GenExecutors.
+ *
+ * @author monster
+ */
+public class GenTimers implements FuncExtension {
+
+    /** The sub-package of the generated code. */
+    public static final String SUB_PACKAGE = "timer";
+
+    /** The name of the generated class. */
+    public static final String CLASS_NAME = "ProcTimers";
+
+    /** A dispatcher, and the schedule() method. */
+    private static final String SCHEDULE = "\n"
+            + "    /** Runs %1$s timers. */\n"
+            + "    private static final class %1$sDispatcher extends Dispatcher {\n"
+            + "        /** The instance. */\n"
+            + "        static final %1$sDispatcher INSTANCE = new %1$sDispatcher();\n"
+            + "\n"
+            + "        @Override\n"
+            + "%2$s"
+            + "        protected void dispatch(final WheelTimer timer,\n"
+            + "                final long handle, final Object functor)%3$s {\n"
+            + "            ((%4$s) functor).%5$s(%6$s);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Runs <code>f</code> with the given parameters, on the thread of\n"
+            + "     * <code>timer</code>, after the given delay. Returns the handle of the\n"
+            + "     * timer, to cancel it.\n"
+            + "     */\n"
+            + "    public static %7$slong schedule(final WheelTimer timer,\n"
+            + "            final long delay, final TimeUnit unit, final %8$s f%9$s) {\n"
+            + "        checkNotNull(timer, \"timer\");\n"
+            + "        checkNotNull(unit, \"unit\");\n"
+            + "        checkNotNull(f, \"f\");\n"
+            + "        final long handle = timer.claim(%10$d);\n"
+            + "%11$s"
+            + "        timer.schedule(handle, unit.toNanos(delay), %1$sDispatcher.INSTANCE, f);\n"
+            + "        return handle;\n"
+            + "    }\n";
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.gen.FuncExtension#generate(com.blockwithme.fn.gen.FuncContext)
+     */
+    @Override
+    public void generate(final FuncContext context) {
+        final Set<String> imports = new TreeSet<>();
+        final StringBuilder members = new StringBuilder(65536);
+        for (int arity = context.getMinimumNumberOfArgs(); arity <= context
+                .getMaximumNumberOfArgs(); arity++) {
+            for (final FuncInfo f : context.getFunctors(arity)) {
+                if (f.isProc()) {
+                    imports.add(f.getQualifiedName());
+                    schedule(members, f);
+                }
+            }
+        }
+        if (imports.isEmpty()) {
+            return;
+        }
+        imports.add("java.util.concurrent.TimeUnit");
+        imports.add("com.blockwithme.fn.util.WheelTimer");
+        imports.add("com.blockwithme.fn.util.WheelTimer.Dispatcher");
+        final StringBuilder buf = new StringBuilder(members.length() + 4096);
+        for (final String type : imports) {
+            buf.append("import ").append(type).append(";\n");
+        }
+        buf.append("\n/**\n * Runs the procedures after a delay, on a WheelTimer, without allocating.\n");
+        buf.append(" * Generated automatically by ")
+                .append(context.getGenerator()).append("\n */\n");
+        buf.append("public final class ").append(CLASS_NAME).append(" {\n");
+        buf.append("    /** No instances. */\n");
+        buf.append("    private ").append(CLASS_NAME).append("() {\n");
+        buf.append("        // NOP\n");
+        buf.append("    }\n");
+        buf.append("\n    /** Throws an IllegalArgumentException, if value is null. */\n");
+        buf.append("    private static void checkNotNull(final Object value, final String name) {\n");
+        buf.append("        if (value == null) {\n");
+        buf.append("            throw new IllegalArgumentException(name + \" is null\");\n");
+        buf.append("        }\n");
+        buf.append("    }\n");
+        buf.append(members);
+        buf.append("}\n");
+        context.write(context.getPackageName() + "." + SUB_PACKAGE,
+                CLASS_NAME, buf.toString());
+    }
+
+    /** Generates the dispatcher, and the schedule() method, of one procedure. */
+    private static void schedule(final StringBuilder buf, final FuncInfo f) {
+        final StringBuilder params = new StringBuilder();
+        for (int i = 0; i < f.getArity(); i++) {
+            params.append(", final ").append(f.getParamTypeName(i))
+                    .append(" p").append(i);
+        }
+        final StringBuilder args = new StringBuilder();
+        final StringBuilder store = new StringBuilder();
+        GenExecutors.slots(f, "        ", "timer", "handle", args, store);
+        String raw = f.getName();
+        if (f.isGeneric()) {
+            raw += f.getGenerics().replaceAll("[A-Z]", "Object");
+        }
+        buf.append(String.format(SCHEDULE, f.getName(),
+                f.isGeneric() ? "        @SuppressWarnings(\"unchecked\")\n"
+                        : "", f.getThrows(), raw, f.getMethodName(), args,
+                f.isGeneric() ? f.getGenerics() + " " : "", f.getType(),
+                params, f.getArity(), store));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event, describing the generation of all the files of one arity, or
+ * of one extension.
+ *
+ * @see GenerationReport
+ *
+ * @author monster
+ */
+@Name("com.blockwithme.fn.gen.Generation")
+@Label("Source Generation")
+@Category("PrimitiveFunc")
+@Description("Generation of all the sources with the same number of parameters")
+final class GenerationEvent extends jdk.jfr.Event {
+
+    /** The generator class name. */
+    @Label("Generator")
+    String generator;
+
+    /** The number of parameters, or -1 for an extension. */
+    @Label("Arity")
+    int arity;
+
+    /** The extension class name, if any. */
+    @Label("Extension")
+    String extension;
+
+    /** Number of type combinations considered. */
+    @Label("Considered")
+    int considered;
+
+    /** Number of type combinations rejected by the filter. */
+    @Label("Filtered")
+    int filtered;
+
+    /** Number of files written. */
+    @Label("Written")
+    int written;
+
+    /** Number of files that were already up to date. */
+    @Label("Unchanged")
+    int unchanged;
+
+    /** Number of bytes written. */
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+
+    /** Time spent computing the type combinations. */
+    @Label("Enumeration")
+    @Timespan
+    long enumeration;
+
+    /** Time spent in the filter. */
+    @Label("Filtering")
+    @Timespan
+    long filtering;
+
+    /** Time spent producing the source code. */
+    @Label("Rendering")
+    @Timespan
+    long rendering;
+
+    /** Time spent comparing with, and writing to, the disk. */
+    @Label("Writing")
+    @Timespan
+    long writing;
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.gen;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <code>GenerationReport</code> describes what a generator did, and where
+ * the time was spent.
+ *
+ * Every arity, and every extension, is also reported as a JFR event
+ * (GenerationEvent), if a recording is active.
+ *
+ * @author monster
+ */
+public final class GenerationReport {
+
+    /** The phases of the generation. */
+    public enum Phase {
+        /** Computing the next combination of types. */
+        Enumeration,
+        /** Running the filter. */
+        Filtering,
+        /** Producing the source code. */
+        Rendering,
+        /** Comparing with, and writing to, the disk. */
+        Writing
+    }
+
+    /**
+     * The statistics of the generation, for one arity, or for one extension.
+     * Extensions only use the Rendering and Writing phases.
+     */
+    public static final class Arity {
+
+        /** The number of parameters, or -1 for an extension. */
+        private final int arity;
+
+        /** The extension class name, or null. */
+        private final String extension;
+
+        /** The JFR event. */
+        private final GenerationEvent event;
+
+        /** Number of type combinations considered. */
+        private int considered;
+
+        /** Number of type combinations rejected by the filter. */
+        private int filtered;
+
+        /** Number of files written. */
+        private int written;
+
+        /** Number of files that were already up to date. */
+        private int unchanged;
+
+        /** Number of bytes written. */
+        private long bytesWritten;
+
+        /** Time spent per phase, in nanoseconds. */
+        private final long[] nanos = new long[Phase.values().length];
+
+        /** Start of the generation, for this arity. */
+        private final long start = System.nanoTime();
+
+        /** Total time, in nanoseconds. */
+        private long totalNanos;
+
+        /** Constructor */
+        private Arity(final String generator, final int theArity,
+                final String theExtension) {
+            arity = theArity;
+            extension = theExtension;
+            event = new GenerationEvent();
+            event.generator = generator;
+            event.arity = theArity;
+            event.extension = theExtension;
+            event.begin();
+        }
+
+        /** Records that one type combination is considered. */
+        public void considered() {
+            considered++;
+        }
+
+        /** Records that one type combination was rejected by the filter. */
+        public void filtered() {
+            filtered++;
+        }
+
+        /** Records that one file was written. */
+        public void written(final long bytes) {
+            written++;
+            bytesWritten += bytes;
+        }
+
+        /** Records that one file was already up to date. */
+        public void unchanged() {
+            unchanged++;
+        }
+
+        /**
+         * Adds the time since <code>since</code> to the given phase, and
+         * returns the current time, so that calls can be chained.
+         */
+        public long lap(final Phase phase, final long since) {
+            final long now = System.nanoTime();
+            nanos[phase.ordinal()] += now - since;
+            return now;
+        }
+
+        /** Ends the generation for this arity. */
+        private void end() {
+            event.end();
+            totalNanos = System.nanoTime() - start;
+            if (event.shouldCommit()) {
+                event.considered = considered;
+                event.filtered = filtered;
+                event.written = written;
+                event.unchanged = unchanged;
+                event.bytesWritten = bytesWritten;
+                event.enumeration = nanos[Phase.Enumeration.ordinal()];
+                event.filtering = nanos[Phase.Filtering.ordinal()];
+                event.rendering = nanos[Phase.Rendering.ordinal()];
+                event.writing = nanos[Phase.Writing.ordinal()];
+                event.commit();
+            }
+        }
+
+        /** Returns the number of parameters, or -1 for an extension. */
+        public int getArity() {
+            return arity;
+        }
+
+        /** Returns the extension class name, or null. */
+        public String getExtension() {
+            return extension;
+        }
+
+        /** Returns the number of type combinations considered. */
+        public int getConsidered() {
+            return considered;
+        }
+
+        /** Returns the number of type combinations rejected by the filter. */
+        public int getFiltered() {
+            return filtered;
+        }
+
+        /** Returns the number of files written. */
+        public int getWritten() {
+            return written;
+        }
+
+        /** Returns the number of files that were already up to date. */
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        /** Returns the number of bytes written. */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /** Returns the time spent in the given phase, in nanoseconds. */
+        public long getNanos(final Phase phase) {
+            return nanos[phase.ordinal()];
+        }
+
+        /** Returns the total time, in nanoseconds. */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+    }
+
+    /** The generator class name. */
+    private final String generator;
+
+    /** The statistics per arity. */
+    private final List<Arity> arities = new ArrayList<>();
+
+    /** The statistics per extension. */
+    private final List<Arity> extensions = new ArrayList<>();
+
+    /** Start of the generation. */
+    private final long start = System.nanoTime();
+
+    /** Total time, in nanoseconds. */
+    private long totalNanos;
+
+    /** Constructor */
+    public GenerationReport(final String theGenerator) {
+        generator = theGenerator;
+    }
+
+    /** Starts the generation for the given arity. */
+    public Arity startArity(final int arity) {
+        final Arity result = new Arity(generator, arity, null);
+        arities.add(result);
+        return result;
+    }
+
+    /** Ends the generation for the given arity, or extension. */
+    public void endArity(final Arity arity) {
+        arity.end();
+    }
+
+    /** Starts the generation for the given extension. */
+    public Arity startExtension(final String extension) {
+        final Arity result = new Arity(generator, -1, extension);
+        extensions.add(result);
+        return result;
+    }
+
+    /** Ends the generation. */
+    public void end() {
+        totalNanos = System.nanoTime() - start;
+    }
+
+    /** Returns the generator class name. */
+    public String getGenerator() {
+        return generator;
+    }
+
+    /** Returns the statistics per arity. */
+    public List<Arity> getArities() {
+        return Collections.unmodifiableList(arities);
+    }
+
+    /** Returns the statistics per extension. */
+    public List<Arity> getExtensions() {
+        return Collections.unmodifiableList(extensions);
+    }
+
+    /** Returns the statistics of all arities, and all extensions. */
+    private List<Arity> all() {
+        final List<Arity> result = new ArrayList<>(arities);
+        result.addAll(extensions);
+        return result;
+    }
+
+    /** Returns the total time, in nanoseconds. */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /** Returns the number of type combinations considered. */
+    public int getConsidered() {
+        int result = 0;
+        for (final Arity a : all()) {
+            result += a.considered;
+        }
+        return result;
+    }
+
+    /** Returns the number of type combinations rejected by the filter. */
+    public int getFiltered() {
+        int result = 0;
+        for (final Arity a : all()) {
+            result += a.filtered;
+        }
+        return result;
+    }
+
+    /** Returns the number of files written. */
+    public int getWritten() {
+        int result = 0;
+        for (final Arity a : all()) {
+            result += a.written;
+        }
+        return result;
+    }
+
+    /** Returns the number of files that were already up to date. */
+    public int getUnchanged() {
+        int result = 0;
+        for (final Arity a : all()) {
+            result += a.unchanged;
+        }
+        return result;
+    }
+
+    /** Returns the number of bytes written. */
+    public long getBytesWritten() {
+        long result = 0;
+        for (final Arity a : all()) {
+            result += a.bytesWritten;
+        }
+        return result;
+    }
+
+    /** Returns the time spent in the given phase, in nanoseconds. */
+    public long getNanos(final Phase phase) {
+        long result = 0;
+        for (final Arity a : all()) {
+            result += a.nanos[phase.ordinal()];
+        }
+        return result;
+    }
+
+    /** Returns the report as JSON. */
+    public String toJson() {
+        final StringBuilder buf = new StringBuilder(1024);
+        buf.append("{\n");
+        buf.append("  \"generator\": \"").append(generator).append("\",\n");
+        buf.append("  \"totalNanos\": ").append(totalNanos).append(",\n");
+        appendCounts(buf, "  ", getConsidered(), getFiltered(), getWritten(),
+                getUnchanged(), getBytesWritten());
+        buf.append("  \"phaseNanos\": {");
+        appendPhases(buf, getNanos(Phase.Enumeration),
+                getNanos(Phase.Filtering), getNanos(Phase.Rendering),
+                getNanos(Phase.Writing));
+        buf.append("},\n");
+        appendList(buf, "arities", arities);
+        buf.append(",\n");
+        appendList(buf, "extensions", extensions);
+        buf.append("\n");
+        buf.append("}\n");
+        return buf.toString();
+    }
+
+    /** Appends a list of statistics. */
+    private static void appendList(final StringBuilder buf, final String name,
+            final List<Arity> list) {
+        buf.append("  \"").append(name).append("\": [");
+        for (int i = 0; i < list.size(); i++) {
+            final Arity a = list.get(i);
+            buf.append((i == 0) ? "\n" : ",\n");
+            buf.append("    {\n");
+            if (a.extension == null) {
+                buf.append("      \"arity\": ").append(a.arity).append(",\n");
+            } else {
+                buf.append("      \"extension\": \"").append(a.extension)
+                        .append("\",\n");
+            }
+            buf.append("      \"totalNanos\": ").append(a.totalNanos)
+                    .append(",\n");
+            appendCounts(buf, "      ", a.considered, a.filtered, a.written,
+                    a.unchanged, a.bytesWritten);
+            buf.append("      \"phaseNanos\": {");
+            appendPhases(buf, a.nanos[Phase.Enumeration.ordinal()],
+                    a.nanos[Phase.Filtering.ordinal()],
+                    a.nanos[Phase.Rendering.ordinal()],
+                    a.nanos[Phase.Writing.ordinal()]);
+            buf.append("}\n");
+            buf.append("    }");
+        }
+        buf.append(list.isEmpty() ? "]" : "\n  ]");
+    }
+
+    /** Writes the report as JSON to the given file. */
+    public void writeJson(final File file) {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try {
+            Files.write(file.toPath(),
+                    toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            throw new IllegalStateException("Failed to write to " + file, e);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%d considered, %d filtered, %d written (%d bytes), "
+                        + "%d unchanged in %d ms (enumeration %d ms, "
+                        + "filtering %d ms, rendering %d ms, writing %d ms)",
+                getConsidered(), getFiltered(), getWritten(),
+                getBytesWritten(), getUnchanged(), totalNanos / 1000000,
+                getNanos(Phase.Enumeration) / 1000000,
+                getNanos(Phase.Filtering) / 1000000,
+                getNanos(Phase.Rendering) / 1000000,
+                getNanos(Phase.Writing) / 1000000);
+    }
+
+    /** Appends the counters. */
+    private static void appendCounts(final StringBuilder buf,
+            final String indent, final int considered, final int filtered,
+            final int written, final int unchanged, final long bytesWritten) {
+        buf.append(indent).append("\"considered\": ").append(considered)
+                .append(",\n");
+        buf.append(indent).append("\"filtered\": ").append(filtered)
+                .append(",\n");
+        buf.append(indent).append("\"written\": ").append(written)
+                .append(",\n");
+        buf.append(indent).append("\"unchanged\": ").append(unchanged)
+                .append(",\n");
+        buf.append(indent).append("\"bytesWritten\": ").append(bytesWritten)
+                .append(",\n");
+    }
+
+    /** Appends the time per phase. */
+    private static void appendPhases(final StringBuilder buf,
+            final long enumeration, final long filtering,
+            final long rendering, final long writing) {
+        buf.append("\"enumeration\": ").append(enumeration);
+        buf.append(", \"filtering\": ").append(filtering);
+        buf.append(", \"rendering\": ").append(rendering);
+        buf.append(", \"writing\": ").append(writing);
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.fuser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the class file of a fused functor. The class has one final field
+ * per stage, a constructor taking all the stages, and implements the
+ * functor method by calling every stage in turn, directly passing the result
+ * of one stage to the next one.
+ *
+ * The code is straight-line, so no stack map frames are required.
+ *
+ * @author monster
+ */
+final class FusedClassWriter {
+
+    /** Class file major version (Java 8). */
+    private static final int VERSION = 52;
+
+    /** ACC_PUBLIC */
+    private static final int ACC_PUBLIC = 0x0001;
+
+    /** ACC_PRIVATE */
+    private static final int ACC_PRIVATE = 0x0002;
+
+    /** ACC_FINAL */
+    private static final int ACC_FINAL = 0x0010;
+
+    /** ACC_SUPER */
+    private static final int ACC_SUPER = 0x0020;
+
+    /** Constant pool tags. */
+    private static final int UTF8 = 1, CLASS = 7, FIELD = 9, METHOD = 10,
+            INTERFACE_METHOD = 11, NAME_AND_TYPE = 12;
+
+    /** The opcodes used. */
+    private static final int ALOAD_0 = 0x2a, ILOAD = 0x15, LLOAD = 0x16,
+            FLOAD = 0x17, DLOAD = 0x18, ALOAD = 0x19, IRETURN = 0xac,
+            LRETURN = 0xad, FRETURN = 0xae, DRETURN = 0xaf, ARETURN = 0xb0,
+            RETURN = 0xb1, GETFIELD = 0xb4, PUTFIELD = 0xb5,
+            INVOKESPECIAL = 0xb7, INVOKEINTERFACE = 0xb9;
+
+    /** The constant pool content. */
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+
+    /** The constant pool output. */
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+
+    /** The constant pool index of every entry. */
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+
+    /** The next constant pool index. */
+    private int nextIndex = 1;
+
+    /** Returns the index of a constant pool entry, adding it if needed. */
+    private int entry(final String key, final int tag, final Object... values)
+            throws IOException {
+        final Integer index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        pool.writeByte(tag);
+        for (final Object value : values) {
+            if (value instanceof String) {
+                pool.writeUTF((String) value);
+            } else {
+                pool.writeShort((Integer) value);
+            }
+        }
+        final int result = nextIndex++;
+        poolIndex.put(key, result);
+        return result;
+    }
+
+    /** Returns the index of an UTF8 entry. */
+    private int utf8(final String value) throws IOException {
+        return entry("U" + value, UTF8, value);
+    }
+
+    /** Returns the index of a Class entry. */
+    private int type(final String internalName) throws IOException {
+        return entry("C" + internalName, CLASS, utf8(internalName));
+    }
+
+    /** Returns the index of a NameAndType entry. */
+    private int nameAndType(final String name, final String desc)
+            throws IOException {
+        return entry("N" + name + ":" + desc, NAME_AND_TYPE, utf8(name),
+                utf8(desc));
+    }
+
+    /** Returns the index of a field, method or interface method reference. */
+    private int ref(final int tag, final String owner, final String name,
+            final String desc) throws IOException {
+        return entry(tag + owner + "." + name + ":" + desc, tag, type(owner),
+                nameAndType(name, desc));
+    }
+
+    /** Returns the internal name of a class. */
+    private static String internalName(final Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    /** Returns the descriptor of a method. */
+    private static String descriptor(final Method method) {
+        return MethodType.methodType(method.getReturnType(),
+                method.getParameterTypes()).toMethodDescriptorString();
+    }
+
+    /** Returns the number of local variable slots used by a type. */
+    private static int slots(final Class<?> type) {
+        return ((type == long.class) || (type == double.class)) ? 2 : 1;
+    }
+
+    /** Returns the load opcode of a type. */
+    private static int load(final Class<?> type) {
+        if (!type.isPrimitive()) {
+            return ALOAD;
+        }
+        if (type == long.class) {
+            return LLOAD;
+        }
+        if (type == float.class) {
+            return FLOAD;
+        }
+        if (type == double.class) {
+            return DLOAD;
+        }
+        return ILOAD;
+    }
+
+    /** Returns the return opcode of a type. */
+    private static int ret(final Class<?> type) {
+        if (type == void.class) {
+            return RETURN;
+        }
+        if (!type.isPrimitive()) {
+            return ARETURN;
+        }
+        if (type == long.class) {
+            return LRETURN;
+        }
+        if (type == float.class) {
+            return FRETURN;
+        }
+        if (type == double.class) {
+            return DRETURN;
+        }
+        return IRETURN;
+    }
+
+    /**
+     * Returns the class file of a fused functor.
+     *
+     * @param className the internal name of the class
+     * @param target the implemented functor interface
+     * @param targetMethod the functor method of target
+     * @param stages the functor interface of every stage
+     * @param stageMethods the functor method of every stage
+     */
+    byte[] write(final String className, final Class<?> target,
+            final Method targetMethod, final Class<?>[] stages,
+            final Method[] stageMethods) {
+        try {
+            final int n = stages.length;
+            final int thisClass = type(className);
+            final int superClass = type("java/lang/Object");
+            final int targetInterface = type(internalName(target));
+            final int[] fields = new int[n];
+            final int[] methods = new int[n];
+            String ctorDesc = "(";
+            for (int i = 0; i < n; i++) {
+                final String stageType = "L" + internalName(stages[i]) + ";";
+                ctorDesc += stageType;
+                fields[i] = ref(FIELD, className, "s" + i, stageType);
+                methods[i] = ref(INTERFACE_METHOD, internalName(stages[i]),
+                        stageMethods[i].getName(), descriptor(stageMethods[i]));
+            }
+            ctorDesc += ")V";
+            final int objectInit = ref(METHOD, "java/lang/Object", "<init>",
+                    "()V");
+            final int codeName = utf8("Code");
+
+            // Constructor
+            final ByteArrayOutputStream ctorBytes = new ByteArrayOutputStream();
+            final DataOutputStream ctor = new DataOutputStream(ctorBytes);
+            ctor.writeByte(ALOAD_0);
+            ctor.writeByte(INVOKESPECIAL);
+            ctor.writeShort(objectInit);
+            for (int i = 0; i < n; i++) {
+                ctor.writeByte(ALOAD_0);
+                ctor.writeByte(ALOAD);
+                ctor.writeByte(i + 1);
+                ctor.writeByte(PUTFIELD);
+                ctor.writeShort(fields[i]);
+            }
+            ctor.writeByte(RETURN);
+
+            // Functor method
+            final ByteArrayOutputStream applyBytes = new ByteArrayOutputStream();
+            final DataOutputStream apply = new DataOutputStream(applyBytes);
+            for (int i = n - 1; i >= 0; i--) {
+                apply.writeByte(ALOAD_0);
+                apply.writeByte(GETFIELD);
+                apply.writeShort(fields[i]);
+            }
+            int slot = 1;
+            for (final Class<?> param : targetMethod.getParameterTypes()) {
+                apply.writeByte(load(param));
+                apply.writeByte(slot);
+                slot += slots(param);
+            }
+            for (int i = 0; i < n; i++) {
+                int argSlots = 1;
+                for (final Class<?> param : stageMethods[i].getParameterTypes()) {
+                    argSlots += slots(param);
+                }
+                apply.writeByte(INVOKEINTERFACE);
+                apply.writeShort(methods[i]);
+                apply.writeByte(argSlots);
+                apply.writeByte(0);
+            }
+            apply.writeByte(ret(targetMethod.getReturnType()));
+
+            final int ctorName = utf8("<init>");
+            final int ctorType = utf8(ctorDesc);
+            final int applyName = utf8(targetMethod.getName());
+            final int applyType = utf8(descriptor(targetMethod));
+            final int[] fieldNames = new int[n];
+            final int[] fieldTypes = new int[n];
+            for (int i = 0; i < n; i++) {
+                fieldNames[i] = utf8("s" + i);
+                fieldTypes[i] = utf8("L" + internalName(stages[i]) + ";");
+            }
+
+            final ByteArrayOutputStream result = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(result);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(nextIndex);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(targetInterface);
+            out.writeShort(n);
+            for (int i = 0; i < n; i++) {
+                out.writeShort(ACC_PRIVATE | ACC_FINAL);
+                out.writeShort(fieldNames[i]);
+                out.writeShort(fieldTypes[i]);
+                out.writeShort(0);
+            }
+            out.writeShort(2);
+            writeMethod(out, ACC_PUBLIC, ctorName, ctorType, codeName, 2,
+                    n + 1, ctorBytes.toByteArray());
+            writeMethod(out, ACC_PUBLIC | ACC_FINAL, applyName, applyType,
+                    codeName, n + Math.max(slot - 1, 2), slot,
+                    applyBytes.toByteArray());
+            out.writeShort(0);
+            out.flush();
+            return result.toByteArray();
+        } catch (final IOException e) {
+            // Cannot happen with a ByteArrayOutputStream
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /** Writes one method, with a Code attribute. */
+    private static void writeMethod(final DataOutputStream out,
+            final int access, final int name, final int desc,
+            final int codeName, final int maxStack, final int maxLocals,
+            final byte[] code) throws IOException {
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(desc);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import com.blockwithme.fn.gen.GenerationReport;
+
+/**
+ * Base class of the generator mojos.
+ *
+ * The generation is skipped, if the fingerprint of the generator code and of
+ * all the parameters is the same as the one of the previous run, and the
+ * digest of the paths and contents of the files in the output directory is
+ * still the one recorded after that run, so that an edited, truncated,
+ * added or deleted file causes a new generation. Since the generated files
+ * are then left untouched, the compiler will also find nothing to
+ * recompile.
+ *
+ * @author monster
+ */
+public abstract class AbstractGenMojo extends AbstractMojo {
+
+    /** The current Maven project. */
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    protected MavenProject project;
+
+    /** The directory where the fingerprint of the last generation is stored. */
+    @Parameter(defaultValue = "${project.build.directory}/primitivefunc", required = true)
+    protected File fingerprintDirectory;
+
+    /** The path to the license file, to use as header. Can be empty. */
+    @Parameter
+    protected File licenseFile;
+
+    /** The name of the filter class (optional). */
+    @Parameter
+    protected String filter;
+
+    /** The JSON file where the generation report is written (optional). */
+    @Parameter
+    protected File reportFile;
+
+    /** Forces the generation, even when nothing changed. */
+    @Parameter(property = "primitivefunc.force", defaultValue = "false")
+    protected boolean force;
+
+    /** Skips the generation completely. */
+    @Parameter(property = "primitivefunc.skip", defaultValue = "false")
+    protected boolean skip;
+
+    /** Returns the output directory. */
+    protected abstract File getOutputDirectory();
+
+    /** Returns the name of the fingerprint file. */
+    protected abstract String getFingerprintName();
+
+    /** Adds the generator code and all parameters to the fingerprint. */
+    protected abstract void fingerprint(Fingerprint fingerprint)
+            throws IOException;
+
+    /** Runs the generator. */
+    protected abstract GenerationReport generate();
+
+    /* (non-Javadoc)
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    @Override
+    public final void execute() throws MojoExecutionException {
+        final File outputDirectory = getOutputDirectory();
+        project.addCompileSourceRoot(outputDirectory.getAbsolutePath());
+        if (skip) {
+            getLog().info("Generation skipped.");
+            return;
+        }
+        final String expected;
+        try {
+            final Fingerprint fingerprint = new Fingerprint();
+            fingerprint(fingerprint.addFile("licenseFile", licenseFile).add(
+                    "filter", filter));
+            if ((filter != null) && !filter.isEmpty()) {
+                fingerprint.addCode(Class.forName(filter));
+            }
+            expected = fingerprint.toHex();
+        } catch (final IOException | ClassNotFoundException e) {
+            throw new MojoExecutionException("Cannot compute fingerprint", e);
+        }
+        final File fingerprintFile = new File(fingerprintDirectory,
+                getFingerprintName());
+        if (!force
+                && (expected + " " + digest(outputDirectory))
+                        .equals(read(fingerprintFile))) {
+            getLog().info(
+                    "Generated sources are up to date in " + outputDirectory);
+            return;
+        }
+        final GenerationReport report;
+        try {
+            report = generate();
+            if (reportFile != null) {
+                report.writeJson(reportFile);
+            }
+        } catch (final IllegalArgumentException | IllegalStateException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        getLog().info(report.toString());
+        fingerprintDirectory.mkdirs();
+        try {
+            Files.write(fingerprintFile.toPath(),
+                    (expected + " " + digest(outputDirectory))
+                            .getBytes(StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Cannot write "
+                    + fingerprintFile, e);
+        }
+    }
+
+    /** Returns the path of the license file, or "" if none. */
+    protected final String getLicensePath() {
+        return (licenseFile == null) ? "" : licenseFile.getAbsolutePath();
+    }
+
+    /** Reads the previous fingerprint, if any. */
+    private static String read(final File file) {
+        if (file.isFile()) {
+            try {
+                return new String(Files.readAllBytes(file.toPath()),
+                        StandardCharsets.UTF_8).trim();
+            } catch (final IOException e) {
+                // Then we just generate again.
+            }
+        }
+        return null;
+    }
+
+    /** Returns the digest of the files in the given directory. */
+    private static String digest(final File dir) throws MojoExecutionException {
+        try {
+            return new Fingerprint().addTree(dir).toHex();
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Cannot read " + dir, e);
+        }
+    }
+}
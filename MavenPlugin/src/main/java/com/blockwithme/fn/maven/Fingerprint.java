@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Computes a digest over everything that influences the generated sources:
+ * the generator code itself, and all the generation parameters.
+ *
+ * @author monster
+ */
+final class Fingerprint {
+
+    /** Hexadecimal digits. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** The digest. */
+    private final MessageDigest digest;
+
+    /** Constructor */
+    Fingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /** Adds a named parameter value. */
+    Fingerprint add(final String name, final Object value) {
+        update(name);
+        update(String.valueOf(value));
+        return this;
+    }
+
+    /** Adds the content of a file; a missing file counts as empty. */
+    Fingerprint addFile(final String name, final File file)
+            throws IOException {
+        update(name);
+        if ((file != null) && file.isFile()) {
+            digest.update(Files.readAllBytes(file.toPath()));
+        }
+        return this;
+    }
+
+    /**
+     * Adds the code of the given class. If it comes from a jar, the whole
+     * jar is used, so that any change to the generator invalidates the
+     * previous output. Otherwise, the class file itself is used.
+     */
+    Fingerprint addCode(final Class<?> type) throws IOException {
+        update(type.getName());
+        final CodeSource source = type.getProtectionDomain().getCodeSource();
+        final URL location = (source == null) ? null : source.getLocation();
+        File file = null;
+        if (location != null) {
+            try {
+                file = new File(location.toURI());
+            } catch (final URISyntaxException | IllegalArgumentException e) {
+                file = null;
+            }
+        }
+        if ((file != null) && file.isDirectory()) {
+            file = new File(file, type.getName().replace('.', File.separatorChar)
+                    + ".class");
+        }
+        if ((file != null) && file.isFile()) {
+            digest.update(Files.readAllBytes(file.toPath()));
+        } else {
+            update(String.valueOf(location));
+        }
+        return this;
+    }
+
+    /**
+     * Adds the relative path and the content of every file in the given
+     * directory, recursively, in name order; a missing directory counts as
+     * empty.
+     */
+    Fingerprint addTree(final File dir) throws IOException {
+        return addTree(dir, "");
+    }
+
+    /** Adds the files of a directory, with the given path prefix. */
+    private Fingerprint addTree(final File dir, final String prefix)
+            throws IOException {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (final File file : files) {
+                final String path = prefix + file.getName();
+                if (file.isDirectory()) {
+                    addTree(file, path + "/");
+                } else {
+                    addFile(path, file);
+                }
+            }
+        }
+        return this;
+    }
+
+    /** Returns the fingerprint, as an hexadecimal String. */
+    String toHex() {
+        final byte[] bytes = digest.digest();
+        final char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            result[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(result);
+    }
+
+    /** Adds a String, followed by a separator. */
+    private void update(final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.maven;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.blockwithme.fn.gen.GenFunc;
+import com.blockwithme.fn.gen.GenerationReport;
+
+/**
+ * Generates the functor interfaces, using
+ * {@link com.blockwithme.fn.gen.GenFunc}.
+ *
+ * @author monster
+ */
+@Mojo(name = "generate-functions", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true)
+public class GenFuncMojo extends AbstractGenMojo {
+
+    /** The directory where the source files are generated. */
+    @Parameter(defaultValue = "${project.basedir}/src/main/java", required = true)
+    private File outputDirectory;
+
+    /** The name of the package in which the interfaces are created. */
+    @Parameter(defaultValue = "com.blockwithme.fn", required = true)
+    private String packageName;
+
+    /** The interface name prefix, for "void" Functors. */
+    @Parameter(defaultValue = "Proc", required = true)
+    private String procNamePrefix;
+
+    /** The interface name infix, for non "void" Functors. */
+    @Parameter(defaultValue = "Func", required = true)
+    private String funcNameInfix;
+
+    /** The method name. */
+    @Parameter(defaultValue = "apply", required = true)
+    private String function;
+
+    /** The optional name of a thrown "Throwable". */
+    @Parameter
+    private String exceptions;
+
+    /** The minimum number of parameters the functions will have. */
+    @Parameter(defaultValue = "0", required = true)
+    private int minParam;
+
+    /** The maximum number of parameters the functions will have. */
+    @Parameter(defaultValue = "2", required = true)
+    private int maxParam;
+
+    /** Should the names be like "ProcZL" (true) or "ProcBooleanLong" (false)? */
+    @Parameter(defaultValue = "false", required = true)
+    private boolean shortName;
+
+    /**
+     * Comma-separated names of classes implementing
+     * {@link com.blockwithme.fn.gen.FuncExtension} (optional).
+     */
+    @Parameter
+    private String extensions;
+
+    /** Should the functor interfaces be generated, or only the extensions? */
+    @Parameter(defaultValue = "true", required = true)
+    private boolean interfaces;
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.maven.AbstractGenMojo#getOutputDirectory()
+     */
+    @Override
+    protected File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.maven.AbstractGenMojo#getFingerprintName()
+     */
+    @Override
+    protected String getFingerprintName() {
+        return "functions.fingerprint";
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.maven.AbstractGenMojo#fingerprint(com.blockwithme.fn.maven.Fingerprint)
+     */
+    @Override
+    protected void fingerprint(final Fingerprint fingerprint)
+            throws IOException {
+        fingerprint.addCode(GenFunc.class)
+                .add("outputDirectory", outputDirectory.getAbsolutePath())
+                .add("packageName", packageName)
+                .add("procNamePrefix", procNamePrefix)
+                .add("funcNameInfix", funcNameInfix)
+                .add("function", function).add("exceptions", exceptions)
+                .add("minParam", minParam).add("maxParam", maxParam)
+                .add("shortName", shortName)
+                .add("extensions", extensions).add("interfaces", interfaces);
+        if (extensions != null) {
+            for (final String extension : extensions.split(",")) {
+                if (!extension.trim().isEmpty()) {
+                    try {
+                        fingerprint.addCode(Class.forName(extension.trim()));
+                    } catch (final ClassNotFoundException e) {
+                        throw new IOException("Unknown extension: "
+                                + extension, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.maven.AbstractGenMojo#generate()
+     */
+    @Override
+    protected GenerationReport generate() {
+        return GenFunc.generate(outputDirectory.getAbsolutePath(), getLicensePath(),
+                packageName, funcNameInfix, procNamePrefix, function,
+                (exceptions == null) ? "" : exceptions.trim(),
+                String.valueOf(minParam), String.valueOf(maxParam),
+                String.valueOf(shortName), filter, extensions,
+                String.valueOf(interfaces));
+    }
+}
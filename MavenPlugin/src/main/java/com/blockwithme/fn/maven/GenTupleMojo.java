@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.maven;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.blockwithme.fn.gen.GenerationReport;
+import com.blockwithme.tuples.gen.GenTuple;
+
+/**
+ * Generates the tuple classes, using
+ * {@link com.blockwithme.tuples.gen.GenTuple}.
+ *
+ * @author monster
+ */
+@Mojo(name = "generate-tuples", defaultPhase = LifecyclePhase.GENERATE_SOURCES, threadSafe = true)
+public class GenTupleMojo extends AbstractGenMojo {
+
+    /** The directory where the source files are generated. */
+    @Parameter(defaultValue = "${project.basedir}/src/main/java", required = true)
+    private File outputDirectory;
+
+    /** The name of the package in which the classes are created. */
+    @Parameter(defaultValue = "com.blockwithme.tuples", required = true)
+    private String packageName;
+
+    /** The minimum number of parameters the tuples will have. */
+    @Parameter(defaultValue = "1", required = true)
+    private int minParam;
+
+    /** The maximum number of parameters the tuples will have. */
+    @Parameter(defaultValue = "4", required = true)
+    private int maxParam;
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.maven.AbstractGenMojo#getOutputDirectory()
+     */
+    @Override
+    protected File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.maven.AbstractGenMojo#getFingerprintName()
+     */
+    @Override
+    protected String getFingerprintName() {
+        return "tuples.fingerprint";
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.maven.AbstractGenMojo#fingerprint(com.blockwithme.fn.maven.Fingerprint)
+     */
+    @Override
+    protected void fingerprint(final Fingerprint fingerprint)
+            throws IOException {
+        fingerprint.addCode(GenTuple.class)
+                .add("outputDirectory", outputDirectory.getAbsolutePath())
+                .add("packageName", packageName).add("minParam", minParam)
+                .add("maxParam", maxParam);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.maven.AbstractGenMojo#generate()
+     */
+    @Override
+    protected GenerationReport generate() {
+        return GenTuple.generate(outputDirectory.getAbsolutePath(), getLicensePath(),
+                packageName, String.valueOf(minParam),
+                String.valueOf(maxParam), filter);
+    }
+}
@@ -1,10 +1,72 @@
 package com.blockwithme.fn.test;
 
+import java.util.Arrays;
+import java.util.List;
+
+import com.blockwithme.fn.collections.IntDoubleHashMap;
+import com.blockwithme.fn.join.Aggregates;
+import com.blockwithme.fn.join.IntGroupBy;
+import com.blockwithme.fn.join.IntHashTable;
+import com.blockwithme.fn1.DoubleFuncObject;
+import com.blockwithme.fn1.IntFuncObject;
+import com.blockwithme.fn2.ProcObjectObject;
+
+import com.blockwithme.tuples.T2IL;
+import com.blockwithme.tuples.T2ILIndex;
 import com.blockwithme.tuples.T2IO;
+import com.blockwithme.tuples.T3ILD;
 
 public class Test {
 
     public static void main(final String[] args) {
         System.out.println(new T2IO<String>(42, "xxx"));
+
+        final T2IL[] tuples = { new T2IL(2, 1L), new T2IL(1, 5L),
+                new T2IL(1, -5L) };
+        Arrays.sort(tuples);
+        System.out.println(Arrays.toString(tuples));
+
+        final T2ILIndex index = new T2ILIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.add(i % 10, i);
+        }
+        final T2ILIndex.Cursor cursor = index.cursor(3, 500L, 4, 0L);
+        long sum = 0;
+        while (cursor.next()) {
+            sum += cursor.get1();
+        }
+        System.out.println(index.size() + " " + sum);
+
+        final List<T2IL> users = Arrays.asList(new T2IL(1, 100L), new T2IL(2,
+                200L));
+        final List<T3ILD> orders = Arrays.asList(new T3ILD(1, 10L, 2.5),
+                new T3ILD(1, 11L, 4.0), new T3ILD(3, 12L, 1.0));
+        final IntFuncObject<T2IL> userId = new IntFuncObject<T2IL>() {
+            @Override
+            public int apply(final T2IL p0) {
+                return p0._0;
+            }
+        };
+        final IntFuncObject<T3ILD> orderUserId = new IntFuncObject<T3ILD>() {
+            @Override
+            public int apply(final T3ILD p0) {
+                return p0._0;
+            }
+        };
+        new IntHashTable<T2IL>(users, userId).leftJoin(orders, orderUserId,
+                new ProcObjectObject<T3ILD, T2IL>() {
+                    @Override
+                    public void apply(final T3ILD p0, final T2IL p1) {
+                        System.out.println(p0 + " -> " + p1);
+                    }
+                });
+        final IntDoubleHashMap totals = IntGroupBy.aggregateDouble(orders,
+                orderUserId, new DoubleFuncObject<T3ILD>() {
+                    @Override
+                    public double apply(final T3ILD p0) {
+                        return p0._2;
+                    }
+                }, Aggregates.DOUBLE_SUM);
+        System.out.println(totals + " " + IntGroupBy.count(orders, orderUserId));
     }
 }
@@ -18,19 +18,21 @@ package com.blockwithme.tuples.gen;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Scanner;
+import java.nio.file.Files;
+import java.util.Arrays;
 
+import com.blockwithme.fn.gen.GenerationReport;
+import com.blockwithme.fn.gen.GenerationReport.Phase;
 import com.blockwithme.fn.util.TupleBase;
 import com.blockwithme.fn.util.Util;
 
 /**
  * <code>GenTuple</code> generates the source-code of the tuples.
  *
- * Usage: GenTuple OutputDirectory LicenseFile PackageName MinimumNumberOfArgs MaximumNumberOfArgs Filter
+ * Usage: GenTuple OutputDirectory LicenseFile PackageName MinimumNumberOfArgs MaximumNumberOfArgs Filter ReportFile
  *
  * OutputDirectory is the directory where the source files are generated. For example, C:\temp\tuples
  * LicenseFile is the path to the license file, to use as header. Can be "" or simply empty. For example, APACHE_LICENSE_HEADER.txt.
@@ -38,6 +40,7 @@ import com.blockwithme.fn.util.Util;
  * MinimumNumberOfArgs is the minimum number of parameters the tuples will have, for example 0.
  * MaximumNumberOfArgs is the maximum number of parameters the tuples will have, for example 3.
  * Filter is the name of a class that implements com.blockwithme.fn.gen.TupleFilter (optional).
+ * ReportFile is the path of a JSON file, where the GenerationReport is written (optional).
  *
  * Hint: It supports up to 5 as the maximum number of parameters,
  * but that would be near 1 million interfaces; not recommended ... ;)
@@ -88,9 +91,23 @@ public class GenTuple {
             "Byte.TYPE", "Character.TYPE", "Short.TYPE", "Integer.TYPE",
             "Long.TYPE", "Float.TYPE", "Double.TYPE", "Object.class" };
 
+    /** The possible parameter types as a class, for the functor name. */
+    private static final Class<?>[] PARAM_CLASSES = { Boolean.TYPE,
+            Byte.TYPE, Character.TYPE, Short.TYPE, Integer.TYPE, Long.TYPE,
+            Float.TYPE, Double.TYPE, Object.class };
+
+    /** The functions comparing the parameter types, including Object. */
+    private static final String[] COMPARE = { "Boolean.compare",
+            "Byte.compare", "Character.compare", "Short.compare",
+            "Integer.compare", "Long.compare", "Float.compare",
+            "Double.compare", "TupleBase.compareObjects" };
+
+    /** Computes the name of the (default) factory functor interfaces. */
+    private static final Util FUNC_UTIL = new Util();
+
     /** Usage */
     private static final String USAGE = "Usage:\n"
-            + "    GenTuple OutputDirectory LicenseFile PackageName MinimumNumberOfArgs MaximumNumberOfArgs Filter\n"
+            + "    GenTuple OutputDirectory LicenseFile PackageName MinimumNumberOfArgs MaximumNumberOfArgs Filter ReportFile\n"
             + "\n"
             + "OutputDirectory is the directory where the source files are generated. For example, 'C:\temp\funcs'\n"
             + "LicenseFile is the path to the license file, to use as header. Can be '' or simply empty. For example, 'APACHE_LICENSE_HEADER.txt'.\n"
@@ -98,6 +115,7 @@ public class GenTuple {
             + "MinimumNumberOfArgs is the minimum number of parameters the functions will have, for example 0.\n"
             + "MaximumNumberOfArgs is the maximum number of parameters the functions will have, for example 3.\n"
             + "Filter is the name of a class that implements com.blockwithme.fn.gen.TupleFilter (optional).\n"
+            + "ReportFile is the optional path of a JSON file, where the generation report is written.\n"
             + "\n"
             + "Hint: It supports up to 5 as the maximum number of parameters,\n"
             + "      but that would be near 1 million classes; not recommended ... ;)\n";
@@ -108,21 +126,446 @@ public class GenTuple {
     /** Maximum number of parameters. */
     public static final int MAXIMUM_PARAMETERS = CLASS_NAME_FORMAT.length - 1;
 
+    /** The format of the index of a tuple. */
+    private static final String INDEX_FORMAT = ""
+            + "import java.util.Arrays;\n"
+            + "\n"
+            + "%22$s/**\n"
+            + " * A sorted set of <code>%1$s</code> tuples, in the order of %1$s.compare(),\n"
+            + " * whose fields are held in primitive arrays, one per field. It is a\n"
+            + " * two-level B+tree: the keys are stored in linked leaves of up to LEAF_SIZE\n"
+            + " * keys, which are grouped in nodes of up to NODE_SIZE leaves. A key is found\n"
+            + " * with a binary search over the first keys of the nodes, then of the leaves\n"
+            + " * of its node, then of the keys of its leaf. Splitting a leaf only shifts the\n"
+            + " * leaves of its node, and splitting a node shifts the nodes, which is\n"
+            + " * O(n / (LEAF_SIZE * NODE_SIZE)). Leaves and nodes are only removed when\n"
+            + " * they become empty, and never merged.\n"
+            + " * The index must not be modified while a Cursor is used.\n"
+            + " * Generated automatically by " + GENERATOR + "\n"
+            + " */\n"
+            + "public class %1$sIndex%2$s {\n"
+            + "\n"
+            + "    /** The maximum number of keys per leaf. */\n"
+            + "    private static final int LEAF_SIZE = 64;\n"
+            + "\n"
+            + "    /** The maximum number of leaves per node. */\n"
+            + "    private static final int NODE_SIZE = 64;\n"
+            + "\n"
+            + "    /** A leaf: the fields of up to LEAF_SIZE sorted keys. */\n"
+            + "    private static final class Leaf {\n"
+            + "        /** The number of keys. */\n"
+            + "        int size;\n"
+            + "\n"
+            + "        /** The next leaf, or null. */\n"
+            + "        Leaf next;\n"
+            + "\n"
+            + "%6$s        /** Sets the key at the given position. */\n"
+            + "        void set(final int i, %4$s) {\n"
+            + "%7$s        }\n"
+            + "\n"
+            + "        /** Compares the key at the given position with the given key. */\n"
+            + "        int compare(final int i, %4$s) {\n"
+            + "            return %1$sIndex.compare(%17$s);\n"
+            + "        }\n"
+            + "\n"
+            + "        /** Clears the references of the keys in [from, to). */\n"
+            + "        void clear(final int from, final int to) {\n"
+            + "%9$s        }\n"
+            + "\n"
+            + "        /** Moves count keys from src, at srcPos, to dest, at destPos. */\n"
+            + "        static void move(final Leaf src, final int srcPos, final Leaf dest,\n"
+            + "                final int destPos, final int count) {\n"
+            + "%8$s        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** A node: up to NODE_SIZE leaves, in order. */\n"
+            + "    private static final class Node {\n"
+            + "        /** The number of leaves. */\n"
+            + "        int count;\n"
+            + "\n"
+            + "        /** The leaves. */\n"
+            + "        final Leaf[] leaves = new Leaf[NODE_SIZE];\n"
+            + "\n"
+            + "        /** Returns the leaf that would contain the given key. */\n"
+            + "        int find(%4$s) {\n"
+            + "            int result = 0;\n"
+            + "            int low = 1;\n"
+            + "            int high = count - 1;\n"
+            + "            while (low <= high) {\n"
+            + "                final int mid = (low + high) >>> 1;\n"
+            + "                if (leaves[mid].compare(0, %5$s) <= 0) {\n"
+            + "                    result = mid;\n"
+            + "                    low = mid + 1;\n"
+            + "                } else {\n"
+            + "                    high = mid - 1;\n"
+            + "                }\n"
+            + "            }\n"
+            + "            return result;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** A cursor over a range of keys, which reads their fields without boxing. */\n"
+            + "    public final class Cursor {\n"
+            + "        /** The leaf of the next key. */\n"
+            + "        private Leaf nextLeaf;\n"
+            + "\n"
+            + "        /** The position of the next key in its leaf. */\n"
+            + "        private int nextIndex;\n"
+            + "\n"
+            + "        /** The leaf of the position after the last key. */\n"
+            + "        private final Leaf endLeaf;\n"
+            + "\n"
+            + "        /** The position after the last key, in its leaf. */\n"
+            + "        private final int endIndex;\n"
+            + "\n"
+            + "        /** The leaf of the current key, or null. */\n"
+            + "        private Leaf leaf;\n"
+            + "\n"
+            + "        /** The position of the current key in its leaf. */\n"
+            + "        private int index;\n"
+            + "\n"
+            + "        /** Constructor */\n"
+            + "        Cursor(final Leaf theNextLeaf, final int theNextIndex,\n"
+            + "                final Leaf theEndLeaf, final int theEndIndex) {\n"
+            + "            nextLeaf = theEndLeaf;\n"
+            + "            nextIndex = theEndIndex;\n"
+            + "            skipEnd();\n"
+            + "            endLeaf = nextLeaf;\n"
+            + "            endIndex = nextIndex;\n"
+            + "            nextLeaf = theNextLeaf;\n"
+            + "            nextIndex = theNextIndex;\n"
+            + "            skipEnd();\n"
+            + "        }\n"
+            + "\n"
+            + "        /** Moves the next position past the end of its leaf, if it has a next leaf. */\n"
+            + "        private void skipEnd() {\n"
+            + "            if ((nextIndex == nextLeaf.size) && (nextLeaf.next != null)) {\n"
+            + "                nextLeaf = nextLeaf.next;\n"
+            + "                nextIndex = 0;\n"
+            + "            }\n"
+            + "        }\n"
+            + "\n"
+            + "        /** Moves to the next key. Returns false, if there are no more keys. */\n"
+            + "        public boolean next() {\n"
+            + "            if ((nextLeaf == endLeaf) && (nextIndex == endIndex)) {\n"
+            + "                leaf = null;\n"
+            + "                return false;\n"
+            + "            }\n"
+            + "            leaf = nextLeaf;\n"
+            + "            index = nextIndex;\n"
+            + "            nextIndex++;\n"
+            + "            skipEnd();\n"
+            + "            return true;\n"
+            + "        }\n"
+            + "\n"
+            + "        /** Returns the leaf of the current key. */\n"
+            + "        private Leaf leaf() {\n"
+            + "            if (leaf == null) {\n"
+            + "                throw new IllegalStateException(\"no current key\");\n"
+            + "            }\n"
+            + "            return leaf;\n"
+            + "        }\n"
+            + "%16$s\n"
+            + "        /** Returns the current key, as a tuple. */\n"
+            + "        public %1$s%2$s tuple() {\n"
+            + "            return new %1$s%2$s(%18$s);\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * The nodes, in order. Only the first leaf of the first node can be\n"
+            + "     * empty, if the index is empty.\n"
+            + "     */\n"
+            + "    private Node[] nodes = empty();\n"
+            + "\n"
+            + "    /** The number of nodes. */\n"
+            + "    private int nodeCount = 1;\n"
+            + "\n"
+            + "    /** The number of keys. */\n"
+            + "    private int size;\n"
+            + "\n"
+            + "    /** Returns the nodes of an empty index. */\n"
+            + "    private static Node[] empty() {\n"
+            + "        final Node node = new Node();\n"
+            + "        node.leaves[0] = new Leaf();\n"
+            + "        node.count = 1;\n"
+            + "        return new Node[] { node };\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Compares two keys, like %1$s.compare(). */\n"
+            + "    static int compare(%10$s) {\n"
+            + "%11$s    }\n"
+            + "\n"
+            + "    /** Returns the number of keys. */\n"
+            + "    public int size() {\n"
+            + "        return size;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns true, if there are no keys. */\n"
+            + "    public boolean isEmpty() {\n"
+            + "        return size == 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Removes all the keys. */\n"
+            + "    public void clear() {\n"
+            + "        nodes = empty();\n"
+            + "        nodeCount = 1;\n"
+            + "        size = 0;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the node that would contain the given key. */\n"
+            + "    private int findNode(%4$s) {\n"
+            + "        int result = 0;\n"
+            + "        int low = 1;\n"
+            + "        int high = nodeCount - 1;\n"
+            + "        while (low <= high) {\n"
+            + "            final int mid = (low + high) >>> 1;\n"
+            + "            if (nodes[mid].leaves[0].compare(0, %5$s) <= 0) {\n"
+            + "                result = mid;\n"
+            + "                low = mid + 1;\n"
+            + "            } else {\n"
+            + "                high = mid - 1;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return result;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the leaf that would contain the given key. */\n"
+            + "    private Leaf findLeaf(%4$s) {\n"
+            + "        final Node node = nodes[findNode(%5$s)];\n"
+            + "        return node.leaves[node.find(%5$s)];\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns the position of the first key not less than the given key, in the leaf. */\n"
+            + "    private static int search(final Leaf leaf, %4$s) {\n"
+            + "        int low = 0;\n"
+            + "        int high = leaf.size;\n"
+            + "        while (low < high) {\n"
+            + "            final int mid = (low + high) >>> 1;\n"
+            + "            if (leaf.compare(mid, %5$s) < 0) {\n"
+            + "                low = mid + 1;\n"
+            + "            } else {\n"
+            + "                high = mid;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return low;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns true, if the index contains the key. */\n"
+            + "    public boolean contains(%3$s) {\n"
+            + "        final Leaf leaf = findLeaf(%5$s);\n"
+            + "        final int i = search(leaf, %5$s);\n"
+            + "        return (i < leaf.size) && (leaf.compare(i, %5$s) == 0);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Inserts a leaf in a node, at the given position, splitting the node if full. */\n"
+            + "    private void insertLeaf(final int n, final int index, final Leaf leaf) {\n"
+            + "        Node node = nodes[n];\n"
+            + "        int i = index;\n"
+            + "        if (node.count == NODE_SIZE) {\n"
+            + "            final Node right = new Node();\n"
+            + "            final int half = NODE_SIZE / 2;\n"
+            + "            if ((i < NODE_SIZE) || (n < nodeCount - 1)) {\n"
+            + "                // Appending in order fills the nodes completely.\n"
+            + "                System.arraycopy(node.leaves, half, right.leaves, 0,\n"
+            + "                        NODE_SIZE - half);\n"
+            + "                Arrays.fill(node.leaves, half, NODE_SIZE, null);\n"
+            + "                right.count = NODE_SIZE - half;\n"
+            + "                node.count = half;\n"
+            + "            }\n"
+            + "            if (nodeCount == nodes.length) {\n"
+            + "                nodes = Arrays.copyOf(nodes, nodeCount * 2);\n"
+            + "            }\n"
+            + "            System.arraycopy(nodes, n + 1, nodes, n + 2, nodeCount - n - 1);\n"
+            + "            nodes[n + 1] = right;\n"
+            + "            nodeCount++;\n"
+            + "            if (i > half) {\n"
+            + "                i -= node.count;\n"
+            + "                node = right;\n"
+            + "            }\n"
+            + "        }\n"
+            + "        System.arraycopy(node.leaves, i, node.leaves, i + 1, node.count - i);\n"
+            + "        node.leaves[i] = leaf;\n"
+            + "        node.count++;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Removes an empty leaf from a node, and the node, if it becomes empty. */\n"
+            + "    private void removeLeaf(final int n, final int index) {\n"
+            + "        final Node node = nodes[n];\n"
+            + "        final Leaf leaf = node.leaves[index];\n"
+            + "        if (index > 0) {\n"
+            + "            node.leaves[index - 1].next = leaf.next;\n"
+            + "        } else if (n > 0) {\n"
+            + "            final Node previous = nodes[n - 1];\n"
+            + "            previous.leaves[previous.count - 1].next = leaf.next;\n"
+            + "        }\n"
+            + "        System.arraycopy(node.leaves, index + 1, node.leaves, index,\n"
+            + "                node.count - index - 1);\n"
+            + "        node.leaves[--node.count] = null;\n"
+            + "        if (node.count == 0) {\n"
+            + "            System.arraycopy(nodes, n + 1, nodes, n, nodeCount - n - 1);\n"
+            + "            nodes[--nodeCount] = null;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Inserts a key in a leaf, which is not full. */\n"
+            + "    private static void insert(final Leaf leaf, final int i, %4$s) {\n"
+            + "        Leaf.move(leaf, i, leaf, i + 1, leaf.size - i);\n"
+            + "        leaf.set(i, %5$s);\n"
+            + "        leaf.size++;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Adds a key. Returns false, if it was already present. */\n"
+            + "    public boolean add(%3$s) {\n"
+            + "        final int n = findNode(%5$s);\n"
+            + "        final int l = nodes[n].find(%5$s);\n"
+            + "        final Leaf leaf = nodes[n].leaves[l];\n"
+            + "        final int i = search(leaf, %5$s);\n"
+            + "        if ((i < leaf.size) && (leaf.compare(i, %5$s) == 0)) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        if (leaf.size < LEAF_SIZE) {\n"
+            + "            insert(leaf, i, %5$s);\n"
+            + "        } else {\n"
+            + "            final Leaf right = new Leaf();\n"
+            + "            if ((i == LEAF_SIZE) && (leaf.next == null)) {\n"
+            + "                // Appending in order fills the leaves completely.\n"
+            + "                insert(right, 0, %5$s);\n"
+            + "            } else {\n"
+            + "                final int half = LEAF_SIZE / 2;\n"
+            + "                Leaf.move(leaf, half, right, 0, LEAF_SIZE - half);\n"
+            + "                leaf.clear(half, LEAF_SIZE);\n"
+            + "                right.size = LEAF_SIZE - half;\n"
+            + "                leaf.size = half;\n"
+            + "                if (i > half) {\n"
+            + "                    insert(right, i - half, %5$s);\n"
+            + "                } else {\n"
+            + "                    insert(leaf, i, %5$s);\n"
+            + "                }\n"
+            + "            }\n"
+            + "            right.next = leaf.next;\n"
+            + "            leaf.next = right;\n"
+            + "            insertLeaf(n, l + 1, right);\n"
+            + "        }\n"
+            + "        size++;\n"
+            + "        return true;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Adds the fields of a tuple. Returns false, if they were already present. */\n"
+            + "    public boolean add(final %1$s%2$s tuple) {\n"
+            + "        if (tuple == null) {\n"
+            + "            throw new IllegalArgumentException(\"tuple is null\");\n"
+            + "        }\n"
+            + "        return add(%23$s);\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Removes a key. Returns false, if it was not present. */\n"
+            + "    public boolean remove(%3$s) {\n"
+            + "        final int n = findNode(%5$s);\n"
+            + "        final int l = nodes[n].find(%5$s);\n"
+            + "        final Leaf leaf = nodes[n].leaves[l];\n"
+            + "        final int i = search(leaf, %5$s);\n"
+            + "        if ((i == leaf.size) || (leaf.compare(i, %5$s) != 0)) {\n"
+            + "            return false;\n"
+            + "        }\n"
+            + "        Leaf.move(leaf, i + 1, leaf, i, leaf.size - i - 1);\n"
+            + "        leaf.size--;\n"
+            + "        leaf.clear(leaf.size, leaf.size + 1);\n"
+            + "        size--;\n"
+            + "        if ((leaf.size == 0) && (size > 0)) {\n"
+            + "            removeLeaf(n, l);\n"
+            + "        }\n"
+            + "        return true;\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Loads count keys, which must be sorted, and distinct, into an empty\n"
+            + "     * index, filling the leaves and the nodes completely. The key #i is made\n"
+            + "     * of the fields at i in the arrays.\n"
+            + "     */\n"
+            + "    public void load(%19$s, final int count) {\n"
+            + "        if (size != 0) {\n"
+            + "            throw new IllegalStateException(\"index is not empty\");\n"
+            + "        }\n"
+            + "        if (count < 0) {\n"
+            + "            throw new IllegalArgumentException(\"count is negative: \" + count);\n"
+            + "        }\n"
+            + "%20$s        for (int i = 1; i < count; i++) {\n"
+            + "            if (compare(%21$s) >= 0) {\n"
+            + "                throw new IllegalArgumentException(\n"
+            + "                        \"keys are not sorted, and distinct, at \" + i);\n"
+            + "            }\n"
+            + "        }\n"
+            + "        final int leafCount = Math.max(1, (count + LEAF_SIZE - 1) / LEAF_SIZE);\n"
+            + "        nodes = new Node[(leafCount + NODE_SIZE - 1) / NODE_SIZE];\n"
+            + "        nodeCount = nodes.length;\n"
+            + "        for (int n = 0; n < nodeCount; n++) {\n"
+            + "            nodes[n] = new Node();\n"
+            + "        }\n"
+            + "        Leaf previous = null;\n"
+            + "        for (int l = 0; l < leafCount; l++) {\n"
+            + "            final Leaf leaf = new Leaf();\n"
+            + "            final int from = l * LEAF_SIZE;\n"
+            + "            leaf.size = Math.min(LEAF_SIZE, count - from);\n"
+            + "%24$s            if (previous != null) {\n"
+            + "                previous.next = leaf;\n"
+            + "            }\n"
+            + "            previous = leaf;\n"
+            + "            final Node node = nodes[l / NODE_SIZE];\n"
+            + "            node.leaves[node.count++] = leaf;\n"
+            + "        }\n"
+            + "        size = count;\n"
+            + "    }\n"
+            + "\n"
+            + "    /** Returns a cursor over all the keys. */\n"
+            + "    public Cursor cursor() {\n"
+            + "        final Node last = nodes[nodeCount - 1];\n"
+            + "        final Leaf end = last.leaves[last.count - 1];\n"
+            + "        return new Cursor(nodes[0].leaves[0], 0, end, end.size);\n"
+            + "    }\n"
+            + "\n"
+            + "    /**\n"
+            + "     * Returns a cursor over the keys from the key \"from\", inclusive, to the\n"
+            + "     * key \"to\", exclusive.\n"
+            + "     */\n"
+            + "    public Cursor cursor(%12$s,\n"
+            + "            %13$s) {\n"
+            + "        final Leaf end = findLeaf(%15$s);\n"
+            + "        final int endIndex = search(end, %15$s);\n"
+            + "        if (compare(%14$s, %15$s) >= 0) {\n"
+            + "            return new Cursor(end, endIndex, end, endIndex);\n"
+            + "        }\n"
+            + "        final Leaf leaf = findLeaf(%14$s);\n"
+            + "        return new Cursor(leaf, search(leaf, %14$s), end, endIndex);\n"
+            + "    }\n"
+            + "}\n";
+
     /**
      * Generates the tuples.
      * The expected format of <code>format</code> is:
      * #0 %s = ClassName
      * #1 %s = Parameter list
+     * <code>indexFormat</code> is the format of the index of the tuples.
      */
     private static int doGenerate(final File outputrDirectory,
-            final String format, final int numberOfArgs,
-            final TupleFilter filter) {
+            final String format, final String indexFormat,
+            final int numberOfArgs, final TupleFilter filter,
+            final GenerationReport.Arity stats) {
         int result = 0;
         final int[] params = new int[numberOfArgs];
         int current = 0;
         boolean again = true;
+        long time = System.nanoTime();
         while (again) {
-            if (filter == null || filter.accept(genParameterList2(params))) {
+            stats.considered();
+            final TupleFilter.ParamType[] paramTypes = genParameterList2(params);
+            time = stats.lap(Phase.Enumeration, time);
+            final boolean accepted = filter == null
+                    || filter.accept(paramTypes);
+            time = stats.lap(Phase.Filtering, time);
+            if (!accepted) {
+                stats.filtered();
+            } else {
                 final String[] generatedStrings = genName2(params);
                 final String name = generatedStrings[0];
                 final String signature = generatedStrings[1];
@@ -136,17 +579,25 @@ public class GenTuple {
                 final String paramList = genParameterList(params);
                 final String get = genGet(params);
                 final String apply = genApply(params);
-                final String fctr = genFunctor(Util.FUNC_PACKAGE_NAME,
-                        generatedStrings[0], genParams);
+                final String fctr = genFunctor(name, genParams, params);
+                final String wildcards = genWildcards(params);
+                final String compare = genCompare(params, "a._%1$d",
+                        "b._%1$d");
                 final String content = String.format(format, name, genParams,
                         signature, paramList, fields, ctr, equals, hashCode,
-                        toString, get, ctrdef, fctr, apply);
+                        toString, get, ctrdef, fctr, apply, wildcards, compare);
+                final String index = genIndex(indexFormat, name, genParams,
+                        apply, params);
+                time = stats.lap(Phase.Rendering, time);
                 final File file = new File(outputrDirectory, name + ".java");
-                outputClass(file, content);
-            }
-            result++;
-            if (result % 250 == 0) {
-                System.out.print(".");
+                outputClass(file, content, stats);
+                outputClass(new File(outputrDirectory, name + "Index.java"),
+                        index, stats);
+                time = stats.lap(Phase.Writing, time);
+                result++;
+                if (result % 250 == 0) {
+                    System.out.print(".");
+                }
             }
             if (numberOfArgs == 0) {
                 again = false;
@@ -164,12 +615,13 @@ public class GenTuple {
                     again = false;
                 }
             }
+            time = stats.lap(Phase.Enumeration, time);
         }
         return result;
     }
 
     /** Generates the classes. */
-    private static void doGenerate(final File outputrDirectory,
+    private static GenerationReport doGenerate(final File outputrDirectory,
             final String fileHeader, final String packageName,
             final int minimumNumberOfArgs, final int maximumNumberOfArgs,
             final TupleFilter filter) {
@@ -184,11 +636,13 @@ public class GenTuple {
         System.out.println("    Function filter:              " + filter);
         String content = fileHeader;
         content += "\npackage " + packageName + ";\n\n";
-        content += "\nimport " + TUPLE_BASE.getName() + ";\n\n";
+        content += "\nimport java.util.Comparator;\n\n";
+        content += "import " + TUPLE_BASE.getName() + ";\n\n";
         content += "/**\n * Primitive Tuple Class <code>%1$s</code>.\n";
         content += " * Generated automatically by " + GENERATOR + "\n */\n";
         content += "public class %1$s%2$s extends "
-                + TUPLE_BASE.getSimpleName() + " implements %12$s {\n";
+                + TUPLE_BASE.getSimpleName()
+                + " implements %12$s, Comparable<%1$s%2$s> {\n";
         content += "\n";
         content += "    /** serialVersionUID */\n";
         content += "    private static final long serialVersionUID = 1L;\n";
@@ -196,6 +650,14 @@ public class GenTuple {
         content += "    /** SIGNATURE constant */\n";
         content += "    public static final %3$s" + "\n";
         content += "    \n";
+        content += "    /** Compares the tuples, like compare(). */\n";
+        content += "    public static final Comparator<%1$s%14$s> COMPARATOR = new Comparator<%1$s%14$s>() {\n";
+        content += "        @Override\n";
+        content += "        public int compare(final %1$s%14$s a, final %1$s%14$s b) {\n";
+        content += "            return %1$s.compare(a, b);\n";
+        content += "        }\n";
+        content += "    };\n";
+        content += "\n";
         content += "%5$s";
         content += "    /** Default Constructor */\n";
         content += "    public %1$s() {\n";
@@ -231,6 +693,19 @@ public class GenTuple {
         content += "        }\n";
         content += "        return toString;\n";
         content += "    }\n\n";
+        content += "    /** compareTo */\n";
+        content += "    @Override\n";
+        content += "    public final int compareTo(final %1$s%2$s other) {\n";
+        content += "        return compare(this, other);\n";
+        content += "    }\n\n";
+        content += "    /**\n";
+        content += "     * Compares two tuples, field by field. Float and double fields are\n";
+        content += "     * compared like Float.compare() and Double.compare(), and Object\n";
+        content += "     * fields must be Comparable, or null, which comes first.\n";
+        content += "     */\n";
+        content += "    public static int compare(final %1$s%14$s a, final %1$s%14$s b) {\n";
+        content += "%15$s";
+        content += "    }\n\n";
         content += "    /** Returns the type of the fields */\n";
         content += "    @Override\n";
         content += "    public final Class<?>[] getSignature() {\n";
@@ -246,14 +721,23 @@ public class GenTuple {
         content += "        return new %1$s%2$s(%13$s);\n";
         content += "    }\n";
         content += "}\n";
+        final String index = fileHeader + "\npackage " + packageName
+                + ";\n\n" + INDEX_FORMAT;
+        final GenerationReport report = new GenerationReport(GENERATOR);
         int total = 0;
         for (int p = minimumNumberOfArgs; p <= maximumNumberOfArgs; p++) {
             System.out.print("Generation tuples with " + p + " parameters ...");
-            final int count = doGenerate(outputrDirectory, content, p, filter);
+            final GenerationReport.Arity stats = report.startArity(p);
+            final int count = doGenerate(outputrDirectory, content, index, p,
+                    filter, stats);
+            report.endArity(stats);
             System.out.println(" " + count + " tuples generated.");
             total += count;
         }
+        report.end();
         System.out.println(total + " total tuples generated.");
+        System.out.println(report);
+        return report;
     }
 
     /** Generated the generic parameters for the class definition. */
@@ -277,15 +761,164 @@ public class GenTuple {
         return result.substring(0, result.length() - 1) + ">";
     }
 
+    /** Generated the wildcard parameters, like "&lt;?,?&gt;", or "". */
+    private static String genWildcards(final int... params) {
+        final String generics = genGenericsParams(params);
+        return generics.replaceAll("[A-Z]", "?");
+    }
+
+    /** Returns the source code names of the parameter types. */
+    private static String[] genTypeNames(final boolean raw,
+            final int... params) {
+        final String[] result = new String[params.length];
+        char genParam = 'A';
+        for (int i = 0; i < params.length; i++) {
+            final int p = params[i];
+            if (p != OBJECT_PARAM) {
+                result[i] = _PARAM_TYPES[p];
+            } else if (raw) {
+                result[i] = "Object";
+            } else {
+                result[i] = String.valueOf(genParam++);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Generates one item per parameter, with the given format, and joins
+     * them. The format receives the parameter index, the type, and the raw
+     * type (Object instead of a generic parameter).
+     */
+    private static String genEach(final String format,
+            final String separator, final int... params) {
+        final String[] types = genTypeNames(false, params);
+        final String[] raw = genTypeNames(true, params);
+        final StringBuilder buf = new StringBuilder(params.length
+                * format.length() * 2);
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) {
+                buf.append(separator);
+            }
+            buf.append(String.format(format, i, types[i], raw[i]));
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Generated the body of a compare method. <code>a</code> and
+     * <code>b</code> are the formats of the compared fields.
+     */
+    private static String genCompare(final int[] params, final String a,
+            final String b) {
+        final StringBuilder buf = new StringBuilder(params.length * 100);
+        for (int i = 0; i < params.length; i++) {
+            final String call = COMPARE[params[i]] + "("
+                    + String.format(a, i) + ", " + String.format(b, i) + ")";
+            if (i == params.length - 1) {
+                buf.append("        return ").append(call).append(";\n");
+            } else {
+                buf.append((i == 0) ? "        int " : "        ")
+                        .append("result = ").append(call).append(";\n");
+                buf.append("        if (result != 0) {\n");
+                buf.append("            return result;\n");
+                buf.append("        }\n");
+            }
+        }
+        return buf.toString();
+    }
+
+    /** Generated the index of a tuple. */
+    private static String genIndex(final String format, final String name,
+            final String genParams, final String args,
+            final int... params) {
+        boolean objects = false;
+        for (final int p : params) {
+            objects |= (p == OBJECT_PARAM);
+        }
+        final String paramList = genEach("final %2$s p%1$d", ", ", params);
+        final String rawParamList = genEach("final %3$s p%1$d", ", ",
+                params);
+        final String columns = genEach(
+                "        /** Field #%1$d */\n"
+                        + "        final %3$s[] _%1$d = new %3$s[LEAF_SIZE];\n\n",
+                "", params);
+        final String set = genEach("            _%1$d[i] = p%1$d;\n", "",
+                params);
+        final String move = genEach("            System.arraycopy(src._%1$d, "
+                + "srcPos, dest._%1$d, destPos, count);\n", "", params);
+        String clear = "";
+        for (int i = 0; i < params.length; i++) {
+            if (params[i] == OBJECT_PARAM) {
+                clear += "            Arrays.fill(_" + i
+                        + ", from, to, null);\n";
+            }
+        }
+        if (!objects) {
+            clear = "            // Only primitive fields.\n";
+        }
+        final String compareParams = genEach("final %3$s a%1$d", ", ",
+                params) + ", " + genEach("final %3$s b%1$d", ", ", params);
+        final String compare = genCompare(params, "a%1$d", "b%1$d");
+        final String fromParams = genEach("final %2$s from%1$d", ", ",
+                params);
+        final String toParams = genEach("final %2$s to%1$d", ", ",
+                params);
+        final String fromArgs = genEach("from%1$d", ", ", params);
+        final String toArgs = genEach("to%1$d", ", ", params);
+        final String[] types = genTypeNames(false, params);
+        final StringBuilder getters = new StringBuilder(params.length * 200);
+        for (int i = 0; i < params.length; i++) {
+            final boolean object = (params[i] == OBJECT_PARAM);
+            getters.append("\n");
+            getters.append("        /** Returns the field #").append(i)
+                    .append(" of the current key. */\n");
+            if (object) {
+                getters.append("        @SuppressWarnings(\"unchecked\")\n");
+            }
+            getters.append("        public ").append(types[i]).append(" get")
+                    .append(i).append("() {\n");
+            getters.append("            return ")
+                    .append(object ? "(" + types[i] + ") " : "")
+                    .append("leaf()._").append(i).append("[index];\n");
+            getters.append("        }\n");
+        }
+        final String leafCompareArgs = genEach("_%1$d[i]", ", ", params)
+                + ", " + args;
+        final String getterArgs = genEach("get%1$d()", ", ", params);
+        final String loadParams = genEach("final %2$s[] k%1$d", ", ",
+                params);
+        final String loadChecks = genEach(
+                "        if ((k%1$d == null) || (k%1$d.length < count)) {\n"
+                        + "            throw new IllegalArgumentException(\n"
+                        + "                    \"k%1$d is null, or shorter than count\");\n"
+                        + "        }\n", "", params);
+        final String loadCompareArgs = genEach("k%1$d[i - 1]", ", ", params)
+                + ", " + genEach("k%1$d[i]", ", ", params);
+        final String imports = objects ? "import " + TUPLE_BASE.getName()
+                + ";\n\n" : "";
+        final String tupleArgs = genEach("tuple._%1$d", ", ", params);
+        final String load = genEach("            System.arraycopy(k%1$d, from, "
+                + "leaf._%1$d, 0, leaf.size);\n", "", params);
+        return String.format(format, name, genParams, paramList,
+                rawParamList, args, columns, set, move, clear, compareParams,
+                compare, fromParams, toParams, fromArgs, toArgs, getters,
+                leafCompareArgs, getterArgs, loadParams, loadChecks,
+                loadCompareArgs, imports, tupleArgs, load);
+    }
+
     /** Generated the name of the functor interface. */
-    private static String genFunctor(final String functorPackage,
-            final String tupleName, final String genericsParams) {
-        final String name = Util.FUNC_CLASS_NAME_PREFIX + tupleName.charAt(1)
-                + "O" + tupleName.substring(2);
-        final String params = genericsParams.isEmpty() ? ">" : ","
+    private static String genFunctor(final String tupleName,
+            final String genericsParams, final int... params) {
+        final Class<?>[] signature = new Class<?>[params.length + 1];
+        signature[0] = Object.class;
+        for (int i = 0; i < params.length; i++) {
+            signature[i + 1] = PARAM_CLASSES[params[i]];
+        }
+        final String name = FUNC_UTIL.genFuncProcName(signature);
+        final String params2 = genericsParams.isEmpty() ? ">" : ","
                 + genericsParams.substring(1);
-        return functorPackage + "." + name + "<" + tupleName + genericsParams
-                + params;
+        return name + "<" + tupleName + genericsParams + params2;
     }
 
     /** Generated the fields for the class definition. */
@@ -536,25 +1169,29 @@ public class GenTuple {
     }
 
     /** Outputs the generated class. */
-    private static void outputClass(final File file, final String content) {
-        if (file.exists()) {
-            try (Scanner scanner = new Scanner(file);) {
-                if (content.equals(scanner.useDelimiter("\\Z").next())) {
+    private static void outputClass(final File file, final String content,
+            final GenerationReport.Arity stats) {
+        final byte[] bytes = content.getBytes();
+        if (file.length() == bytes.length) {
+            try {
+                if (Arrays.equals(bytes, Files.readAllBytes(file.toPath()))) {
+                    stats.unchanged();
                     return;
                 }
-            } catch (final FileNotFoundException e) {
-                // Should not happen, since we checked ...
+            } catch (final IOException e) {
+                // Then we just write it again ...
             }
         }
-        try (FileWriter fw = new FileWriter(file);) {
-            fw.write(content);
+        try (FileOutputStream fos = new FileOutputStream(file);) {
+            fos.write(bytes);
         } catch (final IOException e) {
             throw new IllegalStateException("Failed to write to " + file, e);
         }
+        stats.written(bytes.length);
     }
 
     /** Generates the tuples. */
-    public static void generate(final File outputrDirectory,
+    public static GenerationReport generate(final File outputrDirectory,
             final String fileHeader, final String packageName,
             final int minimumNumberOfArgs, final int maximumNumberOfArgs,
             final String filterType) {
@@ -638,12 +1275,12 @@ public class GenTuple {
                         + filterType + ")", e);
             }
         }
-        doGenerate(outputrDirectory, fileHeader == null ? "" : fileHeader,
+        return doGenerate(outputrDirectory, fileHeader == null ? "" : fileHeader,
                 packageName, minimumNumberOfArgs, maximumNumberOfArgs, filter);
     }
 
     /** Generates the tuples. */
-    public static void generate(final String outputrDirectory,
+    public static GenerationReport generate(final String outputrDirectory,
             final String licenseFile, final String packageName,
             final String minimumNumberOfArgs, final String maximumNumberOfArgs,
             final String filterType) {
@@ -708,14 +1345,14 @@ public class GenTuple {
                         + licenseFile, e);
             }
         }
-        generate(dir, fileHeader, packageName, min, max, filterType);
+        return generate(dir, fileHeader, packageName, min, max, filterType);
     }
 
     /**
      * @param args
      */
     public static void main(final String[] args) {
-        if ((args.length != 5) && (args.length != 6)) {
+        if ((args.length < 5) || (args.length > 7)) {
             System.out.println(USAGE);
         } else {
 
@@ -725,8 +1362,13 @@ public class GenTuple {
             final String minimumNumberOfArgs = args[3].trim();
             final String maximumNumberOfArgs = args[4].trim();
             final String filterType = args.length == 5 ? null : args[5].trim();
-            generate(outputrDirectory, licenseFile, packageName,
-                    minimumNumberOfArgs, maximumNumberOfArgs, filterType);
+            final String reportFile = args.length < 7 ? "" : args[6].trim();
+            final GenerationReport report = generate(outputrDirectory,
+                    licenseFile, packageName, minimumNumberOfArgs,
+                    maximumNumberOfArgs, filterType);
+            if (!reportFile.isEmpty()) {
+                report.writeJson(new File(reportFile));
+            }
         }
     }
 }
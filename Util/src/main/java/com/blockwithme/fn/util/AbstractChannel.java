@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * <code>AbstractChannel</code> holds the listeners of the generated event
+ * channels, in a copy-on-write array. subscribe() and unsubscribe() replace
+ * the whole array with a CAS, so that publishing an event only reads one
+ * volatile field, and loops over a plain array, without allocating.
+ *
+ * @param <L> the type of the listeners
+ *
+ * @author monster
+ */
+public abstract class AbstractChannel<L> {
+
+    /** The updater of the listeners. */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<AbstractChannel, Object[]> LISTENERS = AtomicReferenceFieldUpdater
+            .newUpdater(AbstractChannel.class, Object[].class, "listeners");
+
+    /** The listeners. Never modified in place. */
+    private volatile L[] listeners;
+
+    /** Constructor, with an empty array of the listener type. */
+    protected AbstractChannel(final L[] empty) {
+        if (empty == null) {
+            throw new IllegalArgumentException("empty is null");
+        }
+        if (empty.length != 0) {
+            throw new IllegalArgumentException("empty is not empty");
+        }
+        listeners = empty;
+    }
+
+    /**
+     * Adds a listener. The same listener can be added several times, and
+     * then receives each event several times.
+     */
+    public final void subscribe(final L listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener is null");
+        }
+        L[] current;
+        L[] next;
+        do {
+            current = listeners;
+            next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = listener;
+        } while (!LISTENERS.compareAndSet(this, current, next));
+    }
+
+    /**
+     * Removes the first occurrence of a listener. Returns false, if it was
+     * not subscribed.
+     */
+    public final boolean unsubscribe(final L listener) {
+        L[] current;
+        L[] next;
+        do {
+            current = listeners;
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == listener) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return false;
+            }
+            next = Arrays.copyOf(current, current.length - 1);
+            System.arraycopy(current, index + 1, next, index, current.length
+                    - index - 1);
+        } while (!LISTENERS.compareAndSet(this, current, next));
+        return true;
+    }
+
+    /** Returns the number of listeners. */
+    public final int size() {
+        return listeners.length;
+    }
+
+    /** Returns the current listeners. The array must not be modified. */
+    protected final L[] listeners() {
+        return listeners;
+    }
+
+    /**
+     * Records the failure of a listener, so that the other listeners still
+     * receive the event. Returns <code>failure</code>, if it is the first;
+     * otherwise, adds it to <code>first</code> as suppressed.
+     */
+    protected static RuntimeException failed(final RuntimeException first,
+            final RuntimeException failure) {
+        if (first == null) {
+            return failure;
+        }
+        if (first != failure) {
+            first.addSuppressed(failure);
+        }
+        return first;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>AbstractSubscription</code> implements the demand accounting of the
+ * sources of the generated primitive publishers. The value of the
+ * AtomicLong is the outstanding demand.
+ *
+ * request() adds to the demand, up to Long.MAX_VALUE; the thread that
+ * raised the demand from zero calls drain(), so that elements are never
+ * emitted concurrently, nor recursively from within onNext().
+ *
+ * A non-positive request is recorded, and counts as a request of one, so
+ * that the draining thread sees it, and signals the failure itself, when
+ * it next calls stopped(); onError() is then never concurrent with onNext().
+ * An empty source completes the same way, with requestCompletion().
+ *
+ * @author monster
+ */
+public abstract class AbstractSubscription extends AtomicLong implements
+        Subscription {
+
+    /** Serialization */
+    private static final long serialVersionUID = 1L;
+
+    /** True, once cancelled. */
+    private volatile boolean cancelled;
+
+    /** The failure of a non-positive request, not yet signalled, or null. */
+    private volatile Throwable failure;
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.util.Subscription#request(long)
+     */
+    @Override
+    public final void request(final long n) {
+        if (n <= 0) {
+            if (cancelled || (failure != null)) {
+                return;
+            }
+            failure = new IllegalArgumentException(
+                    "request must be positive: " + n);
+            add(1);
+        } else {
+            add(n);
+        }
+    }
+
+    /**
+     * Raises the demand by one, without a request, so that drain() runs,
+     * in this thread, or in the one already draining. An empty source calls
+     * it after onSubscribe(), so that it completes from within drain(), and
+     * never concurrently with a drain() started by a request.
+     */
+    protected final void requestCompletion() {
+        add(1);
+    }
+
+    /** Adds to the demand, and drains, if it was zero. */
+    private void add(final long n) {
+        long current;
+        long next;
+        do {
+            current = get();
+            if (current == Long.MAX_VALUE) {
+                return;
+            }
+            next = current + n;
+            if (next < 0) {
+                next = Long.MAX_VALUE;
+            }
+        } while (!compareAndSet(current, next));
+        if (current == 0) {
+            drain(next);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn.util.Subscription#cancel()
+     */
+    @Override
+    public final void cancel() {
+        cancelled = true;
+    }
+
+    /** Returns true, once cancelled. */
+    public final boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns true, if drain() must stop, because the subscription was
+     * cancelled, or because a non-positive request was just signalled to
+     * the subscriber, with error(). Must only be called from drain().
+     */
+    protected final boolean stopped() {
+        if (cancelled) {
+            return true;
+        }
+        final Throwable f = failure;
+        if (f != null) {
+            cancelled = true;
+            error(f);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes <code>emitted</code> from the demand, and returns the
+     * remaining demand. An unbounded demand stays unbounded.
+     */
+    protected final long produced(final long emitted) {
+        if (get() == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return addAndGet(-emitted);
+    }
+
+    /**
+     * Emits elements, for the given demand. Called by the only thread that
+     * may emit; it must call produced() with the number of elements emitted,
+     * and continue while the remaining demand is not zero. Before each
+     * element, and before completing, it must return if stopped() is true.
+     */
+    protected abstract void drain(long demand);
+
+    /** Signals a failure to the subscriber. */
+    protected abstract void error(Throwable failure);
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/**
+ * <code>FunctorInvoker</code> calls any Functor, whose signature is only
+ * known at runtime, without reflection.
+ *
+ * There is one invoker per Functor interface, shared by all its
+ * implementations. invokeObject() accepts any signature, but boxes. The
+ * typed entry points, that never box, are generated with the functors, by
+ * the GenInvokers extension, in the "invoke" sub-package: one class per
+ * return type, like IntInvokers, whose methods are named after
+ * getDescriptor(), like IntInvokers.invokeII() for <code>int apply(int)</code>.
+ *
+ * Checked exceptions thrown by the functor are wrapped in an
+ * IllegalStateException; other exceptions are thrown unchanged.
+ *
+ * @author monster
+ */
+public final class FunctorInvoker {
+
+    /** The invokers, per Functor interface or implementation class. */
+    private static final ClassValue<FunctorInvoker> INVOKERS = new ClassValue<FunctorInvoker>() {
+        @Override
+        protected FunctorInvoker computeValue(final Class<?> type) {
+            final Class<? extends Functor> functor = Util
+                    .getFunctorInterface(type);
+            return (functor == type) ? new FunctorInvoker(functor) : get(functor);
+        }
+    };
+
+    /** The Functor interface. */
+    private final Class<? extends Functor> functorInterface;
+
+    /** The signature. */
+    private final Class<?>[] signature;
+
+    /** The JVM type descriptors of the signature. */
+    private final String descriptor;
+
+    /** The functor method, with the receiver typed as Functor. */
+    private final MethodHandle handle;
+
+    /** The functor method, taking and returning Objects. */
+    private final MethodHandle spreader;
+
+    /** Constructor */
+    private FunctorInvoker(final Class<? extends Functor> theFunctorInterface) {
+        functorInterface = theFunctorInterface;
+        signature = Util.getSignature(theFunctorInterface);
+        final StringBuilder buf = new StringBuilder(signature.length);
+        for (final Class<?> type : signature) {
+            buf.append(type.isPrimitive() ? MethodType.methodType(type)
+                    .toMethodDescriptorString().charAt(2) : 'L');
+        }
+        descriptor = buf.toString();
+        final MethodHandle method;
+        try {
+            method = MethodHandles.publicLookup().unreflect(
+                    Util.getFunctorMethod(theFunctorInterface));
+        } catch (final IllegalAccessException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        handle = method.asType(method.type().changeParameterType(0,
+                Functor.class));
+        final int arity = signature.length - 1;
+        spreader = handle.asType(MethodType.genericMethodType(arity + 1))
+                .asSpreader(Object[].class, arity);
+    }
+
+    /** Returns the invoker of a Functor interface, or implementation class. */
+    public static FunctorInvoker get(final Class<? extends Functor> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("type is null");
+        }
+        return INVOKERS.get(type);
+    }
+
+    /** Returns the invoker of a Functor. */
+    public static FunctorInvoker get(final Functor functor) {
+        if (functor == null) {
+            throw new IllegalArgumentException("functor is null");
+        }
+        return INVOKERS.get(functor.getClass());
+    }
+
+    /** Returns the Functor interface. */
+    public Class<? extends Functor> getFunctorInterface() {
+        return functorInterface;
+    }
+
+    /**
+     * Returns the signature: the return type, followed by the parameter
+     * types.
+     */
+    public Class<?>[] getSignature() {
+        return signature.clone();
+    }
+
+    /**
+     * Returns the JVM type descriptors of the return type, followed by those
+     * of the parameters, with L for Object, like "II" for
+     * <code>int apply(int)</code>: the suffix of the generated typed entry
+     * point.
+     */
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Returns the method handle of the functor method, taking the functor,
+     * typed as Functor, as first parameter.
+     */
+    public MethodHandle getHandle() {
+        return handle;
+    }
+
+    /**
+     * Invokes a functor of any signature. Primitive values are boxed, with
+     * the exact wrapper type, and a "void" functor returns null.
+     */
+    public Object invokeObject(final Functor functor, final Object... args) {
+        check(functor, args);
+        try {
+            return spreader.invokeExact((Object) functor, args);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /** Checks the functor and the arguments, before invoking. */
+    private void check(final Functor functor, final Object[] args) {
+        if (!functorInterface.isInstance(functor)) {
+            throw new IllegalArgumentException((functor == null) ? "functor is null"
+                    : functor.getClass().getName() + " is not a "
+                            + functorInterface.getName());
+        }
+        final int arity = signature.length - 1;
+        if ((args == null) || (args.length != arity)) {
+            throw new IllegalArgumentException(functorInterface.getName()
+                    + " takes " + arity + " arguments, not "
+                    + ((args == null) ? "null" : String.valueOf(args.length)));
+        }
+        for (int i = 0; i < arity; i++) {
+            final Class<?> type = signature[i + 1];
+            if (type.isPrimitive()
+                    && ((args[i] == null) || (args[i].getClass() != MethodType
+                            .methodType(type).wrap().returnType()))) {
+                throw new IllegalArgumentException(functorInterface.getName()
+                        + " has signature " + Arrays.toString(signature)
+                        + ", but argument " + i + " is " + args[i]);
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "FunctorInvoker(" + functorInterface.getName() + ")";
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <code>Instrument</code> records the invocations of a functor, as done by
+ * the generated instrumenting decorators: the number of calls, the number
+ * of calls that threw, and the latency of the calls, in nanoseconds.
+ *
+ * To keep the overhead low, only one call in <code>sampleRate</code>,
+ * chosen at random, is timed; the others are only counted. The decorators
+ * call start() before, and end() or failed() after, the decorated functor.
+ *
+ * @author monster
+ */
+public final class Instrument {
+
+    /** Returned by start(), when the call is not timed. */
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    /**
+     * A copy of the state of an Instrument. Since the Instrument is not
+     * locked while copied, the values may not be exactly consistent.
+     */
+    public static final class Snapshot {
+
+        /** The name. */
+        private final String name;
+
+        /** The number of calls. */
+        private final long calls;
+
+        /** The number of calls that threw. */
+        private final long errors;
+
+        /** The latency of the timed calls. */
+        private final LatencyHistogram.Snapshot latency;
+
+        /** Constructor */
+        Snapshot(final String theName, final long theCalls,
+                final long theErrors, final LatencyHistogram.Snapshot theLatency) {
+            name = theName;
+            calls = theCalls;
+            errors = theErrors;
+            latency = theLatency;
+        }
+
+        /** Returns the name. */
+        public String getName() {
+            return name;
+        }
+
+        /** Returns the number of calls. */
+        public long getCalls() {
+            return calls;
+        }
+
+        /** Returns the number of calls that threw. */
+        public long getErrors() {
+            return errors;
+        }
+
+        /** Returns the latency of the timed calls, in nanoseconds. */
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return name + ": calls=" + calls + " errors=" + errors + " "
+                    + latency;
+        }
+    }
+
+    /** The name. */
+    private final String name;
+
+    /** The sample rate. */
+    private final int sampleRate;
+
+    /** The sample rate, minus one. */
+    private final int sampleMask;
+
+    /** The number of calls. */
+    private final LongAdder calls = new LongAdder();
+
+    /** The number of calls that threw. */
+    private final LongAdder errors = new LongAdder();
+
+    /** The latency of the timed calls. */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Creates an Instrument.
+     *
+     * @param theName the name, for reporting.
+     * @param theSampleRate one call in sampleRate is timed; must be a power of two.
+     */
+    public Instrument(final String theName, final int theSampleRate) {
+        if (theName == null) {
+            throw new IllegalArgumentException("name is null");
+        }
+        if ((theSampleRate <= 0) || (Integer.bitCount(theSampleRate) != 1)) {
+            throw new IllegalArgumentException(
+                    "sampleRate must be a positive power of two: "
+                            + theSampleRate);
+        }
+        name = theName;
+        sampleRate = theSampleRate;
+        sampleMask = theSampleRate - 1;
+    }
+
+    /** Returns the name. */
+    public String getName() {
+        return name;
+    }
+
+    /** Returns the sample rate. */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Counts a call, and returns the current time, if the call is timed, or
+     * NOT_SAMPLED.
+     */
+    public long start() {
+        calls.increment();
+        if ((sampleMask == 0)
+                || ((ThreadLocalRandom.current().nextInt() & sampleMask) == 0)) {
+            return System.nanoTime();
+        }
+        return NOT_SAMPLED;
+    }
+
+    /** Records the end of a call that returned normally. */
+    public void end(final long start) {
+        if (start != NOT_SAMPLED) {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    /** Records the end of a call that threw. */
+    public void failed(final long start) {
+        errors.increment();
+        end(start);
+    }
+
+    /** Returns the number of calls. */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /** Returns the number of calls that threw. */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /** Returns the latency of the timed calls, in nanoseconds. */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /** Returns a copy of the state. */
+    public Snapshot snapshot() {
+        return new Snapshot(name, calls.sum(), errors.sum(),
+                latency.snapshot());
+    }
+
+    /** Clears all counters. */
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        latency.reset();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <code>Instruments</code> is the registry of the named Instruments, used
+ * by the generated instrumenting decorators, when they are created with a
+ * name instead of an Instrument.
+ *
+ * @author monster
+ */
+public final class Instruments {
+
+    /** The default sample rate: one call in 64 is timed. */
+    public static final int DEFAULT_SAMPLE_RATE = 64;
+
+    /** The Instruments, by name. */
+    private static final ConcurrentMap<String, Instrument> INSTRUMENTS = new ConcurrentHashMap<>();
+
+    /** No instances. */
+    private Instruments() {
+        // NOP
+    }
+
+    /** Returns the Instrument with the given name, with the default sample rate if new. */
+    public static Instrument get(final String name) {
+        return get(name, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Returns the Instrument with the given name. If it already exists, it
+     * is returned as is, even if it has another sample rate.
+     */
+    public static Instrument get(final String name, final int sampleRate) {
+        if (name == null) {
+            throw new IllegalArgumentException("name is null");
+        }
+        Instrument result = INSTRUMENTS.get(name);
+        if (result == null) {
+            final Instrument created = new Instrument(name, sampleRate);
+            result = INSTRUMENTS.putIfAbsent(name, created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        return result;
+    }
+
+    /** Removes the Instrument with the given name, and returns it, if any. */
+    public static Instrument remove(final String name) {
+        return INSTRUMENTS.remove(name);
+    }
+
+    /** Returns a snapshot of all Instruments, sorted by name. */
+    public static List<Instrument.Snapshot> snapshot() {
+        final Map<String, Instrument> sorted = new TreeMap<>(
+                INSTRUMENTS);
+        final List<Instrument.Snapshot> result = new ArrayList<>(
+                sorted.size());
+        for (final Instrument instrument : sorted.values()) {
+            result.add(instrument.snapshot());
+        }
+        return result;
+    }
+
+    /** Clears the counters of all Instruments. */
+    public static void reset() {
+        for (final Instrument instrument : INSTRUMENTS.values()) {
+            instrument.reset();
+        }
+    }
+}
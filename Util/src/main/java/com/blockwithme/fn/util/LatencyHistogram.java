@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <code>LatencyHistogram</code> is a lock-free, fixed-size, log-linear
+ * histogram of non-negative values, typically durations in nanoseconds.
+ *
+ * Values below 16 have their own bucket. Above, every power of two is split
+ * in 16 buckets of equal width, so that the relative error of a reported
+ * value is below 1/16 (6.25%), over the whole range of long. Recording a
+ * value never allocates; it costs one atomic increment, plus updating the
+ * sum and, rarely, the maximum.
+ *
+ * @author monster
+ */
+public final class LatencyHistogram {
+
+    /** The number of bits of the linear part of the buckets. */
+    private static final int SUB_BITS = 4;
+
+    /** The number of buckets per power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** The number of buckets. */
+    static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    /**
+     * An immutable copy of a histogram. Since the histogram is not locked
+     * while copied, values recorded concurrently may be partially included.
+     */
+    public static final class Snapshot {
+
+        /** The counts per bucket. */
+        private final long[] counts;
+
+        /** The number of values. */
+        private final long count;
+
+        /** The sum of the values. */
+        private final long sum;
+
+        /** The maximum value. */
+        private final long max;
+
+        /** Constructor */
+        Snapshot(final long[] theCounts, final long theSum, final long theMax) {
+            counts = theCounts;
+            long total = 0;
+            for (final long c : theCounts) {
+                total += c;
+            }
+            count = total;
+            sum = theSum;
+            max = theMax;
+        }
+
+        /** Returns the number of values. */
+        public long getCount() {
+            return count;
+        }
+
+        /** Returns the mean value, or 0 if empty. */
+        public double getMean() {
+            return (count == 0) ? 0 : (double) sum / count;
+        }
+
+        /** Returns the maximum value, or 0 if empty. */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the value at the given percentile (0 to 100), as the
+         * upper bound of its bucket, but not more than the maximum.
+         * Returns 0 if empty.
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if ((percentile < 0) || (percentile > 100)) {
+                throw new IllegalArgumentException(
+                        "percentile must be between 0 and 100: " + percentile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1,
+                    (long) Math.ceil(percentile * count / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        /** Returns the number of values in the bucket of the given value. */
+        public long getCountAt(final long value) {
+            return counts[bucket(value)];
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "count=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d",
+                    count, getMean(), getValueAtPercentile(50),
+                    getValueAtPercentile(90), getValueAtPercentile(99),
+                    getValueAtPercentile(99.9), max);
+        }
+    }
+
+    /** The counts per bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** The sum of the values. */
+    private final AtomicLong sum = new AtomicLong();
+
+    /** The maximum value. */
+    private final AtomicLong max = new AtomicLong();
+
+    /** Returns the bucket of a value. */
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BITS))
+                & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** Returns the lowest value of a bucket. */
+    static long lowestValue(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        final long sub = bucket & (SUB_BUCKETS - 1);
+        return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+    }
+
+    /** Returns the highest value of a bucket. */
+    static long highestValue(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        return lowestValue(bucket) + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /** Records a value; negative values are recorded as 0. */
+    public void record(final long value) {
+        final long v = Math.max(0, value);
+        counts.incrementAndGet(bucket(v));
+        sum.addAndGet(v);
+        long current = max.get();
+        while ((v > current) && !max.compareAndSet(current, v)) {
+            current = max.get();
+        }
+    }
+
+    /** Returns a copy of the histogram. */
+    public Snapshot snapshot() {
+        final long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, sum.get(), max.get());
+    }
+
+    /** Clears the histogram; values recorded concurrently may be lost. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        sum.set(0);
+        max.set(0);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>MemoTable</code> is a size-bounded hash table, mapping keys of one or
+ * two longs to long values, for the memoizing decorators.
+ *
+ * It uses open addressing with linear probing, and evicts with the CLOCK
+ * algorithm once full: the clock hand skips, and clears, the entries that
+ * were found since it last passed them, and evicts the first one that was
+ * not. A table that belongs to a concurrent Memoizer has a lock, which must
+ * be held around find(), value() and put(); otherwise, lock() and unlock()
+ * do nothing.
+ *
+ * @author monster
+ */
+public final class MemoTable {
+
+    /** The number of longs per key. */
+    private final int keyLongs;
+
+    /** The keys. */
+    private final long[] keys;
+
+    /** The values. */
+    private final long[] values;
+
+    /** Is the slot used? */
+    private final boolean[] used;
+
+    /** Was the entry found, since the clock hand last passed? */
+    private final boolean[] referenced;
+
+    /** The capacity, minus one. */
+    private final int mask;
+
+    /** The maximum number of entries. */
+    private final int maxSize;
+
+    /** The lock, or null. */
+    private final ReentrantLock lock;
+
+    /** The number of entries. */
+    private int size;
+
+    /** The clock hand. */
+    private int hand;
+
+    /** The number of successful lookups. */
+    private long hits;
+
+    /** The number of failed lookups. */
+    private long misses;
+
+    /**
+     * Creates a table.
+     *
+     * @param theMaxSize the maximum number of entries.
+     * @param wide true, if the keys use two longs.
+     * @param locked true, if the table needs a lock.
+     */
+    public MemoTable(final int theMaxSize, final boolean wide,
+            final boolean locked) {
+        if (theMaxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: "
+                    + theMaxSize);
+        }
+        if (theMaxSize > (1 << 29)) {
+            throw new IllegalArgumentException("maxSize too big: "
+                    + theMaxSize);
+        }
+        // Keeps the load factor at most 0.5
+        final int capacity = Integer.highestOneBit(theMaxSize * 2 - 1) << 1;
+        keyLongs = wide ? 2 : 1;
+        keys = new long[capacity * keyLongs];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        referenced = new boolean[capacity];
+        mask = capacity - 1;
+        maxSize = theMaxSize;
+        lock = locked ? new ReentrantLock() : null;
+    }
+
+    /** Computes the hash of a key. */
+    public static int hash(final long k0, final long k1) {
+        long h = k0 ^ (k1 * 0x9E3779B97F4A7C15L);
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return (int) (h ^ (h >>> 33));
+    }
+
+    /** Acquires the lock, if any. */
+    public void lock() {
+        if (lock != null) {
+            lock.lock();
+        }
+    }
+
+    /** Releases the lock, if any. */
+    public void unlock() {
+        if (lock != null) {
+            lock.unlock();
+        }
+    }
+
+    /** Returns true, if the slot holds the given key. */
+    private boolean matches(final int slot, final long k0, final long k1) {
+        final int k = slot * keyLongs;
+        return (keys[k] == k0) && ((keyLongs == 1) || (keys[k + 1] == k1));
+    }
+
+    /** Returns the home slot of the key in the given slot. */
+    private int home(final int slot) {
+        final int k = slot * keyLongs;
+        return hash(keys[k], (keyLongs == 1) ? 0 : keys[k + 1]) & mask;
+    }
+
+    /**
+     * Searches a key, and counts a hit or a miss. Returns the slot of the
+     * value, or -1 if not found.
+     */
+    public int find(final long k0, final long k1) {
+        int slot = hash(k0, k1) & mask;
+        while (used[slot]) {
+            if (matches(slot, k0, k1)) {
+                referenced[slot] = true;
+                hits++;
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        misses++;
+        return -1;
+    }
+
+    /** Returns the value in a slot, returned by find(). */
+    public long value(final int slot) {
+        return values[slot];
+    }
+
+    /** Adds, or replaces, a value. Evicts an entry, if needed. */
+    public void put(final long k0, final long k1, final long value) {
+        int slot = hash(k0, k1) & mask;
+        while (used[slot]) {
+            if (matches(slot, k0, k1)) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == maxSize) {
+            evict();
+            slot = hash(k0, k1) & mask;
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        final int k = slot * keyLongs;
+        keys[k] = k0;
+        if (keyLongs == 2) {
+            keys[k + 1] = k1;
+        }
+        values[slot] = value;
+        used[slot] = true;
+        referenced[slot] = false;
+        size++;
+    }
+
+    /** Evicts one entry, with the CLOCK algorithm. */
+    private void evict() {
+        while (true) {
+            if (used[hand]) {
+                if (!referenced[hand]) {
+                    remove(hand);
+                    return;
+                }
+                referenced[hand] = false;
+            }
+            hand = (hand + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes the entry in the given slot, and moves back the following
+     * entries of the same cluster, that can move, so that no search stops
+     * too early.
+     */
+    private void remove(final int slot) {
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (used[next]) {
+            final int home = home(next);
+            // Can the entry move to free? Only if free lies cyclically
+            // in [home, next).
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                System.arraycopy(keys, next * keyLongs, keys, free * keyLongs,
+                        keyLongs);
+                values[free] = values[next];
+                referenced[free] = referenced[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        used[free] = false;
+        referenced[free] = false;
+        size--;
+    }
+
+    /** Removes all entries, and resets the counters. */
+    public void clear() {
+        Arrays.fill(used, false);
+        Arrays.fill(referenced, false);
+        size = 0;
+        hand = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    /** Returns the number of entries. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the maximum number of entries. */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Returns the number of successful lookups. */
+    public long getHits() {
+        return hits;
+    }
+
+    /** Returns the number of failed lookups. */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the longest distance of an entry from its home slot, that is
+     * the number of slots a search for it must skip.
+     */
+    public int getMaxProbeLength() {
+        int result = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            if (used[slot]) {
+                result = Math.max(result, (slot - home(slot)) & mask);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+/**
+ * <code>Memoizer</code> is the base class of the generated memoizing
+ * decorators. The decorators pack the parameters in one long, or in two
+ * longs if they need more than 64 bits, and store the results in MemoTables.
+ *
+ * A concurrent Memoizer uses several tables (stripes), each with its own
+ * lock, selected by the hash of the key. The maximum size is then split
+ * evenly between the tables, rounding up. The decorated functor is called
+ * without holding a lock, so two threads can compute the same value.
+ *
+ * @author monster
+ */
+public abstract class Memoizer {
+
+    /** The number of stripes per processor, of a concurrent Memoizer. */
+    private static final int STRIPES_PER_PROCESSOR = 4;
+
+    /** The tables. */
+    private final MemoTable[] tables;
+
+    /** The number of tables, minus one. */
+    private final int mask;
+
+    /** The shift that leaves, of the hash, only the bits of the table. */
+    private final int shift;
+
+    /** The maximum number of entries. */
+    private final int maxSize;
+
+    /** Is the decorator thread-safe? */
+    private final boolean concurrent;
+
+    /**
+     * Creates a Memoizer.
+     *
+     * @param theMaxSize the maximum number of entries.
+     * @param theConcurrent true, if the decorator must be thread-safe.
+     * @param wide true, if the keys use two longs.
+     */
+    protected Memoizer(final int theMaxSize, final boolean theConcurrent,
+            final boolean wide) {
+        if (theMaxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: "
+                    + theMaxSize);
+        }
+        int stripes = 1;
+        if (theConcurrent) {
+            stripes = Integer.highestOneBit(Runtime.getRuntime()
+                    .availableProcessors() * STRIPES_PER_PROCESSOR);
+            while ((stripes > 1) && (stripes > theMaxSize)) {
+                stripes >>>= 1;
+            }
+        }
+        tables = new MemoTable[stripes];
+        final int perTable = (theMaxSize + stripes - 1) / stripes;
+        for (int i = 0; i < stripes; i++) {
+            tables[i] = new MemoTable(perTable, wide, theConcurrent);
+        }
+        mask = stripes - 1;
+        shift = Integer.SIZE - Integer.numberOfTrailingZeros(stripes);
+        maxSize = theMaxSize;
+        concurrent = theConcurrent;
+    }
+
+    /** Returns the table of a key. */
+    protected final MemoTable table(final long k0, final long k1) {
+        // The top bits select the table, the low bits the slot. With a
+        // single table, the shift is 32, which Java ignores, but the mask
+        // is then 0.
+        return tables[(MemoTable.hash(k0, k1) >>> shift) & mask];
+    }
+
+    /** Returns true, if the decorator is thread-safe. */
+    public final boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /** Returns the maximum number of entries. */
+    public final int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Returns the number of entries. */
+    public final int size() {
+        int result = 0;
+        for (final MemoTable table : tables) {
+            table.lock();
+            try {
+                result += table.size();
+            } finally {
+                table.unlock();
+            }
+        }
+        return result;
+    }
+
+    /** Returns the longest probe length, over all tables. */
+    public final int getMaxProbeLength() {
+        int result = 0;
+        for (final MemoTable table : tables) {
+            table.lock();
+            try {
+                result = Math.max(result, table.getMaxProbeLength());
+            } finally {
+                table.unlock();
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of calls answered from the cache. */
+    public final long getHits() {
+        long result = 0;
+        for (final MemoTable table : tables) {
+            table.lock();
+            try {
+                result += table.getHits();
+            } finally {
+                table.unlock();
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of calls passed to the decorated functor. */
+    public final long getMisses() {
+        long result = 0;
+        for (final MemoTable table : tables) {
+            table.lock();
+            try {
+                result += table.getMisses();
+            } finally {
+                table.unlock();
+            }
+        }
+        return result;
+    }
+
+    /** Removes all entries, and resets the counters. */
+    public final void clear() {
+        for (final MemoTable table : tables) {
+            table.lock();
+            try {
+                table.clear();
+            } finally {
+                table.unlock();
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(size=" + size() + ", maxSize="
+                + maxSize + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ")";
+    }
+}
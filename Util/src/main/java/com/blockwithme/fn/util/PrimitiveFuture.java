@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>PrimitiveFuture</code> is the base class of the generated primitive
+ * futures (IntFuture, LongFuture, ...), which store their value in a
+ * primitive field, so that neither the result nor the callbacks box.
+ *
+ * Completion is lock-free: the first thread to complete the future wins a
+ * CAS on its state, stores the value, and publishes it with a volatile
+ * write. The callbacks are kept in a lock-free stack, and run, in the order
+ * they were added, by the thread that completes the future, or directly by
+ * the thread that adds them, if the future is already complete. Waiting
+ * threads park until the future is complete.
+ *
+ * @author monster
+ */
+public abstract class PrimitiveFuture {
+
+    /** A callback, run once the future is complete. */
+    protected abstract static class Completion {
+        /** The next callback in the stack. */
+        volatile Completion next;
+
+        /** Runs the callback; the future is complete. */
+        protected abstract void run();
+
+        /** Returns true, if the callback is no longer needed. */
+        boolean isAbandoned() {
+            return false;
+        }
+    }
+
+    /** Wakes up a waiting thread. */
+    private static final class Signaller extends Completion {
+        /** The waiting thread, or null once woken up. */
+        private volatile Thread thread;
+
+        /** Constructor */
+        Signaller(final Thread theThread) {
+            thread = theThread;
+        }
+
+        /* (non-Javadoc)
+         * @see com.blockwithme.fn.util.PrimitiveFuture.Completion#run()
+         */
+        @Override
+        protected void run() {
+            final Thread t = thread;
+            if (t != null) {
+                thread = null;
+                LockSupport.unpark(t);
+            }
+        }
+
+        /* (non-Javadoc)
+         * @see com.blockwithme.fn.util.PrimitiveFuture.Completion#isAbandoned()
+         */
+        @Override
+        boolean isAbandoned() {
+            return thread == null;
+        }
+    }
+
+    /** Marks the stack of a complete future. */
+    private static final Completion DONE_STACK = new Signaller(null);
+
+    /** Not complete. */
+    private static final int PENDING = 0;
+
+    /** Being completed, by the thread that won the CAS. */
+    private static final int COMPLETING = 1;
+
+    /** Completed normally. */
+    private static final int SUCCEEDED = 2;
+
+    /** Completed exceptionally. */
+    private static final int FAILED = 3;
+
+    /** The updater of the state. */
+    private static final AtomicIntegerFieldUpdater<PrimitiveFuture> STATE = AtomicIntegerFieldUpdater
+            .newUpdater(PrimitiveFuture.class, "state");
+
+    /** The updater of the stack. */
+    private static final AtomicReferenceFieldUpdater<PrimitiveFuture, Completion> STACK = AtomicReferenceFieldUpdater
+            .newUpdater(PrimitiveFuture.class, Completion.class, "stack");
+
+    /** The updater of the next callback. */
+    private static final AtomicReferenceFieldUpdater<Completion, Completion> NEXT = AtomicReferenceFieldUpdater
+            .newUpdater(Completion.class, Completion.class, "next");
+
+    /** The state. */
+    private volatile int state;
+
+    /** The failure, once completed exceptionally. */
+    private Throwable failure;
+
+    /** The callbacks, or DONE_STACK, once complete. */
+    private volatile Completion stack;
+
+    /**
+     * Starts completing the future normally. If it returns true, the caller
+     * must store the value, and then call finishCompletion(). Otherwise,
+     * the future was already complete.
+     */
+    protected final boolean startCompletion() {
+        return STATE.compareAndSet(this, PENDING, COMPLETING);
+    }
+
+    /** Publishes the value stored after startCompletion(), and runs the callbacks. */
+    protected final void finishCompletion() {
+        state = SUCCEEDED;
+        fire();
+    }
+
+    /**
+     * Completes the future with a failure. Returns false, if it was already
+     * complete.
+     */
+    public final boolean completeExceptionally(final Throwable theFailure) {
+        if (theFailure == null) {
+            throw new IllegalArgumentException("failure is null");
+        }
+        if (!STATE.compareAndSet(this, PENDING, COMPLETING)) {
+            return false;
+        }
+        failure = theFailure;
+        state = FAILED;
+        fire();
+        return true;
+    }
+
+    /** Returns true, if the future is complete, normally or not. */
+    public final boolean isDone() {
+        return state >= SUCCEEDED;
+    }
+
+    /** Returns true, if the future completed exceptionally. */
+    public final boolean isCompletedExceptionally() {
+        return state == FAILED;
+    }
+
+    /** Returns the failure, if the future completed exceptionally, or null. */
+    public final Throwable getFailure() {
+        return (state == FAILED) ? failure : null;
+    }
+
+    /**
+     * Adds a callback; it runs immediately, in the current thread, if the
+     * future is already complete.
+     */
+    protected final void push(final Completion completion) {
+        Completion head = stack;
+        while (head != DONE_STACK) {
+            completion.next = head;
+            if (STACK.compareAndSet(this, head, completion)) {
+                return;
+            }
+            head = stack;
+        }
+        completion.next = null;
+        run(completion);
+    }
+
+    /** Runs the callbacks, in the order they were added. */
+    private void fire() {
+        Completion head = STACK.getAndSet(this, DONE_STACK);
+        Completion reversed = null;
+        while (head != null) {
+            final Completion next = head.next;
+            head.next = reversed;
+            reversed = head;
+            head = next;
+        }
+        while (reversed != null) {
+            final Completion next = reversed.next;
+            reversed.next = null;
+            run(reversed);
+            reversed = next;
+        }
+    }
+
+    /**
+     * Runs a callback; exceptions go to the uncaught exception handler of
+     * the current thread, so that the other callbacks still run.
+     */
+    private static void run(final Completion completion) {
+        try {
+            completion.run();
+        } catch (final Throwable t) {
+            final Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+    }
+
+    /** Waits until the future is complete, ignoring interrupts. */
+    protected final void awaitDone() {
+        if (isDone()) {
+            return;
+        }
+        final Signaller signaller = new Signaller(Thread.currentThread());
+        push(signaller);
+        boolean interrupted = false;
+        while (!isDone()) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until the future is complete, or the timeout elapsed, if
+     * <code>timed</code>.
+     */
+    protected final void awaitDone(final boolean timed, final long timeout,
+            final TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (isDone()) {
+            return;
+        }
+        final long deadline = timed ? System.nanoTime() + unit.toNanos(timeout)
+                : 0;
+        final Signaller signaller = new Signaller(Thread.currentThread());
+        push(signaller);
+        while (!isDone()) {
+            if (Thread.interrupted()) {
+                signaller.thread = null;
+                removeAbandoned();
+                throw new InterruptedException();
+            }
+            if (timed) {
+                final long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    signaller.thread = null;
+                    removeAbandoned();
+                    throw new TimeoutException();
+                }
+                LockSupport.parkNanos(this, left);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Unlinks the waiters that gave up, like FutureTask.removeWaiter(), so
+     * that repeated timed waits on a pending future do not grow the stack.
+     * The links are changed with a CAS, which fails once fire() reversed
+     * them; then the stack is DONE_STACK, and there is nothing to do.
+     */
+    private void removeAbandoned() {
+        while (!tryRemoveAbandoned()) {
+            // A link changed under us; start again from the top.
+        }
+    }
+
+    /** Unlinks the waiters that gave up; returns false, if a CAS failed. */
+    private boolean tryRemoveAbandoned() {
+        Completion pred = null;
+        Completion q = stack;
+        while ((q != null) && (q != DONE_STACK)) {
+            final Completion s = q.next;
+            if (!q.isAbandoned()) {
+                pred = q;
+            } else if (pred == null) {
+                if (!STACK.compareAndSet(this, q, s)) {
+                    return false;
+                }
+            } else if (!NEXT.compareAndSet(pred, q, s)) {
+                return false;
+            }
+            q = s;
+        }
+        return true;
+    }
+
+    /** Throws a CompletionException, if the future completed exceptionally. */
+    protected final void reportJoin() {
+        if (state == FAILED) {
+            if (failure instanceof CompletionException) {
+                throw (CompletionException) failure;
+            }
+            throw new CompletionException(failure);
+        }
+    }
+
+    /** Throws an ExecutionException, if the future completed exceptionally. */
+    protected final void reportGet() throws ExecutionException {
+        if (state == FAILED) {
+            throw new ExecutionException(failure);
+        }
+    }
+
+    /** Returns the state, as a String, for toString(). */
+    protected final String stateString() {
+        switch (state) {
+        case SUCCEEDED:
+            return null;
+        case FAILED:
+            return "failed: " + failure;
+        default:
+            return "pending";
+        }
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * <code>RingExecutor</code> runs tasks made of a functor and its
+ * parameters, on consumer threads, through a preallocated ring buffer, in
+ * the style of the LMAX Disruptor. The parameters are stored inline in the
+ * slots: primitive values in a long[], and Objects in an Object[]; so
+ * publishing a task allocates nothing.
+ *
+ * The generated ProcExecutors class publishes the tasks, as in
+ * ProcExecutors.execute(executor, procIntLong, 1, 2L). A task is published
+ * by claiming a sequence with next(), storing the parameters with
+ * setLong() and setRef(), and calling publish() with the Dispatcher that
+ * reads them back and calls the functor.
+ *
+ * Each task runs on exactly one consumer thread. The consumers claim the
+ * published tasks in batches, and optionally notify a BatchListener before
+ * and after each batch. Tasks are started in order, but with several
+ * consumers, they can complete out of order. An exception thrown by a task,
+ * or by the BatchListener, goes to the uncaught exception handler of the
+ * consumer thread, which then continues with the next task.
+ *
+ * Producers must not publish concurrently with, or after, shutdown().
+ *
+ * @author monster
+ */
+public final class RingExecutor {
+
+    /** Reads the parameters of a task, and calls its functor. */
+    public abstract static class Dispatcher {
+        /** Calls the functor, with the parameters of the given sequence. */
+        protected abstract void dispatch(RingExecutor executor,
+                long sequence, Object functor) throws Exception;
+    }
+
+    /** Notified by the consumer threads, around each batch of tasks. */
+    public interface BatchListener {
+        /** Called before running a batch of <code>size</code> tasks. */
+        void batchStart(int size);
+
+        /** Called after running a batch of <code>size</code> tasks. */
+        void batchEnd(int size);
+    }
+
+    /** Padding before the value of a Sequence. */
+    static class LeftPadding {
+        /** Padding. */
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    /** The value of a Sequence. */
+    static class Value extends LeftPadding {
+        /** The value. */
+        protected volatile long value;
+    }
+
+    /** A sequence number, padded against false sharing. */
+    static final class Sequence extends Value {
+        /** The updater of the value. */
+        private static final AtomicLongFieldUpdater<Value> UPDATER = AtomicLongFieldUpdater
+                .newUpdater(Value.class, "value");
+
+        /** Padding. */
+        protected long p9, p10, p11, p12, p13, p14, p15;
+
+        /** Constructor */
+        Sequence(final long initial) {
+            value = initial;
+        }
+
+        /** Returns the value. */
+        long get() {
+            return value;
+        }
+
+        /** Sets the value, with an ordered store. */
+        void lazySet(final long newValue) {
+            UPDATER.lazySet(this, newValue);
+        }
+
+        /** Sets the value, if it is <code>expected</code>. */
+        boolean compareAndSet(final long expected, final long newValue) {
+            return UPDATER.compareAndSet(this, expected, newValue);
+        }
+
+        /** Increments the value, and returns the previous one. */
+        long getAndIncrement() {
+            return UPDATER.getAndIncrement(this);
+        }
+    }
+
+    /** The maximum batch size, per consumer, as a fraction of the capacity. */
+    private static final int BATCH_DIVISOR = 4;
+
+    /** The number of the next executor, for the thread names. */
+    private static final Sequence EXECUTORS = new Sequence(0);
+
+    /** The number of slots, minus one. */
+    private final int mask;
+
+    /** The capacity. */
+    private final int capacity;
+
+    /** log2(capacity). */
+    private final int indexShift;
+
+    /** The maximum number of parameters of a task. */
+    private final int slotSize;
+
+    /** The number of Objects per slot: the Dispatcher, the functor, and the parameters. */
+    private final int refStride;
+
+    /** The primitive parameters. */
+    private final long[] values;
+
+    /** The Dispatchers, the functors, and the Object parameters. */
+    private final Object[] refs;
+
+    /** Can several threads publish concurrently? */
+    private final boolean multiProducer;
+
+    /** The wait strategy. */
+    private final WaitStrategy waitStrategy;
+
+    /** The batch listener, or null. */
+    private final BatchListener listener;
+
+    /** The maximum number of tasks in a batch. */
+    private final int maxBatch;
+
+    /** The last claimed sequence, with several producers. */
+    private final Sequence claimed = new Sequence(-1);
+
+    /** The last published sequence, with a single producer. */
+    private final Sequence cursor = new Sequence(-1);
+
+    /** The last claimed sequence, with a single producer. Not shared. */
+    private long producerSequence = -1;
+
+    /** The publication round of each slot, with several producers. */
+    private final AtomicIntegerArray available;
+
+    /** The minimum sequence of the consumers, last time we looked. */
+    private final Sequence gatingCache = new Sequence(-1);
+
+    /** The next sequence to be claimed by a consumer. */
+    private final Sequence workSequence = new Sequence(0);
+
+    /** For each consumer, a sequence that it has fully processed. */
+    private final Sequence[] consumerSequences;
+
+    /** The consumer threads. */
+    private final Thread[] threads;
+
+    /** False, after shutdown(). */
+    private volatile boolean running = true;
+
+    /** Runs the tasks. */
+    private final class Consumer implements Runnable {
+        /** The sequence of this consumer. */
+        private final Sequence sequence;
+
+        /** Constructor */
+        Consumer(final Sequence theSequence) {
+            sequence = theSequence;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            int idle = 0;
+            while (true) {
+                final long next = workSequence.get();
+                // Everything before next was claimed, so we do not gate it.
+                sequence.lazySet(next - 1);
+                final long last = highestPublished(next);
+                if (last < next) {
+                    if (!running) {
+                        break;
+                    }
+                    waitStrategy.idle(idle++);
+                    continue;
+                }
+                final long end = Math.min(last, next + maxBatch - 1);
+                if (workSequence.compareAndSet(next, end + 1)) {
+                    idle = 0;
+                    run(next, end);
+                }
+            }
+            sequence.lazySet(Long.MAX_VALUE);
+        }
+
+        /**
+         * Runs the tasks from <code>first</code> to <code>last</code>. They
+         * are already claimed, so nothing thrown may stop the loop.
+         */
+        private void run(final long first, final long last) {
+            final int size = (int) (last - first + 1);
+            if (listener != null) {
+                try {
+                    listener.batchStart(size);
+                } catch (final Throwable t) {
+                    report(t);
+                }
+            }
+            try {
+                for (long s = first; s <= last; s++) {
+                    final int base = ((int) s & mask) * refStride;
+                    final Dispatcher dispatcher = (Dispatcher) refs[base];
+                    final Object functor = refs[base + 1];
+                    try {
+                        dispatcher.dispatch(RingExecutor.this, s, functor);
+                    } catch (final Throwable t) {
+                        report(t);
+                    } finally {
+                        for (int i = 0; i < refStride; i++) {
+                            refs[base + i] = null;
+                        }
+                    }
+                }
+            } finally {
+                if (listener != null) {
+                    try {
+                        listener.batchEnd(size);
+                    } catch (final Throwable t) {
+                        report(t);
+                    }
+                }
+            }
+        }
+
+        /** Passes a failure to the uncaught exception handler. */
+        private void report(final Throwable t) {
+            final Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+    }
+
+    /**
+     * Creates and starts a RingExecutor, with new threads.
+     *
+     * @param theCapacity the number of slots; must be a power of two.
+     * @param theSlotSize the maximum number of parameters of a task.
+     * @param consumers the number of consumer threads.
+     * @param theMultiProducer true, if several threads publish tasks.
+     * @param theWaitStrategy how the threads wait.
+     */
+    public RingExecutor(final int theCapacity, final int theSlotSize,
+            final int consumers, final boolean theMultiProducer,
+            final WaitStrategy theWaitStrategy) {
+        this(theCapacity, theSlotSize, consumers, theMultiProducer,
+                theWaitStrategy, null, null);
+    }
+
+    /**
+     * Creates and starts a RingExecutor.
+     *
+     * @param theCapacity the number of slots; must be a power of two.
+     * @param theSlotSize the maximum number of parameters of a task.
+     * @param consumers the number of consumer threads.
+     * @param theMultiProducer true, if several threads publish tasks.
+     * @param theWaitStrategy how the threads wait.
+     * @param theListener notified around each batch, on the consumer threads; can be null.
+     * @param threadFactory creates the consumer threads; can be null.
+     */
+    public RingExecutor(final int theCapacity, final int theSlotSize,
+            final int consumers, final boolean theMultiProducer,
+            final WaitStrategy theWaitStrategy,
+            final BatchListener theListener, final ThreadFactory threadFactory) {
+        if ((theCapacity <= 0) || (Integer.bitCount(theCapacity) != 1)) {
+            throw new IllegalArgumentException(
+                    "capacity must be a positive power of two: " + theCapacity);
+        }
+        if (theSlotSize < 0) {
+            throw new IllegalArgumentException("slotSize is negative: "
+                    + theSlotSize);
+        }
+        if (consumers <= 0) {
+            throw new IllegalArgumentException("consumers must be positive: "
+                    + consumers);
+        }
+        if (theWaitStrategy == null) {
+            throw new IllegalArgumentException("waitStrategy is null");
+        }
+        capacity = theCapacity;
+        mask = theCapacity - 1;
+        indexShift = Integer.numberOfTrailingZeros(theCapacity);
+        slotSize = theSlotSize;
+        refStride = theSlotSize + 2;
+        values = new long[theCapacity * theSlotSize];
+        refs = new Object[theCapacity * refStride];
+        multiProducer = theMultiProducer;
+        waitStrategy = theWaitStrategy;
+        listener = theListener;
+        maxBatch = Math.max(1, theCapacity / (BATCH_DIVISOR * consumers));
+        if (theMultiProducer) {
+            available = new AtomicIntegerArray(theCapacity);
+            for (int i = 0; i < theCapacity; i++) {
+                available.set(i, -1);
+            }
+        } else {
+            available = null;
+        }
+        consumerSequences = new Sequence[consumers];
+        threads = new Thread[consumers];
+        final long id = EXECUTORS.getAndIncrement();
+        for (int i = 0; i < consumers; i++) {
+            consumerSequences[i] = new Sequence(-1);
+            final Consumer consumer = new Consumer(consumerSequences[i]);
+            threads[i] = (threadFactory == null) ? new Thread(consumer,
+                    "RingExecutor-" + id + "-" + i) : threadFactory
+                    .newThread(consumer);
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    /** Returns the capacity. */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Returns the maximum number of parameters of a task. */
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    /** Returns the wait strategy. */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /** Returns true, if several threads can publish concurrently. */
+    public boolean isMultiProducer() {
+        return multiProducer;
+    }
+
+    /**
+     * Claims the slot of a task with <code>arity</code> parameters, waiting
+     * if the ring buffer is full, and returns its sequence.
+     */
+    public long next(final int arity) {
+        if (arity > slotSize) {
+            throw new IllegalArgumentException("arity " + arity
+                    + " is greater than slotSize " + slotSize);
+        }
+        if (!running) {
+            throw new IllegalStateException("shut down");
+        }
+        final long sequence;
+        if (multiProducer) {
+            sequence = claimed.getAndIncrement() + 1;
+        } else {
+            sequence = ++producerSequence;
+        }
+        final long wrapPoint = sequence - capacity;
+        if (wrapPoint > gatingCache.get()) {
+            int idle = 0;
+            long min;
+            while (wrapPoint > (min = minimumConsumerSequence())) {
+                waitStrategy.idle(idle++);
+            }
+            gatingCache.lazySet(min);
+        }
+        return sequence;
+    }
+
+    /** Stores the primitive parameter <code>index</code> of a claimed slot. */
+    public void setLong(final long sequence, final int index, final long value) {
+        values[((int) sequence & mask) * slotSize + index] = value;
+    }
+
+    /** Stores the Object parameter <code>index</code> of a claimed slot. */
+    public void setRef(final long sequence, final int index, final Object value) {
+        refs[((int) sequence & mask) * refStride + 2 + index] = value;
+    }
+
+    /** Returns the primitive parameter <code>index</code> of a task. */
+    public long getLong(final long sequence, final int index) {
+        return values[((int) sequence & mask) * slotSize + index];
+    }
+
+    /** Returns the Object parameter <code>index</code> of a task. */
+    public Object getRef(final long sequence, final int index) {
+        return refs[((int) sequence & mask) * refStride + 2 + index];
+    }
+
+    /** Publishes a claimed slot, to be run by calling the dispatcher. */
+    public void publish(final long sequence, final Dispatcher dispatcher,
+            final Object functor) {
+        final int index = (int) sequence & mask;
+        refs[index * refStride] = dispatcher;
+        refs[index * refStride + 1] = functor;
+        if (multiProducer) {
+            available.lazySet(index, (int) (sequence >>> indexShift));
+        } else {
+            cursor.lazySet(sequence);
+        }
+    }
+
+    /** Returns the last published sequence, such that all from next on are published. */
+    private long highestPublished(final long next) {
+        if (!multiProducer) {
+            return cursor.get();
+        }
+        final long last = claimed.get();
+        for (long s = next; s <= last; s++) {
+            if (available.get((int) s & mask) != (int) (s >>> indexShift)) {
+                return s - 1;
+            }
+        }
+        return last;
+    }
+
+    /** Returns the minimum sequence of the consumers. */
+    private long minimumConsumerSequence() {
+        long result = Long.MAX_VALUE;
+        for (final Sequence sequence : consumerSequences) {
+            result = Math.min(result, sequence.get());
+        }
+        return result;
+    }
+
+    /**
+     * Stops the consumer threads, once they ran all the published tasks.
+     * No task can be published afterward.
+     */
+    public void shutdown() {
+        running = false;
+    }
+
+    /** Returns true, after shutdown(). */
+    public boolean isShutdown() {
+        return !running;
+    }
+
+    /**
+     * Waits for the consumer threads to stop, after shutdown(). Returns
+     * false, if the timeout elapsed first.
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (final Thread thread : threads) {
+            final long left = deadline - System.nanoTime();
+            if (left > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(thread, left);
+            }
+            if (thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * <code>StripedAccumulator</code> implements the generated primitive
+ * accumulators, like java.util.concurrent.atomic.LongAccumulator, but for
+ * any primitive type, and any combine function. All values are stored as
+ * raw long bits; the generated subclasses convert them.
+ *
+ * Without contention, the value is updated with a CAS on a single field.
+ * Once a CAS fails, the updates are spread over an array of cells, padded
+ * against false sharing, that is doubled on further contention, up to the
+ * number of processors. Each thread has a probe, which selects its cell,
+ * and which changes when its cell is contended. Reading merges the base
+ * value and all the cells, so the combine and merge functions must be
+ * associative and commutative, and the identity must be neutral for merge.
+ *
+ * @author monster
+ */
+public abstract class StripedAccumulator {
+
+    /** Padding before the value of a Cell. */
+    static class LeftPadding {
+        /** Padding. */
+        protected long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    /** The value of a Cell. */
+    static class Value extends LeftPadding {
+        /** The value. */
+        protected volatile long value;
+    }
+
+    /** One stripe, padded against false sharing. */
+    static final class Cell extends Value {
+        /** The updater of the value. */
+        private static final AtomicLongFieldUpdater<Value> UPDATER = AtomicLongFieldUpdater
+                .newUpdater(Value.class, "value");
+
+        /** Padding. */
+        protected long p9, p10, p11, p12, p13, p14, p15;
+
+        /** Constructor */
+        Cell(final long initial) {
+            value = initial;
+        }
+
+        /** Sets the value, if it is <code>expected</code>. */
+        boolean compareAndSet(final long expected, final long newValue) {
+            return UPDATER.compareAndSet(this, expected, newValue);
+        }
+    }
+
+    /** The number of processors; the maximum number of cells. */
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** The probe of each thread. */
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            final int seed = (int) (Thread.currentThread().getId() * 0x9E3779B97F4A7C15L >>> 32);
+            return new int[] { (seed == 0) ? 1 : seed };
+        }
+    };
+
+    /** The updater of the base value. */
+    private static final AtomicLongFieldUpdater<StripedAccumulator> BASE = AtomicLongFieldUpdater
+            .newUpdater(StripedAccumulator.class, "base");
+
+    /** The updater of the lock of the cells. */
+    private static final AtomicIntegerFieldUpdater<StripedAccumulator> CELLS_BUSY = AtomicIntegerFieldUpdater
+            .newUpdater(StripedAccumulator.class, "cellsBusy");
+
+    /** The identity, as raw bits. */
+    private final long identity;
+
+    /** The value, without contention. */
+    private volatile long base;
+
+    /** The cells, or null; the length is a power of two. */
+    private volatile Cell[] cells;
+
+    /** Spin lock, for creating or resizing the cells. */
+    private volatile int cellsBusy;
+
+    /** Constructor, with the raw bits of the identity. */
+    protected StripedAccumulator(final long theIdentity) {
+        identity = theIdentity;
+        base = theIdentity;
+    }
+
+    /** Combines the accumulated value with an input value, as raw bits. */
+    protected abstract long combine(long value, long input);
+
+    /** Merges two accumulated values, as raw bits. */
+    protected abstract long merge(long left, long right);
+
+    /** Returns the raw bits of the identity. */
+    protected final long identity() {
+        return identity;
+    }
+
+    /** Accumulates an input value, as raw bits. */
+    protected final void update(final long input) {
+        final Cell[] cs = cells;
+        if (cs == null) {
+            final long b = base;
+            if (BASE.compareAndSet(this, b, combine(b, input))) {
+                return;
+            }
+            update(input, PROBE.get(), true);
+            return;
+        }
+        final int[] probe = PROBE.get();
+        final Cell c = cs[probe[0] & (cs.length - 1)];
+        if (c == null) {
+            update(input, probe, true);
+            return;
+        }
+        final long v = c.value;
+        if (!c.compareAndSet(v, combine(v, input))) {
+            update(input, probe, false);
+        }
+    }
+
+    /** The contended path of update(), as in Striped64. */
+    private void update(final long input, final int[] probe,
+            final boolean uncontended) {
+        boolean wasUncontended = uncontended;
+        boolean collide = false;
+        int h = probe[0];
+        while (true) {
+            final Cell[] cs = cells;
+            if (cs != null) {
+                final int n = cs.length;
+                final Cell c = cs[(n - 1) & h];
+                if (c == null) {
+                    if ((cellsBusy == 0)
+                            && tryCreate(cs, (n - 1) & h, combine(identity, input))) {
+                        return;
+                    }
+                    collide = false;
+                } else if (!wasUncontended) {
+                    // Rehash, and retry.
+                    wasUncontended = true;
+                } else {
+                    final long v = c.value;
+                    if (c.compareAndSet(v, combine(v, input))) {
+                        return;
+                    }
+                    if ((n >= NCPU) || (cells != cs)) {
+                        collide = false;
+                    } else if (!collide) {
+                        collide = true;
+                    } else if ((cellsBusy == 0)
+                            && CELLS_BUSY.compareAndSet(this, 0, 1)) {
+                        try {
+                            if (cells == cs) {
+                                cells = Arrays.copyOf(cs, n << 1);
+                            }
+                        } finally {
+                            cellsBusy = 0;
+                        }
+                        collide = false;
+                        continue;
+                    }
+                }
+                h ^= h << 13;
+                h ^= h >>> 17;
+                h ^= h << 5;
+                probe[0] = h;
+            } else if ((cellsBusy == 0)
+                    && CELLS_BUSY.compareAndSet(this, 0, 1)) {
+                try {
+                    if (cells == null) {
+                        final Cell[] rs = new Cell[2];
+                        rs[h & 1] = new Cell(combine(identity, input));
+                        cells = rs;
+                        return;
+                    }
+                } finally {
+                    cellsBusy = 0;
+                }
+            } else {
+                final long b = base;
+                if (BASE.compareAndSet(this, b, combine(b, input))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Tries to create the cell at <code>index</code>. */
+    private boolean tryCreate(final Cell[] cs, final int index,
+            final long value) {
+        final Cell created = new Cell(value);
+        if ((cellsBusy == 0) && CELLS_BUSY.compareAndSet(this, 0, 1)) {
+            try {
+                if ((cells == cs) && (cs[index] == null)) {
+                    cs[index] = created;
+                    return true;
+                }
+            } finally {
+                cellsBusy = 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the current value, as raw bits, by merging the base value and
+     * all the cells. Concurrent updates may or may not be included.
+     */
+    protected final long reduce() {
+        long result = base;
+        final Cell[] cs = cells;
+        if (cs != null) {
+            for (final Cell c : cs) {
+                if (c != null) {
+                    result = merge(result, c.value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the current value, as raw bits, and resets the base value and
+     * all the cells to the identity. Only exact without concurrent updates.
+     */
+    protected final long reduceThenReset() {
+        long result = BASE.getAndSet(this, identity);
+        final Cell[] cs = cells;
+        if (cs != null) {
+            for (final Cell c : cs) {
+                if (c != null) {
+                    result = merge(result, Cell.UPDATER.getAndSet(c, identity));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Resets the value to the identity. Only exact without concurrent updates. */
+    public final void reset() {
+        reduceThenReset();
+    }
+
+    /** Returns the number of cells; 0 as long as there was no contention. */
+    public final int getStripes() {
+        final Cell[] cs = cells;
+        return (cs == null) ? 0 : cs.length;
+    }
+}
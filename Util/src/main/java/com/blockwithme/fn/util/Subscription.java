@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+/**
+ * <code>Subscription</code> links a subscriber to a primitive publisher,
+ * with the semantics of the Reactive Streams Subscription: the publisher
+ * sends at most as many elements as requested.
+ *
+ * @author monster
+ */
+public interface Subscription {
+
+    /**
+     * Requests <code>n</code> more elements. Long.MAX_VALUE means an
+     * unbounded demand. A non-positive <code>n</code> fails the stream.
+     */
+    void request(long n);
+
+    /** Stops the stream; elements may still arrive for a short while. */
+    void cancel();
+}
@@ -24,6 +24,24 @@ public abstract class TupleBase implements Tuple, Serializable {
         return (a == null) ? (b == null) : a.equals(b);
     }
 
+    /**
+     * Compares 2 objects, which must be Comparable, or null. Nulls come
+     * first. Public, since the generated indexes also use it.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static int compareObjects(final Object a, final Object b) {
+        if (a == b) {
+            return 0;
+        }
+        if (a == null) {
+            return -1;
+        }
+        if (b == null) {
+            return 1;
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
     /** Hashcode for boolean. */
     protected static int hash(final boolean value) {
         return value ? 123 : 456;
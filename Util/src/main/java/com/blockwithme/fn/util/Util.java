@@ -2,7 +2,19 @@ package com.blockwithme.fn.util;
 
 import static java.util.Objects.requireNonNull;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleInfo;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Provides utility methods to retrieve Functor interfaces from a signature
@@ -157,6 +169,22 @@ public class Util {
     /** The Object/Other name label. */
     private final String objectLabel;
 
+    /** The lookup used to create functors, if the caller provides none. */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * The functors created from method handles, per declaring class of the
+     * target method, and then per (functor interface, target method).
+     * Using a ClassValue allows the classes of plugins to be unloaded.
+     */
+    private static final ClassValue<ConcurrentHashMap<List<Object>, Functor>> FUNCTORS = new ClassValue<ConcurrentHashMap<List<Object>, Functor>>() {
+        @Override
+        protected ConcurrentHashMap<List<Object>, Functor> computeValue(
+                final Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
     /**
      * Gets the signature of a particular Functor interface.
      *
@@ -188,6 +216,121 @@ public class Util {
         return getSignature(theFunctor.getClass());
     }
 
+    /**
+     * Gets the signature of a method type, as used by the Functor interfaces:
+     * the return type, followed by the parameter types, where all reference
+     * types are replaced by Object.
+     *
+     * @param theType the method type.
+     * @return the signature.
+     */
+    public static Class<?>[] getSignature(final MethodType theType) {
+        final Class<?>[] result = new Class<?>[theType.parameterCount() + 1];
+        result[0] = erase(theType.returnType());
+        for (int i = 0; i < theType.parameterCount(); i++) {
+            result[i + 1] = erase(theType.parameterType(i));
+        }
+        return result;
+    }
+
+    /** Returns the type itself if primitive, otherwise Object. */
+    private static Class<?> erase(final Class<?> type) {
+        return type.isPrimitive() ? type : Object.class;
+    }
+
+    /**
+     * Gets the Functor interface implemented by a class, or an interface: the
+     * only one that declares the SIGNATURE constant.
+     *
+     * @param theType the Functor implementation class, or interface.
+     * @return the Functor interface.
+     */
+    public static Class<? extends Functor> getFunctorInterface(
+            final Class<?> theType) {
+        if (theType.isInterface()) {
+            final Class<? extends Functor> result = findFunctorInterface(theType);
+            if (result != null) {
+                return result;
+            }
+        }
+        Class<? extends Functor> result = null;
+        for (Class<?> c = theType; c != null; c = c.getSuperclass()) {
+            for (final Class<?> i : c.getInterfaces()) {
+                final Class<? extends Functor> found = findFunctorInterface(i);
+                if ((found != null) && (found != result)) {
+                    if (result != null) {
+                        throw new IllegalArgumentException(theType.getName()
+                                + " implements both " + result.getName()
+                                + " and " + found.getName());
+                    }
+                    result = found;
+                }
+            }
+        }
+        if (result == null) {
+            throw new IllegalArgumentException(theType.getName()
+                    + " does not implement a functor interface");
+        }
+        return result;
+    }
+
+    /** Searches the Functor interface, in an interface hierarchy. */
+    private static Class<? extends Functor> findFunctorInterface(
+            final Class<?> type) {
+        if (Functor.class.isAssignableFrom(type)) {
+            try {
+                type.getDeclaredField(SIGNATURE);
+                return type.asSubclass(Functor.class);
+            } catch (final NoSuchFieldException e) {
+                for (final Class<?> i : type.getInterfaces()) {
+                    final Class<? extends Functor> result =
+                            findFunctorInterface(i);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the functor method of a Functor interface: its only abstract
+     * method.
+     *
+     * @param theFunctor the Type of Functor interface.
+     * @return the functor method.
+     */
+    public static Method getFunctorMethod(
+            final Class<? extends Functor> theFunctor) {
+        if (!theFunctor.isInterface()) {
+            throw new IllegalArgumentException(theFunctor.getName()
+                    + " is not an interface");
+        }
+        Method result = null;
+        for (final Method method : theFunctor.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers())) {
+                if ((result != null)
+                        && result.getName().equals(method.getName())
+                        && Arrays.equals(result.getParameterTypes(),
+                                method.getParameterTypes())) {
+                    // Same method, inherited from two interfaces
+                    continue;
+                }
+                if (result != null) {
+                    throw new IllegalArgumentException(theFunctor.getName()
+                            + " has more than one abstract method");
+                }
+                result = method;
+            }
+        }
+        if (result == null) {
+            throw new IllegalArgumentException(theFunctor.getName()
+                    + " has no abstract method");
+        }
+        return result;
+    }
+
     /**
      * Instantiates the util with default values defined above,
      * using long labels.
@@ -334,6 +477,108 @@ public class Util {
         }
     }
 
+    /**
+     * Returns a functor calling the given method. A static method maps to the
+     * functor with the same signature; an instance method takes the
+     * receiver as first parameter.
+     *
+     * @see #asFunctor(MethodHandles.Lookup, MethodHandle)
+     */
+    public Functor asFunctor(final Method method) {
+        return asFunctor(LOOKUP, method);
+    }
+
+    /**
+     * Returns a functor calling the given method, using the given lookup.
+     *
+     * @see #asFunctor(MethodHandles.Lookup, MethodHandle)
+     */
+    public Functor asFunctor(final MethodHandles.Lookup caller,
+            final Method method) {
+        requireNonNull(caller, "caller");
+        requireNonNull(method, "method");
+        try {
+            return asFunctor(caller, caller.unreflect(method));
+        } catch (final IllegalAccessException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a functor calling the given direct method handle.
+     *
+     * @see #asFunctor(MethodHandles.Lookup, MethodHandle)
+     */
+    public Functor asFunctor(final MethodHandle target) {
+        return asFunctor(LOOKUP, target);
+    }
+
+    /**
+     * Returns a functor calling the given direct method handle, as created
+     * by Lookup.findStatic(), findVirtual() or unreflect().
+     *
+     * The functor interface is found with getFunctor(), from the type of the
+     * method handle. The functor is created with the LambdaMetafactory, so
+     * calling it is as fast as a direct call, without any boxing. The
+     * functors are cached per (functor interface, target method).
+     *
+     * The caller lookup must have private access, and its class loader must
+     * see the class of the target; the lookup of Util is used by default.
+     * Plugins in their own class loader should pass their own lookup.
+     *
+     * @param caller the lookup used by the LambdaMetafactory.
+     * @param target the direct method handle.
+     * @return the functor.
+     */
+    public Functor asFunctor(final MethodHandles.Lookup caller,
+            final MethodHandle target) {
+        requireNonNull(caller, "caller");
+        requireNonNull(target, "target");
+        final MethodHandleInfo info;
+        try {
+            info = caller.revealDirect(target);
+        } catch (final IllegalArgumentException | SecurityException e) {
+            throw new IllegalArgumentException("Not a direct method handle: "
+                    + target, e);
+        }
+        final Class<? extends Functor> type = getFunctor(getSignature(target
+                .type()));
+        final List<Object> key = Arrays.<Object> asList(type, info.getName(),
+                info.getMethodType(), info.getReferenceKind());
+        final ConcurrentHashMap<List<Object>, Functor> functors = FUNCTORS
+                .get(info.getDeclaringClass());
+        Functor result = functors.get(key);
+        if (result == null) {
+            result = createFunctor(caller, type, target);
+            final Functor old = functors.putIfAbsent(key, result);
+            if (old != null) {
+                result = old;
+            }
+        }
+        return result;
+    }
+
+    /** Creates a functor with the LambdaMetafactory. */
+    private static Functor createFunctor(final MethodHandles.Lookup caller,
+            final Class<? extends Functor> type, final MethodHandle target) {
+        final Method method = getFunctorMethod(type);
+        try {
+            final CallSite site = LambdaMetafactory.metafactory(caller,
+                    method.getName(), MethodType.methodType(type),
+                    MethodType.methodType(method.getReturnType(),
+                            method.getParameterTypes()), target,
+                    target.type());
+            return (Functor) site.getTarget().invoke();
+        } catch (final LambdaConversionException e) {
+            throw new IllegalArgumentException("Cannot implement "
+                    + type.getName() + " with " + target, e);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
     /** Generates a tuple name, based on the signature. */
     public String genTupleName(final Class<?>[] theSignature) {
         if (theSignature == null) {
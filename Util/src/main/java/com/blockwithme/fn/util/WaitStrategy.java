@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>WaitStrategy</code> defines how the threads of a RingExecutor wait,
+ * consumers for new tasks, and producers for free slots.
+ *
+ * @author monster
+ */
+public enum WaitStrategy {
+    /** Spins; the lowest latency, but a waiting thread uses a whole core. */
+    BusySpin {
+        @Override
+        public void idle(final int iteration) {
+            // NOP
+        }
+    },
+    /** Spins a little, then yields to the other threads. */
+    Yield {
+        @Override
+        public void idle(final int iteration) {
+            if (iteration >= SPINS) {
+                Thread.yield();
+            }
+        }
+    },
+    /** Spins, yields, then parks for a short time; the least CPU usage. */
+    Park {
+        @Override
+        public void idle(final int iteration) {
+            if (iteration >= 2 * SPINS) {
+                LockSupport.parkNanos(PARK_NANOS);
+            } else if (iteration >= SPINS) {
+                Thread.yield();
+            }
+        }
+    };
+
+    /** The number of iterations spinning, before yielding. */
+    private static final int SPINS = 100;
+
+    /** How long to park, in nanoseconds. */
+    private static final long PARK_NANOS = 50000;
+
+    /**
+     * Waits a little. <code>iteration</code> counts the calls since the
+     * thread last found something to do.
+     */
+    public abstract void idle(int iteration);
+}
@@ -0,0 +1,474 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>WheelTimer</code> runs functors after a delay, on its own thread,
+ * using a hashed timing wheel. Each bucket of the wheel holds the timers
+ * expiring at the ticks equal to the bucket index, modulo the wheel size.
+ *
+ * The timers are stored in preallocated parallel arrays: the deadline, the
+ * links of the bucket lists, and the parameters, inline, like in a
+ * RingExecutor: primitive values in a long[], and Objects in an Object[].
+ * The slots of the expired or cancelled timers are reused, so scheduling
+ * allocates nothing. The number of pending timers is therefore bounded by
+ * the capacity.
+ *
+ * The generated ProcTimers class schedules the timers, as in
+ * ProcTimers.schedule(timer, 10, TimeUnit.MILLISECONDS, procIntLong, 1, 2L).
+ * A timer is scheduled by claiming a slot with claim(), storing the
+ * parameters with setLong() and setRef(), and calling schedule() with the
+ * Dispatcher that reads them back and calls the functor.
+ *
+ * A timer is identified by a long handle, made of its slot and of the
+ * number of times that slot was reused, so cancel() is O(1), and a stale
+ * handle never cancels another timer. An exception thrown by a functor
+ * goes to the uncaught exception handler of the timer thread, which then
+ * continues with the next timer.
+ *
+ * @author monster
+ */
+public final class WheelTimer {
+
+    /** Reads the parameters of a timer, and calls its functor. */
+    public abstract static class Dispatcher {
+        /** Calls the functor, with the parameters of the given timer. */
+        protected abstract void dispatch(WheelTimer timer, long handle,
+                Object functor) throws Exception;
+    }
+
+    /** No slot. */
+    private static final int NONE = -1;
+
+    /** The state of an unused slot. */
+    private static final byte FREE = 0;
+
+    /** The state of a slot between claim() and schedule(). */
+    private static final byte CLAIMED = 1;
+
+    /** The state of a pending timer. */
+    private static final byte SCHEDULED = 2;
+
+    /** The state of an expired timer, whose functor is being called. */
+    private static final byte FIRING = 3;
+
+    /** The number of the next timer, for the thread names. */
+    private static final AtomicLong TIMERS = new AtomicLong();
+
+    /** The duration of a tick, in nanoseconds. */
+    private final long tickNanos;
+
+    /** The number of buckets, minus one. */
+    private final int mask;
+
+    /** The maximum number of pending timers. */
+    private final int capacity;
+
+    /** The maximum number of parameters of a timer. */
+    private final int slotSize;
+
+    /** The number of Objects per slot: the Dispatcher, the functor, and the parameters. */
+    private final int refStride;
+
+    /** The first slot of each bucket, or NONE. */
+    private final int[] buckets;
+
+    /** The tick at which each timer expires. */
+    private final long[] deadlines;
+
+    /** The next slot in the bucket, or in the free list, or NONE. */
+    private final int[] next;
+
+    /** The previous slot in the bucket, or NONE. */
+    private final int[] prev;
+
+    /** The number of times each slot was reused. */
+    private final int[] generations;
+
+    /** The state of each slot. */
+    private final byte[] states;
+
+    /** The primitive parameters. */
+    private final long[] values;
+
+    /** The Dispatchers, the functors, and the Object parameters. */
+    private final Object[] refs;
+
+    /** Guards the buckets, the links, and the states. */
+    private final Object lock = new Object();
+
+    /** The first free slot, or NONE. */
+    private int free;
+
+    /** The number of pending timers. */
+    private int size;
+
+    /** The last tick processed by the timer thread. */
+    private long tick;
+
+    /** The time of tick 0. */
+    private final long startTime;
+
+    /** The timer thread. */
+    private final Thread thread;
+
+    /** False, after shutdown(). */
+    private volatile boolean running = true;
+
+    /** Expires the timers. */
+    private final class Worker implements Runnable {
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            while (running) {
+                final long wait = startTime + (tick + 1) * tickNanos
+                        - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                    continue;
+                }
+                final int expired = expire();
+                if (expired != NONE) {
+                    fire(expired);
+                }
+            }
+        }
+
+        /**
+         * Moves to the next tick, and removes the timers that expired from
+         * its bucket. Returns the first of them, or NONE.
+         */
+        private int expire() {
+            int result = NONE;
+            synchronized (lock) {
+                final long now = ++tick;
+                int slot = buckets[(int) now & mask];
+                while (slot != NONE) {
+                    final int following = next[slot];
+                    if (deadlines[slot] <= now) {
+                        unlink(slot);
+                        states[slot] = FIRING;
+                        size--;
+                        next[slot] = result;
+                        result = slot;
+                    }
+                    slot = following;
+                }
+            }
+            return result;
+        }
+
+        /** Calls the functors of the expired timers, and frees their slots. */
+        private void fire(final int first) {
+            for (int slot = first; slot != NONE; slot = next[slot]) {
+                final int base = slot * refStride;
+                final Dispatcher dispatcher = (Dispatcher) refs[base];
+                final Object functor = refs[base + 1];
+                try {
+                    dispatcher.dispatch(WheelTimer.this, handle(slot),
+                            functor);
+                } catch (final Throwable t) {
+                    final Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(
+                            current, t);
+                }
+            }
+            synchronized (lock) {
+                int slot = first;
+                while (slot != NONE) {
+                    final int following = next[slot];
+                    release(slot);
+                    slot = following;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates and starts a WheelTimer, with a new thread.
+     *
+     * @param tickDuration the duration of a tick; the timers expire on the first tick after their delay.
+     * @param unit the unit of tickDuration.
+     * @param wheelSize the number of buckets; must be a power of two.
+     * @param theCapacity the maximum number of pending timers.
+     * @param theSlotSize the maximum number of parameters of a timer.
+     */
+    public WheelTimer(final long tickDuration, final TimeUnit unit,
+            final int wheelSize, final int theCapacity, final int theSlotSize) {
+        this(tickDuration, unit, wheelSize, theCapacity, theSlotSize, null);
+    }
+
+    /**
+     * Creates and starts a WheelTimer.
+     *
+     * @param tickDuration the duration of a tick; the timers expire on the first tick after their delay.
+     * @param unit the unit of tickDuration.
+     * @param wheelSize the number of buckets; must be a power of two.
+     * @param theCapacity the maximum number of pending timers.
+     * @param theSlotSize the maximum number of parameters of a timer.
+     * @param threadFactory creates the timer thread; can be null.
+     */
+    public WheelTimer(final long tickDuration, final TimeUnit unit,
+            final int wheelSize, final int theCapacity, final int theSlotSize,
+            final ThreadFactory threadFactory) {
+        if (unit == null) {
+            throw new IllegalArgumentException("unit is null");
+        }
+        if (unit.toNanos(tickDuration) <= 0) {
+            throw new IllegalArgumentException(
+                    "tickDuration must be positive: " + tickDuration);
+        }
+        if ((wheelSize <= 0) || (Integer.bitCount(wheelSize) != 1)) {
+            throw new IllegalArgumentException(
+                    "wheelSize must be a positive power of two: " + wheelSize);
+        }
+        if (theCapacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: "
+                    + theCapacity);
+        }
+        if (theSlotSize < 0) {
+            throw new IllegalArgumentException("slotSize is negative: "
+                    + theSlotSize);
+        }
+        tickNanos = unit.toNanos(tickDuration);
+        mask = wheelSize - 1;
+        capacity = theCapacity;
+        slotSize = theSlotSize;
+        refStride = theSlotSize + 2;
+        buckets = new int[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = NONE;
+        }
+        deadlines = new long[theCapacity];
+        next = new int[theCapacity];
+        prev = new int[theCapacity];
+        generations = new int[theCapacity];
+        states = new byte[theCapacity];
+        values = new long[theCapacity * theSlotSize];
+        refs = new Object[theCapacity * refStride];
+        for (int i = 0; i < theCapacity; i++) {
+            next[i] = i + 1;
+        }
+        next[theCapacity - 1] = NONE;
+        free = 0;
+        startTime = System.nanoTime();
+        final Worker worker = new Worker();
+        thread = (threadFactory == null) ? new Thread(worker, "WheelTimer-"
+                + TIMERS.getAndIncrement()) : threadFactory.newThread(worker);
+        thread.start();
+    }
+
+    /** Returns the duration of a tick, in nanoseconds. */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /** Returns the number of buckets. */
+    public int getWheelSize() {
+        return mask + 1;
+    }
+
+    /** Returns the maximum number of pending timers. */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Returns the maximum number of parameters of a timer. */
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    /** Returns the number of pending timers. */
+    public int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /** Returns the handle of a slot. */
+    private long handle(final int slot) {
+        return ((long) generations[slot] << 32) | slot;
+    }
+
+    /**
+     * Claims the slot of a timer with <code>arity</code> parameters, and
+     * returns its handle. Throws an IllegalStateException, if capacity
+     * timers are already pending.
+     */
+    public long claim(final int arity) {
+        if (arity > slotSize) {
+            throw new IllegalArgumentException("arity " + arity
+                    + " is greater than slotSize " + slotSize);
+        }
+        if (!running) {
+            throw new IllegalStateException("shut down");
+        }
+        synchronized (lock) {
+            final int slot = free;
+            if (slot == NONE) {
+                throw new IllegalStateException("capacity " + capacity
+                        + " reached");
+            }
+            free = next[slot];
+            states[slot] = CLAIMED;
+            return handle(slot);
+        }
+    }
+
+    /** Stores the primitive parameter <code>index</code> of a claimed slot. */
+    public void setLong(final long handle, final int index, final long value) {
+        values[(int) handle * slotSize + index] = value;
+    }
+
+    /** Stores the Object parameter <code>index</code> of a claimed slot. */
+    public void setRef(final long handle, final int index, final Object value) {
+        refs[(int) handle * refStride + 2 + index] = value;
+    }
+
+    /** Returns the primitive parameter <code>index</code> of a timer. */
+    public long getLong(final long handle, final int index) {
+        return values[(int) handle * slotSize + index];
+    }
+
+    /** Returns the Object parameter <code>index</code> of a timer. */
+    public Object getRef(final long handle, final int index) {
+        return refs[(int) handle * refStride + 2 + index];
+    }
+
+    /**
+     * Schedules a claimed slot, to expire after <code>delayNanos</code>,
+     * by calling the dispatcher.
+     */
+    public void schedule(final long handle, final long delayNanos,
+            final Dispatcher dispatcher, final Object functor) {
+        final int slot = (int) handle;
+        refs[slot * refStride] = dispatcher;
+        refs[slot * refStride + 1] = functor;
+        // Delays of centuries are clamped, to avoid overflows.
+        final long delay = Math.min(Math.max(delayNanos, 0),
+                Long.MAX_VALUE >> 2);
+        final long elapsed = System.nanoTime() - startTime + delay;
+        final long deadline = (elapsed + tickNanos - 1) / tickNanos;
+        synchronized (lock) {
+            if ((states[slot] != CLAIMED)
+                    || (generations[slot] != (int) (handle >>> 32))) {
+                throw new IllegalStateException("not claimed: " + handle);
+            }
+            final long expires = Math.max(deadline, tick + 1);
+            final int bucket = (int) expires & mask;
+            final int head = buckets[bucket];
+            deadlines[slot] = expires;
+            prev[slot] = NONE;
+            next[slot] = head;
+            if (head != NONE) {
+                prev[head] = slot;
+            }
+            buckets[bucket] = slot;
+            states[slot] = SCHEDULED;
+            size++;
+        }
+    }
+
+    /**
+     * Cancels a pending timer. Returns false, if it already expired, or was
+     * already cancelled.
+     */
+    public boolean cancel(final long handle) {
+        final int slot = (int) handle;
+        if ((slot < 0) || (slot >= capacity)) {
+            return false;
+        }
+        synchronized (lock) {
+            if ((states[slot] != SCHEDULED)
+                    || (generations[slot] != (int) (handle >>> 32))) {
+                return false;
+            }
+            unlink(slot);
+            size--;
+            release(slot);
+            return true;
+        }
+    }
+
+    /** Returns true, if the timer is still pending. */
+    public boolean isPending(final long handle) {
+        final int slot = (int) handle;
+        if ((slot < 0) || (slot >= capacity)) {
+            return false;
+        }
+        synchronized (lock) {
+            return (states[slot] == SCHEDULED)
+                    && (generations[slot] == (int) (handle >>> 32));
+        }
+    }
+
+    /** Removes a pending timer from its bucket. Requires the lock. */
+    private void unlink(final int slot) {
+        final int before = prev[slot];
+        final int after = next[slot];
+        if (before == NONE) {
+            buckets[(int) deadlines[slot] & mask] = after;
+        } else {
+            next[before] = after;
+        }
+        if (after != NONE) {
+            prev[after] = before;
+        }
+    }
+
+    /** Makes a slot reusable. Requires the lock. */
+    private void release(final int slot) {
+        generations[slot]++;
+        states[slot] = FREE;
+        final int base = slot * refStride;
+        for (int i = 0; i < refStride; i++) {
+            refs[base + i] = null;
+        }
+        next[slot] = free;
+        free = slot;
+    }
+
+    /**
+     * Stops the timer thread. The pending timers never expire, and no timer
+     * can be scheduled afterward.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /** Returns true, after shutdown(). */
+    public boolean isShutdown() {
+        return !running;
+    }
+
+    /**
+     * Waits for the timer thread to stop, after shutdown(). Returns false,
+     * if the timeout elapsed first.
+     */
+    public boolean awaitTermination(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        unit.timedJoin(thread, timeout);
+        return !thread.isAlive();
+    }
+}
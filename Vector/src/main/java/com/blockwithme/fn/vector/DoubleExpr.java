@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.vector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import com.blockwithme.fn1.DoubleFuncDouble;
+import com.blockwithme.fn2.DoubleFuncDoubleDouble;
+
+/**
+ * <code>DoubleExpr</code> is a small arithmetic expression over two double
+ * variables, x and y, like <code>x().mul(x()).add(y())</code>.
+ *
+ * An expression implements DoubleFuncDouble, where y is 0, and DoubleFuncDoubleDouble.
+ * As built, it is interpreted, and its batch methods are the default,
+ * scalar, ones. compile() turns every node into its own hidden class, whose
+ * operation and operands are constants for the JIT, and whose batch methods
+ * are Vector API loops, processing SPECIES.length() elements at a time. Any
+ * other functor also falls back to the scalar batch methods.
+ *
+ * @author monster
+ */
+public abstract class DoubleExpr implements DoubleFuncDouble, DoubleFuncDoubleDouble {
+
+    /** A node of an interpreted expression. */
+    private static final class Node extends DoubleExpr {
+        /** The kind of node. */
+        private final Op op;
+
+        /** The first operand, or null. */
+        private final DoubleExpr a;
+
+        /** The second operand, or null. */
+        private final DoubleExpr b;
+
+        /** The value of a constant. */
+        private final double value;
+
+        /** Constructor */
+        Node(final Op theOp, final DoubleExpr theA, final DoubleExpr theB,
+                final double theValue) {
+            op = theOp;
+            a = theA;
+            b = theB;
+            value = theValue;
+        }
+
+        @Override
+        double eval(final double x, final double y) {
+            switch (op) {
+            case X:
+                return x;
+            case Y:
+                return y;
+            case CONST:
+                return value;
+            case NEG:
+                return -a.eval(x, y);
+            case ABS:
+                return Math.abs(a.eval(x, y));
+            case SQRT:
+                return Math.sqrt(a.eval(x, y));
+            case ADD:
+                return a.eval(x, y) + b.eval(x, y);
+            case SUB:
+                return a.eval(x, y) - b.eval(x, y);
+            case MUL:
+                return a.eval(x, y) * b.eval(x, y);
+            case DIV:
+                return a.eval(x, y) / b.eval(x, y);
+            case MIN:
+                return Math.min(a.eval(x, y), b.eval(x, y));
+            case MAX:
+                return Math.max(a.eval(x, y), b.eval(x, y));
+            default:
+                throw new IllegalStateException("Unsupported: " + op);
+            }
+        }
+
+        @Override
+        DoubleVector vector(final DoubleVector x, final DoubleVector y) {
+            return compile().vector(x, y);
+        }
+
+        @Override
+        public DoubleExpr compile() {
+            final DoubleExpr ca = (a == null) ? null : a.compile();
+            final DoubleExpr cb = (b == null) ? null : b.compile();
+            return define(op, ca, cb, value);
+        }
+
+        @Override
+        public String toString() {
+            return op.toString(a, b, value);
+        }
+    }
+
+    /** The vector species used. */
+    public static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /** The variable x. */
+    private static final DoubleExpr X = new Node(Op.X, null, null, 0);
+
+    /** The variable y. */
+    private static final DoubleExpr Y = new Node(Op.Y, null, null, 0);
+
+    /** The bytes of the DoubleKernel class, the template of the compiled nodes. */
+    private static byte[] kernel;
+
+    /** Constructor */
+    DoubleExpr() {
+        // NOP
+    }
+
+    /** Returns the variable x, the first parameter. */
+    public static DoubleExpr x() {
+        return X;
+    }
+
+    /** Returns the variable y, the second parameter. */
+    public static DoubleExpr y() {
+        return Y;
+    }
+
+    /** Returns a constant. */
+    public static DoubleExpr constant(final double value) {
+        return new Node(Op.CONST, null, null, value);
+    }
+
+    /** Returns a binary operation. */
+    private DoubleExpr binary(final Op op, final DoubleExpr other) {
+        if (other == null) {
+            throw new IllegalArgumentException("other is null");
+        }
+        return new Node(op, this, other, 0);
+    }
+
+    /** Returns this + other. */
+    public DoubleExpr add(final DoubleExpr other) {
+        return binary(Op.ADD, other);
+    }
+
+    /** Returns this + value. */
+    public DoubleExpr add(final double value) {
+        return binary(Op.ADD, constant(value));
+    }
+
+    /** Returns this - other. */
+    public DoubleExpr sub(final DoubleExpr other) {
+        return binary(Op.SUB, other);
+    }
+
+    /** Returns this - value. */
+    public DoubleExpr sub(final double value) {
+        return binary(Op.SUB, constant(value));
+    }
+
+    /** Returns this * other. */
+    public DoubleExpr mul(final DoubleExpr other) {
+        return binary(Op.MUL, other);
+    }
+
+    /** Returns this * value. */
+    public DoubleExpr mul(final double value) {
+        return binary(Op.MUL, constant(value));
+    }
+
+    /** Returns this / other. */
+    public DoubleExpr div(final DoubleExpr other) {
+        return binary(Op.DIV, other);
+    }
+
+    /** Returns this / value. */
+    public DoubleExpr div(final double value) {
+        return binary(Op.DIV, constant(value));
+    }
+
+    /** Returns the minimum of this and other. */
+    public DoubleExpr min(final DoubleExpr other) {
+        return binary(Op.MIN, other);
+    }
+
+    /** Returns the maximum of this and other. */
+    public DoubleExpr max(final DoubleExpr other) {
+        return binary(Op.MAX, other);
+    }
+
+    /** Returns -this. */
+    public DoubleExpr neg() {
+        return new Node(Op.NEG, this, null, 0);
+    }
+
+    /** Returns the absolute value of this. */
+    public DoubleExpr abs() {
+        return new Node(Op.ABS, this, null, 0);
+    }
+
+    /** Returns the square root of this. */
+    public DoubleExpr sqrt() {
+        return new Node(Op.SQRT, this, null, 0);
+    }
+
+    /**
+     * Returns the compiled form of this expression, which evaluates its
+     * batch methods with the Vector API. Compiling defines one hidden class
+     * per node, so it should be done once, and the result kept.
+     */
+    public abstract DoubleExpr compile();
+
+    /** Evaluates the expression, for one value of x and y. */
+    abstract double eval(double x, double y);
+
+    /** Evaluates the expression, for SPECIES.length() values of x and y. */
+    abstract DoubleVector vector(DoubleVector x, DoubleVector y);
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn1.DoubleFuncDouble#apply(double)
+     */
+    @Override
+    public final double apply(final double p0) {
+        return eval(p0, 0);
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn2.DoubleFuncDoubleDouble#apply(double, double)
+     */
+    @Override
+    public final double apply(final double p0, final double p1) {
+        return eval(p0, p1);
+    }
+
+    /** Defines the compiled node, as a hidden class. */
+    static DoubleExpr define(final Op op, final DoubleExpr a, final DoubleExpr b,
+            final double value) {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup()
+                    .defineHiddenClassWithClassData(kernel(),
+                            Arrays.asList(op, a, b, value), true);
+            return (DoubleExpr) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new IllegalStateException("Cannot compile " + op, e);
+        }
+    }
+
+    /** Returns the bytes of the DoubleKernel class. */
+    private static synchronized byte[] kernel() throws IOException {
+        if (kernel == null) {
+            try (InputStream in = DoubleExpr.class
+                    .getResourceAsStream("DoubleKernel.class")) {
+                if (in == null) {
+                    throw new IllegalStateException("DoubleKernel.class not found");
+                }
+                kernel = in.readAllBytes();
+            }
+        }
+        return kernel;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.vector;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Objects;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+
+/**
+ * The template of the compiled nodes of a DoubleExpr. It is never used
+ * directly: every compiled node is a hidden class, defined from the bytes
+ * of this class, with its own class data. The kind of node, the operands
+ * and the constant are therefore static final fields, which the JIT treats
+ * as constants, so that it can inline the whole expression, and keep the
+ * vectors in registers.
+ *
+ * @author monster
+ */
+final class DoubleKernel extends DoubleExpr {
+
+    /** The kind of node. */
+    private static final Op OP = data(0, Op.class);
+
+    /** The first operand, or null. */
+    private static final DoubleExpr A = data(1, DoubleExpr.class);
+
+    /** The second operand, or null. */
+    private static final DoubleExpr B = data(2, DoubleExpr.class);
+
+    /** The value of a constant. */
+    private static final double VALUE = (OP == Op.CONST) ? data(3, Double.class)
+            : 0;
+
+    /** The value of a constant, in all lanes. */
+    private static final DoubleVector BROADCAST = DoubleVector.broadcast(SPECIES, VALUE);
+
+    /** Constructor */
+    DoubleKernel() {
+        // NOP
+    }
+
+    /** Returns an element of the class data. */
+    private static <E> E data(final int index, final Class<E> type) {
+        try {
+            return MethodHandles.classDataAt(MethodHandles.lookup(), "_",
+                    type, index);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    double eval(final double x, final double y) {
+        if (OP == Op.X) {
+            return x;
+        }
+        if (OP == Op.Y) {
+            return y;
+        }
+        if (OP == Op.CONST) {
+            return VALUE;
+        }
+        final double a = A.eval(x, y);
+        if (OP == Op.NEG) {
+            return -a;
+        }
+        if (OP == Op.ABS) {
+            return Math.abs(a);
+        }
+        if (OP == Op.SQRT) {
+            return Math.sqrt(a);
+        }
+        final double b = B.eval(x, y);
+        if (OP == Op.ADD) {
+            return a + b;
+        }
+        if (OP == Op.SUB) {
+            return a - b;
+        }
+        if (OP == Op.MUL) {
+            return a * b;
+        }
+        if (OP == Op.DIV) {
+            return a / b;
+        }
+        if (OP == Op.MIN) {
+            return Math.min(a, b);
+        }
+        if (OP == Op.MAX) {
+            return Math.max(a, b);
+        }
+        throw new IllegalStateException("Unsupported: " + OP);
+    }
+
+    @Override
+    DoubleVector vector(final DoubleVector x, final DoubleVector y) {
+        if (OP == Op.X) {
+            return x;
+        }
+        if (OP == Op.Y) {
+            return y;
+        }
+        if (OP == Op.CONST) {
+            return BROADCAST;
+        }
+        final DoubleVector a = A.vector(x, y);
+        if (OP == Op.NEG) {
+            return a.neg();
+        }
+        if (OP == Op.ABS) {
+            return a.abs();
+        }
+        if (OP == Op.SQRT) {
+            return a.lanewise(VectorOperators.SQRT);
+        }
+        final DoubleVector b = B.vector(x, y);
+        if (OP == Op.ADD) {
+            return a.add(b);
+        }
+        if (OP == Op.SUB) {
+            return a.sub(b);
+        }
+        if (OP == Op.MUL) {
+            return a.mul(b);
+        }
+        if (OP == Op.DIV) {
+            return a.div(b);
+        }
+        if (OP == Op.MIN) {
+            return a.min(b);
+        }
+        if (OP == Op.MAX) {
+            return a.max(b);
+        }
+        throw new IllegalStateException("Unsupported: " + OP);
+    }
+
+    @Override
+    public DoubleExpr compile() {
+        return this;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn1.DoubleFuncDouble#applyBatch(double[], int, double[], int, int)
+     */
+    @Override
+    public void applyBatch(final double[] in, final int inOff, final double[] out,
+            final int outOff, final int len) {
+        Objects.checkFromIndexSize(inOff, len, in.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        final DoubleVector zero = DoubleVector.zero(SPECIES);
+        final int bound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            vector(DoubleVector.fromArray(SPECIES, in, inOff + i), zero).intoArray(
+                    out, outOff + i);
+        }
+        for (; i < len; i++) {
+            out[outOff + i] = eval(in[inOff + i], 0);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn2.DoubleFuncDoubleDouble#applyBatch(double[], int, double[], int, double[], int, int)
+     */
+    @Override
+    public void applyBatch(final double[] in0, final int in0Off,
+            final double[] in1, final int in1Off, final double[] out,
+            final int outOff, final int len) {
+        Objects.checkFromIndexSize(in0Off, len, in0.length);
+        Objects.checkFromIndexSize(in1Off, len, in1.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        final int bound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            vector(DoubleVector.fromArray(SPECIES, in0, in0Off + i),
+                    DoubleVector.fromArray(SPECIES, in1, in1Off + i)).intoArray(out,
+                    outOff + i);
+        }
+        for (; i < len; i++) {
+            out[outOff + i] = eval(in0[in0Off + i], in1[in1Off + i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return OP.toString(A, B, VALUE);
+    }
+}
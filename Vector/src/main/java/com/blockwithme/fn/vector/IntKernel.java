@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.vector;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Objects;
+
+import jdk.incubator.vector.IntVector;
+
+/**
+ * The template of the compiled nodes of a IntExpr. It is never used
+ * directly: every compiled node is a hidden class, defined from the bytes
+ * of this class, with its own class data. The kind of node, the operands
+ * and the constant are therefore static final fields, which the JIT treats
+ * as constants, so that it can inline the whole expression, and keep the
+ * vectors in registers.
+ *
+ * @author monster
+ */
+final class IntKernel extends IntExpr {
+
+    /** The kind of node. */
+    private static final Op OP = data(0, Op.class);
+
+    /** The first operand, or null. */
+    private static final IntExpr A = data(1, IntExpr.class);
+
+    /** The second operand, or null. */
+    private static final IntExpr B = data(2, IntExpr.class);
+
+    /** The value of a constant. */
+    private static final int VALUE = (OP == Op.CONST) ? data(3, Integer.class)
+            : 0;
+
+    /** The value of a constant, in all lanes. */
+    private static final IntVector BROADCAST = IntVector.broadcast(SPECIES, VALUE);
+
+    /** Constructor */
+    IntKernel() {
+        // NOP
+    }
+
+    /** Returns an element of the class data. */
+    private static <E> E data(final int index, final Class<E> type) {
+        try {
+            return MethodHandles.classDataAt(MethodHandles.lookup(), "_",
+                    type, index);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    int eval(final int x, final int y) {
+        if (OP == Op.X) {
+            return x;
+        }
+        if (OP == Op.Y) {
+            return y;
+        }
+        if (OP == Op.CONST) {
+            return VALUE;
+        }
+        final int a = A.eval(x, y);
+        if (OP == Op.NEG) {
+            return -a;
+        }
+        if (OP == Op.ABS) {
+            return Math.abs(a);
+        }
+        final int b = B.eval(x, y);
+        if (OP == Op.ADD) {
+            return a + b;
+        }
+        if (OP == Op.SUB) {
+            return a - b;
+        }
+        if (OP == Op.MUL) {
+            return a * b;
+        }
+        if (OP == Op.DIV) {
+            return a / b;
+        }
+        if (OP == Op.MIN) {
+            return Math.min(a, b);
+        }
+        if (OP == Op.MAX) {
+            return Math.max(a, b);
+        }
+        throw new IllegalStateException("Unsupported: " + OP);
+    }
+
+    @Override
+    IntVector vector(final IntVector x, final IntVector y) {
+        if (OP == Op.X) {
+            return x;
+        }
+        if (OP == Op.Y) {
+            return y;
+        }
+        if (OP == Op.CONST) {
+            return BROADCAST;
+        }
+        final IntVector a = A.vector(x, y);
+        if (OP == Op.NEG) {
+            return a.neg();
+        }
+        if (OP == Op.ABS) {
+            return a.abs();
+        }
+        final IntVector b = B.vector(x, y);
+        if (OP == Op.ADD) {
+            return a.add(b);
+        }
+        if (OP == Op.SUB) {
+            return a.sub(b);
+        }
+        if (OP == Op.MUL) {
+            return a.mul(b);
+        }
+        if (OP == Op.DIV) {
+            return a.div(b);
+        }
+        if (OP == Op.MIN) {
+            return a.min(b);
+        }
+        if (OP == Op.MAX) {
+            return a.max(b);
+        }
+        throw new IllegalStateException("Unsupported: " + OP);
+    }
+
+    @Override
+    public IntExpr compile() {
+        return this;
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn1.IntFuncInt#applyBatch(int[], int, int[], int, int)
+     */
+    @Override
+    public void applyBatch(final int[] in, final int inOff, final int[] out,
+            final int outOff, final int len) {
+        Objects.checkFromIndexSize(inOff, len, in.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        final IntVector zero = IntVector.zero(SPECIES);
+        final int bound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            vector(IntVector.fromArray(SPECIES, in, inOff + i), zero).intoArray(
+                    out, outOff + i);
+        }
+        for (; i < len; i++) {
+            out[outOff + i] = eval(in[inOff + i], 0);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.blockwithme.fn2.IntFuncIntInt#applyBatch(int[], int, int[], int, int[], int, int)
+     */
+    @Override
+    public void applyBatch(final int[] in0, final int in0Off,
+            final int[] in1, final int in1Off, final int[] out,
+            final int outOff, final int len) {
+        Objects.checkFromIndexSize(in0Off, len, in0.length);
+        Objects.checkFromIndexSize(in1Off, len, in1.length);
+        Objects.checkFromIndexSize(outOff, len, out.length);
+        final int bound = SPECIES.loopBound(len);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            vector(IntVector.fromArray(SPECIES, in0, in0Off + i),
+                    IntVector.fromArray(SPECIES, in1, in1Off + i)).intoArray(out,
+                    outOff + i);
+        }
+        for (; i < len; i++) {
+            out[outOff + i] = eval(in0[in0Off + i], in1[in1Off + i]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return OP.toString(A, B, VALUE);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 Sebastien Diot.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blockwithme.fn.vector;
+
+import java.util.Locale;
+
+/**
+ * The kinds of nodes of the expressions.
+ *
+ * @author monster
+ */
+enum Op {
+    /** The variable x. */
+    X(0, null),
+    /** The variable y. */
+    Y(0, null),
+    /** A constant. */
+    CONST(0, null),
+    /** Negation. */
+    NEG(1, null),
+    /** Absolute value. */
+    ABS(1, null),
+    /** Square root. */
+    SQRT(1, null),
+    /** Addition. */
+    ADD(2, "+"),
+    /** Subtraction. */
+    SUB(2, "-"),
+    /** Multiplication. */
+    MUL(2, "*"),
+    /** Division. */
+    DIV(2, "/"),
+    /** Minimum. */
+    MIN(2, null),
+    /** Maximum. */
+    MAX(2, null);
+
+    /** The number of operands. */
+    final int arity;
+
+    /** The infix symbol, or null for a function. */
+    final String symbol;
+
+    /** Constructor */
+    Op(final int theArity, final String theSymbol) {
+        arity = theArity;
+        symbol = theSymbol;
+    }
+
+    /** Returns the expression, as a String. */
+    String toString(final Object a, final Object b, final Object value) {
+        if (this == X) {
+            return "x";
+        }
+        if (this == Y) {
+            return "y";
+        }
+        if (this == CONST) {
+            return String.valueOf(value);
+        }
+        if (symbol != null) {
+            return "(" + a + " " + symbol + " " + b + ")";
+        }
+        final String name = name().toLowerCase(Locale.ROOT);
+        return (arity == 1) ? name + "(" + a + ")" : name + "(" + a + ", " + b
+                + ")";
+    }
+}